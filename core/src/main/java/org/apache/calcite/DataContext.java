@@ -137,7 +137,22 @@ enum Variable {
      *
      * <p>Default value is "user.name" from
      * {@link System#getProperty(String)}. */
-    SYSTEM_USER("systemUser", String.class);
+    SYSTEM_USER("systemUser", String.class),
+
+    /** Approximate number of bytes of rows that a sort may hold in memory
+     * before it spills to disk. When there is no limit, the value is
+     * negative or not present. */
+    SORT_MEMORY_BUDGET("sortMemoryBudget", Long.class),
+
+    /** Approximate number of bytes of build-side rows that a hash join may
+     * hold in memory before it partitions its inputs to disk. When there is
+     * no limit, the value is negative or not present. */
+    HASH_JOIN_MEMORY_BUDGET("hashJoinMemoryBudget", Long.class),
+
+    /** Approximate number of bytes of groups that a hash aggregate may hold
+     * in memory before it partitions the rows of other groups to disk. When
+     * there is no limit, the value is negative or not present. */
+    AGGREGATE_MEMORY_BUDGET("aggregateMemoryBudget", Long.class);
 
     public final String camelName;
     public final Class clazz;
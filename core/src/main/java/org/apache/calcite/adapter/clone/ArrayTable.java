@@ -17,6 +17,9 @@
 package org.apache.calcite.adapter.clone;
 
 import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.columnar.ColumnVector;
+import org.apache.calcite.adapter.columnar.ColumnarBatch;
+import org.apache.calcite.adapter.columnar.ColumnarTable;
 import org.apache.calcite.adapter.java.AbstractQueryableTable;
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
@@ -59,7 +62,8 @@
  * values in the column; see {@link Representation} and
  * {@link RepresentationType}.
  */
-class ArrayTable extends AbstractQueryableTable implements ScannableTable {
+class ArrayTable extends AbstractQueryableTable
+    implements ScannableTable, ColumnarTable {
   private final RelProtoDataType protoRowType;
   private final Supplier<Content> supplier;
 
@@ -95,6 +99,16 @@ class ArrayTable extends AbstractQueryableTable implements ScannableTable {
     };
   }
 
+  @Override public Enumerable<ColumnarBatch> batches(DataContext root,
+      int[] columns) {
+    return new AbstractEnumerable<ColumnarBatch>() {
+      @Override public Enumerator<ColumnarBatch> enumerator() {
+        final Content content = supplier.get();
+        return content.batchEnumerator(columns);
+      }
+    };
+  }
+
   @Override public <T> Queryable<T> asQueryable(final QueryProvider queryProvider,
       SchemaPlus schema, String tableName) {
     return new AbstractTableQueryable<T>(queryProvider, schema, this,
@@ -314,7 +328,7 @@ public static class ObjectArray implements Representation {
   public static class PrimitiveArray implements Representation {
     final int ordinal;
     private final Primitive primitive;
-    private final Primitive p;
+    final Primitive p;
 
     PrimitiveArray(int ordinal, Primitive primitive, Primitive p) {
       this.ordinal = ordinal;
@@ -845,6 +859,15 @@ public <T> Enumerator<T> enumerator() {
       return new ArrayEnumerator(size, columns);
     }
 
+    /** Returns an enumerator over batches of the given columns. */
+    public Enumerator<ColumnarBatch> batchEnumerator(int[] columns) {
+      final List<Column> list = new ArrayList<>();
+      for (int column : columns) {
+        list.add(this.columns.get(column));
+      }
+      return new BatchEnumerator(size, list);
+    }
+
     /** Enumerator over a table with a single column; each element
      * returned is an object. */
     private static class ObjectEnumerator implements Enumerator<@Nullable Object> {
@@ -907,5 +930,57 @@ private static class ArrayEnumerator implements Enumerator<@Nullable Object[]> {
       @Override public void close() {
       }
     }
+
+    /** Enumerator over a table that returns batches of rows.
+     *
+     * <p>The vector of a column whose values are held in an array of
+     * primitives is a view onto that array; the values of other columns
+     * are decoded into a new array for each batch. */
+    private static class BatchEnumerator implements Enumerator<ColumnarBatch> {
+      final int rowCount;
+      final List<Column> columns;
+      int start = -ColumnarBatch.MAX_SIZE;
+
+      BatchEnumerator(int rowCount, List<Column> columns) {
+        this.rowCount = rowCount;
+        this.columns = columns;
+      }
+
+      @Override public ColumnarBatch current() {
+        final int size = Math.min(ColumnarBatch.MAX_SIZE, rowCount - start);
+        final List<ColumnVector> vectors = new ArrayList<>(columns.size());
+        for (Column column : columns) {
+          vectors.add(vector(column, start, size));
+        }
+        return new ColumnarBatch(size, vectors);
+      }
+
+      private static ColumnVector vector(Column column, int start, int size) {
+        if (column.representation instanceof PrimitiveArray) {
+          final PrimitiveArray representation =
+              (PrimitiveArray) column.representation;
+          return ColumnVector.ofPrimitives(column.dataSet, representation.p,
+              start);
+        }
+        final @Nullable Object[] values = new Object[size];
+        for (int r = 0; r < size; r++) {
+          values[r] =
+              column.representation.getObject(column.dataSet, start + r);
+        }
+        return ColumnVector.ofObjects(values, 0, size);
+      }
+
+      @Override public boolean moveNext() {
+        start += ColumnarBatch.MAX_SIZE;
+        return start < rowCount;
+      }
+
+      @Override public void reset() {
+        start = -ColumnarBatch.MAX_SIZE;
+      }
+
+      @Override public void close() {
+      }
+    }
   }
 }
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.columnar;
+
+import org.apache.calcite.linq4j.tree.Primitive;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.BitSet;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Values of one column for the rows of a {@link ColumnarBatch}.
+ *
+ * <p>The values are held in an array, either an array of primitives such as
+ * {@code int[]} or an {@code Object[]}; the value of row {@code r} of the
+ * batch is at position {@code offset + r}. The array may be shared with the
+ * table and be longer than the batch, so that a batch can be created
+ * without copying values.
+ *
+ * <p>Null values are recorded in a bitmap, one bit per row of the batch.
+ * A vector whose bitmap is null has no null values.
+ */
+public final class ColumnVector {
+  /** Array of values. */
+  public final Object values;
+  /** Type that values are read as; {@link Primitive#OTHER} if
+   * {@link #values} is an {@code Object[]}. The array may be narrower; for
+   * example, a {@code byte[]} may hold the values of an {@code int}
+   * column. */
+  public final Primitive primitive;
+  /** Position in {@link #values} of the first row of the batch. */
+  public final int offset;
+  /** Rows whose value is null, or null if no value is null. */
+  public final @Nullable BitSet nulls;
+
+  private ColumnVector(Object values, Primitive primitive, int offset,
+      @Nullable BitSet nulls) {
+    this.values = requireNonNull(values, "values");
+    this.primitive = requireNonNull(primitive, "primitive");
+    this.offset = offset;
+    this.nulls = nulls == null || nulls.isEmpty() ? null : nulls;
+  }
+
+  /** Creates a vector over an array of primitive values, none of which is
+   * null. */
+  public static ColumnVector ofPrimitives(Object values, Primitive primitive,
+      int offset) {
+    return new ColumnVector(values, primitive, offset, null);
+  }
+
+  /** Creates a vector over an array of objects; null elements are null
+   * values. */
+  public static ColumnVector ofObjects(@Nullable Object[] values, int offset,
+      int size) {
+    BitSet nulls = null;
+    for (int r = 0; r < size; r++) {
+      if (values[offset + r] == null) {
+        if (nulls == null) {
+          nulls = new BitSet(size);
+        }
+        nulls.set(r);
+      }
+    }
+    return new ColumnVector(values, Primitive.OTHER, offset, nulls);
+  }
+
+  /** Returns whether the value of a given row is null. */
+  public boolean isNull(int row) {
+    return nulls != null && nulls.get(row);
+  }
+
+  /** Returns the value of a given row, boxed if it is a primitive. */
+  public @Nullable Object get(int row) {
+    if (isNull(row)) {
+      return null;
+    }
+    return primitive.arrayItem(values, offset + row);
+  }
+}
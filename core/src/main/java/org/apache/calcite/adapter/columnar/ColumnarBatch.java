@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.columnar;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A batch of rows, held as one {@link ColumnVector} per column.
+ *
+ * @see ColumnarTable#batches
+ */
+public final class ColumnarBatch {
+  /** Maximum number of rows in a batch; large enough to amortize the cost of
+   * calling an operator, and small enough that a batch's vectors stay in
+   * the processor's cache. */
+  public static final int MAX_SIZE = 1024;
+
+  /** Number of rows. */
+  public final int size;
+  /** Values of each column. */
+  public final ImmutableList<ColumnVector> vectors;
+
+  public ColumnarBatch(int size, List<ColumnVector> vectors) {
+    this.size = size;
+    this.vectors = ImmutableList.copyOf(vectors);
+  }
+
+  /** Returns the vector of a given column. */
+  public ColumnVector vector(int column) {
+    return vectors.get(column);
+  }
+
+  /** Converts a sequence of batches to rows.
+   *
+   * <p>Each batch is first filtered using a selection vector; rows are
+   * created only for the selected rows, and contain only the projected
+   * columns. If there is one projected column, each row is its value;
+   * otherwise each row is an array.
+   *
+   * @param batches Batches
+   * @param filter Condition that selected rows must satisfy, or null
+   * @param projects Ordinals of the columns in each row
+   */
+  public static Enumerable<@Nullable Object> rows(
+      Enumerable<ColumnarBatch> batches, @Nullable ColumnarPredicate filter,
+      int[] projects) {
+    return new AbstractEnumerable<@Nullable Object>() {
+      @Override public Enumerator<@Nullable Object> enumerator() {
+        return new RowEnumerator(batches.enumerator(), filter, projects);
+      }
+    };
+  }
+
+  /** Enumerator that returns the selected rows of each batch. */
+  private static class RowEnumerator implements Enumerator<@Nullable Object> {
+    private final Enumerator<ColumnarBatch> batches;
+    private final @Nullable ColumnarPredicate filter;
+    private final int[] projects;
+    private @Nullable ColumnarBatch batch;
+    private int[] selection = new int[MAX_SIZE];
+    private int count;
+    private int index = -1;
+
+    RowEnumerator(Enumerator<ColumnarBatch> batches,
+        @Nullable ColumnarPredicate filter, int[] projects) {
+      this.batches = batches;
+      this.filter = filter;
+      this.projects = projects;
+    }
+
+    @Override public @Nullable Object current() {
+      final ColumnarBatch batch = this.batch;
+      if (batch == null || index < 0 || index >= count) {
+        throw new NoSuchElementException();
+      }
+      final int row = selection[index];
+      if (projects.length == 1) {
+        return batch.vector(projects[0]).get(row);
+      }
+      final @Nullable Object[] values = new Object[projects.length];
+      for (int i = 0; i < projects.length; i++) {
+        values[i] = batch.vector(projects[i]).get(row);
+      }
+      return values;
+    }
+
+    @Override public boolean moveNext() {
+      for (;;) {
+        if (++index < count) {
+          return true;
+        }
+        if (!batches.moveNext()) {
+          batch = null;
+          count = 0;
+          return false;
+        }
+        final ColumnarBatch batch = batches.current();
+        if (batch.size > selection.length) {
+          selection = new int[batch.size];
+        }
+        for (int r = 0; r < batch.size; r++) {
+          selection[r] = r;
+        }
+        count = filter == null
+            ? batch.size
+            : filter.filter(batch, selection, batch.size);
+        index = -1;
+        this.batch = batch;
+      }
+    }
+
+    @Override public void reset() {
+      batches.reset();
+      batch = null;
+      count = 0;
+      index = -1;
+    }
+
+    @Override public void close() {
+      batches.close();
+    }
+  }
+}
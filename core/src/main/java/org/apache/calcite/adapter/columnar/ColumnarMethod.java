@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.columnar;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.tree.Types;
+import org.apache.calcite.sql.SqlKind;
+
+import java.lang.reflect.Method;
+
+/**
+ * Built-in methods in the columnar calling convention.
+ *
+ * @see org.apache.calcite.util.BuiltInMethod
+ */
+@SuppressWarnings("ImmutableEnumChecker")
+enum ColumnarMethod {
+  BATCHES(ColumnarTable.class, "batches", DataContext.class, int[].class),
+  ROWS(ColumnarBatch.class, "rows", Enumerable.class,
+      ColumnarPredicate.class, int[].class),
+  PREDICATE_COMPARE_LONG(ColumnarPredicate.class, "compare", int.class,
+      SqlKind.class, long.class),
+  PREDICATE_COMPARE_DOUBLE(ColumnarPredicate.class, "compare", int.class,
+      SqlKind.class, double.class),
+  PREDICATE_IS_NULL(ColumnarPredicate.class, "isNull", int.class),
+  PREDICATE_IS_NOT_NULL(ColumnarPredicate.class, "isNotNull", int.class),
+  PREDICATE_AND(ColumnarPredicate.class, "and", ColumnarPredicate[].class),
+  PREDICATE_OR(ColumnarPredicate.class, "or", ColumnarPredicate[].class);
+
+  final Method method;
+
+  /** Defines a method. */
+  ColumnarMethod(Class<?> clazz, String methodName,
+      Class<?>... argumentTypes) {
+    this.method = Types.lookupMethod(clazz, methodName, argumentTypes);
+  }
+}
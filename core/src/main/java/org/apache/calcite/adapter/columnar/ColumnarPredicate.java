@@ -0,0 +1,348 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.columnar;
+
+import org.apache.calcite.sql.SqlKind;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Condition that is evaluated on a {@link ColumnarBatch}, one column at a
+ * time, and narrows a selection vector of rows.
+ *
+ * <p>A condition is false for a row if the value of any column it compares
+ * is null, so rows whose value is unknown are removed, as in a SQL
+ * {@code WHERE} clause.
+ */
+public abstract class ColumnarPredicate {
+  /** Bit that is set in a comparison's mask if it accepts values less than
+   * its operand. */
+  private static final int LT = 1;
+  /** Bit that is set in a comparison's mask if it accepts values equal to
+   * its operand. */
+  private static final int EQ = 2;
+  /** Bit that is set in a comparison's mask if it accepts values greater
+   * than its operand. */
+  private static final int GT = 4;
+  /** Bit that is set in a comparison's mask if it accepts values that are
+   * unordered with respect to its operand, because one of them is NaN. Only
+   * {@code <>} accepts them, as in Java and in the enumerable convention. */
+  private static final int UN = 8;
+
+  /** Removes from a selection the rows for which this condition is not
+   * true.
+   *
+   * @param batch Batch
+   * @param selection Ordinals of the selected rows, ascending; on return,
+   *                  the first elements are the rows that remain selected,
+   *                  still ascending
+   * @param count Number of selected rows
+   * @return Number of rows that remain selected
+   */
+  public abstract int filter(ColumnarBatch batch, int[] selection, int count);
+
+  /** Creates a condition that compares a column with an integer value.
+   *
+   * @param column Ordinal of the column in the batch; its values must be
+   *               integers
+   * @param kind Comparison operator, for example
+   *             {@link SqlKind#GREATER_THAN}
+   * @param value Value to compare with
+   */
+  public static ColumnarPredicate compare(int column, SqlKind kind,
+      long value) {
+    return new LongComparison(column, mask(kind), value);
+  }
+
+  /** Creates a condition that compares a numeric column with a
+   * floating-point value. */
+  public static ColumnarPredicate compare(int column, SqlKind kind,
+      double value) {
+    return new DoubleComparison(column, mask(kind), value);
+  }
+
+  /** Creates a condition that is true if a column's value is null. */
+  public static ColumnarPredicate isNull(int column) {
+    return new NullTest(column, true);
+  }
+
+  /** Creates a condition that is true if a column's value is not null. */
+  public static ColumnarPredicate isNotNull(int column) {
+    return new NullTest(column, false);
+  }
+
+  /** Creates a condition that is true if all of the given conditions are
+   * true. */
+  public static ColumnarPredicate and(ColumnarPredicate... predicates) {
+    return new And(ImmutableList.copyOf(predicates));
+  }
+
+  /** Creates a condition that is true if any of the given conditions is
+   * true. */
+  public static ColumnarPredicate or(ColumnarPredicate... predicates) {
+    return new Or(ImmutableList.copyOf(predicates));
+  }
+
+  private static int mask(SqlKind kind) {
+    switch (kind) {
+    case LESS_THAN:
+      return LT;
+    case LESS_THAN_OR_EQUAL:
+      return LT | EQ;
+    case EQUALS:
+      return EQ;
+    case NOT_EQUALS:
+      return LT | GT | UN;
+    case GREATER_THAN_OR_EQUAL:
+      return EQ | GT;
+    case GREATER_THAN:
+      return GT;
+    default:
+      throw new IllegalArgumentException("not a comparison: " + kind);
+    }
+  }
+
+  /** Returns whether a comparison with a given mask accepts a value, given
+   * the sign of the value minus the comparison's operand, or 2 if they are
+   * unordered. */
+  private static boolean accepts(int mask, int sign) {
+    return (mask >> (sign + 1) & 1) != 0;
+  }
+
+  /** Returns the sign of {@code v - w}, treating {@code -0.0} as equal to
+   * {@code 0.0}; or 2 if either is NaN, which makes every comparison false
+   * except {@code <>}. */
+  private static int sign(double v, double w) {
+    return v < w ? -1 : v > w ? 1 : v == w ? 0 : 2;
+  }
+
+  /** Comparison of an integer column with a value. */
+  private static class LongComparison extends ColumnarPredicate {
+    private final int column;
+    private final int mask;
+    private final long value;
+
+    LongComparison(int column, int mask, long value) {
+      this.column = column;
+      this.mask = mask;
+      this.value = value;
+    }
+
+    @Override public int filter(ColumnarBatch batch, int[] selection,
+        int count) {
+      final ColumnVector vector = batch.vector(column);
+      final int offset = vector.offset;
+      int n = 0;
+      if (vector.values instanceof int[]) {
+        final int[] values = (int[]) vector.values;
+        for (int i = 0; i < count; i++) {
+          final int r = selection[i];
+          if (accepts(mask, Long.compare(values[offset + r], value))) {
+            selection[n++] = r;
+          }
+        }
+      } else if (vector.values instanceof long[]) {
+        final long[] values = (long[]) vector.values;
+        for (int i = 0; i < count; i++) {
+          final int r = selection[i];
+          if (accepts(mask, Long.compare(values[offset + r], value))) {
+            selection[n++] = r;
+          }
+        }
+      } else if (vector.values instanceof short[]) {
+        final short[] values = (short[]) vector.values;
+        for (int i = 0; i < count; i++) {
+          final int r = selection[i];
+          if (accepts(mask, Long.compare(values[offset + r], value))) {
+            selection[n++] = r;
+          }
+        }
+      } else if (vector.values instanceof byte[]) {
+        final byte[] values = (byte[]) vector.values;
+        for (int i = 0; i < count; i++) {
+          final int r = selection[i];
+          if (accepts(mask, Long.compare(values[offset + r], value))) {
+            selection[n++] = r;
+          }
+        }
+      } else {
+        for (int i = 0; i < count; i++) {
+          final int r = selection[i];
+          final @Nullable Object o = vector.get(r);
+          if (o != null
+              && accepts(mask,
+                  Long.compare(((Number) o).longValue(), value))) {
+            selection[n++] = r;
+          }
+        }
+      }
+      return n;
+    }
+  }
+
+  /** Comparison of a numeric column with a floating-point value. */
+  private static class DoubleComparison extends ColumnarPredicate {
+    private final int column;
+    private final int mask;
+    private final double value;
+
+    DoubleComparison(int column, int mask, double value) {
+      this.column = column;
+      this.mask = mask;
+      this.value = value;
+    }
+
+    @Override public int filter(ColumnarBatch batch, int[] selection,
+        int count) {
+      final ColumnVector vector = batch.vector(column);
+      final int offset = vector.offset;
+      int n = 0;
+      if (vector.values instanceof double[]) {
+        final double[] values = (double[]) vector.values;
+        for (int i = 0; i < count; i++) {
+          final int r = selection[i];
+          if (accepts(mask, sign(values[offset + r], value))) {
+            selection[n++] = r;
+          }
+        }
+      } else if (vector.values instanceof float[]) {
+        final float[] values = (float[]) vector.values;
+        for (int i = 0; i < count; i++) {
+          final int r = selection[i];
+          if (accepts(mask, sign(values[offset + r], value))) {
+            selection[n++] = r;
+          }
+        }
+      } else if (vector.values instanceof int[]) {
+        final int[] values = (int[]) vector.values;
+        for (int i = 0; i < count; i++) {
+          final int r = selection[i];
+          if (accepts(mask, sign(values[offset + r], value))) {
+            selection[n++] = r;
+          }
+        }
+      } else {
+        for (int i = 0; i < count; i++) {
+          final int r = selection[i];
+          final @Nullable Object o = vector.get(r);
+          if (o != null
+              && accepts(mask, sign(((Number) o).doubleValue(), value))) {
+            selection[n++] = r;
+          }
+        }
+      }
+      return n;
+    }
+  }
+
+  /** Condition that tests whether a column's value is null, or is not
+   * null. */
+  private static class NullTest extends ColumnarPredicate {
+    private final int column;
+    private final boolean isNull;
+
+    NullTest(int column, boolean isNull) {
+      this.column = column;
+      this.isNull = isNull;
+    }
+
+    @Override public int filter(ColumnarBatch batch, int[] selection,
+        int count) {
+      final BitSet nulls = batch.vector(column).nulls;
+      if (nulls == null) {
+        return isNull ? 0 : count;
+      }
+      int n = 0;
+      for (int i = 0; i < count; i++) {
+        final int r = selection[i];
+        if (nulls.get(r) == isNull) {
+          selection[n++] = r;
+        }
+      }
+      return n;
+    }
+  }
+
+  /** Conjunction of conditions; each condition is evaluated only on the
+   * rows that satisfy the previous ones. */
+  private static class And extends ColumnarPredicate {
+    private final List<ColumnarPredicate> predicates;
+
+    And(List<ColumnarPredicate> predicates) {
+      this.predicates = predicates;
+    }
+
+    @Override public int filter(ColumnarBatch batch, int[] selection,
+        int count) {
+      for (ColumnarPredicate predicate : predicates) {
+        if (count == 0) {
+          break;
+        }
+        count = predicate.filter(batch, selection, count);
+      }
+      return count;
+    }
+  }
+
+  /** Disjunction of conditions; each condition is evaluated only on the
+   * rows that do not satisfy any of the previous ones. */
+  private static class Or extends ColumnarPredicate {
+    private final List<ColumnarPredicate> predicates;
+
+    Or(List<ColumnarPredicate> predicates) {
+      this.predicates = predicates;
+    }
+
+    @Override public int filter(ColumnarBatch batch, int[] selection,
+        int count) {
+      final BitSet accepted = new BitSet(batch.size);
+      final int[] remaining = Arrays.copyOf(selection, count);
+      int remainingCount = count;
+      for (ColumnarPredicate predicate : predicates) {
+        if (remainingCount == 0) {
+          break;
+        }
+        final int[] selected = Arrays.copyOf(remaining, remainingCount);
+        final int selectedCount =
+            predicate.filter(batch, selected, remainingCount);
+        for (int i = 0; i < selectedCount; i++) {
+          accepted.set(selected[i]);
+        }
+        int m = 0;
+        for (int i = 0; i < remainingCount; i++) {
+          if (!accepted.get(remaining[i])) {
+            remaining[m++] = remaining[i];
+          }
+        }
+        remainingCount = m;
+      }
+      int n = 0;
+      for (int i = 0; i < count; i++) {
+        if (accepted.get(selection[i])) {
+          selection[n++] = selection[i];
+        }
+      }
+      return n;
+    }
+  }
+}
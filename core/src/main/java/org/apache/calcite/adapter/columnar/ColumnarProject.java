@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.columnar;
+
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of a {@link org.apache.calcite.rel.core.Project}
+ * relational expression that chooses columns of columnar batches.
+ *
+ * <p>Every expression must be a reference to an input field; values are
+ * not copied, and the projection only determines which columns are read
+ * and returned.
+ */
+public class ColumnarProject extends Project implements ColumnarRel {
+  /** Creates a ColumnarProject. */
+  public ColumnarProject(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, List<? extends RexNode> projects, RelDataType rowType) {
+    super(cluster, traitSet, ImmutableList.of(), input, projects, rowType,
+        ImmutableSet.of());
+    assert getConvention() == ColumnarRel.CONVENTION;
+    assert getConvention() == input.getConvention();
+  }
+
+  @Override public Project copy(RelTraitSet traitSet, RelNode input,
+      List<RexNode> projects, RelDataType rowType) {
+    return new ColumnarProject(getCluster(), traitSet, input, projects,
+        rowType);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    return requireNonNull(cost, "cost").multiplyBy(0.1);
+  }
+
+  @Override public void implement(Implementor implementor) {
+    implementor.visitInput(0, getInput());
+    implementor.addProjectFields(
+        requireNonNull(getProjectFields(getProjects()), "fields"));
+  }
+
+  /** Returns the ordinals of the input fields that a list of expressions
+   * references, or null if any expression is not a field reference. */
+  static @Nullable List<Integer> getProjectFields(List<RexNode> exps) {
+    final List<Integer> fields = new ArrayList<>();
+    for (RexNode exp : exps) {
+      if (!(exp instanceof RexInputRef)) {
+        return null;
+      }
+      fields.add(((RexInputRef) exp).getIndex());
+    }
+    return fields;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.columnar;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.util.ImmutableIntList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Relational expression that uses the columnar calling convention.
+ *
+ * <p>Relational expressions in this convention read a {@link ColumnarTable}
+ * one {@link ColumnarBatch} at a time.
+ */
+public interface ColumnarRel extends RelNode {
+  void implement(Implementor implementor);
+
+  /** Calling convention for relational operations that are executed on
+   * columnar batches. */
+  Convention CONVENTION = new Convention.Impl("COLUMNAR", ColumnarRel.class);
+
+  /** Callback for the implementation process that collects, from a tree of
+   * {@link ColumnarRel} nodes, the table to scan, the conditions to
+   * evaluate on each batch, and the columns to return. */
+  class Implementor {
+    @Nullable RelOptTable table;
+    /** For each field of the current relational expression, the ordinal of
+     * the table column that it comes from. */
+    ImmutableIntList fields = ImmutableIntList.of();
+    /** Conditions, in terms of table columns, that returned rows must
+     * satisfy. */
+    final List<RexNode> conditions = new ArrayList<>();
+
+    /** Adds a condition on the fields of the current relational
+     * expression. */
+    void addCondition(RexNode condition) {
+      final ImmutableIntList fields = this.fields;
+      conditions.add(
+          condition.accept(
+              new RexShuttle() {
+                @Override public RexNode visitInputRef(RexInputRef inputRef) {
+                  return new RexInputRef(fields.get(inputRef.getIndex()),
+                      inputRef.getType());
+                }
+              }));
+    }
+
+    /** Projects fields of the current relational expression. */
+    void addProjectFields(List<Integer> projectFields) {
+      final List<Integer> list = new ArrayList<>();
+      for (int projectField : projectFields) {
+        list.add(fields.get(projectField));
+      }
+      fields = ImmutableIntList.copyOf(list);
+    }
+
+    public void visitInput(int ordinal, RelNode input) {
+      checkArgument(ordinal == 0);
+      ((ColumnarRel) input).implement(this);
+    }
+  }
+}
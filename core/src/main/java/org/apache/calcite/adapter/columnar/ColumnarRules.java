@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.columnar;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.logical.LogicalFilter;
+import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.logical.LogicalTableScan;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexUtil;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+
+/**
+ * Planner rules relating to the columnar calling convention.
+ *
+ * <p>The rules are not registered by default; the planner adds them if the
+ * connection sets
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#VECTORIZE}.
+ */
+public class ColumnarRules {
+  private ColumnarRules() {}
+
+  /** Rule that converts a {@link LogicalTableScan} of a
+   * {@link ColumnarTable} to a {@link ColumnarTableScan}. */
+  public static final ColumnarTableScanRule TABLE_SCAN =
+      ColumnarTableScanRule.DEFAULT_CONFIG
+          .toRule(ColumnarTableScanRule.class);
+
+  /** Rule that converts a {@link LogicalFilter} to a
+   * {@link ColumnarFilter}. */
+  public static final ColumnarFilterRule FILTER =
+      ColumnarFilterRule.DEFAULT_CONFIG.toRule(ColumnarFilterRule.class);
+
+  /** Rule that converts a {@link LogicalProject} to a
+   * {@link ColumnarProject}. */
+  public static final ColumnarProjectRule PROJECT =
+      ColumnarProjectRule.DEFAULT_CONFIG.toRule(ColumnarProjectRule.class);
+
+  /** Rule that converts a relational expression from
+   * {@link ColumnarRel#CONVENTION} to {@link EnumerableConvention}. */
+  public static final ColumnarToEnumerableConverterRule TO_ENUMERABLE =
+      ColumnarToEnumerableConverterRule.DEFAULT_CONFIG
+          .toRule(ColumnarToEnumerableConverterRule.class);
+
+  public static final List<RelOptRule> RULES =
+      ImmutableList.of(TABLE_SCAN, FILTER, PROJECT, TO_ENUMERABLE);
+
+  /**
+   * Rule to convert a {@link LogicalTableScan} of a {@link ColumnarTable} to
+   * a {@link ColumnarTableScan}.
+   */
+  public static class ColumnarTableScanRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalTableScan.class, Convention.NONE,
+            ColumnarRel.CONVENTION, "ColumnarTableScanRule")
+        .withRuleFactory(ColumnarTableScanRule::new);
+
+    /** Creates a ColumnarTableScanRule. */
+    protected ColumnarTableScanRule(Config config) {
+      super(config);
+    }
+
+    @Override public @Nullable RelNode convert(RelNode rel) {
+      final TableScan scan = (TableScan) rel;
+      if (scan.getTable().unwrap(ColumnarTable.class) == null) {
+        return null;
+      }
+      return new ColumnarTableScan(scan.getCluster(),
+          scan.getTraitSet().replace(ColumnarRel.CONVENTION),
+          scan.getTable());
+    }
+  }
+
+  /**
+   * Rule to convert a {@link LogicalFilter} whose condition can be evaluated
+   * on columnar batches to a {@link ColumnarFilter}.
+   */
+  public static class ColumnarFilterRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalFilter.class, Convention.NONE,
+            ColumnarRel.CONVENTION, "ColumnarFilterRule")
+        .withRuleFactory(ColumnarFilterRule::new);
+
+    /** Creates a ColumnarFilterRule. */
+    protected ColumnarFilterRule(Config config) {
+      super(config);
+    }
+
+    @Override public @Nullable RelNode convert(RelNode rel) {
+      final LogicalFilter filter = (LogicalFilter) rel;
+      // Expand SEARCH (e.g. IN, BETWEEN) to comparisons.
+      final RexNode condition =
+          RexUtil.expandSearch(filter.getCluster().getRexBuilder(), null,
+              filter.getCondition());
+      if (!ColumnarTranslator.canTranslate(condition)) {
+        return null;
+      }
+      final RelTraitSet traitSet =
+          filter.getTraitSet().replace(ColumnarRel.CONVENTION);
+      return new ColumnarFilter(filter.getCluster(), traitSet,
+          convert(filter.getInput(), ColumnarRel.CONVENTION), condition);
+    }
+  }
+
+  /**
+   * Rule to convert a {@link LogicalProject} whose expressions are all
+   * references to input fields to a {@link ColumnarProject}.
+   */
+  public static class ColumnarProjectRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalProject.class, Convention.NONE,
+            ColumnarRel.CONVENTION, "ColumnarProjectRule")
+        .withRuleFactory(ColumnarProjectRule::new);
+
+    /** Creates a ColumnarProjectRule. */
+    protected ColumnarProjectRule(Config config) {
+      super(config);
+    }
+
+    @Override public @Nullable RelNode convert(RelNode rel) {
+      final LogicalProject project = (LogicalProject) rel;
+      if (project.getProjects().isEmpty()
+          || ColumnarProject.getProjectFields(project.getProjects()) == null) {
+        return null;
+      }
+      final RelTraitSet traitSet =
+          project.getTraitSet().replace(ColumnarRel.CONVENTION);
+      return new ColumnarProject(project.getCluster(), traitSet,
+          convert(project.getInput(), ColumnarRel.CONVENTION),
+          project.getProjects(), project.getRowType());
+    }
+  }
+
+  /**
+   * Rule to convert a relational expression from
+   * {@link ColumnarRel#CONVENTION} to {@link EnumerableConvention}.
+   */
+  public static class ColumnarToEnumerableConverterRule
+      extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(RelNode.class, ColumnarRel.CONVENTION,
+            EnumerableConvention.INSTANCE,
+            "ColumnarToEnumerableConverterRule")
+        .withRuleFactory(ColumnarToEnumerableConverterRule::new);
+
+    /** Creates a ColumnarToEnumerableConverterRule. */
+    protected ColumnarToEnumerableConverterRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final RelTraitSet traitSet =
+          rel.getTraitSet().replace(getOutConvention());
+      return new ColumnarToEnumerableConverter(rel.getCluster(), traitSet,
+          rel);
+    }
+  }
+}
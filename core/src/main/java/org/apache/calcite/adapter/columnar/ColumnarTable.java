@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.columnar;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.schema.Table;
+
+/**
+ * Table whose values are stored by column, and can therefore be read a
+ * batch of rows at a time.
+ *
+ * <p>If the connection sets
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#VECTORIZE},
+ * scans of such a table, and filters and projections on it, are executed
+ * in {@link ColumnarRel#CONVENTION}.
+ */
+public interface ColumnarTable extends Table {
+  /** Returns the rows of this table as a sequence of batches, each of at
+   * most {@link ColumnarBatch#MAX_SIZE} rows.
+   *
+   * @param root Execution context
+   * @param columns Ordinals of the columns to read; vector {@code i} of
+   *                each batch holds column {@code columns[i]}
+   */
+  Enumerable<ColumnarBatch> batches(DataContext root, int[] columns);
+}
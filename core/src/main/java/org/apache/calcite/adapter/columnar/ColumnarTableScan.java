@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.columnar;
+
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.util.ImmutableIntList;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Relational expression representing a scan of a {@link ColumnarTable}.
+ */
+public class ColumnarTableScan extends TableScan implements ColumnarRel {
+  /** Creates a ColumnarTableScan. */
+  public ColumnarTableScan(RelOptCluster cluster, RelTraitSet traitSet,
+      RelOptTable table) {
+    super(cluster, traitSet, ImmutableList.of(), table);
+    assert getConvention() == ColumnarRel.CONVENTION;
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    checkArgument(inputs.isEmpty());
+    return this;
+  }
+
+  @Override public void implement(Implementor implementor) {
+    implementor.table = table;
+    implementor.fields =
+        ImmutableIntList.identity(table.getRowType().getFieldCount());
+  }
+}
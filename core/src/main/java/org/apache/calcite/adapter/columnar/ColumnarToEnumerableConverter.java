@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.columnar;
+
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.adapter.enumerable.PhysType;
+import org.apache.calcite.adapter.enumerable.PhysTypeImpl;
+import org.apache.calcite.linq4j.tree.Blocks;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Relational expression that converts the output of a tree of
+ * {@link ColumnarRel} nodes to rows in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention}.
+ *
+ * <p>The generated code reads the table a batch at a time, evaluates the
+ * conditions of all filters on each batch, and creates rows only for the
+ * selected rows and the columns that are returned.
+ */
+public class ColumnarToEnumerableConverter
+    extends ConverterImpl implements EnumerableRel {
+  /** Creates a ColumnarToEnumerableConverter. */
+  protected ColumnarToEnumerableConverter(RelOptCluster cluster,
+      RelTraitSet traitSet, RelNode input) {
+    super(cluster, ConventionTraitDef.INSTANCE, traitSet, input);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new ColumnarToEnumerableConverter(getCluster(), traitSet,
+        sole(inputs));
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    return requireNonNull(cost, "cost").multiplyBy(0.1);
+  }
+
+  @Override public Result implement(EnumerableRelImplementor implementor,
+      Prefer pref) {
+    final ColumnarRel.Implementor columnarImplementor =
+        new ColumnarRel.Implementor();
+    columnarImplementor.visitInput(0, getInput());
+    final PhysType physType =
+        PhysTypeImpl.of(implementor.getTypeFactory(), getRowType(),
+            pref.preferArray());
+
+    // Read the columns that are returned, and the columns that conditions
+    // reference.
+    final RelOptTable table =
+        requireNonNull(columnarImplementor.table, "table");
+    final ImmutableBitSet columns =
+        ImmutableBitSet.of(columnarImplementor.fields)
+            .union(
+                RelOptUtil.InputFinder.bits(columnarImplementor.conditions,
+                    null));
+    final int[] projects = new int[columnarImplementor.fields.size()];
+    for (int i = 0; i < projects.length; i++) {
+      projects[i] = columns.indexOf(columnarImplementor.fields.get(i));
+    }
+    final Expression filter;
+    if (columnarImplementor.conditions.isEmpty()) {
+      filter = Expressions.constant(null, ColumnarPredicate.class);
+    } else {
+      final RexNode condition =
+          RexUtil.composeConjunction(getCluster().getRexBuilder(),
+              columnarImplementor.conditions);
+      filter = ColumnarTranslator.translate(condition, columns);
+    }
+    final Expression batches =
+        Expressions.call(
+            requireNonNull(table.getExpression(ColumnarTable.class),
+                () -> "expression for " + table),
+            ColumnarMethod.BATCHES.method,
+            implementor.getRootExpression(),
+            Expressions.constant(columns.toArray()));
+    return implementor.result(physType,
+        Blocks.toBlock(
+            Expressions.call(ColumnarMethod.ROWS.method, batches, filter,
+                Expressions.constant(projects))));
+  }
+}
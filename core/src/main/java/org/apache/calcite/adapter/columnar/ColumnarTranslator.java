@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.columnar;
+
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeUtil;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Translates a condition to an expression that creates a
+ * {@link ColumnarPredicate}.
+ *
+ * <p>A condition can be translated if it is composed, using {@code AND} and
+ * {@code OR}, of {@code IS NULL} and {@code IS NOT NULL} on a field, and
+ * comparisons of a numeric field with a numeric literal.
+ */
+class ColumnarTranslator {
+  private ColumnarTranslator() {}
+
+  /** Returns whether a condition can be translated. */
+  static boolean canTranslate(RexNode condition) {
+    switch (condition.getKind()) {
+    case AND:
+    case OR:
+      for (RexNode operand : ((RexCall) condition).getOperands()) {
+        if (!canTranslate(operand)) {
+          return false;
+        }
+      }
+      return true;
+    case IS_NULL:
+    case IS_NOT_NULL:
+      return ((RexCall) condition).getOperands().get(0)
+          instanceof RexInputRef;
+    case EQUALS:
+    case NOT_EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      return Comparison.of((RexCall) condition) != null;
+    default:
+      return false;
+    }
+  }
+
+  /** Translates a condition.
+   *
+   * @param condition Condition, whose fields are table columns
+   * @param columns Table columns that are read; a reference to column
+   *                {@code c} becomes a reference to the vector
+   *                {@code columns.indexOf(c)} of each batch
+   */
+  static Expression translate(RexNode condition, ImmutableBitSet columns) {
+    switch (condition.getKind()) {
+    case AND:
+    case OR:
+      final List<Expression> list = new ArrayList<>();
+      for (RexNode operand : ((RexCall) condition).getOperands()) {
+        list.add(translate(operand, columns));
+      }
+      return Expressions.call(
+          condition.getKind() == SqlKind.AND
+              ? ColumnarMethod.PREDICATE_AND.method
+              : ColumnarMethod.PREDICATE_OR.method,
+          Expressions.newArrayInit(ColumnarPredicate.class, list));
+    case IS_NULL:
+    case IS_NOT_NULL:
+      final RexInputRef ref =
+          (RexInputRef) ((RexCall) condition).getOperands().get(0);
+      return Expressions.call(
+          condition.getKind() == SqlKind.IS_NULL
+              ? ColumnarMethod.PREDICATE_IS_NULL.method
+              : ColumnarMethod.PREDICATE_IS_NOT_NULL.method,
+          Expressions.constant(columns.indexOf(ref.getIndex())));
+    default:
+      final Comparison comparison =
+          requireNonNull(Comparison.of((RexCall) condition),
+              () -> "cannot translate " + condition);
+      final Expression column =
+          Expressions.constant(columns.indexOf(comparison.ref.getIndex()));
+      final Expression kind = Expressions.constant(comparison.kind);
+      if (comparison.integer && isLong(comparison.value)) {
+        return Expressions.call(ColumnarMethod.PREDICATE_COMPARE_LONG.method,
+            column, kind, Expressions.constant(comparison.value.longValue()));
+      }
+      return Expressions.call(ColumnarMethod.PREDICATE_COMPARE_DOUBLE.method,
+          column, kind, Expressions.constant(comparison.value.doubleValue()));
+    }
+  }
+
+  /** Returns whether a value is an integer that fits in a {@code long}. */
+  private static boolean isLong(BigDecimal value) {
+    try {
+      value.longValueExact();
+      return true;
+    } catch (ArithmeticException e) {
+      return false;
+    }
+  }
+
+  /** Comparison of a field with a literal, with the field on the left. */
+  private static class Comparison {
+    final RexInputRef ref;
+    final SqlKind kind;
+    final BigDecimal value;
+    /** Whether the field is of a signed integer type. */
+    final boolean integer;
+
+    Comparison(RexInputRef ref, SqlKind kind, BigDecimal value,
+        boolean integer) {
+      this.ref = ref;
+      this.kind = kind;
+      this.value = value;
+      this.integer = integer;
+    }
+
+    /** Creates a Comparison, or returns null if a call is not a comparison
+     * of a numeric field with a numeric literal. */
+    static @Nullable Comparison of(RexCall call) {
+      final RexNode left = call.getOperands().get(0);
+      final RexNode right = call.getOperands().get(1);
+      if (left instanceof RexInputRef && right instanceof RexLiteral) {
+        return of((RexInputRef) left, call.getKind(), (RexLiteral) right);
+      }
+      if (right instanceof RexInputRef && left instanceof RexLiteral) {
+        return of((RexInputRef) right, call.getKind().reverse(),
+            (RexLiteral) left);
+      }
+      return null;
+    }
+
+    private static @Nullable Comparison of(RexInputRef ref, SqlKind kind,
+        RexLiteral literal) {
+      final boolean integer;
+      switch (ref.getType().getSqlTypeName()) {
+      case TINYINT:
+      case SMALLINT:
+      case INTEGER:
+      case BIGINT:
+        integer = true;
+        break;
+      case FLOAT:
+      case REAL:
+      case DOUBLE:
+        integer = false;
+        break;
+      default:
+        // Other types, including DECIMAL and the unsigned integer types,
+        // are not held as primitive values.
+        return null;
+      }
+      if (!SqlTypeUtil.isNumeric(literal.getType())) {
+        return null;
+      }
+      final BigDecimal value = literal.getValueAs(BigDecimal.class);
+      if (value == null) {
+        return null;
+      }
+      return new Comparison(ref, kind, value, integer);
+    }
+  }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.util.ByteString;
 import org.apache.calcite.avatica.util.DateTimeUtils;
@@ -27,7 +28,9 @@
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.NullablePredicate2;
+import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.BlockStatement;
@@ -1322,6 +1325,69 @@ public static <TSource, TResult> Enumerable<TResult> tumbling(
     };
   }
 
+  /**
+   * Returns the memory budget, in bytes, held in a variable of a data
+   * context, or -1 if the variable is not set.
+   *
+   * <p>Called from generated code; for example, {@link EnumerableSort} passes
+   * {@link DataContext.Variable#SORT_MEMORY_BUDGET},
+   * {@link EnumerableHashJoin} passes
+   * {@link DataContext.Variable#HASH_JOIN_MEMORY_BUDGET}, and
+   * {@link EnumerableAggregate} passes
+   * {@link DataContext.Variable#AGGREGATE_MEMORY_BUDGET}.
+   */
+  public static long memoryBudget(DataContext root, String name) {
+    final Object o = root.get(name);
+    return o instanceof Number ? ((Number) o).longValue() : -1L;
+  }
+
+  /** Returns whether a field can be used as a primitive {@code long} key of a
+   * hash join or aggregate; that is, whether it is held as an integral
+   * primitive or its box. INTEGER, BIGINT, DATE and TIME values, among
+   * others, qualify. */
+  static boolean isLongKey(PhysType physType, int field) {
+    final Primitive primitive = Primitive.ofBoxOr(physType.fieldClass(field));
+    if (primitive == null) {
+      return false;
+    }
+    switch (primitive) {
+    case BYTE:
+    case SHORT:
+    case INT:
+    case LONG:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /** Generates a {@link LongFunction1} that returns a field, which must be a
+   * {@link #isLongKey long key}, as a {@code long}. */
+  static Expression longKeySelector(PhysType physType, int field) {
+    final ParameterExpression v1 =
+        Expressions.parameter(physType.getJavaRowType(), "v1");
+    final Expression ref = physType.fieldReference(v1, field);
+    final Expression value = Primitive.is(ref.getType())
+        ? Expressions.convert_(ref, long.class)
+        : Expressions.unbox(ref, Primitive.LONG);
+    return Expressions.lambda(LongFunction1.class, value, v1);
+  }
+
+  /** Generates a {@link Predicate1} that returns whether a field is null, or
+   * a null constant if the field is held as a primitive and so can never be
+   * null. */
+  static Expression keyIsNullPredicate(PhysType physType, int field) {
+    if (Primitive.is(physType.fieldClass(field))) {
+      return Expressions.constant(null, Predicate1.class);
+    }
+    final ParameterExpression v1 =
+        Expressions.parameter(physType.getJavaRowType(), "v1");
+    return Expressions.lambda(Predicate1.class,
+        Expressions.equal(physType.fieldReference(v1, field),
+            Expressions.constant(null)),
+        v1);
+  }
+
   public static @Nullable Expression generateCollatorExpression(@Nullable SqlCollation collation) {
     if (collation == null) {
       return null;
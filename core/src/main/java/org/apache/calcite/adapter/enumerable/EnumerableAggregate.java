@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.impl.AggResultContextImpl;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.linq4j.Ord;
@@ -346,6 +347,48 @@ public EnumerableAggregate(RelOptCluster cluster, RelTraitSet traitSet,
                   resultBlock.toBlock(),
                   requireNonNull(key_, "key_"),
                   acc_));
+      if (groupCount == 1
+          && EnumUtils.isLongKey(inputPhysType, groupSet.nth(0))) {
+        // The key is a single integral value. Look up groups by its
+        // primitive value; the boxed key is only created for each group.
+        final int key = groupSet.nth(0);
+        builder.add(
+            Expressions.return_(null,
+                Expressions.call(BuiltInMethod.GROUP_BY_LONG_KEY.method,
+                    childExp,
+                    EnumUtils.longKeySelector(inputPhysType, key),
+                    EnumUtils.keyIsNullPredicate(inputPhysType, key),
+                    keySelector_,
+                    Expressions.call(lambdaFactory,
+                        BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method),
+                    Expressions.call(lambdaFactory,
+                        BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
+                    Expressions.call(lambdaFactory,
+                        BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
+                        resultSelector_),
+                    builder.append("memoryBudget",
+                        memoryBudget(implementor)))));
+        return implementor.result(physType, builder.toBlock());
+      }
+      if (keyPhysType.comparer() == null) {
+        // Keys have a natural equals and hashCode, so groups can be
+        // partitioned by hash if they do not fit in memory.
+        builder.add(
+            Expressions.return_(null,
+                Expressions.call(BuiltInMethod.GROUP_BY_WITH_MEMORY_BUDGET.method,
+                    childExp,
+                    keySelector_,
+                    Expressions.call(lambdaFactory,
+                        BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method),
+                    Expressions.call(lambdaFactory,
+                        BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
+                    Expressions.call(lambdaFactory,
+                        BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
+                        resultSelector_),
+                    builder.append("memoryBudget",
+                        memoryBudget(implementor)))));
+        return implementor.result(physType, builder.toBlock());
+      }
       builder.add(
           Expressions.return_(null,
               Expressions.call(childExp,
@@ -362,4 +405,15 @@ public EnumerableAggregate(RelOptCluster cluster, RelTraitSet traitSet,
     }
     return implementor.result(physType, builder.toBlock());
   }
+
+  /** Returns an expression for the memory budget of a hash aggregate; like
+   * the budget of a sort, it is read from the data context when the query is
+   * executed. */
+  private static Expression memoryBudget(
+      EnumerableRelImplementor implementor) {
+    return Expressions.call(BuiltInMethod.MEMORY_BUDGET.method,
+        implementor.getRootExpression(),
+        Expressions.constant(
+            DataContext.Variable.AGGREGATE_MEMORY_BUDGET.camelName));
+  }
 }
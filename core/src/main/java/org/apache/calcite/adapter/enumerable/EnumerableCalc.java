@@ -18,7 +18,9 @@
 
 import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.BlockStatement;
 import org.apache.calcite.linq4j.tree.Blocks;
@@ -39,12 +41,14 @@
 import org.apache.calcite.rel.metadata.RelMdDistribution;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexProgram;
 import org.apache.calcite.rex.RexSimplify;
 import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.sql.validate.SqlConformance;
 import org.apache.calcite.sql.validate.SqlConformanceEnum;
+import org.apache.calcite.sql.validate.SqlUserDefinedFunction;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
@@ -208,6 +212,20 @@ public static EnumerableCalc create(final RelNode input,
     final Expression inputEnumerable =
         builder.append(
             "inputEnumerable", result.block, false);
+    // If the program can be applied to different rows at the same time,
+    // apply it to each morsel of the input, rather than to the whole input:
+    //
+    // return EnumerableDefaults.parallel(inputEnumerable,
+    //     new Function1() {
+    //       Enumerable apply(final Enumerable morsel) {
+    //         return new Enumerable<IntString>() { ... };
+    //       }
+    //     }, 8);
+    final int parallelism = implementor.getParallelism();
+    final @Nullable ParameterExpression morsel =
+        parallelism > 1 && isParallelizable(program)
+            ? Expressions.parameter(Modifier.FINAL, Enumerable.class, "morsel")
+            : null;
     final Expression body =
         Expressions.new_(
             enumeratorType,
@@ -218,7 +236,7 @@ public static EnumerableCalc create(final RelNode input,
                     | Modifier.FINAL,
                     inputEnumerator,
                     Expressions.call(
-                        inputEnumerable,
+                        morsel != null ? morsel : inputEnumerable,
                         BuiltInMethod.ENUMERABLE_ENUMERATOR.method)),
                 EnumUtils.overridingMethodDecl(
                     BuiltInMethod.ENUMERATOR_RESET.method,
@@ -246,24 +264,55 @@ public static EnumerableCalc create(final RelNode input,
                     "current",
                     NO_PARAMS,
                     currentBody)));
-    builder.add(
-        Expressions.return_(
-            null,
-            Expressions.new_(
-                BuiltInMethod.ABSTRACT_ENUMERABLE_CTOR.constructor,
-                // TODO: generics
-                //   Collections.singletonList(inputRowType),
-                NO_EXPRS,
-                ImmutableList.<MemberDeclaration>of(
-                    Expressions.methodDecl(
-                        Modifier.PUBLIC,
-                        enumeratorType,
-                        BuiltInMethod.ENUMERABLE_ENUMERATOR.method.getName(),
-                        NO_PARAMS,
-                        Blocks.toFunctionBlock(body))))));
+    final Expression enumerable =
+        Expressions.new_(
+            BuiltInMethod.ABSTRACT_ENUMERABLE_CTOR.constructor,
+            // TODO: generics
+            //   Collections.singletonList(inputRowType),
+            NO_EXPRS,
+            ImmutableList.<MemberDeclaration>of(
+                Expressions.methodDecl(
+                    Modifier.PUBLIC,
+                    enumeratorType,
+                    BuiltInMethod.ENUMERABLE_ENUMERATOR.method.getName(),
+                    NO_PARAMS,
+                    Blocks.toFunctionBlock(body))));
+    if (morsel == null) {
+      builder.add(Expressions.return_(null, enumerable));
+    } else {
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(BuiltInMethod.PARALLEL.method,
+                  inputEnumerable,
+                  Expressions.lambda(Function1.class, enumerable, morsel),
+                  Expressions.constant(parallelism))));
+    }
     return implementor.result(physType, builder.toBlock());
   }
 
+  /** Returns whether a program may be applied to several rows at the same
+   * time, by different threads.
+   *
+   * <p>The program must have something worth the cost of doing in parallel
+   * (a call, rather than just field references), must be deterministic, and
+   * must not use correlation variables (whose values are set by the
+   * consuming thread) or user-defined functions (which may have state). */
+  private static boolean isParallelizable(RexProgram program) {
+    boolean hasCall = false;
+    for (RexNode expr : program.getExprList()) {
+      if (!(expr instanceof RexCall)) {
+        continue;
+      }
+      hasCall = true;
+      if (!RexUtil.isDeterministic(expr)
+          || RexUtil.containsCorrelation(expr)
+          || ((RexCall) expr).getOperator() instanceof SqlUserDefinedFunction) {
+        return false;
+      }
+    }
+    return hasCall;
+  }
+
   @Override public @Nullable Pair<RelTraitSet, List<RelTraitSet>> passThroughTraits(
       final RelTraitSet required) {
     final List<RexNode> exps =
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelDistributionTraitDef;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Exchange;
+import org.apache.calcite.util.BuiltInMethod;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Exchange} in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}.
+ *
+ * <p>All rows are consumed by a single consumer, to which every distribution
+ * is equivalent, so rows are returned in the order of the input. If the
+ * connection sets
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#PARALLELISM}
+ * greater than 1, the input is computed on a separate thread and handed over
+ * through a bounded queue, so that the operators below the exchange run at
+ * the same time as those above it. */
+public class EnumerableExchange extends Exchange implements EnumerableRel {
+  /**
+   * Creates an EnumerableExchange.
+   *
+   * <p>Use {@link #create} unless you know what you're doing.
+   */
+  public EnumerableExchange(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RelDistribution distribution) {
+    super(cluster, traitSet, input, distribution);
+    assert getConvention() instanceof EnumerableConvention;
+  }
+
+  /** Creates an EnumerableExchange. */
+  public static EnumerableExchange create(RelNode input,
+      RelDistribution distribution) {
+    final RelOptCluster cluster = input.getCluster();
+    distribution = RelDistributionTraitDef.INSTANCE.canonize(distribution);
+    final RelTraitSet traitSet =
+        input.getTraitSet().replace(EnumerableConvention.INSTANCE)
+            .replace(distribution);
+    return new EnumerableExchange(cluster, traitSet, input, distribution);
+  }
+
+  @Override public EnumerableExchange copy(RelTraitSet traitSet,
+      RelNode newInput, RelDistribution newDistribution) {
+    return new EnumerableExchange(getCluster(), traitSet, newInput,
+        newDistribution);
+  }
+
+  @Override public Result implement(EnumerableRelImplementor implementor,
+      Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel child = (EnumerableRel) getInput();
+    final Result result = implementor.visitChild(this, 0, child, pref);
+    final PhysType physType =
+        PhysTypeImpl.of(
+            implementor.getTypeFactory(),
+            getRowType(),
+            result.format);
+    final Expression childExp =
+        builder.append("child", result.block);
+    builder.add(
+        Expressions.return_(null,
+            implementor.getParallelism() > 1
+                ? Expressions.call(BuiltInMethod.EXCHANGE.method, childExp)
+                : childExp));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
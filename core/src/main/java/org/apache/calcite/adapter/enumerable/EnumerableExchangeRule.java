@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.logical.LogicalExchange;
+
+/**
+ * Rule to convert a {@link LogicalExchange} to an {@link EnumerableExchange}.
+ *
+ * @see EnumerableRules#ENUMERABLE_EXCHANGE_RULE
+ */
+class EnumerableExchangeRule extends ConverterRule {
+  /** Default configuration. */
+  static final Config DEFAULT_CONFIG = Config.INSTANCE
+      .withConversion(LogicalExchange.class, Convention.NONE,
+          EnumerableConvention.INSTANCE, "EnumerableExchangeRule")
+      .withRuleFactory(EnumerableExchangeRule::new);
+
+  /** Called from the Config. */
+  protected EnumerableExchangeRule(Config config) {
+    super(config);
+  }
+
+  @Override public RelNode convert(RelNode rel) {
+    final LogicalExchange exchange = (LogicalExchange) rel;
+    final RelNode input = exchange.getInput();
+    return EnumerableExchange.create(
+        convert(input,
+            input.getTraitSet().replace(EnumerableConvention.INSTANCE)),
+        exchange.getDistribution());
+  }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
@@ -44,13 +45,22 @@
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
 /** Implementation of {@link org.apache.calcite.rel.core.Join} in
- * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}. */
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}.
+ *
+ * <p>If the connection sets
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#HASH_JOIN_MEMORY_BUDGET},
+ * a join whose build (right) input does not fit in the budget partitions both
+ * inputs to temporary files, and joins one partition at a time. Mark joins
+ * are always executed in memory.
+ *
+ * <p>If the join has a single key, and the key is an integral value (such
+ * as INTEGER, BIGINT or DATE) on both sides, the build side is indexed by
+ * the primitive value of the key, without boxing it. */
 public class EnumerableHashJoin extends Join implements EnumerableRel {
   /** Creates an EnumerableHashJoin.
    *
@@ -280,9 +290,6 @@ private Result implementHashMarkJoin(EnumerableRelImplementor implementor, Prefe
 
   private Result implementHashSemiJoin(EnumerableRelImplementor implementor, Prefer pref) {
     assert joinType == JoinRelType.SEMI || joinType == JoinRelType.ANTI;
-    final Method method = joinType == JoinRelType.SEMI
-        ? BuiltInMethod.SEMI_JOIN.method
-        : BuiltInMethod.ANTI_JOIN.method;
     BlockBuilder builder = new BlockBuilder();
     final Result leftResult =
         implementor.visitChild(this, 0, (EnumerableRel) left, pref);
@@ -310,11 +317,35 @@ private Result implementHashSemiJoin(EnumerableRelImplementor implementor, Prefe
                 rightResult.physType, nonEquiCondition);
       }
     }
+    if (hasLongKey(leftResult.physType, rightResult.physType)) {
+      final int leftKey = joinInfo.leftKeys.get(0);
+      final int rightKey = joinInfo.rightKeys.get(0);
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.SEMI_JOIN_LONG_KEY.method,
+                  Expressions.list(
+                      leftExpression,
+                      rightExpression,
+                      EnumUtils.longKeySelector(leftResult.physType, leftKey),
+                      EnumUtils.keyIsNullPredicate(leftResult.physType,
+                          leftKey),
+                      EnumUtils.longKeySelector(rightResult.physType,
+                          rightKey),
+                      EnumUtils.keyIsNullPredicate(rightResult.physType,
+                          rightKey),
+                      Expressions.constant(joinType == JoinRelType.ANTI),
+                      predicate,
+                      builder.append("memoryBudget",
+                          memoryBudget(implementor)))))
+              .toBlock());
+    }
     return implementor.result(
         physType,
         builder.append(
             Expressions.call(
-                method,
+                BuiltInMethod.SEMI_JOIN_WITH_MEMORY_BUDGET.method,
                 Expressions.list(
                     leftExpression,
                     rightExpression,
@@ -324,7 +355,10 @@ private Result implementHashSemiJoin(EnumerableRelImplementor implementor, Prefe
                         joinInfo.rightKeys, joinInfo.nullExclusionFlags),
                     Util.first(keyPhysType.comparer(),
                         Expressions.constant(null)),
-                    predicate)))
+                    Expressions.constant(joinType == JoinRelType.ANTI),
+                    predicate,
+                    builder.append("memoryBudget",
+                        memoryBudget(implementor)))))
             .toBlock());
   }
 
@@ -358,13 +392,42 @@ private Result implementHashJoin(EnumerableRelImplementor implementor, Prefer pr
                 rightResult.physType, nonEquiCondition);
       }
     }
+    if (hasLongKey(leftResult.physType, rightResult.physType)) {
+      final int leftKey = joinInfo.leftKeys.get(0);
+      final int rightKey = joinInfo.rightKeys.get(0);
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.HASH_JOIN_LONG_KEY.method,
+                  Expressions.list(
+                      leftExpression,
+                      rightExpression,
+                      EnumUtils.longKeySelector(leftResult.physType, leftKey),
+                      EnumUtils.keyIsNullPredicate(leftResult.physType,
+                          leftKey),
+                      EnumUtils.longKeySelector(rightResult.physType,
+                          rightKey),
+                      EnumUtils.keyIsNullPredicate(rightResult.physType,
+                          rightKey),
+                      EnumUtils.joinSelector(joinType,
+                          physType,
+                          ImmutableList.of(
+                              leftResult.physType, rightResult.physType)),
+                      Expressions.constant(joinType.generatesNullsOnLeft()),
+                      Expressions.constant(joinType.generatesNullsOnRight()),
+                      predicate,
+                      builder.append("memoryBudget",
+                          memoryBudget(implementor)))))
+              .toBlock());
+    }
     return implementor.result(
         physType,
         builder.append(
             Expressions.call(
-                leftExpression,
-                BuiltInMethod.HASH_JOIN.method,
+                BuiltInMethod.HASH_JOIN_WITH_MEMORY_BUDGET.method,
                 Expressions.list(
+                    leftExpression,
                     rightExpression,
                     leftResult.physType.generateNullAwareAccessor(
                         joinInfo.leftKeys, joinInfo.nullExclusionFlags),
@@ -382,7 +445,31 @@ private Result implementHashJoin(EnumerableRelImplementor implementor, Prefer pr
                     .append(
                         Expressions.constant(
                             joinType.generatesNullsOnRight()))
-                    .append(predicate)))
+                    .append(predicate)
+                    .append(
+                        builder.append("memoryBudget",
+                            memoryBudget(implementor)))))
             .toBlock());
   }
+
+  /** Returns whether this join has a single key that is not null-safe and
+   * is an integral value on both sides; such a join can use a hash table
+   * whose keys are primitive {@code long} values. */
+  private boolean hasLongKey(PhysType leftPhysType, PhysType rightPhysType) {
+    return joinInfo.leftKeys.size() == 1
+        && joinInfo.nullExclusionFlags.get(0)
+        && EnumUtils.isLongKey(leftPhysType, joinInfo.leftKeys.get(0))
+        && EnumUtils.isLongKey(rightPhysType, joinInfo.rightKeys.get(0));
+  }
+
+  /** Returns an expression for the memory budget of the build side of a hash
+   * join; like the budget of a sort, it is read from the data context when
+   * the query is executed. */
+  private static Expression memoryBudget(
+      EnumerableRelImplementor implementor) {
+    return Expressions.call(BuiltInMethod.MEMORY_BUDGET.method,
+        implementor.getRootExpression(),
+        Expressions.constant(
+            DataContext.Variable.HASH_JOIN_MEMORY_BUDGET.camelName));
+  }
 }
@@ -43,6 +43,7 @@
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.runtime.Typed;
 import org.apache.calcite.util.Util;
+import org.apache.calcite.util.javac.CompiledClassCache;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
@@ -164,20 +165,26 @@ static Bindable getBindable(ClassDeclaration expr, String classBody, int fieldCo
       StaticFieldDetector detector = new StaticFieldDetector();
       expr.accept(detector);
       if (!detector.containsStaticField) {
-        return BINDABLE_CACHE.get(classBody, () ->  compileToBindable(expr.name, s, compiler));
+        return BINDABLE_CACHE.get(classBody, () ->
+            compileToBindable(expr.name, s, compiler, classLoader));
       }
     }
-    return compileToBindable(expr.name, s, compiler);
+    return compileToBindable(expr.name, s, compiler, classLoader);
   }
 
-  private static Bindable<?> compileToBindable(String className, String s, ISimpleCompiler compiler)
+  private static Bindable<?> compileToBindable(String className, String s,
+      ISimpleCompiler compiler, ClassLoader classLoader)
       throws CompileException, ClassNotFoundException, InvocationTargetException,
       InstantiationException, IllegalAccessException {
-    compiler.cook(s);
-    return (Bindable<?>) compiler.getClassLoader()
-        .loadClass(className)
-        .getDeclaredConstructors()[0]
-        .newInstance();
+    final CompiledClassCache classCache = CompiledClassCache.INSTANCE;
+    final Class<?> clazz;
+    if (classCache != null) {
+      clazz = classCache.load(className, s, classLoader, compiler);
+    } else {
+      compiler.cook(s);
+      clazz = compiler.getClassLoader().loadClass(className);
+    }
+    return (Bindable<?>) clazz.getDeclaredConstructors()[0].newInstance();
   }
 
   /**
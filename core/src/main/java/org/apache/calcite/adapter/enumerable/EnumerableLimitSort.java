@@ -16,12 +16,14 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Sort;
 import org.apache.calcite.rex.RexNode;
@@ -30,12 +32,20 @@
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.Comparator;
+import java.util.List;
+
 import static org.apache.calcite.adapter.enumerable.EnumerableLimit.getExpression;
 
 /**
  * Implementation of {@link org.apache.calcite.rel.core.Sort} in
  * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}.
- * It optimizes sorts that have a limit and an optional offset.
+ * It optimizes sorts that have a limit and an optional offset, by keeping
+ * only the best {@code offset + fetch} rows in a bounded heap; see
+ * {@link org.apache.calcite.linq4j.EnumerableDefaults#topN}.
+ *
+ * <p>Like {@link EnumerableSort}, respects
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#SORT_MEMORY_BUDGET}.
  */
 public class EnumerableLimitSort extends Sort implements EnumerableRel {
 
@@ -110,19 +120,67 @@ public static EnumerableLimitSort create(
       offsetVal = getExpression(this.offset);
     }
 
+    // If the input is already sorted on a prefix of the collation, the
+    // top-N sort can stop reading as soon as the prefix is past the rows it
+    // keeps.
+    final int prefixLength = sortedPrefixLength();
+    final Expression prefixSelector;
+    final Expression prefixComparator;
+    if (prefixLength > 0) {
+      final Pair<Expression, Expression> prefixPair =
+          inputPhysType.generateCollationKey(
+              this.collation.getFieldCollations().subList(0, prefixLength));
+      prefixSelector = builder.append("prefixSelector", prefixPair.left);
+      prefixComparator =
+          builder.append("prefixComparator", prefixPair.right);
+    } else {
+      prefixSelector = Expressions.constant(null, Function1.class);
+      prefixComparator = Expressions.constant(null, Comparator.class);
+    }
+
     builder.add(
         Expressions.return_(null,
-            Expressions.call(BuiltInMethod.ORDER_BY_WITH_FETCH_AND_OFFSET.method,
+            Expressions.call(
+                BuiltInMethod.TOP_N.method,
                 Expressions.list(childExp,
                         builder.append("keySelector", pair.left))
                     .appendIfNotNull(
                         builder.appendIfNotNull("comparator", pair.right))
+                    .append(prefixSelector)
+                    .append(prefixComparator)
                     .appendIfNotNull(
                         builder.appendIfNotNull("offset",
                             Expressions.constant(offsetVal)))
                     .appendIfNotNull(
                         builder.appendIfNotNull("fetch",
-                            Expressions.constant(fetchVal))))));
+                            Expressions.constant(fetchVal)))
+                    .append(
+                        builder.append("memoryBudget",
+                            EnumerableSort.memoryBudget(implementor))))));
     return implementor.result(physType, builder.toBlock());
   }
+
+  /** Returns the number of leading fields of this sort's collation on which
+   * the input is known to be sorted already. */
+  private int sortedPrefixLength() {
+    final List<RelFieldCollation> fieldCollations =
+        this.collation.getFieldCollations();
+    final @Nullable List<RelCollation> inputCollations =
+        getCluster().getMetadataQuery().collations(getInput());
+    int prefixLength = 0;
+    if (inputCollations != null) {
+      for (RelCollation inputCollation : inputCollations) {
+        final List<RelFieldCollation> inputFieldCollations =
+            inputCollation.getFieldCollations();
+        int i = 0;
+        while (i < fieldCollations.size()
+            && i < inputFieldCollations.size()
+            && fieldCollations.get(i).equals(inputFieldCollations.get(i))) {
+          ++i;
+        }
+        prefixLength = Math.max(prefixLength, i);
+      }
+    }
+    return prefixLength;
+  }
 }
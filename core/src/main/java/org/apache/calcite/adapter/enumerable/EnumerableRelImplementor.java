@@ -30,6 +30,7 @@
 import org.apache.calcite.linq4j.tree.ExpressionType;
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.apache.calcite.linq4j.tree.FunctionExpression;
+import org.apache.calcite.linq4j.tree.GotoExpressionKind;
 import org.apache.calcite.linq4j.tree.GotoStatement;
 import org.apache.calcite.linq4j.tree.MemberDeclaration;
 import org.apache.calcite.linq4j.tree.MethodCallExpression;
@@ -42,6 +43,7 @@
 import org.apache.calcite.linq4j.tree.UnaryExpression;
 import org.apache.calcite.linq4j.tree.VisitorImpl;
 import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.metadata.CardinalityFeedback;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.runtime.Bindable;
 import org.apache.calcite.sql.SqlExplainLevel;
@@ -104,14 +106,47 @@ public EnumerableRel.Result visitChild(
     if (parent != null) {
       assert child == parent.getInputs().get(ordinal);
     }
-    return child.implement(this, prefer);
+    return countRows(child, child.implement(this, prefer));
+  }
+
+  /** If {@link CardinalityFeedback} is enabled, changes the code of a
+   * relational expression so that the rows it returns are counted and
+   * recorded. */
+  private static EnumerableRel.Result countRows(EnumerableRel rel,
+      EnumerableRel.Result result) {
+    final List<Statement> statements = result.block.statements;
+    if (CardinalityFeedback.instance() == null || statements.isEmpty()) {
+      return result;
+    }
+    final Statement last = statements.get(statements.size() - 1);
+    if (!(last instanceof GotoStatement)
+        || ((GotoStatement) last).kind != GotoExpressionKind.Return) {
+      return result;
+    }
+    final Expression expression = ((GotoStatement) last).expression;
+    if (expression == null
+        || !Types.isAssignableFrom(Enumerable.class, expression.getType())) {
+      return result;
+    }
+    final String key = CardinalityFeedback.key(rel);
+    if (key == null) {
+      return result;
+    }
+    final List<Statement> list =
+        new ArrayList<>(statements.subList(0, statements.size() - 1));
+    list.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.CARDINALITY_FEEDBACK_COUNT.method,
+                expression, Expressions.constant(key))));
+    return new EnumerableRel.Result(Expressions.block(list), result.physType,
+        result.format);
   }
 
   public ClassDeclaration implementRoot(EnumerableRel rootRel,
       EnumerableRel.Prefer prefer) {
     EnumerableRel.Result result;
     try {
-      result = rootRel.implement(this, prefer);
+      result = countRows(rootRel, rootRel.implement(this, prefer));
     } catch (RuntimeException e) {
       IllegalStateException ex = new IllegalStateException("Unable to implement "
           + RelOptUtil.toString(rootRel, SqlExplainLevel.ALL_ATTRIBUTES));
@@ -488,6 +523,17 @@ public EnumerableRel.Result result(PhysType physType, BlockStatement block) {
         SqlConformanceEnum.DEFAULT);
   }
 
+  /** Returns the number of threads that a relational expression may use to
+   * process its input in parallel; 1 if it must use a single thread.
+   *
+   * @see org.apache.calcite.config.CalciteConnectionProperty#PARALLELISM */
+  public int getParallelism() {
+    final Object parallelism = map.get("_parallelism");
+    return parallelism instanceof Number
+        ? ((Number) parallelism).intValue()
+        : 1;
+  }
+
   /** Visitor that finds types in an {@link Expression} tree. */
   @VisibleForTesting
   static class TypeFinder extends VisitorImpl<Void> {
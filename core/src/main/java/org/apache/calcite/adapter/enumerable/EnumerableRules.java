@@ -99,6 +99,20 @@ private EnumerableRules() {
   public static final EnumerableSortRule ENUMERABLE_SORT_RULE =
       EnumerableSortRule.DEFAULT_CONFIG.toRule(EnumerableSortRule.class);
 
+  /** Rule that converts a
+   * {@link org.apache.calcite.rel.logical.LogicalExchange} to an
+   * {@link EnumerableExchange}. */
+  public static final EnumerableExchangeRule ENUMERABLE_EXCHANGE_RULE =
+      EnumerableExchangeRule.DEFAULT_CONFIG
+          .toRule(EnumerableExchangeRule.class);
+
+  /** Rule that converts a
+   * {@link org.apache.calcite.rel.logical.LogicalSortExchange} to an
+   * {@link EnumerableSortExchange}. */
+  public static final EnumerableSortExchangeRule ENUMERABLE_SORT_EXCHANGE_RULE =
+      EnumerableSortExchangeRule.DEFAULT_CONFIG
+          .toRule(EnumerableSortExchangeRule.class);
+
   public static final EnumerableLimitSortRule ENUMERABLE_LIMIT_SORT_RULE =
       EnumerableLimitSortRule.Config.DEFAULT.toRule();
 
@@ -233,6 +247,8 @@ private EnumerableRules() {
           EnumerableRules.ENUMERABLE_AGGREGATE_RULE,
           EnumerableRules.ENUMERABLE_SORT_RULE,
           EnumerableRules.ENUMERABLE_LIMIT_RULE,
+          EnumerableRules.ENUMERABLE_EXCHANGE_RULE,
+          EnumerableRules.ENUMERABLE_SORT_EXCHANGE_RULE,
           EnumerableRules.ENUMERABLE_COLLECT_RULE,
           EnumerableRules.ENUMERABLE_UNCOLLECT_RULE,
           EnumerableRules.ENUMERABLE_MERGE_UNION_RULE,
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
@@ -30,8 +31,15 @@
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.Comparator;
+
 /** Implementation of {@link org.apache.calcite.rel.core.Sort} in
- * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}. */
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}.
+ *
+ * <p>If the connection sets
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#SORT_MEMORY_BUDGET},
+ * the sort writes sorted runs to temporary files when its input does not fit
+ * in the budget, and merges them. */
 public class EnumerableSort extends Sort implements EnumerableRel {
   /**
    * Creates an EnumerableSort.
@@ -85,14 +93,27 @@ public static EnumerableSort create(RelNode child, RelCollation collation,
         inputPhysType.generateCollationKey(
             collation.getFieldCollations());
 
+    final Expression comparatorExp = pair.right == null
+        ? Expressions.constant(null, Comparator.class)
+        : builder.append("comparator", pair.right);
     builder.add(
         Expressions.return_(null,
-            Expressions.call(childExp,
-                BuiltInMethod.ORDER_BY.method,
-                Expressions.list(
-                    builder.append("keySelector", pair.left))
-                    .appendIfNotNull(
-                        builder.appendIfNotNull("comparator", pair.right)))));
+            Expressions.call(BuiltInMethod.ORDER_BY_WITH_MEMORY_BUDGET.method,
+                childExp,
+                builder.append("keySelector", pair.left),
+                comparatorExp,
+                builder.append("memoryBudget",
+                    memoryBudget(implementor)))));
     return implementor.result(physType, builder.toBlock());
   }
+
+  /** Returns an expression for the memory budget of a sort; the budget is
+   * read from the data context when the query is executed, so that the same
+   * generated code can be shared between connections. */
+  static Expression memoryBudget(EnumerableRelImplementor implementor) {
+    return Expressions.call(BuiltInMethod.MEMORY_BUDGET.method,
+        implementor.getRootExpression(),
+        Expressions.constant(
+            DataContext.Variable.SORT_MEMORY_BUDGET.camelName));
+  }
 }
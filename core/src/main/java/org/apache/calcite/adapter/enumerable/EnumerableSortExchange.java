@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollationTraitDef;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelDistributionTraitDef;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.SortExchange;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Pair;
+
+import java.util.Comparator;
+
+/** Implementation of {@link org.apache.calcite.rel.core.SortExchange} in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}.
+ *
+ * <p>All rows are consumed by a single consumer, so the output is sorted as
+ * a whole, which implies that it is sorted within each partition of any
+ * distribution. If the connection sets
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#PARALLELISM}
+ * greater than 1, the input is split into partitions, which are sorted on
+ * different threads and then merged; as in {@link EnumerableSort}, sorted
+ * partitions are written to disk if they exceed
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#SORT_MEMORY_BUDGET}. */
+public class EnumerableSortExchange extends SortExchange
+    implements EnumerableRel {
+  /**
+   * Creates an EnumerableSortExchange.
+   *
+   * <p>Use {@link #create} unless you know what you're doing.
+   */
+  public EnumerableSortExchange(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RelDistribution distribution, RelCollation collation) {
+    super(cluster, traitSet, input, distribution, collation);
+    assert getConvention() instanceof EnumerableConvention;
+  }
+
+  /** Creates an EnumerableSortExchange. */
+  public static EnumerableSortExchange create(RelNode input,
+      RelDistribution distribution, RelCollation collation) {
+    final RelOptCluster cluster = input.getCluster();
+    collation = RelCollationTraitDef.INSTANCE.canonize(collation);
+    distribution = RelDistributionTraitDef.INSTANCE.canonize(distribution);
+    final RelTraitSet traitSet =
+        input.getTraitSet().replace(EnumerableConvention.INSTANCE)
+            .replace(distribution).replace(collation);
+    return new EnumerableSortExchange(cluster, traitSet, input, distribution,
+        collation);
+  }
+
+  @Override public EnumerableSortExchange copy(RelTraitSet traitSet,
+      RelNode newInput, RelDistribution newDistribution,
+      RelCollation newCollation) {
+    return new EnumerableSortExchange(getCluster(), traitSet, newInput,
+        newDistribution, newCollation);
+  }
+
+  @Override public Result implement(EnumerableRelImplementor implementor,
+      Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel child = (EnumerableRel) getInput();
+    final Result result = implementor.visitChild(this, 0, child, pref);
+    final PhysType physType =
+        PhysTypeImpl.of(
+            implementor.getTypeFactory(),
+            getRowType(),
+            result.format);
+    final Expression childExp =
+        builder.append("child", result.block);
+    if (collation.getFieldCollations().isEmpty()) {
+      builder.add(Expressions.return_(null, childExp));
+      return implementor.result(physType, builder.toBlock());
+    }
+
+    final Pair<Expression, Expression> pair =
+        result.physType.generateCollationKey(
+            collation.getFieldCollations());
+    final Expression comparatorExp = pair.right == null
+        ? Expressions.constant(null, Comparator.class)
+        : builder.append("comparator", pair.right);
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.PARALLEL_ORDER_BY.method,
+                childExp,
+                builder.append("keySelector", pair.left),
+                comparatorExp,
+                Expressions.constant(implementor.getParallelism()),
+                builder.append("memoryBudget",
+                    EnumerableSort.memoryBudget(implementor)))));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
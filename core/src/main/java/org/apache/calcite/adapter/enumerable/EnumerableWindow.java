@@ -21,6 +21,9 @@
 import org.apache.calcite.adapter.enumerable.impl.WinAggResultContextImpl;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.config.CalciteSystemProperty;
+import org.apache.calcite.linq4j.SlidingAggregate;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.tree.BinaryExpression;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.BlockStatement;
@@ -49,6 +52,7 @@
 import org.apache.calcite.rex.RexWindowExclusion;
 import org.apache.calcite.runtime.SortedMultiMap;
 import org.apache.calcite.sql.SqlAggFunction;
+import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.validate.SqlConformance;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableBitSet;
@@ -61,8 +65,10 @@
 
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
@@ -204,24 +210,6 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
 
     for (int windowIdx = 0; windowIdx < groups.size(); windowIdx++) {
       Group group = groups.get(windowIdx);
-      // Comparator:
-      // final Comparator<JdbcTest.Employee> comparator =
-      //    new Comparator<JdbcTest.Employee>() {
-      //      public int compare(JdbcTest.Employee o1,
-      //          JdbcTest.Employee o2) {
-      //        return Integer.compare(o1.empid, o2.empid);
-      //      }
-      //    };
-      final Expression comparator_ =
-          builder.append("comparator",
-              inputPhysType.generateComparator(group.collation()));
-
-      Pair<Expression, Expression> partitionIterator =
-          getPartitionIterator(builder, source_, inputPhysType, group,
-              comparator_);
-      final Expression collectionExpr = partitionIterator.left;
-      final Expression iterator_ = partitionIterator.right;
-
       List<AggImpState> aggs = new ArrayList<>();
       List<AggregateCall> aggregateCalls = group.getAggregateCalls(this);
       for (int aggIdx = 0; aggIdx < aggregateCalls.size(); aggIdx++) {
@@ -246,6 +234,35 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
       final PhysType outputPhysType =
           PhysTypeImpl.of(typeFactory, outputRowType, pref.prefer(result.format));
 
+      final @Nullable Expression sliding =
+          implementSliding(implementor, builder, source_, inputPhysType,
+              outputPhysType, group, aggregateCalls,
+              result.physType.getRowType().getFieldCount(),
+              translatedConstants);
+      if (sliding != null) {
+        source_ = sliding;
+        inputPhysType = outputPhysType;
+        continue;
+      }
+
+      // Comparator:
+      // final Comparator<JdbcTest.Employee> comparator =
+      //    new Comparator<JdbcTest.Employee>() {
+      //      public int compare(JdbcTest.Employee o1,
+      //          JdbcTest.Employee o2) {
+      //        return Integer.compare(o1.empid, o2.empid);
+      //      }
+      //    };
+      final Expression comparator_ =
+          builder.append("comparator",
+              inputPhysType.generateComparator(group.collation()));
+
+      Pair<Expression, Expression> partitionIterator =
+          getPartitionIterator(builder, source_, inputPhysType, group,
+              comparator_);
+      final Expression collectionExpr = partitionIterator.left;
+      final Expression iterator_ = partitionIterator.right;
+
       final Expression list_ =
           builder.append("list",
               Expressions.new_(ArrayList.class,
@@ -529,6 +546,239 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
     return implementor.result(inputPhysType, builder.toBlock());
   }
 
+  /** Implements a group using {@link BuiltInMethod#SLIDING_WINDOW}, if its
+   * frame ends at the current row and each of its aggregate functions can
+   * remove values from the frame; returns null otherwise.
+   *
+   * <p>The input is sorted by partition key and then by order key, spilling
+   * to disk if it exceeds the sort's memory budget, and the aggregates are
+   * computed in one pass that holds only the current frame (for RANGE, the
+   * current peer group) in memory, rather than collecting every partition
+   * into memory. */
+  private @Nullable Expression implementSliding(
+      EnumerableRelImplementor implementor, BlockBuilder builder,
+      Expression source_, PhysType inputPhysType, PhysType outputPhysType,
+      Group group, List<AggregateCall> aggregateCalls,
+      int actualInputFieldCount, List<Expression> translatedConstants) {
+    final @Nullable Integer preceding =
+        slidingPreceding(group, actualInputFieldCount);
+    if (preceding == null) {
+      return null;
+    }
+
+    final ParameterExpression argumentRow_ =
+        Expressions.parameter(inputPhysType.getJavaRowType(), "row");
+    final List<Expression> aggregates = new ArrayList<>();
+    final List<Expression> arguments = new ArrayList<>();
+    final List<Type> resultTypes = new ArrayList<>();
+    for (AggregateCall call : aggregateCalls) {
+      if (call.isDistinct() || call.hasFilter() || call.ignoreNulls()
+          || call.getArgList().size() > 1) {
+        return null;
+      }
+      final Expression argument;
+      if (call.getArgList().isEmpty()) {
+        // COUNT(*) counts every row, so its argument is never null
+        argument = Expressions.constant(true);
+      } else {
+        final int arg = call.getArgList().get(0);
+        argument = arg < actualInputFieldCount
+            ? inputPhysType.fieldReference(argumentRow_, arg)
+            : translatedConstants.get(arg - actualInputFieldCount);
+      }
+      final @Nullable SlidingAggregate aggregate =
+          slidingAggregate(call.getAggregation().getKind(), argument.getType());
+      if (aggregate == null) {
+        return null;
+      }
+      aggregates.add(Expressions.constant(aggregate));
+      arguments.add(Expressions.box(argument));
+      switch (aggregate) {
+      case SUM_DECIMAL:
+      case SUM0_DECIMAL:
+        resultTypes.add(BigDecimal.class);
+        break;
+      case MIN:
+      case MAX:
+        resultTypes.add(Primitive.box(argument.getType()));
+        break;
+      default:
+        resultTypes.add(Long.class);
+        break;
+      }
+    }
+
+    final List<RelFieldCollation> fieldCollations = new ArrayList<>();
+    for (int key : group.keys) {
+      if (!isComparable(inputPhysType.getJavaFieldType(key))) {
+        return null;
+      }
+      fieldCollations.add(new RelFieldCollation(key));
+    }
+    fieldCollations.addAll(group.collation().getFieldCollations());
+
+    Expression sorted_ = source_;
+    if (!fieldCollations.isEmpty()) {
+      final Pair<Expression, Expression> sortKey =
+          inputPhysType.generateCollationKey(fieldCollations);
+      sorted_ =
+          builder.append("sorted",
+              Expressions.call(BuiltInMethod.ORDER_BY_WITH_MEMORY_BUDGET.method,
+                  source_,
+                  builder.append("keySelector", sortKey.left),
+                  sortKey.right == null
+                      ? Expressions.constant(null, Comparator.class)
+                      : builder.append("comparator", sortKey.right),
+                  builder.append("memoryBudget",
+                      EnumerableSort.memoryBudget(implementor))));
+    }
+
+    final Expression partitionKeySelector_ = group.keys.isEmpty()
+        ? Expressions.constant(null, Function1.class)
+        : builder.append("partitionKeySelector",
+            inputPhysType.generateAccessor(group.keys.asList()));
+    Expression peerKeySelector_ = Expressions.constant(null, Function1.class);
+    Expression peerComparator_ = Expressions.constant(null, Comparator.class);
+    if (!group.isRows) {
+      final Pair<Expression, Expression> peerKey =
+          inputPhysType.generateCollationKey(
+              group.collation().getFieldCollations());
+      peerKeySelector_ = builder.append("peerKeySelector", peerKey.left);
+      if (peerKey.right != null) {
+        peerComparator_ = builder.append("peerComparator", peerKey.right);
+      }
+    }
+
+    // Output row is the input row plus the value of each aggregate function,
+    // converted from the type that SlidingAggregate returns.
+    final ParameterExpression row_ =
+        Expressions.parameter(inputPhysType.getJavaRowType(), "row");
+    final ParameterExpression values_ =
+        Expressions.parameter(Object[].class, "values");
+    final int inputFieldCount = inputPhysType.getRowType().getFieldCount();
+    final List<Expression> outputRow = new ArrayList<>();
+    for (int i = 0; i < inputFieldCount; i++) {
+      outputRow.add(
+          inputPhysType.fieldReference(row_, i,
+              outputPhysType.getJavaFieldType(i)));
+    }
+    for (int i = 0; i < resultTypes.size(); i++) {
+      outputRow.add(
+          EnumUtils.convert(
+              Expressions.convert_(
+                  Expressions.arrayIndex(values_, Expressions.constant(i)),
+                  resultTypes.get(i)),
+              outputPhysType.getJavaFieldType(inputFieldCount + i)));
+    }
+
+    return builder.append("source",
+        Expressions.call(BuiltInMethod.SLIDING_WINDOW.method,
+            sorted_,
+            partitionKeySelector_,
+            peerKeySelector_,
+            peerComparator_,
+            Expressions.constant(preceding),
+            Expressions.newArrayInit(SlidingAggregate.class, aggregates),
+            builder.append("argumentSelector",
+                Expressions.lambda(Function1.class,
+                    Expressions.newArrayInit(Object.class, arguments),
+                    argumentRow_)),
+            builder.append("resultSelector",
+                Expressions.lambda(Function2.class,
+                    outputPhysType.record(outputRow), row_, values_))));
+  }
+
+  /** Returns the number of rows before the current row in the frame of a
+   * group that {@link #implementSliding} can implement, -1 if the frame
+   * starts at the first row of the partition, or null if the group cannot be
+   * implemented that way.
+   *
+   * <p>Supported frames are ROWS BETWEEN n PRECEDING (or UNBOUNDED PRECEDING,
+   * or CURRENT ROW) AND CURRENT ROW, and RANGE BETWEEN UNBOUNDED PRECEDING AND
+   * CURRENT ROW with an ORDER BY, which is the default frame of a window with
+   * ORDER BY. */
+  private @Nullable Integer slidingPreceding(Group group,
+      int actualInputFieldCount) {
+    final RexWindowBound lowerBound = group.lowerBound;
+    if (group.exclude != RexWindowExclusion.EXCLUDE_NO_OTHER
+        || !group.upperBound.isCurrentRow()) {
+      return null;
+    }
+    if (!group.isRows) {
+      return lowerBound.isUnbounded() && lowerBound.isPreceding()
+          && !group.collation().getFieldCollations().isEmpty()
+          ? -1
+          : null;
+    }
+    if (lowerBound.isCurrentRow()) {
+      return 0;
+    }
+    if (!lowerBound.isPreceding()) {
+      return null;
+    }
+    if (lowerBound.isUnbounded()) {
+      return -1;
+    }
+    final @Nullable RexNode offset = lowerBound.getOffset();
+    final RexLiteral literal;
+    if (offset instanceof RexLiteral) {
+      literal = (RexLiteral) offset;
+    } else if (offset instanceof RexInputRef
+        && ((RexInputRef) offset).getIndex() >= actualInputFieldCount) {
+      literal =
+          constants.get(((RexInputRef) offset).getIndex()
+              - actualInputFieldCount);
+    } else {
+      return null;
+    }
+    final @Nullable BigDecimal value = literal.getValueAs(BigDecimal.class);
+    if (value == null || value.signum() < 0) {
+      return null;
+    }
+    try {
+      return value.intValueExact();
+    } catch (ArithmeticException e) {
+      return null;
+    }
+  }
+
+  /** Returns the {@link SlidingAggregate} that computes an aggregate
+   * function of a given kind and argument type, or null if there is none. */
+  private static @Nullable SlidingAggregate slidingAggregate(SqlKind kind,
+      Type argumentType) {
+    switch (kind) {
+    case COUNT:
+      return SlidingAggregate.COUNT;
+    case SUM:
+    case SUM0:
+      // Floating-point sums are not supported, because subtracting values
+      // that leave the frame would accumulate rounding errors.
+      final @Nullable Primitive primitive = Primitive.ofBoxOr(argumentType);
+      if (primitive != null && primitive.isFixedNumeric()) {
+        return kind == SqlKind.SUM ? SlidingAggregate.SUM : SlidingAggregate.SUM0;
+      }
+      if (argumentType == BigDecimal.class) {
+        return kind == SqlKind.SUM
+            ? SlidingAggregate.SUM_DECIMAL
+            : SlidingAggregate.SUM0_DECIMAL;
+      }
+      return null;
+    case MIN:
+    case MAX:
+      if (!isComparable(argumentType)) {
+        return null;
+      }
+      return kind == SqlKind.MIN ? SlidingAggregate.MIN : SlidingAggregate.MAX;
+    default:
+      return null;
+    }
+  }
+
+  private static boolean isComparable(Type type) {
+    return Comparable.class.isAssignableFrom(
+        Types.toClass(Primitive.box(type)));
+  }
+
   private static Statement buildExcludeGuard(Group group, Expression comparator,
       ParameterExpression currentRow,
       DeclarationStatement jDecl, Expression rows, BlockStatement forBlock) {
@@ -113,6 +113,31 @@ public interface CalciteConnectionConfig extends ConnectionConfig {
   /** Returns the value of
    * {@link CalciteConnectionProperty#TOPDOWN_GENERAL_DECORRELATION_ENABLED}. */
   boolean topDownGeneralDecorrelationEnabled();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#SORT_MEMORY_BUDGET}. */
+  long sortMemoryBudget();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#HASH_JOIN_MEMORY_BUDGET}. */
+  long hashJoinMemoryBudget();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#AGGREGATE_MEMORY_BUDGET}. */
+  long aggregateMemoryBudget();
+  /** Returns the value of {@link CalciteConnectionProperty#PARALLELISM}. */
+  int parallelism();
+  /** Returns the value of {@link CalciteConnectionProperty#VECTORIZE}. */
+  boolean vectorize();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#LITERAL_PARAMETERIZATION}. */
+  LiteralParameterization literalParameterization();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#PLANNER_TIME_LIMIT}. */
+  long plannerTimeLimit();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#PLANNER_MAX_RULE_FIRINGS}. */
+  long plannerMaxRuleFirings();
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#PLANNER_MAX_RELS}. */
+  long plannerMaxRels();
 
   /** Returns the value of {@link CalciteConnectionProperty#META_TABLE_FACTORY},
    * or a default meta table factory if not set. If
@@ -27,10 +27,13 @@
 import org.apache.calcite.sql.validate.SqlConformance;
 import org.apache.calcite.sql.validate.SqlConformanceEnum;
 
+import com.google.common.collect.ImmutableMap;
+
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.nullness.qual.PolyNull;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /** Implementation of {@link CalciteConnectionConfig}. */
@@ -68,6 +71,13 @@ public boolean isSet(CalciteConnectionProperty property) {
     return properties.containsKey(property.camelName());
   }
 
+  /** Returns an immutable copy of the properties of this configuration.
+   *
+   * <p>Two configurations whose maps are equal behave the same. */
+  public Map<Object, Object> toMap() {
+    return ImmutableMap.copyOf(properties);
+  }
+
   @Override public boolean approximateDistinctCount() {
     return CalciteConnectionProperty.APPROXIMATE_DISTINCT_COUNT.wrap(properties)
         .getBoolean();
@@ -220,6 +230,50 @@ public boolean isSet(CalciteConnectionProperty property) {
         .getBoolean();
   }
 
+  @Override public long sortMemoryBudget() {
+    return CalciteConnectionProperty.SORT_MEMORY_BUDGET.wrap(properties)
+        .getLong();
+  }
+
+  @Override public long hashJoinMemoryBudget() {
+    return CalciteConnectionProperty.HASH_JOIN_MEMORY_BUDGET.wrap(properties)
+        .getLong();
+  }
+
+  @Override public long aggregateMemoryBudget() {
+    return CalciteConnectionProperty.AGGREGATE_MEMORY_BUDGET.wrap(properties)
+        .getLong();
+  }
+
+  @Override public int parallelism() {
+    return CalciteConnectionProperty.PARALLELISM.wrap(properties).getInt();
+  }
+
+  @Override public boolean vectorize() {
+    return CalciteConnectionProperty.VECTORIZE.wrap(properties)
+        .getBoolean();
+  }
+
+  @Override public LiteralParameterization literalParameterization() {
+    return CalciteConnectionProperty.LITERAL_PARAMETERIZATION.wrap(properties)
+        .getEnum(LiteralParameterization.class, LiteralParameterization.NONE);
+  }
+
+  @Override public long plannerTimeLimit() {
+    return CalciteConnectionProperty.PLANNER_TIME_LIMIT.wrap(properties)
+        .getLong();
+  }
+
+  @Override public long plannerMaxRuleFirings() {
+    return CalciteConnectionProperty.PLANNER_MAX_RULE_FIRINGS.wrap(properties)
+        .getLong();
+  }
+
+  @Override public long plannerMaxRels() {
+    return CalciteConnectionProperty.PLANNER_MAX_RELS.wrap(properties)
+        .getLong();
+  }
+
   @Override public <T> @PolyNull T metaTableFactory(
       Class<T> metaTableFactoryClass,
       @PolyNull T defaultMetaTableFactory) {
@@ -189,7 +189,61 @@ public enum CalciteConnectionProperty implements ConnectionProperty {
   LENIENT_OPERATOR_LOOKUP("lenientOperatorLookup", Type.BOOLEAN, false, false),
 
   /** Whether to enable top-down optimization in Volcano planner. */
-  TOPDOWN_OPT("topDownOpt", Type.BOOLEAN, CalciteSystemProperty.TOPDOWN_OPT.value(), false);
+  TOPDOWN_OPT("topDownOpt", Type.BOOLEAN, CalciteSystemProperty.TOPDOWN_OPT.value(), false),
+
+  /** Approximate number of bytes of rows that a sort in the enumerable
+   * convention may hold in memory before it writes sorted runs to temporary
+   * files. The default, -1, means no limit. */
+  SORT_MEMORY_BUDGET("sortMemoryBudget", Type.NUMBER, -1L, false),
+
+  /** Approximate number of bytes of build-side (right) rows that a hash join
+   * in the enumerable convention may hold in memory; if the build side is
+   * larger, both inputs are partitioned to temporary files and joined one
+   * partition at a time. The default, -1, means no limit. */
+  HASH_JOIN_MEMORY_BUDGET("hashJoinMemoryBudget", Type.NUMBER, -1L, false),
+
+  /** Approximate number of bytes of groups that a hash aggregate in the
+   * enumerable convention may hold in memory; once it is exceeded, the rows of
+   * groups that are not yet in memory are partitioned to temporary files and
+   * aggregated one partition at a time. The default, -1, means no limit. */
+  AGGREGATE_MEMORY_BUDGET("aggregateMemoryBudget", Type.NUMBER, -1L, false),
+
+  /** Number of threads that the enumerable convention may use to execute a
+   * filter or projection (an {@code EnumerableCalc}), whose input is split
+   * into morsels that are processed at the same time, or an exchange. The
+   * default, 1, means that queries are executed on a single thread. */
+  PARALLELISM("parallelism", Type.NUMBER, 1, false),
+
+  /** Whether scans of tables whose values are stored by column, such as
+   * the tables of a {@link org.apache.calcite.adapter.clone.CloneSchema},
+   * and filters and projections on them, may be executed a batch of rows
+   * at a time; see
+   * {@link org.apache.calcite.adapter.columnar.ColumnarRel#CONVENTION}.
+   * Default false. */
+  VECTORIZE("vectorize", Type.BOOLEAN, false, false),
+
+  /** Which literals are replaced by dynamic parameters after validation, so
+   * that statements that differ only in the values of literals share
+   * generated code; see {@link LiteralParameterization}. The default, NONE,
+   * means that literals are not replaced. */
+  LITERAL_PARAMETERIZATION("literalParameterization", Type.ENUM,
+      LiteralParameterization.NONE, false, LiteralParameterization.class),
+
+  /** Number of milliseconds that the Volcano planner may spend firing rules
+   * for a statement; when it is exceeded, the planner stops exploring and
+   * returns the cheapest complete plan found so far. The default, -1, means
+   * no limit. */
+  PLANNER_TIME_LIMIT("plannerTimeLimit", Type.NUMBER, -1L, false),
+
+  /** Number of rule matches that the Volcano planner may fire for a
+   * statement; when it is exceeded, the planner returns the cheapest
+   * complete plan found so far. The default, -1, means no limit. */
+  PLANNER_MAX_RULE_FIRINGS("plannerMaxRuleFirings", Type.NUMBER, -1L, false),
+
+  /** Number of relational expressions that the Volcano planner may register
+   * for a statement; when it is exceeded, the planner returns the cheapest
+   * complete plan found so far. The default, -1, means no limit. */
+  PLANNER_MAX_RELS("plannerMaxRels", Type.NUMBER, -1L, false);
 
   private final String camelName;
   private final Type type;
@@ -138,6 +138,15 @@
   public static final CalciteSystemProperty<Boolean> TOPDOWN_OPT =
       booleanProperty("calcite.planner.topdown.opt", false);
 
+  /**
+   * Number of rule matches that
+   * {@link org.apache.calcite.plan.volcano.VolcanoPlanner} fires at the same
+   * time, on different threads. The default, 1, fires one match at a time.
+   * Ignored if top-down optimization is enabled.
+   */
+  public static final CalciteSystemProperty<Integer> PLANNER_RULE_PARALLELISM =
+      intProperty("calcite.planner.rule.parallelism", 1, v -> v >= 1);
+
   /** Whether {@link org.apache.calcite.plan.hep.HepPlanner} should enable
    * large-plan mode by default.
    *
@@ -372,6 +381,47 @@
   public static final CalciteSystemProperty<Integer> METADATA_HANDLER_CACHE_MAXIMUM_SIZE =
       intProperty("calcite.metadata.handler.cache.maximum.size", 1000);
 
+  /**
+   * The maximum number of metadata values (row counts, unique keys and
+   * predicates) that are kept in the metadata cache shared by all planners.
+   *
+   * <p>The default value is 0.
+   *
+   * <p>Setting this property to 0 disables the cache.
+   *
+   * @see org.apache.calcite.rel.metadata.SharedMetadataCache
+   */
+  public static final CalciteSystemProperty<Integer> METADATA_SHARED_CACHE_MAX_SIZE =
+      intProperty("calcite.metadata.shared.cache.maxSize", 0, v -> v >= 0);
+
+  /**
+   * The maximum number of row counts, observed while executing Enumerable
+   * plans, that are kept for use by later planners.
+   *
+   * <p>The default value is 0.
+   *
+   * <p>Setting this property to 0 disables cardinality feedback, and
+   * generated code does not count rows.
+   *
+   * @see org.apache.calcite.rel.metadata.CardinalityFeedback
+   */
+  public static final CalciteSystemProperty<Integer> CARDINALITY_FEEDBACK_MAX_SIZE =
+      intProperty("calcite.metadata.cardinality.feedback.maxSize", 0,
+          v -> v >= 0);
+
+  /**
+   * The maximum number of queries that are kept by the workload recorder
+   * until they are read by a lattice advisor.
+   *
+   * <p>The default value is 0.
+   *
+   * <p>Setting this property to 0 disables the recorder.
+   *
+   * @see org.apache.calcite.materialize.WorkloadRecorder
+   */
+  public static final CalciteSystemProperty<Integer> WORKLOAD_RECORDER_MAX_SIZE =
+      intProperty("calcite.workload.recorder.maxSize", 0, v -> v >= 0);
+
   /**
    * The maximum size of the cache used for storing Bindable objects,
    * instantiated via dynamically generated Java classes.
@@ -408,6 +458,45 @@
   public static final CalciteSystemProperty<Integer> BINDABLE_CACHE_CONCURRENCY_LEVEL =
       intProperty("calcite.bindable.cache.concurrencyLevel", 1, v -> v >= 1);
 
+  /**
+   * The maximum number of prepared statements that are kept in the plan cache
+   * of each connection. A statement whose normalized SQL text, schema
+   * version and connection properties match a cached statement is not parsed,
+   * validated, optimized or compiled again.
+   *
+   * <p>The default value is 0.
+   *
+   * <p>Setting this property to 0 disables the cache.
+   *
+   * @see org.apache.calcite.prepare.PlanCache
+   */
+  public static final CalciteSystemProperty<Integer> PLAN_CACHE_MAX_SIZE =
+      intProperty("calcite.plan.cache.maxSize", 0, v -> v >= 0);
+
+  /**
+   * Directory in which classes that are generated and compiled for queries
+   * and metadata handlers are stored, so that a JVM that is restarted does not
+   * need to compile them again.
+   *
+   * <p>The default value is the empty string, which disables the cache.
+   *
+   * @see org.apache.calcite.util.javac.CompiledClassCache
+   */
+  public static final CalciteSystemProperty<String> CLASS_CACHE_DIR =
+      stringProperty("calcite.class.cache.dir", "");
+
+  /**
+   * The maximum number of files in the directory given by
+   * {@link #CLASS_CACHE_DIR}. When there are more, the files that were least
+   * recently used are deleted.
+   *
+   * <p>The default value is 10,000.
+   *
+   * @see org.apache.calcite.util.javac.CompiledClassCache
+   */
+  public static final CalciteSystemProperty<Integer> CLASS_CACHE_MAX_SIZE =
+      intProperty("calcite.class.cache.maxSize", 10_000, v -> v >= 0);
+
   /**
    * The maximum number of items in a function-level cache.
    *
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.config;
+
+/** Policy for replacing literals in a query with dynamic parameters after
+ * validation, so that queries that differ only in the values of their
+ * literals generate the same code.
+ *
+ * @see CalciteConnectionProperty#LITERAL_PARAMETERIZATION */
+public enum LiteralParameterization {
+  /** Literals are not replaced. */
+  NONE,
+
+  /** Numeric and character literals that are compared with an expression
+   * (for example, {@code 10} in {@code deptno = 10}) are replaced; literals
+   * that may affect the choice of plan are kept. Those are the values of
+   * {@code FETCH} and {@code OFFSET}, and literals in a filter on a table
+   * that can use the filter to skip rows, such as a
+   * {@link org.apache.calcite.schema.FilterableTable} or a table whose
+   * adapter pushes filters down to its data source. */
+  SAFE,
+
+  /** As {@link #SAFE}, but literals that may affect the choice of plan are
+   * replaced too. */
+  ALL
+}
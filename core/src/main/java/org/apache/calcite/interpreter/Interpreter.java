@@ -23,8 +23,8 @@
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
-import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.linq4j.SharedExecutor;
 import org.apache.calcite.linq4j.TransformedEnumerator;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.hep.HepPlanner;
@@ -53,15 +53,20 @@
 import org.checkerframework.checker.initialization.qual.UnknownInitialization;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.util.Objects.requireNonNull;
 
@@ -71,23 +76,47 @@
  * <p>Contains the context for interpreting relational expressions. In
  * particular it holds working state while the data flow graph is being
  * assembled.
+ *
+ * <p>The nodes of the data flow graph run as a pipeline. Each node is
+ * offered a thread of the {@link SharedExecutor}, and sends its rows, in
+ * batches, through a bounded pipe to the node that consumes them; a node
+ * waits while its consumer's pipe is full. Memory use is therefore
+ * proportional to the depth of the pipeline, not to the size of the data,
+ * except in nodes such as sort and aggregate that need to see all of their
+ * input. When a node has read all the rows it needs (say a sort with a
+ * fetch), the nodes that feed it stop.
+ *
+ * <p>If no thread is free, a node instead runs on the first thread that reads
+ * its output, such as the thread that reads the interpreter's result, and
+ * its pipes hold all of its rows.
+ *
+ * <p>Each enumerator runs its own copy of the data flow graph, so the
+ * interpreter can be enumerated, and an enumerator reset, any number of
+ * times.
  */
 public class Interpreter extends AbstractEnumerable<@Nullable Object[]>
     implements AutoCloseable {
-  private final Map<RelNode, NodeInfo> nodes;
+  /** How long stopping a data flow graph waits for its nodes to finish, in
+   * milliseconds. */
+  static final long CLOSE_TIMEOUT_MILLIS = 5_000;
+
   private final DataContext dataContext;
-  private final RelNode rootRel;
+  private final RelNode rel;
+  /** Data flow graph compiled by the constructor; the first enumerator runs
+   * it. */
+  private final Dataflow dataflow;
+  private boolean dataflowUsed;
+  /** Data flow graphs that have been compiled and not yet closed. */
+  private final List<Dataflow> dataflows = new ArrayList<>();
 
   /** Creates an Interpreter. */
   public Interpreter(DataContext dataContext, RelNode rootRel) {
     this.dataContext = requireNonNull(dataContext, "dataContext");
-    final RelNode rel = optimize(rootRel);
-    final CompilerImpl compiler =
-        new Nodes.CoreCompiler(this, rootRel.getCluster());
+    this.rel = optimize(rootRel);
     @SuppressWarnings("method.invocation.invalid")
-    Pair<RelNode, Map<RelNode, NodeInfo>> pair = compiler.visitRoot(rel);
-    this.rootRel = pair.left;
-    this.nodes = ImmutableMap.copyOf(pair.right);
+    final Dataflow dataflow = compile();
+    this.dataflow = dataflow;
+    this.dataflows.add(dataflow);
   }
 
   private static RelNode optimize(RelNode rootRel) {
@@ -105,17 +134,22 @@ private static RelNode optimize(RelNode rootRel) {
     return rootRel;
   }
 
+  /** Builds a data flow graph. */
+  private Dataflow compile() {
+    final CompilerImpl compiler =
+        new Nodes.CoreCompiler(this, rel.getCluster());
+    final Pair<RelNode, Map<RelNode, NodeInfo>> pair =
+        compiler.visitRoot(rel);
+    return new Dataflow(pair.left, pair.right);
+  }
+
   @Override public Enumerator<@Nullable Object[]> enumerator() {
-    start();
-    final NodeInfo nodeInfo =
-        requireNonNull(nodes.get(rootRel), () -> "nodeInfo for " + rootRel);
+    final NodeInfo nodeInfo = dataflow.root();
     final Enumerator<Row> rows;
     if (nodeInfo.rowEnumerable != null) {
       rows = nodeInfo.rowEnumerable.enumerator();
     } else {
-      final ArrayDeque<Row> queue =
-          Iterables.getOnlyElement(nodeInfo.sinks.values()).list;
-      rows = Linq4j.iterableEnumerator(queue);
+      rows = new PipeEnumerator();
     }
 
     return new TransformedEnumerator<Row, @Nullable Object[]>(rows) {
@@ -125,39 +159,204 @@ private static RelNode optimize(RelNode rootRel) {
     };
   }
 
-  @SuppressWarnings("CatchAndPrintStackTrace")
-  private void start() {
-    // We rely on the nodes being ordered leaves first.
-    for (Map.Entry<RelNode, NodeInfo> entry : nodes.entrySet()) {
-      final NodeInfo nodeInfo = entry.getValue();
-      try {
-        if (nodeInfo.node == null) {
-          throw new AssertionError("node must not be null for nodeInfo, rel="
-              + nodeInfo.rel);
-        }
-        nodeInfo.node.run();
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      }
+  /** Returns a data flow graph that has not been started: the one compiled
+   * by the constructor, if no enumerator has used it, otherwise a new one. */
+  private synchronized Dataflow newDataflow() {
+    if (!dataflowUsed) {
+      dataflowUsed = true;
+      return dataflow;
+    }
+    final Dataflow dataflow = compile();
+    dataflows.add(dataflow);
+    return dataflow;
+  }
+
+  /** Stops a data flow graph that will not be used again, and closes its
+   * nodes. */
+  private void discard(Dataflow dataflow) {
+    synchronized (this) {
+      dataflows.remove(dataflow);
     }
+    dataflow.close();
   }
 
   @Override public void close() {
-    nodes.values().forEach(NodeInfo::close);
+    final List<Dataflow> list;
+    synchronized (this) {
+      list = new ArrayList<>(dataflows);
+      dataflows.clear();
+    }
+    list.forEach(Dataflow::close);
+  }
+
+  /** Data flow graph: information about each node, and the pipes that connect
+   * them. A graph runs at most once. */
+  private static class Dataflow {
+    final RelNode rootRel;
+    final Map<RelNode, NodeInfo> nodes;
+
+    Dataflow(RelNode rootRel, Map<RelNode, NodeInfo> nodes) {
+      this.rootRel = rootRel;
+      this.nodes = ImmutableMap.copyOf(nodes);
+    }
+
+    NodeInfo root() {
+      return requireNonNull(nodes.get(rootRel), () -> "nodeInfo for " + rootRel);
+    }
+
+    /** Starts the nodes, and returns a source that reads the output of the
+     * root node.
+     *
+     * <p>A node runs until it has read all of its input, or until every
+     * consumer of its output has finished, whichever is sooner. */
+    PipeSource start() {
+      for (NodeInfo nodeInfo : nodes.values()) {
+        for (Map.Entry<Edge, Pipe> entry : nodeInfo.pipes.entrySet()) {
+          final @Nullable RelNode consumer = entry.getKey().left;
+          final @Nullable NodeInfo consumerInfo =
+              consumer == null ? null : nodes.get(consumer);
+          if (consumerInfo != null) {
+            consumerInfo.inputs.add(entry.getValue());
+          }
+        }
+      }
+      // Nodes are ordered leaves first, so producers are offered threads
+      // before consumers.
+      for (NodeInfo nodeInfo : nodes.values()) {
+        if (nodeInfo.rowEnumerable == null) {
+          nodeInfo.start();
+        }
+      }
+      return new PipeSource(Iterables.getOnlyElement(root().pipes.values()));
+    }
+
+    /** Stops the nodes, and waits a bounded time for those that are running
+     * to finish. */
+    void stop() {
+      for (NodeInfo nodeInfo : nodes.values()) {
+        nodeInfo.pipes.values().forEach(Pipe::abandon);
+      }
+      final long deadline =
+          System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS);
+      for (NodeInfo nodeInfo : nodes.values()) {
+        if (nodeInfo.rowEnumerable != null) {
+          continue;
+        }
+        try {
+          if (!nodeInfo.finished.await(deadline - System.nanoTime(),
+              TimeUnit.NANOSECONDS)) {
+            // The node is busy, say in a call that does not return; it will
+            // stop the next time it sends rows.
+            return;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+
+    void close() {
+      stop();
+      nodes.values().forEach(NodeInfo::close);
+    }
   }
 
   /** Information about a node registered in the data flow graph. */
   private static class NodeInfo {
     final RelNode rel;
-    final Map<Edge, ListSink> sinks = new LinkedHashMap<>();
+    /** Pipes to the consumers of this node's output, one per edge. */
+    final Map<Edge, Pipe> pipes = new LinkedHashMap<>();
+    /** Pipes from the nodes that produce this node's input. */
+    final List<Pipe> inputs = new ArrayList<>();
     final @Nullable Enumerable<Row> rowEnumerable;
     @Nullable Node node;
+    @Nullable PipeSink sink;
+    /** Task that runs this node on a thread of the shared executor; null if
+     * the node runs on the first thread that reads its output. */
+    volatile @Nullable FutureTask<@Nullable Void> task;
+    /** Set when the node starts running, or when it is cancelled before it
+     * starts. */
+    final AtomicBoolean started = new AtomicBoolean();
+    /** Released when the node has finished running, or has been cancelled
+     * before it started. */
+    final CountDownLatch finished = new CountDownLatch(1);
 
     NodeInfo(RelNode rel, @Nullable Enumerable<Row> rowEnumerable) {
       this.rel = rel;
       this.rowEnumerable = rowEnumerable;
     }
 
+    /** Offers this node to the shared executor. If no thread is free, the
+     * node will run on the first thread that reads its output; that thread
+     * reads only after the node has finished, so the node's pipes must hold
+     * all of its rows. */
+    void start() {
+      final FutureTask<@Nullable Void> task = new FutureTask<>(this::run, null);
+      this.task = task;
+      if (!SharedExecutor.tryExecute(task)) {
+        this.task = null;
+        pipes.values().forEach(Pipe::unbound);
+      }
+    }
+
+    /** Called by a thread that is about to read this node's output; if the
+     * node has no thread of its own, runs it on the calling thread. */
+    void demand() {
+      if (task == null) {
+        run();
+      }
+    }
+
+    /** Runs this node, unless it has already started or been cancelled.
+     *
+     * <p>When the node finishes, successfully or not, it abandons its input
+     * pipes, so that the nodes that feed it can stop too. */
+    private void run() {
+      if (!started.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        final Node node =
+            requireNonNull(this.node,
+                () -> "node must not be null for nodeInfo, rel=" + rel);
+        final PipeSink sink =
+            requireNonNull(this.sink, () -> "sink for " + rel);
+        try {
+          node.run();
+          sink.end();
+        } catch (Throwable e) {
+          sink.fail(e);
+        }
+      } finally {
+        inputs.forEach(Pipe::abandon);
+        finished.countDown();
+      }
+    }
+
+    /** Called when a consumer has abandoned one of this node's pipes; if
+     * every consumer has, stops the node.
+     *
+     * <p>A running node stops the next time it sends a batch of rows. It is
+     * not interrupted, because its thread may be running other nodes too. */
+    void abandoned() {
+      for (Pipe pipe : pipes.values()) {
+        if (!pipe.abandoned) {
+          return;
+        }
+      }
+      final FutureTask<@Nullable Void> task = this.task;
+      if (task != null) {
+        task.cancel(false);
+      }
+      if (started.compareAndSet(false, true)) {
+        // The node never started, and now never will; let the nodes that
+        // feed it stop too.
+        inputs.forEach(Pipe::abandon);
+        finished.countDown();
+      }
+    }
+
     void close() {
       if (node != null) {
         final Node n = node;
@@ -192,84 +391,225 @@ private static class EnumeratorSource implements Source {
     }
   }
 
-  /** Implementation of {@link Sink} using a {@link java.util.ArrayDeque}. */
-  private static class ListSink implements Sink {
-    final ArrayDeque<Row> list;
+  /** Message sent through a {@link Pipe}; either a batch of rows, the end
+   * of the data, or a failure. */
+  private static class Message {
+    static final Message END = new Message(ImmutableList.of(), null);
+
+    final List<Row> rows;
+    final @Nullable Throwable failure;
+
+    Message(List<Row> rows, @Nullable Throwable failure) {
+      this.rows = rows;
+      this.failure = failure;
+    }
+
+    /** Whether this is the last message in the pipe. */
+    boolean isLast() {
+      return rows.isEmpty();
+    }
+  }
 
-    private ListSink(ArrayDeque<Row> list) {
-      this.list = list;
+  /** Queue of batches of rows from a node to one of its consumers.
+   *
+   * <p>If the node has only one consumer, the pipe holds at most
+   * {@link #CAPACITY} batches, and the node waits while it is full. If the
+   * node has several consumers, the pipes are unbounded, because the
+   * consumers may read them in any order (say a join whose inputs are the
+   * same node), and bounded pipes could deadlock. */
+  private static class Pipe {
+    /** Number of rows in each batch. */
+    static final int BATCH_SIZE = 64;
+
+    /** Number of batches that a bounded pipe may hold. */
+    static final int CAPACITY = 4;
+
+    final NodeInfo producer;
+    BlockingQueue<Message> queue;
+    /** Whether the consumer will read no more rows. */
+    volatile boolean abandoned;
+
+    Pipe(NodeInfo producer, boolean bounded) {
+      this.producer = producer;
+      this.queue = bounded
+          ? new ArrayBlockingQueue<>(CAPACITY)
+          : new LinkedBlockingQueue<>();
+    }
+
+    /** Makes this pipe unbounded; called before the producer starts, if it
+     * will run on the thread that reads the pipe. */
+    void unbound() {
+      if (queue instanceof ArrayBlockingQueue) {
+        queue = new LinkedBlockingQueue<>();
+      }
+    }
+
+    /** Called when the consumer will read no more rows, or when the data
+     * flow graph is stopping. */
+    void abandon() {
+      if (!abandoned) {
+        abandoned = true;
+        queue.clear();
+        // If the consumer is waiting for rows, the graph is stopping; wake
+        // the consumer so that it stops too.
+        queue.offer(Message.END);
+        producer.abandoned();
+      }
+    }
+  }
+
+  /** Implementation of {@link Sink} that sends batches of rows into one or
+   * more {@link Pipe}s. */
+  private static class PipeSink implements Sink {
+    private final List<Pipe> pipes;
+    private List<Row> batch = new ArrayList<>(Pipe.BATCH_SIZE);
+    private boolean ended;
+
+    PipeSink(List<Pipe> pipes) {
+      this.pipes = ImmutableList.copyOf(pipes);
+    }
+
+    @Override public void send(Row row) throws InterruptedException {
+      batch.add(row);
+      if (batch.size() >= Pipe.BATCH_SIZE) {
+        final Message message = new Message(batch, null);
+        batch = new ArrayList<>(Pipe.BATCH_SIZE);
+        put(message);
+      }
+    }
+
+    @Override public void end() throws InterruptedException {
+      if (ended) {
+        return;
+      }
+      ended = true;
+      if (!batch.isEmpty()) {
+        put(new Message(batch, null));
+        batch = ImmutableList.of();
+      }
+      put(Message.END);
     }
 
-    @Override public void send(Row row) {
-      list.add(row);
+    /** Sends a failure to each consumer, discarding rows that it has not
+     * yet read to make room. */
+    void fail(Throwable e) {
+      final Message failure = new Message(ImmutableList.of(), e);
+      for (Pipe pipe : pipes) {
+        if (!pipe.abandoned) {
+          while (!pipe.queue.offer(failure)) {
+            pipe.queue.poll();
+          }
+        }
+      }
     }
 
-    @Override public void end() {
+    private void put(Message message) throws InterruptedException {
+      boolean sent = false;
+      for (Pipe pipe : pipes) {
+        if (!pipe.abandoned) {
+          pipe.queue.put(message);
+          sent = true;
+        }
+      }
+      if (!sent) {
+        // Every consumer has finished; stop the node.
+        throw new InterruptedException();
+      }
     }
 
     @SuppressWarnings("deprecation")
     @Override public void setSourceEnumerable(Enumerable<Row> enumerable)
         throws InterruptedException {
-      // just copy over the source into the local list
-      final Enumerator<Row> enumerator = enumerable.enumerator();
-      while (enumerator.moveNext()) {
-        this.send(enumerator.current());
+      try (Enumerator<Row> enumerator = enumerable.enumerator()) {
+        while (enumerator.moveNext()) {
+          this.send(enumerator.current());
+        }
       }
-      enumerator.close();
     }
   }
 
-  /** Implementation of {@link Source} using a {@link java.util.ArrayDeque}. */
-  private static class ListSource implements Source {
-    private final ArrayDeque<Row> list;
-    private @Nullable Iterator<Row> iterator;
+  /** Implementation of {@link Source} that reads batches of rows from a
+   * {@link Pipe}. */
+  private static class PipeSource implements Source {
+    private final Pipe pipe;
+    private List<Row> rows = ImmutableList.of();
+    private int index;
+    private boolean done;
 
-    ListSource(ArrayDeque<Row> list) {
-      this.list = list;
+    PipeSource(Pipe pipe) {
+      this.pipe = pipe;
     }
 
     @Override public @Nullable Row receive() {
+      if (index < rows.size()) {
+        return rows.get(index++);
+      }
+      if (done) {
+        return null;
+      }
+      pipe.producer.demand();
+      final Message message;
       try {
-        if (iterator == null) {
-          iterator = list.iterator();
-        }
-        return iterator.next();
-      } catch (NoSuchElementException e) {
-        iterator = null;
+        message = pipe.queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+      if (message.failure != null) {
+        done = true;
+        throw Util.throwAsRuntime(message.failure);
+      }
+      if (message.isLast()) {
+        done = true;
+        rows = ImmutableList.of();
+        index = 0;
         return null;
       }
+      rows = message.rows;
+      index = 1;
+      return rows.get(0);
     }
 
     @Override public void close() {
-      // noop
+      pipe.abandon();
     }
   }
 
-  /** Implementation of {@link Sink} using a {@link java.util.ArrayDeque}. */
-  private static class DuplicatingSink implements Sink {
-    private final List<ArrayDeque<Row>> queues;
+  /** Enumerator over the rows that the root node sends into its pipe.
+   *
+   * <p>The enumerator runs its own data flow graph; {@link #reset()} discards
+   * the graph and runs a new one. Closing the enumerator stops the graph. */
+  private class PipeEnumerator implements Enumerator<Row> {
+    private Dataflow dataflow;
+    private PipeSource source;
+    private @Nullable Row current;
 
-    private DuplicatingSink(List<ArrayDeque<Row>> queues) {
-      this.queues = ImmutableList.copyOf(queues);
+    PipeEnumerator() {
+      this.dataflow = newDataflow();
+      this.source = dataflow.start();
     }
 
-    @Override public void send(Row row) {
-      for (ArrayDeque<Row> queue : queues) {
-        queue.add(row);
+    @Override public Row current() {
+      if (current == null) {
+        throw new NoSuchElementException();
       }
+      return current;
     }
 
-    @Override public void end() {
+    @Override public boolean moveNext() {
+      current = source.receive();
+      return current != null;
     }
 
-    @SuppressWarnings("deprecation")
-    @Override public void setSourceEnumerable(Enumerable<Row> enumerable) {
-      // just copy over the source into the local list
-      final Enumerator<Row> enumerator = enumerable.enumerator();
-      while (enumerator.moveNext()) {
-        this.send(enumerator.current());
-      }
-      enumerator.close();
+    @Override public void reset() {
+      discard(dataflow);
+      dataflow = newDataflow();
+      source = dataflow.start();
+      current = null;
+    }
+
+    @Override public void close() {
+      dataflow.stop();
     }
   }
 
@@ -422,13 +762,12 @@ private JavaTypeFactory getTypeFactory() {
       if (nodeInfo.rowEnumerable != null) {
         return new EnumeratorSource(nodeInfo.rowEnumerable.enumerator());
       }
-      assert nodeInfo.sinks.size() == edges.size();
-      final ListSink sink = nodeInfo.sinks.get(edge);
-      if (sink != null) {
-        return new ListSource(sink.list);
+      assert nodeInfo.pipes.size() == edges.size();
+      final Pipe pipe = nodeInfo.pipes.get(edge);
+      if (pipe != null) {
+        return new PipeSource(pipe);
       }
-      throw new IllegalStateException(
-          "Got a sink " + sink + " to which there is no match source type!");
+      throw new IllegalStateException("no pipe for edge " + edge);
     }
 
     private RelNode getInput(RelNode rel, int ordinal) {
@@ -448,26 +787,16 @@ private RelNode getInput(RelNode rel, int ordinal) {
       if (nodeInfo == null) {
         nodeInfo = new NodeInfo(rel, null);
         nodes.put(rel, nodeInfo);
-        for (Edge edge : edges2) {
-          nodeInfo.sinks.put(edge, new ListSink(new ArrayDeque<>()));
-        }
-      } else {
-        for (Edge edge : edges2) {
-          if (nodeInfo.sinks.containsKey(edge)) {
-            continue;
-          }
-          nodeInfo.sinks.put(edge, new ListSink(new ArrayDeque<>()));
-        }
       }
-      if (edges.size() == 1) {
-        return Iterables.getOnlyElement(nodeInfo.sinks.values());
-      } else {
-        final List<ArrayDeque<Row>> queues = new ArrayList<>();
-        for (ListSink sink : nodeInfo.sinks.values()) {
-          queues.add(sink.list);
+      for (Edge edge : edges2) {
+        if (!nodeInfo.pipes.containsKey(edge)) {
+          nodeInfo.pipes.put(edge, new Pipe(nodeInfo, edges2.size() == 1));
         }
-        return new DuplicatingSink(queues);
       }
+      final PipeSink sink =
+          new PipeSink(ImmutableList.copyOf(nodeInfo.pipes.values()));
+      nodeInfo.sink = sink;
+      return sink;
     }
 
     @Override public void enumerable(RelNode rel, Enumerable<Row> rowEnumerable) {
@@ -32,6 +32,7 @@
 import org.apache.calcite.avatica.remote.TypedValue;
 import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.config.CalciteConnectionConfigImpl;
+import org.apache.calcite.config.CalciteSystemProperty;
 import org.apache.calcite.jdbc.CalcitePrepare.Context;
 import org.apache.calcite.linq4j.BaseQueryable;
 import org.apache.calcite.linq4j.Enumerable;
@@ -45,6 +46,7 @@
 import org.apache.calcite.materialize.MaterializationService;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.prepare.CalciteCatalogReader;
+import org.apache.calcite.prepare.PlanCache;
 import org.apache.calcite.rel.type.DelegatingTypeSystem;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
 import org.apache.calcite.rel.type.TimeFrameSet;
@@ -108,6 +110,10 @@
   final CalciteSchema rootSchema;
   final Supplier<CalcitePrepare> prepareFactory;
   final CalciteServer server = new CalciteServerImpl();
+  final @Nullable PlanCache planCache =
+      CalciteSystemProperty.PLAN_CACHE_MAX_SIZE.value() == 0
+          ? null
+          : new PlanCache(CalciteSystemProperty.PLAN_CACHE_MAX_SIZE.value());
 
   // must be package-protected
   static final Trojan TROJAN = createTrojan();
@@ -460,7 +466,13 @@ static class DataContextImpl implements DataContext {
           .put(Variable.LOCALE.camelName, locale)
           .put(Variable.STDIN.camelName, streamHolder.get()[0])
           .put(Variable.STDOUT.camelName, streamHolder.get()[1])
-          .put(Variable.STDERR.camelName, streamHolder.get()[2]);
+          .put(Variable.STDERR.camelName, streamHolder.get()[2])
+          .put(Variable.SORT_MEMORY_BUDGET.camelName,
+              connection.config().sortMemoryBudget())
+          .put(Variable.HASH_JOIN_MEMORY_BUDGET.camelName,
+              connection.config().hashJoinMemoryBudget())
+          .put(Variable.AGGREGATE_MEMORY_BUDGET.camelName,
+              connection.config().aggregateMemoryBudget());
       for (Map.Entry<String, Object> entry : parameters.entrySet()) {
         Object e = entry.getValue();
         if (e == null) {
@@ -587,6 +599,10 @@ static class ContextImpl implements CalcitePrepare.Context {
       return runner;
     }
 
+    @Override public @Nullable PlanCache getPlanCache() {
+      return connection.planCache;
+    }
+
     @Override public CalcitePrepare.SparkHandler spark() {
       final boolean enable = config().spark();
       return CalcitePrepare.Dummy.getSparkHandler(enable);
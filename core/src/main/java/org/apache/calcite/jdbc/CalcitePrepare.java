@@ -30,6 +30,7 @@
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
+import org.apache.calcite.prepare.PlanCache;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
@@ -135,6 +136,12 @@ interface Context {
 
     /** Gets a runner; it can execute a relational expression. */
     RelRunner getRelRunner();
+
+    /** Returns the cache of prepared statements of the connection, or null
+     * if statements are not cached. */
+    default @Nullable PlanCache getPlanCache() {
+      return null;
+    }
   }
 
   /** Callback to register Spark as the main engine. */
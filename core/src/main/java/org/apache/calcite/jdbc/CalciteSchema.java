@@ -27,6 +27,7 @@
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.schema.TableMacro;
 import org.apache.calcite.schema.Wrapper;
+import org.apache.calcite.schema.impl.LongSchemaVersion;
 import org.apache.calcite.schema.impl.MaterializedViewTable;
 import org.apache.calcite.schema.impl.StarTable;
 import org.apache.calcite.schema.lookup.LikePattern;
@@ -51,6 +52,7 @@
 import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -78,6 +80,9 @@ public abstract class CalciteSchema {
   protected final NameMap<CalciteSchema> subSchemaMap;
   private final LazyReference<Lookup<CalciteSchema>> subSchemas = new LazyReference<>();
   private @Nullable List<? extends List<String>> path;
+  /** Number of modifications to this schema and its descendants; used only
+   * in the root schema. */
+  private final AtomicLong modCount = new AtomicLong();
 
   protected CalciteSchema(@Nullable CalciteSchema parent, Schema schema,
       String name,
@@ -197,6 +202,7 @@ public TableEntry add(String tableName, Table table,
     final TableEntryImpl entry =
         new TableEntryImpl(this, tableName, table, sqls);
     tableMap.put(tableName, entry);
+    changed();
     return entry;
   }
 
@@ -205,6 +211,7 @@ public TypeEntry add(String name, RelProtoDataType type) {
     final TypeEntry entry =
         new TypeEntryImpl(this, name, type);
     typeMap.put(name, entry);
+    changed();
     return entry;
   }
 
@@ -216,6 +223,7 @@ private FunctionEntry add(String name, Function function) {
     if (function.getParameters().isEmpty()) {
       nullaryFunctionMap.put(name, entry);
     }
+    changed();
     return entry;
   }
 
@@ -225,6 +233,7 @@ private LatticeEntry add(String name, Lattice lattice) {
     }
     final LatticeEntryImpl entry = new LatticeEntryImpl(this, name, lattice);
     latticeMap.put(name, entry);
+    changed();
     return entry;
   }
 
@@ -237,6 +246,22 @@ public CalciteSchema root() {
     }
   }
 
+  /** Returns the version of the tree of schemas that contains this schema.
+   *
+   * <p>The version changes whenever an object is explicitly added to or
+   * removed from any schema in the tree, for example by DDL. It does not
+   * change if the contents of an underlying {@link Schema} change. */
+  public SchemaVersion version() {
+    return new LongSchemaVersion(root().modCount.get());
+  }
+
+  /** Records that this schema has been modified, changing the
+   * {@link #version()} of the tree. Sub-classes must call this method after
+   * they add or remove an object. */
+  protected void changed() {
+    root().modCount.incrementAndGet();
+  }
+
   /** Returns whether this is a root schema. */
   public boolean isRoot() {
     return parent == null;
@@ -518,12 +543,12 @@ public static CalciteSchema createRootSchema(boolean addMetadataSchema,
 
   @Experimental
   public boolean removeSubSchema(String name) {
-    return subSchemaMap.remove(name) != null;
+    return removed(subSchemaMap.remove(name) != null);
   }
 
   @Experimental
   public boolean removeTable(String name) {
-    return tableMap.remove(name) != null;
+    return removed(tableMap.remove(name) != null);
   }
 
   @Experimental
@@ -533,12 +558,20 @@ public boolean removeFunction(String name) {
       return false;
     }
     functionMap.remove(name, remove);
+    changed();
     return true;
   }
 
   @Experimental
   public boolean removeType(String name) {
-    return typeMap.remove(name) != null;
+    return removed(typeMap.remove(name) != null);
+  }
+
+  private boolean removed(boolean removed) {
+    if (removed) {
+      changed();
+    }
+    return removed;
   }
 
   /**
@@ -712,6 +745,7 @@ CalciteSchema calciteSchema() {
 
     @Override public void setPath(ImmutableList<ImmutableList<String>> path) {
       CalciteSchema.this.path = path;
+      changed();
     }
 
     @Override public void add(String name, Table table) {
@@ -73,6 +73,7 @@ private SimpleCalciteSchema(@Nullable CalciteSchema parent,
     final CalciteSchema calciteSchema =
         new SimpleCalciteSchema(this, schema, name);
     subSchemaMap.put(name, calciteSchema);
+    changed();
     return calciteSchema;
   }
 
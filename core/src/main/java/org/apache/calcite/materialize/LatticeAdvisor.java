@@ -0,0 +1,530 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.materialize;
+
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.metadata.RelColumnOrigin;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.Planner;
+import org.apache.calcite.tools.RelConversionException;
+import org.apache.calcite.tools.ValidationException;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Recommends tiles (materialized aggregate tables) for a workload of
+ * queries.
+ *
+ * <p>The advisor gives each query to a {@link LatticeSuggester}, and remembers
+ * which columns each aggregate query groups and filters on. Then
+ * {@link #advise(int, double)} considers, for each lattice that the suggester
+ * has proposed, a tile for each distinct set of columns used by the queries.
+ * A query that can be answered from a tile reads the rows of the tile rather
+ * than the rows of the fact table; the rows saved, summed over the workload,
+ * are the tile's benefit, and the rows that the tile stores are its cost. The
+ * advisor chooses tiles greedily, highest benefit per stored row first, until
+ * it reaches the maximum number of tiles or the storage budget.
+ *
+ * <p>The numbers of rows in tiles are estimated by a
+ * {@link LatticeStatisticProvider}. By default, the number of distinct values
+ * of a column is its {@link ColumnStatistic#getDistinctCount()} (for
+ * example, as computed by {@code ANALYZE TABLE}) if known, and otherwise the
+ * number of rows in its table.
+ *
+ * <p>The advisor is thread-safe; a background task may periodically call
+ * {@link #addQueries(WorkloadRecorder)} and {@link #advise(int, double)}.
+ */
+public class LatticeAdvisor {
+  private final FrameworkConfig config;
+  private final LatticeSuggester suggester;
+  private final SqlStatisticProvider statisticProvider;
+  private final LatticeStatisticProvider.Factory latticeStatisticProviderFactory;
+  /** Number of queries added with each profile. Queries that use the same
+   * columns of the same fact table share an entry, so the map grows with the
+   * number of distinct profiles, not with the number of queries. */
+  private final Map<QueryProfile, Integer> profiles = new LinkedHashMap<>();
+
+  /** Creates a LatticeAdvisor that estimates the number of rows in tiles from
+   * the statistics of tables. */
+  public LatticeAdvisor(FrameworkConfig config) {
+    this(config,
+        lattice ->
+            new TableLatticeStatisticProvider(lattice,
+                config.getStatisticProvider()));
+  }
+
+  /** Creates a LatticeAdvisor that estimates the number of rows in tiles
+   * using a given kind of statistic provider. */
+  public LatticeAdvisor(FrameworkConfig config,
+      LatticeStatisticProvider.Factory latticeStatisticProviderFactory) {
+    this.config = requireNonNull(config, "config");
+    this.suggester = new LatticeSuggester(config);
+    this.statisticProvider = config.getStatisticProvider();
+    this.latticeStatisticProviderFactory =
+        requireNonNull(latticeStatisticProviderFactory,
+            "latticeStatisticProviderFactory");
+  }
+
+  /** Adds a query to the workload.
+   *
+   * <p>Queries that the suggester cannot place in a single lattice, and
+   * queries that do not aggregate, do not contribute to the benefit of
+   * tiles. */
+  public synchronized void addQuery(RelNode r) {
+    final List<Lattice> lattices;
+    try {
+      lattices = suggester.addQuery(r);
+    } catch (RuntimeException e) {
+      // The suggester does not handle every query; ignore those it rejects.
+      return;
+    }
+    if (lattices.size() != 1) {
+      // No lattice, or a cartesian product
+      return;
+    }
+    final QueryProfile profile =
+        profile(r, lattices.get(0).rootNode.table.t);
+    if (profile != null) {
+      profiles.merge(profile, 1, Integer::sum);
+    }
+  }
+
+  /** Adds a query, given as SQL text, to the workload.
+   *
+   * <p>The text is parsed, validated and converted to a relational expression
+   * in the schema of this advisor's {@link FrameworkConfig}. Statements that
+   * are not queries, and statements that cannot be converted, are
+   * ignored. */
+  public void addQuery(String sql) {
+    final RelNode r;
+    try (Planner planner = Frameworks.getPlanner(config)) {
+      final SqlNode node = planner.parse(sql);
+      if (!node.getKind().belongsTo(SqlKind.QUERY)) {
+        return;
+      }
+      r = planner.rel(planner.validate(node)).project();
+    } catch (SqlParseException | ValidationException | RelConversionException
+        | RuntimeException e) {
+      return;
+    }
+    addQuery(r);
+  }
+
+  /** Adds the queries that have been recorded by a recorder, and removes
+   * them from the recorder. */
+  public void addQueries(WorkloadRecorder recorder) {
+    recorder.drain().forEach(this::addQuery);
+  }
+
+  /** Returns the lattices that cover the queries seen so far. */
+  public synchronized Set<Lattice> getLatticeSet() {
+    return suggester.getLatticeSet();
+  }
+
+  /** Recommends tiles for the queries seen so far.
+   *
+   * @param maxTileCount Maximum number of tiles
+   * @param maxRowCount Maximum total number of rows in the tiles
+   * @return Recommended tiles, most beneficial first
+   */
+  public synchronized List<Recommendation> advise(int maxTileCount,
+      double maxRowCount) {
+    // Assign each query to the first lattice that can answer it, and group
+    // queries that use the same columns.
+    final List<Group> groups = new ArrayList<>();
+    final Set<QueryProfile> assigned = new LinkedHashSet<>();
+    for (Lattice lattice : suggester.getLatticeSet()) {
+      final List<String> factTable =
+          lattice.rootNode.table.t.getQualifiedName();
+      final double factRowCount =
+          Math.max(1d,
+              statisticProvider.tableCardinality(lattice.rootNode.table.t));
+      final LatticeStatisticProvider latticeStatisticProvider =
+          latticeStatisticProviderFactory.apply(lattice);
+      for (Map.Entry<QueryProfile, Integer> entry : profiles.entrySet()) {
+        final QueryProfile profile = entry.getKey();
+        if (assigned.contains(profile)
+            || !profile.factTable.equals(factTable)) {
+          continue;
+        }
+        final ImmutableBitSet columns = resolve(lattice, profile);
+        if (columns == null) {
+          continue;
+        }
+        assigned.add(profile);
+        Group group = null;
+        for (Group g : groups) {
+          if (g.lattice == lattice && g.columns.equals(columns)) {
+            group = g;
+            break;
+          }
+        }
+        if (group == null) {
+          final double tileRowCount =
+              Math.min(factRowCount,
+                  Math.max(1d,
+                      latticeStatisticProvider.cardinality(
+                          columns(lattice, columns))));
+          group = new Group(lattice, columns, tileRowCount, factRowCount);
+          groups.add(group);
+        }
+        group.queryCount += entry.getValue();
+      }
+    }
+
+    // Choose tiles greedily, by benefit per row stored.
+    final List<Recommendation> recommendations = new ArrayList<>();
+    double remainingRowCount = maxRowCount;
+    while (recommendations.size() < maxTileCount) {
+      Group best = null;
+      double bestBenefit = 0d;
+      double bestScore = 0d;
+      for (Group candidate : groups) {
+        if (candidate.chosen
+            || candidate.tileRowCount > remainingRowCount) {
+          continue;
+        }
+        final double benefit = benefit(groups, candidate);
+        final double score = benefit / candidate.tileRowCount;
+        if (score > bestScore) {
+          best = candidate;
+          bestBenefit = benefit;
+          bestScore = score;
+        }
+      }
+      if (best == null) {
+        break;
+      }
+      best.chosen = true;
+      remainingRowCount -= best.tileRowCount;
+      int queryCount = 0;
+      for (Group g : groups) {
+        if (covers(best, g)) {
+          g.readRowCount = Math.min(g.readRowCount, best.tileRowCount);
+          queryCount += g.queryCount;
+        }
+      }
+      recommendations.add(
+          new Recommendation(best.lattice, best.tile(), best.tileRowCount,
+              bestBenefit, queryCount));
+    }
+    return ImmutableList.copyOf(recommendations);
+  }
+
+  /** Creates the table of a recommended tile, and registers it with the
+   * {@link MaterializationService}.
+   *
+   * @param recommendation Recommended tile
+   * @param schema Schema in which to create the table; the tables of the
+   *               lattice are resolved in its root schema
+   * @return Table and key of the tile, or null if it could not be created
+   */
+  public static @Nullable Pair<CalciteSchema.TableEntry, TileKey> materialize(
+      Recommendation recommendation, CalciteSchema schema) {
+    return MaterializationService.instance()
+        .defineTile(recommendation.lattice, recommendation.tile.bitSet(),
+            recommendation.tile.measures, schema, true, true);
+  }
+
+  /** Returns the number of fact rows, summed over the queries, that a
+   * tile would save. */
+  private static double benefit(List<Group> groups, Group candidate) {
+    double benefit = 0d;
+    for (Group g : groups) {
+      if (covers(candidate, g)) {
+        benefit += g.queryCount
+            * Math.max(0d, g.readRowCount - candidate.tileRowCount);
+      }
+    }
+    return benefit;
+  }
+
+  /** Returns whether the tile of one group can answer the queries of
+   * another. */
+  private static boolean covers(Group tileGroup, Group queryGroup) {
+    return tileGroup.lattice == queryGroup.lattice
+        && tileGroup.columns.contains(queryGroup.columns);
+  }
+
+  private static List<Lattice.Column> columns(Lattice lattice,
+      ImmutableBitSet columns) {
+    return Util.transform(columns.asList(), lattice.columns::get);
+  }
+
+  /** Returns the lattice columns used by a query, or null if the lattice
+   * does not contain them all. */
+  private static @Nullable ImmutableBitSet resolve(Lattice lattice,
+      QueryProfile profile) {
+    final ImmutableBitSet.Builder columns = ImmutableBitSet.builder();
+    for (Pair<List<String>, Integer> column : profile.columns) {
+      final LatticeNode node = findNode(lattice, column.left);
+      if (node == null) {
+        return null;
+      }
+      columns.set(node.startCol + column.right);
+    }
+    return columns.build();
+  }
+
+  private static @Nullable LatticeNode findNode(Lattice lattice,
+      List<String> tableName) {
+    for (LatticeNode node : lattice.rootNode.descendants) {
+      if (node.table.t.getQualifiedName().equals(tableName)) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  /** Returns the profile of a query, or null if it is not an aggregate query
+   * or uses columns that are not base columns. */
+  private static @Nullable QueryProfile profile(RelNode r,
+      RelOptTable factTable) {
+    RelNode rel = r;
+    while (!(rel instanceof Aggregate)) {
+      if (rel instanceof Project
+          || rel instanceof Sort
+          || rel instanceof Filter) {
+        rel = rel.getInput(0);
+      } else {
+        return null;
+      }
+    }
+    final Aggregate aggregate = (Aggregate) rel;
+    final RelMetadataQuery mq = r.getCluster().getMetadataQuery();
+    final Set<Pair<List<String>, Integer>> columns = new LinkedHashSet<>();
+    for (int i : aggregate.getGroupSet()) {
+      if (!addColumn(columns, mq, aggregate.getInput(), i)) {
+        return null;
+      }
+    }
+    if (!addFilterColumns(columns, mq, aggregate.getInput())) {
+      return null;
+    }
+    return new QueryProfile(factTable.getQualifiedName(), columns);
+  }
+
+  /** Adds the columns referenced by the filters in a relational expression
+   * and its inputs, other than those in equi-join conditions. */
+  private static boolean addFilterColumns(
+      Set<Pair<List<String>, Integer>> columns, RelMetadataQuery mq,
+      RelNode rel) {
+    if (rel instanceof Filter) {
+      final Filter filter = (Filter) rel;
+      for (RexNode e : RelOptUtil.conjunctions(filter.getCondition())) {
+        if (isColumnEquality(e)) {
+          continue;
+        }
+        for (int i : RelOptUtil.InputFinder.bits(e)) {
+          if (!addColumn(columns, mq, filter.getInput(), i)) {
+            return false;
+          }
+        }
+      }
+    }
+    for (RelNode input : rel.getInputs()) {
+      if (!addFilterColumns(columns, mq, input)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isColumnEquality(RexNode e) {
+    return e.isA(SqlKind.EQUALS)
+        && ((RexCall) e).operands.stream()
+            .allMatch(operand -> operand instanceof RexInputRef);
+  }
+
+  private static boolean addColumn(Set<Pair<List<String>, Integer>> columns,
+      RelMetadataQuery mq, RelNode rel, int i) {
+    final RelColumnOrigin origin = mq.getColumnOrigin(rel, i);
+    if (origin == null || origin.isDerived()) {
+      return false;
+    }
+    columns.add(
+        Pair.of(origin.getOriginTable().getQualifiedName(),
+            origin.getOriginColumnOrdinal()));
+    return true;
+  }
+
+  /** Tile recommended by {@link #advise(int, double)}. */
+  public static class Recommendation {
+    public final Lattice lattice;
+    public final Lattice.Tile tile;
+    /** Estimated number of rows in the tile. */
+    public final double rowCount;
+    /** Estimated number of rows that the queries in the workload would not
+     * need to read if the tile existed, in addition to the tiles recommended
+     * before it. */
+    public final double benefit;
+    /** Number of queries in the workload that can be answered from the
+     * tile. */
+    public final int queryCount;
+
+    Recommendation(Lattice lattice, Lattice.Tile tile, double rowCount,
+        double benefit, int queryCount) {
+      this.lattice = requireNonNull(lattice, "lattice");
+      this.tile = requireNonNull(tile, "tile");
+      this.rowCount = rowCount;
+      this.benefit = benefit;
+      this.queryCount = queryCount;
+    }
+
+    @Override public String toString() {
+      return "Tile(dimensions: " + tile.dimensions
+          + ", rowCount: " + rowCount
+          + ", benefit: " + benefit
+          + ", queryCount: " + queryCount + ")";
+    }
+  }
+
+  /** Fact table and columns used by a query. */
+  private static class QueryProfile {
+    final List<String> factTable;
+    final ImmutableSet<Pair<List<String>, Integer>> columns;
+
+    QueryProfile(List<String> factTable,
+        Set<Pair<List<String>, Integer>> columns) {
+      this.factTable = ImmutableList.copyOf(factTable);
+      this.columns = ImmutableSet.copyOf(columns);
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(factTable, columns);
+    }
+
+    @Override public boolean equals(@Nullable Object obj) {
+      return obj == this
+          || obj instanceof QueryProfile
+          && factTable.equals(((QueryProfile) obj).factTable)
+          && columns.equals(((QueryProfile) obj).columns);
+    }
+  }
+
+  /** Queries that use the same columns of the same lattice, and the tile
+   * that would answer them. */
+  private static class Group {
+    final Lattice lattice;
+    final ImmutableBitSet columns;
+    final double tileRowCount;
+    /** Number of rows that the queries currently read; initially the
+     * number of rows in the fact table. */
+    double readRowCount;
+    int queryCount;
+    boolean chosen;
+
+    Group(Lattice lattice, ImmutableBitSet columns, double tileRowCount,
+        double readRowCount) {
+      this.lattice = lattice;
+      this.columns = columns;
+      this.tileRowCount = tileRowCount;
+      this.readRowCount = readRowCount;
+    }
+
+    Lattice.Tile tile() {
+      final Lattice.TileBuilder tileBuilder = new Lattice.TileBuilder();
+      lattice.defaultMeasures.forEach(tileBuilder::addMeasure);
+      columns(lattice, columns).forEach(tileBuilder::addDimension);
+      return tileBuilder.build();
+    }
+  }
+
+  /** Implementation of {@link LatticeStatisticProvider} that estimates the
+   * number of distinct values of a column from the statistics of its
+   * table. */
+  private static class TableLatticeStatisticProvider
+      implements LatticeStatisticProvider {
+    private final Lattice lattice;
+    private final SqlStatisticProvider statisticProvider;
+
+    TableLatticeStatisticProvider(Lattice lattice,
+        SqlStatisticProvider statisticProvider) {
+      this.lattice = requireNonNull(lattice, "lattice");
+      this.statisticProvider =
+          requireNonNull(statisticProvider, "statisticProvider");
+    }
+
+    @Override public double cardinality(List<Lattice.Column> columns) {
+      final List<Double> counts = new ArrayList<>();
+      for (Lattice.Column column : columns) {
+        counts.add(cardinality(column));
+      }
+      return Lattice.getRowCount(
+          statisticProvider.tableCardinality(lattice.rootNode.table.t),
+          counts);
+    }
+
+    private double cardinality(Lattice.Column column) {
+      for (LatticeNode node : lattice.rootNode.descendants) {
+        if (column instanceof Lattice.BaseColumn
+            && column.ordinal >= node.startCol
+            && column.ordinal < node.endCol) {
+          final RelOptTable t = node.table.t;
+          final int i = column.ordinal - node.startCol;
+          final Table table = t.unwrap(Table.class);
+          final ColumnStatistic columnStatistic =
+              table == null ? null : table.getStatistic().getColumnStatistic(i);
+          if (columnStatistic != null) {
+            final Double distinctCount = columnStatistic.getDistinctCount();
+            final Double nullCount = columnStatistic.getNullCount();
+            if (distinctCount != null) {
+              return distinctCount
+                  + (nullCount != null && nullCount > 0d ? 1d : 0d);
+            }
+          }
+          return statisticProvider.tableCardinality(t);
+        }
+      }
+      // A derived column may have as many values as the fact table has rows
+      return statisticProvider.tableCardinality(lattice.rootNode.table.t);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.materialize;
+
+import org.apache.calcite.config.CalciteSystemProperty;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Collects the queries that are prepared, so that a {@link LatticeAdvisor}
+ * can recommend lattices and tiles for the workload.
+ *
+ * <p>Each statement is recorded as its SQL text, each time it is prepared or
+ * found in the plan cache; the {@link LatticeAdvisor} that reads the recorder
+ * converts the text to relational expressions, and ignores statements that
+ * are not queries. Statements that populate materializations are not
+ * recorded.
+ *
+ * <p>The recorder holds at most a given number of queries; if queries are not
+ * read (by {@link #drain()}) quickly enough, the oldest are discarded.
+ *
+ * <p>The recorder is thread-safe.
+ *
+ * @see CalciteSystemProperty#WORKLOAD_RECORDER_MAX_SIZE
+ */
+public class WorkloadRecorder {
+  /** The recorder used when preparing statements, or null if queries are not
+   * recorded. */
+  public static final @Nullable WorkloadRecorder INSTANCE =
+      CalciteSystemProperty.WORKLOAD_RECORDER_MAX_SIZE.value() > 0
+          ? new WorkloadRecorder(
+              CalciteSystemProperty.WORKLOAD_RECORDER_MAX_SIZE.value())
+          : null;
+
+  private final int maxSize;
+  private final Deque<String> queries = new ArrayDeque<>();
+  private long discardedCount;
+
+  /** Creates a WorkloadRecorder that holds at most {@code maxSize}
+   * queries. */
+  public WorkloadRecorder(int maxSize) {
+    checkArgument(maxSize > 0, "maxSize must be positive");
+    this.maxSize = maxSize;
+  }
+
+  /** Records the SQL text of a query. */
+  public synchronized void record(String sql) {
+    if (queries.size() == maxSize) {
+      queries.removeFirst();
+      ++discardedCount;
+    }
+    queries.addLast(sql);
+  }
+
+  /** Returns the recorded queries, oldest first, and removes them from this
+   * recorder. */
+  public synchronized List<String> drain() {
+    final List<String> list = ImmutableList.copyOf(queries);
+    queries.clear();
+    return list;
+  }
+
+  /** Returns the number of queries that have been recorded but not yet
+   * read. */
+  public synchronized int size() {
+    return queries.size();
+  }
+
+  /** Returns the number of queries that were discarded, because the recorder
+   * was full, before they were read. */
+  public synchronized long discardedCount() {
+    return discardedCount;
+  }
+}
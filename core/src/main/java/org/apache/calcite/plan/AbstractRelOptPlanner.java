@@ -345,6 +345,18 @@ public Map<String, Pair<Long, Long>> getRuleAttemptsInfo() {
     return this.ruleAttemptsListener.getRuleAttempts();
   }
 
+  /**
+   * Takes care of listener notification when the operands of a rule match.
+   *
+   * @param ruleCall description of rule call
+   */
+  protected void notifyRuleMatched(RelOptRuleCall ruleCall) {
+    if (listener != null) {
+      listener.ruleMatched(
+          new RelOptListener.RuleMatchedEvent(this, ruleCall.rel(0), ruleCall));
+    }
+  }
+
   /**
    * Fires a rule, taking care of tracing and listener notification.
    *
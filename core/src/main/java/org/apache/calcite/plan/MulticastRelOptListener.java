@@ -82,4 +82,11 @@ public void addListener(RelOptListener listener) {
       listener.relDiscarded(event);
     }
   }
+
+  // implement RelOptListener
+  @Override public void ruleMatched(RuleMatchedEvent event) {
+    for (RelOptListener listener : listeners) {
+      listener.ruleMatched(event);
+    }
+  }
 }
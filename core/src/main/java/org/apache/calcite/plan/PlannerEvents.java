@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan;
+
+import org.apache.calcite.util.Util;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * JDK Flight Recorder events emitted by {@link PlannerProfiler}.
+ *
+ * <p>Calcite is compiled for Java 8, whose class library does not always
+ * contain {@code jdk.jfr}, so this class does not refer to {@code jdk.jfr}
+ * classes directly; it creates the event types reflectively, using
+ * {@code jdk.jfr.EventFactory}. If the JVM does not support JDK Flight
+ * Recorder, or no recording has enabled an event type, the methods that
+ * begin events of that type return null without creating an event.
+ */
+final class PlannerEvents {
+  private static final String[] CATEGORY = {"Apache Calcite", "Planner"};
+
+  /** Event recorded when a planner fires a rule. */
+  private static final @Nullable EventType RULE_FIRED =
+      EventType.create("org.apache.calcite.RuleFired", "Rule Fired",
+          "A planner rule fired", true,
+          ImmutableList.of(new Attribute("rule", "Rule", String.class),
+              new Attribute("planner", "Planner", String.class),
+              new Attribute("producedRelCount", "Produced Rels", int.class)));
+
+  /** Event recorded when a metadata handler is called. It is disabled by
+   * default, because there are many. */
+  private static final @Nullable EventType METADATA_CALL =
+      EventType.create("org.apache.calcite.MetadataCall", "Metadata Call",
+          "A metadata handler was called; duration includes nested calls",
+          false,
+          ImmutableList.of(new Attribute("metadata", "Metadata", String.class),
+              new Attribute("method", "Method", String.class)));
+
+  private PlannerEvents() {
+  }
+
+  /** Creates and begins an event for a rule firing, or returns null if the
+   * event is not enabled. */
+  static @Nullable Object beginRuleFired() {
+    return RULE_FIRED == null ? null : RULE_FIRED.begin();
+  }
+
+  /** Ends and commits an event created by {@link #beginRuleFired()}. */
+  static void commitRuleFired(Object event, String rule, String planner,
+      int producedRelCount) {
+    requireNonNull(RULE_FIRED, "RULE_FIRED")
+        .commit(event, rule, planner, producedRelCount);
+  }
+
+  /** Creates and begins an event for a metadata call, or returns null if the
+   * event is not enabled. */
+  static @Nullable Object beginMetadataCall() {
+    return METADATA_CALL == null ? null : METADATA_CALL.begin();
+  }
+
+  /** Ends and commits an event created by {@link #beginMetadataCall()}. */
+  static void commitMetadataCall(Object event, String metadata,
+      String method) {
+    requireNonNull(METADATA_CALL, "METADATA_CALL")
+        .commit(event, metadata, method);
+  }
+
+  /** Field of an event type. */
+  private static class Attribute {
+    final String name;
+    final String label;
+    final Class<?> type;
+
+    Attribute(String name, String label, Class<?> type) {
+      this.name = name;
+      this.label = label;
+      this.type = type;
+    }
+  }
+
+  /** Event type created by {@code jdk.jfr.EventFactory}, and handles to the
+   * methods of {@code jdk.jfr.Event} that begin and commit its events. */
+  private static class EventType {
+    private final Object factory;
+    /** Handle to {@code jdk.jfr.EventType.isEnabled()}, bound to this event
+     * type. */
+    private final MethodHandle isEnabled;
+    private final MethodHandle newEvent;
+    private final MethodHandle begin;
+    private final MethodHandle end;
+    private final MethodHandle shouldCommit;
+    private final MethodHandle set;
+    private final MethodHandle commit;
+
+    private EventType(Object factory, MethodHandle isEnabled,
+        MethodHandle newEvent, MethodHandle begin, MethodHandle end,
+        MethodHandle shouldCommit, MethodHandle set, MethodHandle commit) {
+      this.factory = factory;
+      this.isEnabled = isEnabled;
+      this.newEvent = newEvent;
+      this.begin = begin;
+      this.end = end;
+      this.shouldCommit = shouldCommit;
+      this.set = set;
+      this.commit = commit;
+    }
+
+    /** Creates an event type, or returns null if the JVM does not support
+     * JDK Flight Recorder. */
+    static @Nullable EventType create(String name, String label,
+        String description, boolean enabled, List<Attribute> attributes) {
+      try {
+        final Constructor<?> annotation =
+            jfrClass("AnnotationElement")
+                .getConstructor(Class.class, Object.class);
+        final List<Object> annotations = new ArrayList<>();
+        annotations.add(annotation.newInstance(jfrClass("Name"), name));
+        annotations.add(annotation.newInstance(jfrClass("Label"), label));
+        annotations.add(
+            annotation.newInstance(jfrClass("Category"), CATEGORY.clone()));
+        annotations.add(
+            annotation.newInstance(jfrClass("Description"), description));
+        annotations.add(annotation.newInstance(jfrClass("Enabled"), enabled));
+        final Constructor<?> valueDescriptor =
+            jfrClass("ValueDescriptor")
+                .getConstructor(Class.class, String.class, List.class);
+        final List<Object> fields = new ArrayList<>();
+        for (Attribute attribute : attributes) {
+          fields.add(
+              valueDescriptor.newInstance(attribute.type, attribute.name,
+                  ImmutableList.of(
+                      annotation.newInstance(jfrClass("Label"),
+                          attribute.label))));
+        }
+        final Class<?> factoryClass = jfrClass("EventFactory");
+        final Object factory =
+            requireNonNull(
+                factoryClass.getMethod("create", List.class, List.class)
+                    .invoke(null, annotations, fields),
+                "factory");
+        final Class<?> eventClass = jfrClass("Event");
+        final Class<?> eventTypeClass = jfrClass("EventType");
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        final Object eventType =
+            requireNonNull(
+                factoryClass.getMethod("getEventType").invoke(factory),
+                "eventType");
+        return new EventType(factory,
+            lookup.findVirtual(eventTypeClass, "isEnabled",
+                methodType(boolean.class)).bindTo(eventType),
+            lookup.findVirtual(factoryClass, "newEvent",
+                methodType(eventClass)),
+            lookup.findVirtual(eventClass, "begin", methodType(void.class)),
+            lookup.findVirtual(eventClass, "end", methodType(void.class)),
+            lookup.findVirtual(eventClass, "shouldCommit",
+                methodType(boolean.class)),
+            lookup.findVirtual(eventClass, "set",
+                methodType(void.class, int.class, Object.class)),
+            lookup.findVirtual(eventClass, "commit", methodType(void.class)));
+      } catch (ReflectiveOperationException | LinkageError
+          | RuntimeException e) {
+        return null;
+      }
+    }
+
+    private static Class<?> jfrClass(String name)
+        throws ClassNotFoundException {
+      return Class.forName("jdk.jfr." + name);
+    }
+
+    /** Creates and begins an event, or returns null if no recording has
+     * enabled this event type. */
+    @Nullable Object begin() {
+      try {
+        if (!(boolean) isEnabled.invoke()) {
+          return null;
+        }
+        final Object event = newEvent.invoke(factory);
+        begin.invoke(event);
+        return event;
+      } catch (Throwable e) {
+        throw Util.throwAsRuntime(e);
+      }
+    }
+
+    /** Ends an event created by {@link #begin()}, and if it is enabled,
+     * sets its fields and commits it. */
+    void commit(Object event, Object... values) {
+      try {
+        end.invoke(event);
+        if ((boolean) shouldCommit.invoke(event)) {
+          for (int i = 0; i < values.length; i++) {
+            set.invoke(event, i, values[i]);
+          }
+          commit.invoke(event);
+        }
+      } catch (Throwable e) {
+        throw Util.throwAsRuntime(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan;
+
+import org.apache.calcite.rel.metadata.JaninoRelMetadataProvider;
+import org.apache.calcite.rel.metadata.MetadataHandler;
+import org.apache.calcite.rel.metadata.MetadataHandlerProvider;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Listener that records, for each planner rule, how many times its operands
+ * matched, how many times it fired, how long it spent in
+ * {@link RelOptRule#onMatch(RelOptRuleCall)}, and how many relational
+ * expressions it produced; and, for each kind of metadata, how many calls
+ * were made to its handler and how long they took.
+ *
+ * <p>Add it to a planner using {@link RelOptPlanner#addListener}; to profile
+ * metadata too, call {@link #profileMetadata(RelOptCluster)}. Call
+ * {@link #snapshot()} at any time to read the figures so far.
+ *
+ * <p>If the JVM supports JDK Flight Recorder, each rule firing is also
+ * recorded as an {@code org.apache.calcite.RuleFired} event, and each
+ * metadata call as an {@code org.apache.calcite.MetadataCall} event (which
+ * is disabled by default, because there are many).
+ *
+ * <p>For {@link org.apache.calcite.plan.volcano.VolcanoPlanner}, note that
+ * a listener causes rule matches to be fired one at a time.
+ */
+public class PlannerProfiler implements RelOptListener {
+  private final Map<String, RuleCounters> rules = new ConcurrentHashMap<>();
+  private final Map<String, MetadataCounters> metadata =
+      new ConcurrentHashMap<>();
+
+  /** The rule firing in progress on each thread. Rules do not fire other
+   * rules, so there is at most one. */
+  private final ThreadLocal<@Nullable Firing> firings = new ThreadLocal<>();
+
+  /** Metadata calls in progress on each thread; each element accumulates the
+   * time spent in calls nested inside it. */
+  private final ThreadLocal<Deque<long[]>> metadataCalls =
+      ThreadLocal.withInitial(ArrayDeque::new);
+
+  /** Creates a PlannerProfiler. */
+  public PlannerProfiler() {
+  }
+
+  /** Returns the figures recorded so far. */
+  public Snapshot snapshot() {
+    final ImmutableMap.Builder<String, RuleProfile> ruleProfiles =
+        ImmutableMap.builder();
+    new TreeMap<>(rules).forEach((name, c) ->
+        ruleProfiles.put(name,
+            new RuleProfile(c.matchCount.get(), c.fireCount.get(),
+                c.fireNanos.get(), c.producedRelCount.get())));
+    final ImmutableMap.Builder<String, MetadataProfile> metadataProfiles =
+        ImmutableMap.builder();
+    new TreeMap<>(metadata).forEach((name, c) ->
+        metadataProfiles.put(name,
+            new MetadataProfile(c.callCount.get(), c.nanos.get())));
+    return new Snapshot(ruleProfiles.build(), metadataProfiles.build());
+  }
+
+  /** Discards the figures recorded so far. */
+  public void reset() {
+    rules.clear();
+    metadata.clear();
+  }
+
+  private RuleCounters rule(RuleEvent event) {
+    return rules.computeIfAbsent(event.getRuleCall().getRule().toString(),
+        k -> new RuleCounters());
+  }
+
+  // implement RelOptListener
+  @Override public void relEquivalenceFound(RelEquivalenceEvent event) {
+  }
+
+  // implement RelOptListener
+  @Override public void ruleMatched(RuleMatchedEvent event) {
+    rule(event).matchCount.incrementAndGet();
+  }
+
+  // implement RelOptListener
+  @Override public void ruleAttempted(RuleAttemptedEvent event) {
+    if (event.isBefore()) {
+      firings.set(new Firing(rule(event), PlannerEvents.beginRuleFired()));
+      return;
+    }
+    final Firing firing = firings.get();
+    if (firing == null) {
+      return;
+    }
+    firings.remove();
+    final long nanos = System.nanoTime() - firing.startNanos;
+    firing.counters.fireCount.incrementAndGet();
+    firing.counters.fireNanos.addAndGet(nanos);
+    if (firing.event != null) {
+      PlannerEvents.commitRuleFired(firing.event,
+          event.getRuleCall().getRule().toString(),
+          event.getRuleCall().getPlanner().getClass().getSimpleName(),
+          firing.producedRelCount);
+    }
+  }
+
+  // implement RelOptListener
+  @Override public void ruleProductionSucceeded(RuleProductionEvent event) {
+    if (event.isBefore()) {
+      rule(event).producedRelCount.incrementAndGet();
+      final Firing firing = firings.get();
+      if (firing != null) {
+        ++firing.producedRelCount;
+      }
+    }
+  }
+
+  // implement RelOptListener
+  @Override public void relDiscarded(RelDiscardedEvent event) {
+  }
+
+  // implement RelOptListener
+  @Override public void relChosen(RelChosenEvent event) {
+  }
+
+  /** Makes the metadata queries created by a cluster from now on record
+   * the calls made to each metadata handler. */
+  public void profileMetadata(RelOptCluster cluster) {
+    final MetadataHandlerProvider provider =
+        wrap(
+            JaninoRelMetadataProvider.of(
+                requireNonNull(cluster.getMetadataProvider(),
+                    "metadataProvider")));
+    cluster.setMetadataQuerySupplier(() -> new RelMetadataQuery(provider));
+    cluster.invalidateMetadataQuery();
+  }
+
+  /** Returns a provider of metadata handlers that record their calls in this
+   * profiler, and otherwise behave like those of a given provider. */
+  public MetadataHandlerProvider wrap(MetadataHandlerProvider provider) {
+    return new MetadataHandlerProvider() {
+      @Override public <MH extends MetadataHandler<?>> MH handler(
+          Class<MH> handlerClass) {
+        return profiled(handlerClass, provider.handler(handlerClass));
+      }
+
+      @Override public <MH extends MetadataHandler<?>> MH revise(
+          Class<MH> handlerClass) {
+        return profiled(handlerClass, provider.revise(handlerClass));
+      }
+    };
+  }
+
+  /** Wraps a metadata handler so that each call records its count and the
+   * time spent in it, excluding time spent in nested metadata calls. */
+  private <MH extends MetadataHandler<?>> MH profiled(Class<MH> handlerClass,
+      MH handler) {
+    final Class<?> enclosingClass = handlerClass.getEnclosingClass();
+    final String name = enclosingClass != null
+        ? enclosingClass.getSimpleName()
+        : handlerClass.getSimpleName();
+    final MetadataCounters counters =
+        metadata.computeIfAbsent(name, k -> new MetadataCounters());
+    return handlerClass.cast(
+        Proxy.newProxyInstance(handlerClass.getClassLoader(),
+            new Class[] {handlerClass}, (proxy, method, args) -> {
+              if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(handler, args);
+              }
+              final Deque<long[]> stack = metadataCalls.get();
+              final long[] nestedNanos = {0L};
+              stack.push(nestedNanos);
+              final Object event = PlannerEvents.beginMetadataCall();
+              final long start = System.nanoTime();
+              try {
+                return method.invoke(handler, args);
+              } catch (InvocationTargetException e) {
+                throw requireNonNull(e.getCause(), "cause");
+              } finally {
+                final long nanos = System.nanoTime() - start;
+                stack.pop();
+                final long[] parent = stack.peek();
+                if (parent != null) {
+                  parent[0] += nanos;
+                }
+                counters.callCount.incrementAndGet();
+                counters.nanos.addAndGet(nanos - nestedNanos[0]);
+                if (event != null) {
+                  PlannerEvents.commitMetadataCall(event, name,
+                      method.getName());
+                }
+              }
+            }));
+  }
+
+  /** Rule firing in progress. */
+  private static class Firing {
+    final RuleCounters counters;
+    final @Nullable Object event;
+    final long startNanos = System.nanoTime();
+    int producedRelCount;
+
+    Firing(RuleCounters counters, @Nullable Object event) {
+      this.counters = counters;
+      this.event = event;
+    }
+  }
+
+  /** Running totals for a rule. */
+  private static class RuleCounters {
+    final AtomicLong matchCount = new AtomicLong();
+    final AtomicLong fireCount = new AtomicLong();
+    final AtomicLong fireNanos = new AtomicLong();
+    final AtomicLong producedRelCount = new AtomicLong();
+  }
+
+  /** Running totals for a kind of metadata. */
+  private static class MetadataCounters {
+    final AtomicLong callCount = new AtomicLong();
+    final AtomicLong nanos = new AtomicLong();
+  }
+
+  /** Figures recorded by a {@link PlannerProfiler}, sorted by name. */
+  public static class Snapshot {
+    /** Profile of each rule, keyed by rule description. */
+    public final ImmutableMap<String, RuleProfile> rules;
+    /** Profile of each kind of metadata, keyed by name, such as
+     * "RowCount". */
+    public final ImmutableMap<String, MetadataProfile> metadata;
+
+    Snapshot(ImmutableMap<String, RuleProfile> rules,
+        ImmutableMap<String, MetadataProfile> metadata) {
+      this.rules = rules;
+      this.metadata = metadata;
+    }
+
+    @Override public String toString() {
+      return "rules=" + rules + ", metadata=" + metadata;
+    }
+  }
+
+  /** What a rule has done. */
+  public static class RuleProfile {
+    /** Number of times the rule's operands matched. */
+    public final long matchCount;
+    /** Number of times the rule fired. */
+    public final long fireCount;
+    /** Nanoseconds spent firing the rule, including registering what it
+     * produced. */
+    public final long fireNanos;
+    /** Number of relational expressions that the rule produced. */
+    public final long producedRelCount;
+
+    RuleProfile(long matchCount, long fireCount, long fireNanos,
+        long producedRelCount) {
+      this.matchCount = matchCount;
+      this.fireCount = fireCount;
+      this.fireNanos = fireNanos;
+      this.producedRelCount = producedRelCount;
+    }
+
+    @Override public String toString() {
+      return "{matches=" + matchCount + ", fires=" + fireCount
+          + ", nanos=" + fireNanos + ", produced=" + producedRelCount + "}";
+    }
+  }
+
+  /** What the handler of a kind of metadata has done. */
+  public static class MetadataProfile {
+    /** Number of calls to the handler. */
+    public final long callCount;
+    /** Nanoseconds spent in the handler, not including nested calls to
+     * other metadata handlers. */
+    public final long nanos;
+
+    MetadataProfile(long callCount, long nanos) {
+      this.callCount = callCount;
+      this.nanos = nanos;
+    }
+
+    @Override public String toString() {
+      return "{calls=" + callCount + ", nanos=" + nanos + "}";
+    }
+  }
+}
@@ -62,6 +62,7 @@ public class RelOptCluster {
   private final RelTraitSet emptyTraitSet;
   private @Nullable RelMetadataQuery mq;
   private Supplier<RelMetadataQuery> mqSupplier;
+  private volatile @Nullable ThreadLocal<@Nullable RelMetadataQuery> threadMqs;
 
   //~ Constructors -----------------------------------------------------------
 
@@ -195,6 +196,13 @@ public void setMetadataQuerySupplier(
    * for example if you are in a {@link RelOptRule#onMatch(RelOptRuleCall)}
    * method, then use {@link RelOptRuleCall#getMetadataQuery()} instead. */
   public RelMetadataQuery getMetadataQuery() {
+    final ThreadLocal<@Nullable RelMetadataQuery> threadMqs = this.threadMqs;
+    if (threadMqs != null) {
+      final RelMetadataQuery threadMq = threadMqs.get();
+      if (threadMq != null) {
+        return threadMq;
+      }
+    }
     if (mq == null) {
       mq = castNonNull(mqSupplier).get();
     }
@@ -216,6 +224,22 @@ public void invalidateMetadataQuery() {
     mq = null;
   }
 
+  /**
+   * Sets, or clears, a per-thread override for
+   * {@link #getMetadataQuery()}.
+   *
+   * <p>While {@code threadMqs} is not null, a thread that has set a value in
+   * it gets that RelMetadataQuery, and other threads get the usual one.
+   * A RelMetadataQuery is not thread-safe, so a planner that fires rules on
+   * several threads at once gives each thread its own.
+   *
+   * <p>Note that this method is only for internal use.
+   */
+  public void setThreadMetadataQueries(
+      @Nullable ThreadLocal<@Nullable RelMetadataQuery> threadMqs) {
+    this.threadMqs = threadMqs;
+  }
+
   /**
    * Sets up the hint propagation strategies to be used during rule planning.
    *
@@ -81,6 +81,20 @@ public interface RelOptListener extends EventListener {
    */
   void relChosen(RelChosenEvent event);
 
+  /**
+   * Notifies this listener that the operands of an optimizer rule have
+   * matched a particular set of relational expressions. The planner may fire
+   * the rule later, or never; if it does, {@link #ruleAttempted} will be
+   * called. Note that the rel attribute of the event is the expression
+   * matched by the rule's root operand.
+   *
+   * <p>The default implementation does nothing.
+   *
+   * @param event details about the event
+   */
+  default void ruleMatched(RuleMatchedEvent event) {
+  }
+
   //~ Inner Classes ----------------------------------------------------------
 
   /**
@@ -156,6 +170,16 @@ public RelOptRuleCall getRuleCall() {
     }
   }
 
+  /** Event indicating that the operands of a planner rule have matched. */
+  class RuleMatchedEvent extends RuleEvent {
+    public RuleMatchedEvent(
+        Object eventSource,
+        RelNode rel,
+        RelOptRuleCall ruleCall) {
+      super(eventSource, rel, ruleCall);
+    }
+  }
+
   /** Event indicating that a planner rule has been attempted. */
   class RuleAttemptedEvent extends RuleEvent {
     private final boolean before;
@@ -28,9 +28,9 @@
 
 import java.util.AbstractList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
@@ -768,9 +768,12 @@ public RelTraitSet simplify() {
     return x;
   }
 
-  /** Cache of trait sets. */
+  /** Cache of trait sets.
+   *
+   * <p>It is thread-safe, because rules that a planner fires concurrently
+   * create trait sets. */
   private static class Cache {
-    final Map<RelTraitSet, RelTraitSet> map = new HashMap<>();
+    final Map<RelTraitSet, RelTraitSet> map = new ConcurrentHashMap<>();
 
     Cache() {
     }
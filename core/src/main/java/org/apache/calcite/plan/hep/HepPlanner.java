@@ -150,6 +150,14 @@ public class HepPlanner extends AbstractRelOptPlanner {
    */
   private boolean largePlanMode = false;
 
+  /** Whether, in large plan mode, rules are applied by draining a worklist
+   * of vertices affected by earlier transformations; see
+   * {@link #setWorklistMode(boolean)}. */
+  private boolean worklistMode = false;
+
+  /** Vertices created by {@link #addRelToGraph} during the current rule
+   * application, or null if they are not being collected. */
+  private @Nullable List<HepRelVertex> addedVertices;
 
   //~ Constructors -----------------------------------------------------------
 
@@ -273,6 +281,31 @@ public void setLargePlanMode(final boolean largePlanMode) {
     this.largePlanMode = largePlanMode;
   }
 
+  public boolean isWorklistMode() {
+    return worklistMode;
+  }
+
+  /**
+   * Enables or disables worklist mode.
+   *
+   * <p>If enabled, and the planner is in large plan mode with match order
+   * {@link HepMatchOrder#ARBITRARY} or {@link HepMatchOrder#DEPTH_FIRST},
+   * each vertex is visited once, and after a transformation only the new
+   * vertices and their ancestors (as far up as the deepest rule operand can
+   * reach) are visited again, rather than the graph being iterated until a
+   * full pass makes no change.
+   *
+   * <p>This assumes that whether a rule matches a vertex depends only on the
+   * relational expressions covered by the rule's operands. Rules that look
+   * further, such as {@link CommonRelSubExprRule}, which counts a vertex's
+   * parents, may miss matches in this mode.
+   *
+   * @param enable true to enable; false is default value.
+   */
+  public void setWorklistMode(boolean enable) {
+    worklistMode = enable;
+  }
+
   @Override public RelNode changeTraits(RelNode rel, RelTraitSet toTraits) {
     // Ignore traits, except for the root, where we remember
     // what the final conversion should be.
@@ -475,10 +508,11 @@ void executeEndGroup(HepInstruction.EndGroup instruction,
 
   private int depthFirstApply(HepProgram.State programState,
       Iterator<HepRelVertex> iter, Collection<RelOptRule> rules,
+      Map<Class<? extends RelNode>, List<RelOptRule>> ruleIndex,
       boolean forceConversions, int nMatches) {
     while (iter.hasNext()) {
       HepRelVertex vertex = iter.next();
-      for (RelOptRule rule : rules) {
+      for (RelOptRule rule : candidateRules(ruleIndex, rules, vertex)) {
         HepRelVertex newVertex =
             applyRule(rule, vertex, forceConversions);
         if (newVertex == null || newVertex == vertex) {
@@ -494,8 +528,8 @@ private int depthFirstApply(HepProgram.State programState,
         Iterator<HepRelVertex> depthIter =
             getGraphIterator(programState, newVertex);
         nMatches =
-            depthFirstApply(programState, depthIter, rules, forceConversions,
-                nMatches);
+            depthFirstApply(programState, depthIter, rules, ruleIndex,
+                forceConversions, nMatches);
         break;
       }
     }
@@ -520,6 +554,15 @@ private void applyRules(HepProgram.State programState,
     final boolean useHepVertexIterator = (programState.matchOrder == HepMatchOrder.ARBITRARY
         || programState.matchOrder == HepMatchOrder.DEPTH_FIRST) && isLargePlanMode();
 
+    // Rules whose root operand can match each class of RelNode; a vertex
+    // need only be offered those rules.
+    final Map<Class<? extends RelNode>, List<RelOptRule>> ruleIndex =
+        new HashMap<>();
+    if (useHepVertexIterator && worklistMode) {
+      applyRulesFromWorklist(programState, rules, ruleIndex, forceConversions);
+      return;
+    }
+
     int nMatches = 0;
 
     boolean fixedPoint;
@@ -534,7 +577,7 @@ private void applyRules(HepProgram.State programState,
       fixedPoint = true;
       while (iter.hasNext()) {
         HepRelVertex vertex = iter.next();
-        for (RelOptRule rule : rules) {
+        for (RelOptRule rule : candidateRules(ruleIndex, rules, vertex)) {
           HepRelVertex newVertex =
               applyRule(rule, vertex, forceConversions);
           if (newVertex == null || newVertex == vertex) {
@@ -567,7 +610,8 @@ private void applyRules(HepProgram.State programState,
             }
             if (programState.matchOrder == HepMatchOrder.DEPTH_FIRST) {
               nMatches =
-                  depthFirstApply(programState, iter, rules, forceConversions, nMatches);
+                  depthFirstApply(programState, iter, rules, ruleIndex,
+                      forceConversions, nMatches);
               if (nMatches >= programState.matchLimit) {
                 return;
               }
@@ -582,6 +626,117 @@ private void applyRules(HepProgram.State programState,
     } while (!fixedPoint);
   }
 
+  /** Applies rules to vertices taken from a worklist, until the worklist is
+   * empty or the match limit is reached.
+   *
+   * <p>The worklist initially contains every vertex reachable from the root.
+   * After a transformation, the vertices it created and their ancestors, up
+   * to the depth of the deepest operand tree among the rules, are put back
+   * at the front of the worklist; no other vertex can have started to match
+   * a rule. */
+  private void applyRulesFromWorklist(HepProgram.State programState,
+      Collection<RelOptRule> rules,
+      Map<Class<? extends RelNode>, List<RelOptRule>> ruleIndex,
+      boolean forceConversions) {
+    int ancestorDepth = 0;
+    for (RelOptRule rule : rules) {
+      ancestorDepth = Math.max(ancestorDepth, operandDepth(rule.getOperand()) - 1);
+    }
+
+    final Deque<HepRelVertex> worklist = new ArrayDeque<>();
+    final Set<HepRelVertex> queued = new HashSet<>();
+    final Iterator<HepRelVertex> iter =
+        HepVertexIterator.of(requireNonNull(root, "root"), new HashSet<>()).iterator();
+    while (iter.hasNext()) {
+      HepRelVertex vertex = iter.next();
+      if (queued.add(vertex)) {
+        worklist.add(vertex);
+      }
+    }
+
+    final List<HepRelVertex> added = new ArrayList<>();
+    addedVertices = added;
+    try {
+      int nMatches = 0;
+      while (!worklist.isEmpty()) {
+        final HepRelVertex vertex = worklist.remove();
+        queued.remove(vertex);
+        for (RelOptRule rule : candidateRules(ruleIndex, rules, vertex)) {
+          added.clear();
+          HepRelVertex newVertex =
+              applyRule(rule, vertex, forceConversions);
+          if (newVertex == null || newVertex == vertex) {
+            continue;
+          }
+          ++nMatches;
+          if (nMatches >= programState.matchLimit) {
+            return;
+          }
+          final List<HepRelVertex> affected = new ArrayList<>();
+          affected.add(newVertex);
+          affected.addAll(added);
+          addAncestors(newVertex, ancestorDepth, affected);
+          for (int i = affected.size() - 1; i >= 0; i--) {
+            HepRelVertex v = affected.get(i);
+            if (graph.vertexSet().contains(v) && queued.add(v)) {
+              worklist.addFirst(v);
+            }
+          }
+          break;
+        }
+      }
+    } finally {
+      addedVertices = null;
+    }
+  }
+
+  /** Adds to a list the ancestors of a vertex that are at most a given
+   * number of edges above it. */
+  private void addAncestors(HepRelVertex vertex, int depth,
+      List<HepRelVertex> list) {
+    final Set<HepRelVertex> seen = new HashSet<>();
+    List<HepRelVertex> level = ImmutableList.of(vertex);
+    for (int i = 0; i < depth && !level.isEmpty(); i++) {
+      final List<HepRelVertex> nextLevel = new ArrayList<>();
+      for (HepRelVertex v : level) {
+        for (HepRelVertex parent : Graphs.predecessorListOf(graph, v)) {
+          if (seen.add(parent)) {
+            nextLevel.add(parent);
+          }
+        }
+      }
+      list.addAll(nextLevel);
+      level = nextLevel;
+    }
+  }
+
+  /** Returns the number of levels in an operand tree. */
+  private static int operandDepth(RelOptRuleOperand operand) {
+    int depth = 0;
+    for (RelOptRuleOperand child : operand.getChildOperands()) {
+      depth = Math.max(depth, operandDepth(child));
+    }
+    return depth + 1;
+  }
+
+  /** Returns the rules, in their original order, whose root operand can
+   * match the current relational expression of a vertex. The result for each
+   * class of relational expression is computed once and kept in
+   * {@code ruleIndex}. */
+  private static List<RelOptRule> candidateRules(
+      Map<Class<? extends RelNode>, List<RelOptRule>> ruleIndex,
+      Collection<RelOptRule> rules, HepRelVertex vertex) {
+    return ruleIndex.computeIfAbsent(vertex.getCurrentRel().getClass(), c -> {
+      final List<RelOptRule> list = new ArrayList<>();
+      for (RelOptRule rule : rules) {
+        if (rule.getOperand().getMatchedClass().isAssignableFrom(c)) {
+          list.add(rule);
+        }
+      }
+      return list;
+    });
+  }
+
   private Iterator<HepRelVertex> getGraphIterator(
       HepProgram.State programState, HepRelVertex start) {
     switch (requireNonNull(programState.matchOrder, "programState.matchOrder")) {
@@ -673,6 +828,7 @@ private Iterator<HepRelVertex> getGraphIterator(
             bindings.toArray(new RelNode[0]),
             nodeChildren,
             parents);
+    notifyRuleMatched(call);
 
     // Allow the rule to apply its own side-conditions.
     if (!rule.matches(call)) {
@@ -981,6 +1137,9 @@ private HepRelVertex addRelToGraph(
     HepRelVertex newVertex = new HepRelVertex(rel);
     graph.addVertex(newVertex);
     updateVertex(newVertex, rel);
+    if (addedVertices != null) {
+      addedVertices.add(newVertex);
+    }
 
     for (RelNode input : rel.getInputs()) {
       graph.addEdge(newVertex, (HepRelVertex) input);
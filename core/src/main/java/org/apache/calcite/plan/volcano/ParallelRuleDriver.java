@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan.volcano;
+
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.metadata.JaninoRelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.metadata.RelMetadataQueryBase;
+import org.apache.calcite.util.ControlFlowException;
+import org.apache.calcite.util.Util;
+import org.apache.calcite.util.trace.CalciteTrace;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Rule driver that fires several rule matches at the same time, on
+ * different threads.
+ *
+ * <p>Like {@link IterativeRuleDriver}, it pops matches from an
+ * {@link IterativeRuleQueue} until the queue is empty, but it pops up to
+ * {@code parallelism} matches at a time, and calls
+ * {@link org.apache.calcite.plan.RelOptRule#onMatch} for them concurrently.
+ *
+ * <p>The memo does not change while a batch is firing. Calls to
+ * {@link VolcanoRuleCall#transformTo} and {@link VolcanoPlanner#prune} are
+ * recorded, and each thread gets its own {@link RelMetadataQuery}. When
+ * every match in the batch has fired, the driver applies the recorded
+ * changes on the planning thread, in the order that the matches were
+ * popped. The memo, and therefore the best plan, does not depend on how
+ * the threads were scheduled.
+ *
+ * <p>Other state that rules touch is safe to share: trait sets are interned
+ * in a concurrent map; types are interned in concurrent caches;
+ * {@link org.apache.calcite.rex.RexBuilder} is immutable; each rule call
+ * creates its own {@link org.apache.calcite.tools.RelBuilder}; and
+ * {@link RelOptCluster#getMetadataQuery()} returns the thread's own query.
+ *
+ * <p>Some changes to the memo cannot be deferred, because the rule uses their
+ * result; for example, {@link org.apache.calcite.plan.RelOptRule#convert}
+ * creates or marks a subset. If a rule makes such a change while other rules
+ * are firing, the match is abandoned, and fired again, alone, on the planning
+ * thread, when the changes of the matches before it have been applied. Rules
+ * that convert their inputs therefore gain little from this driver.
+ *
+ * <p>A rule fired this way must get metadata from the rule call or from the
+ * cluster. If the planner has a listener, which may not be thread-safe,
+ * matches fire one at a time.
+ *
+ * <p>Matches fire on the executor set by
+ * {@link VolcanoPlanner#setRuleExecutor}, or, by default, on a pool of
+ * threads that the driver owns, so that rules, which block on metadata and
+ * code generation, do not occupy threads that other work relies on.
+ */
+class ParallelRuleDriver implements RuleDriver {
+
+  private static final Logger LOGGER = CalciteTrace.getPlannerTracer();
+
+  /** The rule call that is firing on the current thread, if it was fired
+   * by this driver. */
+  static final ThreadLocal<@Nullable VolcanoRuleCall> CURRENT_CALL =
+      new ThreadLocal<>();
+
+  private final VolcanoPlanner planner;
+  private final IterativeRuleQueue ruleQueue;
+  private final int parallelism;
+  /** Pool of threads that fire matches if the planner has no executor;
+   * created when first needed. */
+  private @Nullable ThreadPoolExecutor pool;
+
+  ParallelRuleDriver(VolcanoPlanner planner, int parallelism) {
+    this.planner = planner;
+    this.parallelism = parallelism;
+    ruleQueue = new IterativeRuleQueue(planner);
+  }
+
+  @Override public IterativeRuleQueue getRuleQueue() {
+    return ruleQueue;
+  }
+
+  @Override public void drive() {
+    final List<VolcanoRuleMatch> batch = new ArrayList<>();
+    while (true) {
+      requireNonNull(planner.root, "RelSubset must not be null at this point");
+      LOGGER.debug("Best cost before rule match: {}", planner.root.bestCost);
+
+      batch.clear();
+      while (batch.size() < parallelism) {
+        final VolcanoRuleMatch match = ruleQueue.popMatch();
+        if (match == null) {
+          break;
+        }
+        assert match.getRule().matches(match);
+        batch.add(match);
+      }
+      if (batch.isEmpty()) {
+        break;
+      }
+
+      try {
+        if (batch.size() == 1 || planner.getListener() != null) {
+          for (VolcanoRuleMatch match : batch) {
+            match.onMatch();
+          }
+        } else {
+          fire(batch);
+        }
+      } catch (VolcanoTimeoutException e) {
+        LOGGER.warn("Volcano planning times out, cancels the subsequent optimization.");
+        planner.canonize();
+        break;
+      }
+
+      // The root may have been merged with another
+      // subset. Find the new root subset.
+      planner.canonize();
+    }
+  }
+
+  /** Fires a batch of matches concurrently, then applies their changes to
+   * the planner in order. */
+  private void fire(List<VolcanoRuleMatch> batch) {
+    final RelOptCluster cluster = requireNonNull(planner.root).getCluster();
+    final @Nullable JaninoRelMetadataProvider provider =
+        RelMetadataQueryBase.THREAD_PROVIDERS.get();
+    final ThreadLocal<@Nullable RelMetadataQuery> threadMqs =
+        new ThreadLocal<>();
+    final List<CompletableFuture<Void>> tasks = new ArrayList<>();
+    cluster.setThreadMetadataQueries(threadMqs);
+    try {
+      for (int i = 0; i < batch.size(); i++) {
+        final VolcanoRuleMatch match = batch.get(i);
+        match.deferredActions = new ArrayList<>();
+        // Create the metadata query on this thread, which has the metadata
+        // provider.
+        final RelMetadataQuery mq = cluster.getMetadataQuerySupplier().get();
+        final Runnable task = () -> fire(match, mq, provider, threadMqs);
+        // Fire the last match on this thread.
+        tasks.add(i < batch.size() - 1
+            ? CompletableFuture.runAsync(task, executor())
+            : CompletableFuture.runAsync(task, Runnable::run));
+      }
+
+      // Wait for every task, even if one fails, so that no thread is
+      // reading the memo while it changes.
+      final List<@Nullable Throwable> failures = new ArrayList<>();
+      for (CompletableFuture<Void> task : tasks) {
+        try {
+          task.join();
+          failures.add(null);
+        } catch (CompletionException e) {
+          failures.add(e.getCause() != null ? e.getCause() : e);
+        }
+      }
+
+      for (int i = 0; i < batch.size(); i++) {
+        final VolcanoRuleMatch match = batch.get(i);
+        final List<Runnable> actions =
+            requireNonNull(match.deferredActions, "deferredActions");
+        match.deferredActions = null;
+        final Throwable failure = failures.get(i);
+        if (failure instanceof MemoConflict) {
+          // The rule tried to change the memo; fire it again, now that the
+          // matches before it have been applied.
+          match.onMatch();
+          continue;
+        }
+        if (failure != null) {
+          throw Util.throwAsRuntime(failure);
+        }
+        planner.ruleCallStack.push(match);
+        try {
+          actions.forEach(Runnable::run);
+        } finally {
+          planner.ruleCallStack.pop();
+        }
+      }
+    } finally {
+      cluster.setThreadMetadataQueries(null);
+      for (VolcanoRuleMatch match : batch) {
+        match.deferredActions = null;
+      }
+    }
+  }
+
+  /** Returns the executor on which to fire matches. */
+  private Executor executor() {
+    final Executor executor = planner.ruleExecutor;
+    if (executor != null) {
+      return executor;
+    }
+    ThreadPoolExecutor pool = this.pool;
+    if (pool == null) {
+      // Idle threads end after a while, so a planner that is no longer used
+      // does not keep threads alive.
+      final int threadCount = parallelism - 1;
+      pool =
+          new ThreadPoolExecutor(threadCount, threadCount, 5, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(),
+              new ThreadFactoryBuilder()
+                  .setDaemon(true)
+                  .setNameFormat("calcite-planner-rule-%d")
+                  .build());
+      pool.allowCoreThreadTimeOut(true);
+      this.pool = pool;
+    }
+    return pool;
+  }
+
+  /** Fires a match on the current thread, which may be a worker thread. */
+  private static void fire(VolcanoRuleMatch match, RelMetadataQuery mq,
+      @Nullable JaninoRelMetadataProvider provider,
+      ThreadLocal<@Nullable RelMetadataQuery> threadMqs) {
+    final @Nullable JaninoRelMetadataProvider previousProvider =
+        RelMetadataQueryBase.THREAD_PROVIDERS.get();
+    RelMetadataQueryBase.THREAD_PROVIDERS.set(provider);
+    threadMqs.set(mq);
+    CURRENT_CALL.set(match);
+    try {
+      match.onMatch();
+    } finally {
+      CURRENT_CALL.remove();
+      threadMqs.remove();
+      RelMetadataQueryBase.THREAD_PROVIDERS.set(previousProvider);
+    }
+  }
+
+  /** Throws {@link MemoConflict} if the current thread is firing a rule
+   * concurrently with others; called before changing the memo in a way that
+   * cannot be deferred. */
+  static void checkMemoWritable() {
+    final VolcanoRuleCall call = CURRENT_CALL.get();
+    if (call != null && call.deferredActions != null) {
+      throw MemoConflict.INSTANCE;
+    }
+  }
+
+  /** Thrown if a rule that is firing concurrently with others tries to
+   * change the memo. */
+  static class MemoConflict extends ControlFlowException {
+    static final MemoConflict INSTANCE = new MemoConflict();
+  }
+
+  @Override public void onProduce(RelNode rel, RelSubset subset) {
+  }
+
+  @Override public void onSetMerged(RelSet set) {
+  }
+
+  @Override public void clear() {
+    ruleQueue.clear();
+    final ThreadPoolExecutor pool = this.pool;
+    if (pool != null) {
+      pool.shutdown();
+      this.pool = null;
+    }
+  }
+}
@@ -264,6 +264,11 @@ RelSubset getOrCreateSubset(
     boolean needsConverter = false;
     final VolcanoPlanner planner = (VolcanoPlanner) cluster.getPlanner();
     RelSubset subset = getSubset(traits);
+    if (subset == null
+        || subset.getConvention() != Convention.NONE
+            && (required ? !subset.isRequired() : !subset.isDelivered())) {
+      ParallelRuleDriver.checkMemoWritable();
+    }
 
     if (subset == null) {
       needsConverter = true;
@@ -26,6 +26,7 @@
 import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptCostFactory;
 import org.apache.calcite.plan.RelOptLattice;
+import org.apache.calcite.plan.RelOptListener;
 import org.apache.calcite.plan.RelOptMaterialization;
 import org.apache.calcite.plan.RelOptMaterializations;
 import org.apache.calcite.plan.RelOptPlanner;
@@ -81,6 +82,9 @@
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -162,6 +166,12 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
 
   private @MonotonicNonNull RelNode originalRoot;
 
+  /**
+   * Whether the next call to {@link #setRoot(RelNode)} starts the
+   * optimization of a new query; see {@link #warmStart()}.
+   */
+  private boolean warmStart;
+
   private @Nullable Convention rootConvention;
 
   /**
@@ -200,6 +210,38 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
    */
   boolean topDownOpt = CalciteSystemProperty.TOPDOWN_OPT.value();
 
+  /**
+   * Number of rule matches to fire at the same time.
+   */
+  int ruleParallelism = CalciteSystemProperty.PLANNER_RULE_PARALLELISM.value();
+
+  /** Executor on which {@link ParallelRuleDriver} fires rule matches, or null
+   * to use a pool of threads that the driver owns. */
+  @Nullable Executor ruleExecutor;
+
+  /** Number of milliseconds that {@link #findBestExp()} may spend firing
+   * rules, or -1; see {@link #setPlanningBudget}. */
+  private long timeLimitMillis = -1;
+
+  /** Number of rule matches that {@link #findBestExp()} may fire, or -1. */
+  private long maxRuleFirings = -1;
+
+  /** Number of relational expressions that may be registered, or -1. */
+  private long maxRels = -1;
+
+  /** Value of {@link System#nanoTime()} after which rules must no longer be
+   * fired in the current call to {@link #findBestExp()}. */
+  private long deadlineNanos = Long.MAX_VALUE;
+
+  /** Number of rule matches fired in the current call to
+   * {@link #findBestExp()}. Atomic because {@link ParallelRuleDriver} fires
+   * matches on several threads. */
+  private final AtomicLong ruleFiringCount = new AtomicLong();
+
+  /** Whether the current call to {@link #findBestExp()} stopped firing rules
+   * because the planning budget was exhausted. */
+  private volatile boolean budgetExhausted;
+
   /**
    * Extra roots for explorations.
    */
@@ -246,6 +288,8 @@ public VolcanoPlanner(@Nullable RelOptCostFactory costFactory,
   private void initRuleQueue() {
     if (topDownOpt) {
       ruleDriver = new TopDownRuleDriver(this);
+    } else if (ruleParallelism > 1) {
+      ruleDriver = new ParallelRuleDriver(this, ruleParallelism);
     } else {
       ruleDriver = new IterativeRuleDriver(this);
     }
@@ -267,6 +311,120 @@ public void setTopDownOpt(boolean value) {
     initRuleQueue();
   }
 
+  /**
+   * Sets the number of rule matches to fire at the same time, on different
+   * threads. If greater than 1, and top-down optimization is not enabled,
+   * the planner fires matches in batches; see {@link ParallelRuleDriver} for
+   * what rules must do to be fired this way.
+   *
+   * <p>The default is
+   * {@link CalciteSystemProperty#PLANNER_RULE_PARALLELISM}.
+   */
+  public void setRuleParallelism(int value) {
+    if (value < 1) {
+      throw new IllegalArgumentException("parallelism must be positive: "
+          + value);
+    }
+    if (ruleParallelism == value) {
+      return;
+    }
+    ruleParallelism = value;
+    initRuleQueue();
+  }
+
+  /**
+   * Sets the executor on which rule matches are fired when the rule
+   * parallelism is greater than 1; see {@link #setRuleParallelism(int)}.
+   *
+   * <p>If null, the default, the planner uses a pool of its own daemon
+   * threads, one fewer than the parallelism (the planning thread fires one
+   * match of each batch); the threads end when the planner has been idle for
+   * a few seconds. Rules block on metadata and code generation, so do not use
+   * a pool, such as {@link java.util.concurrent.ForkJoinPool#commonPool()},
+   * whose threads other work relies on.
+   */
+  public void setRuleExecutor(@Nullable Executor executor) {
+    this.ruleExecutor = executor;
+  }
+
+  /**
+   * Sets the budget for each call to {@link #findBestExp()}.
+   *
+   * <p>When any limit is reached, the planner fires no more rules and
+   * returns the cheapest complete plan found so far, as it does if planning
+   * is cancelled; {@link #isBudgetExhausted()} then returns true. If no
+   * complete plan has been found, {@link #findBestExp()} throws
+   * {@link org.apache.calcite.plan.RelOptPlanner.CannotPlanException}.
+   *
+   * @param timeLimitMillis Number of milliseconds that may be spent firing
+   *                        rules, or -1 for no limit
+   * @param maxRuleFirings  Number of rule matches that may be fired, or -1
+   *                        for no limit
+   * @param maxRels         Number of relational expressions that may be
+   *                        registered, or -1 for no limit
+   */
+  public void setPlanningBudget(long timeLimitMillis, long maxRuleFirings,
+      long maxRels) {
+    this.timeLimitMillis = timeLimitMillis;
+    this.maxRuleFirings = maxRuleFirings;
+    this.maxRels = maxRels;
+  }
+
+  /** Returns whether the last call to {@link #findBestExp()} stopped early
+   * because the budget set by {@link #setPlanningBudget} was exhausted. */
+  public boolean isBudgetExhausted() {
+    return budgetExhausted;
+  }
+
+  /** Returns the number of rule matches fired by the last call to
+   * {@link #findBestExp()}.
+   *
+   * <p>Together with {@link #getSetCount()}, {@link #getSubsetCount()},
+   * {@link #getRelCount()} and, if tracking is enabled by
+   * {@link #enableRuleAttemptsTracking()}, the number of attempts and time
+   * spent for each rule given by {@link #getRuleAttemptsInfo()}, describes
+   * the work done by the planner. */
+  public long getRuleFiringCount() {
+    return ruleFiringCount.get();
+  }
+
+  /** Returns the number of equivalence sets in the memo. */
+  public int getSetCount() {
+    return allSets.size();
+  }
+
+  /** Returns the number of subsets in the memo. */
+  public int getSubsetCount() {
+    int count = 0;
+    for (RelSet set : allSets) {
+      count += set.subsets.size();
+    }
+    return count;
+  }
+
+  /** Returns the number of relational expressions registered in the memo,
+   * not counting subsets. */
+  public int getRelCount() {
+    return mapRel2Subset.size();
+  }
+
+  /** Called before a rule match is fired; throws
+   * {@link VolcanoTimeoutException} if planning is cancelled or the budget
+   * is exhausted. May be called on any thread that fires matches. */
+  void checkBudget() {
+    checkCancel();
+    final boolean exhausted =
+        maxRuleFirings >= 0 && ruleFiringCount.get() >= maxRuleFirings
+            || maxRels >= 0 && mapRel2Subset.size() >= maxRels
+            || deadlineNanos != Long.MAX_VALUE
+                && System.nanoTime() - deadlineNanos >= 0;
+    if (exhausted) {
+      budgetExhausted = true;
+      throw new VolcanoTimeoutException();
+    }
+    ruleFiringCount.incrementAndGet();
+  }
+
   // implement RelOptPlanner
   @Override public boolean isRegistered(RelNode rel) {
     return mapRel2Subset.get(rel) != null;
@@ -274,8 +432,9 @@ public void setTopDownOpt(boolean value) {
 
   @Override public void setRoot(RelNode rel) {
     this.root = registerImpl(rel, null);
-    if (this.originalRoot == null) {
+    if (this.originalRoot == null || warmStart) {
       this.originalRoot = rel;
+      this.warmStart = false;
     }
 
     rootConvention = this.root.getConvention();
@@ -334,6 +493,10 @@ protected void registerMaterializations() {
       applicableMaterializations.removeAll(use.right);
     }
     for (RelOptMaterialization materialization : applicableMaterializations) {
+      if (isRegistered(materialization.queryRel)) {
+        // Registered while optimizing a previous query; see warmStart
+        continue;
+      }
       RelSubset subset = registerImpl(materialization.queryRel, null);
       explorationRoots.add(subset);
       RelNode tableRel2 =
@@ -396,6 +559,29 @@ protected void registerMaterializations() {
     return traitSet;
   }
 
+  /**
+   * Prepares this planner to optimize another query, starting from the memo
+   * of the previous optimization.
+   *
+   * <p>The equivalence sets ({@link RelSet}) and subsets ({@link RelSubset})
+   * registered so far, their best plans, and the rules, are retained. Call
+   * {@link #setRoot(RelNode)} with the new query, then
+   * {@link #findBestExp()}. Registering the new query finds the sub-plans that
+   * are equal to already registered expressions (by {@link RelDigest}), so
+   * those sub-plans are not explored again; only the rule matches that
+   * involve new expressions are fired.
+   *
+   * <p>The new query must be created in a
+   * {@link org.apache.calcite.plan.RelOptCluster} whose planner
+   * is this planner, and should use the same
+   * {@link org.apache.calcite.rex.RexBuilder} as the
+   * previous query. The memo grows with each query; call {@link #clear()} to
+   * discard it.
+   */
+  public void warmStart() {
+    warmStart = true;
+  }
+
   @Override public void clear() {
     super.clear();
     for (RelOptRule rule : getRules()) {
@@ -522,7 +708,17 @@ protected void registerMaterializations() {
     ensureRootConverters();
     registerMaterializations();
 
+    ruleFiringCount.set(0);
+    budgetExhausted = false;
+    deadlineNanos = timeLimitMillis >= 0
+        ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimitMillis)
+        : Long.MAX_VALUE;
     ruleDriver.drive();
+    if (budgetExhausted) {
+      LOGGER.warn("Planning budget exhausted after {} rule firings, {} rels;"
+          + " returning the cheapest plan found so far",
+          ruleFiringCount.get(), mapRel2Subset.size());
+    }
 
     if (LOGGER.isTraceEnabled()) {
       StringWriter sw = new StringWriter();
@@ -840,6 +1036,13 @@ public RelSubset getSubsetNonNull(RelNode rel) {
   }
 
   @Override public void prune(RelNode rel) {
+    final VolcanoRuleCall call = ParallelRuleDriver.CURRENT_CALL.get();
+    if (call != null && call.deferredActions != null) {
+      // A rule is firing on another thread; prune when its results are
+      // registered.
+      call.deferredActions.add(() -> prunedNodes.add(rel));
+      return;
+    }
     prunedNodes.add(rel);
   }
 
@@ -1142,6 +1345,7 @@ private boolean fixUpInputs(RelNode rel) {
   }
 
   private RelSet merge(RelSet set1, RelSet set2) {
+    ParallelRuleDriver.checkMemoWritable();
     assert set1 != set2 : "pre: set1 != set2";
 
     // Find the root of each set's equivalence tree.
@@ -1257,6 +1461,7 @@ static RelSet equivRoot(RelSet s) {
   private RelSubset registerImpl(
       RelNode rel,
       @Nullable RelSet set) {
+    ParallelRuleDriver.checkMemoWritable();
     if (rel instanceof RelSubset) {
       return registerSubset(set, (RelSubset) rel);
     }
@@ -1625,6 +1830,10 @@ private static class DeferringRuleCall extends VolcanoRuleCall {
               rels,
               nodeInputs);
       volcanoPlanner.ruleDriver.getRuleQueue().addMatch(match);
+      if (volcanoPlanner.getListener() != null) {
+        volcanoPlanner.getListener().ruleMatched(
+            new RelOptListener.RuleMatchedEvent(volcanoPlanner, rels[0], match));
+      }
     }
   }
 
@@ -36,6 +36,7 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -59,6 +60,12 @@ public class VolcanoRuleCall extends RelOptRuleCall {
    */
   private @Nullable List<RelNode> generatedRelList;
 
+  /**
+   * Changes to the planner that this call has made but not yet applied, if
+   * it is being fired by {@link ParallelRuleDriver}; otherwise null.
+   */
+  @Nullable List<Runnable> deferredActions;
+
   //~ Constructors -----------------------------------------------------------
 
   /**
@@ -113,6 +120,19 @@ protected VolcanoRuleCall(
         generatedRelList.add(rel);
       }
     }
+    if (deferredActions != null) {
+      // Other rules are firing at the same time; register later.
+      final RelNode rel2 = rel;
+      final Map<RelNode, RelNode> equiv2 = new LinkedHashMap<>(equiv);
+      deferredActions.add(() -> register(rel2, equiv2));
+      return;
+    }
+    register(rel, equiv);
+  }
+
+  /** Registers a relational expression produced by {@link #transformTo},
+   * and expressions that it is equivalent to. */
+  private void register(RelNode rel, Map<RelNode, RelNode> equiv) {
     try {
       // It's possible that rel is a subset or is already registered.
       // Is there still a point in continuing? Yes, because we might
@@ -163,7 +183,7 @@ protected VolcanoRuleCall(
    */
   protected void onMatch() {
     assert getRule().matches(this);
-    volcanoPlanner.checkCancel();
+    volcanoPlanner.checkBudget();
     try {
       if (volcanoPlanner.isRuleExcluded(getRule())) {
         LOGGER.debug("Rule [{}] not fired due to exclusion filter", getRule());
@@ -218,11 +238,17 @@ protected void onMatch() {
         this.generatedRelList = new ArrayList<>();
       }
 
-      volcanoPlanner.ruleCallStack.push(this);
-      try {
+      if (deferredActions != null) {
+        // Fired by ParallelRuleDriver, which pushes this call onto the stack
+        // when it applies the deferred actions.
         getRule().onMatch(this);
-      } finally {
-        volcanoPlanner.ruleCallStack.pop();
+      } else {
+        volcanoPlanner.ruleCallStack.push(this);
+        try {
+          getRule().onMatch(this);
+        } finally {
+          volcanoPlanner.ruleCallStack.pop();
+        }
       }
 
       if (generatedRelList != null) {
@@ -245,6 +271,8 @@ protected void onMatch() {
                 false);
         volcanoPlanner.getListener().ruleAttempted(event);
       }
+    } catch (ParallelRuleDriver.MemoConflict e) {
+      throw e;
     } catch (Exception e) {
       throw new RuntimeException("Error while applying rule " + getRule()
           + ", args " + Arrays.toString(rels), e);
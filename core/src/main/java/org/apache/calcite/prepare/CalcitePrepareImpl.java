@@ -17,6 +17,7 @@
 package org.apache.calcite.prepare;
 
 import org.apache.calcite.DataContexts;
+import org.apache.calcite.adapter.columnar.ColumnarRules;
 import org.apache.calcite.adapter.enumerable.EnumerableCalc;
 import org.apache.calcite.adapter.enumerable.EnumerableConvention;
 import org.apache.calcite.adapter.enumerable.EnumerableInterpretable;
@@ -50,6 +51,7 @@
 import org.apache.calcite.linq4j.tree.ParameterExpression;
 import org.apache.calcite.linq4j.tree.PseudoField;
 import org.apache.calcite.materialize.MaterializationService;
+import org.apache.calcite.materialize.WorkloadRecorder;
 import org.apache.calcite.plan.Contexts;
 import org.apache.calcite.plan.Convention;
 import org.apache.calcite.plan.ConventionTraitDef;
@@ -377,6 +379,20 @@ private AnalyzeViewResult analyze_(SqlValidator validator, String sql,
         config.parserFactory(SqlParserImplFactory.class, SqlParserImpl.FACTORY);
     final DdlExecutor ddlExecutor = parserFactory.getDdlExecutor();
     ddlExecutor.executeDdl(context, node);
+    final PlanCache planCache = planCache(context);
+    if (planCache != null) {
+      planCache.invalidateAll();
+    }
+  }
+
+  /** Returns the cache of prepared statements, or null if statements are not
+   * to be cached.
+   *
+   * <p>The default implementation returns the cache of the connection, which
+   * exists if {@link CalciteSystemProperty#PLAN_CACHE_MAX_SIZE} is not 0.
+   * Override this method to use a different cache. */
+  protected @Nullable PlanCache planCache(Context context) {
+    return context.getPlanCache();
   }
 
   /** Factory method for default SQL parser. */
@@ -457,9 +473,17 @@ protected RelOptPlanner createPlanner(
       planner.addRelTraitDef(RelCollationTraitDef.INSTANCE);
     }
     planner.setTopDownOpt(prepareContext.config().topDownOpt());
+    planner.setPlanningBudget(prepareContext.config().plannerTimeLimit(),
+        prepareContext.config().plannerMaxRuleFirings(),
+        prepareContext.config().plannerMaxRels());
     RelOptUtil.registerDefaultRules(planner,
         prepareContext.config().materializationsEnabled(),
         enableBindable);
+    if (prepareContext.config().vectorize()) {
+      for (RelOptRule rule : ColumnarRules.RULES) {
+        planner.addRule(rule);
+      }
+    }
 
     final CalcitePrepare.SparkHandler spark = prepareContext.spark();
     if (spark.enabled()) {
@@ -502,6 +526,41 @@ <T> CalciteSignature<T> prepare_(
     if (SIMPLE_SQLS.contains(query.sql)) {
       return simplePrepare(context, castNonNull(query.sql));
     }
+    final PlanCache planCache = planCache(context);
+    final CalciteSignature<T> signature;
+    if (planCache != null && query.sql != null) {
+      signature = planCache.get(context, query.sql, elementType, maxRowCount,
+          () -> prepare1_(context, query, elementType, maxRowCount));
+    } else {
+      signature = prepare1_(context, query, elementType, maxRowCount);
+    }
+    recordQuery(context, query, signature);
+    return signature;
+  }
+
+  /** Records the SQL text of a statement in {@link WorkloadRecorder#INSTANCE},
+   * whether it was prepared or found in the plan cache. Statements other
+   * than queries are filtered out by the
+   * {@link org.apache.calcite.materialize.LatticeAdvisor} that reads
+   * the recorder. */
+  private static void recordQuery(Context context, Query<?> query,
+      CalciteSignature<?> signature) {
+    final WorkloadRecorder recorder = WorkloadRecorder.INSTANCE;
+    // Do not record the statements that populate materializations
+    if (recorder != null
+        && query.sql != null
+        && signature.statementType == Meta.StatementType.SELECT
+        && context.config().createMaterializations()) {
+      recorder.record(query.sql);
+    }
+  }
+
+  /** Prepares a statement, without looking in the cache. */
+  private <T> CalciteSignature<T> prepare1_(
+      Context context,
+      Query<T> query,
+      Type elementType,
+      long maxRowCount) {
     final JavaTypeFactory typeFactory = context.getTypeFactory();
     CalciteCatalogReader catalogReader =
         new CalciteCatalogReader(
@@ -1026,6 +1085,15 @@ public CalcitePreparingStmt(CalcitePrepareImpl prepare,
       this.convertletTable = convertletTable;
     }
 
+    @Override protected RelRoot parameterizeLiterals(RelRoot root) {
+      return root.withRel(
+          LiteralParameterizer.parameterize(root.rel,
+              context.config().literalParameterization(),
+              requireNonNull(parameterRowType, "parameterRowType")
+                  .getFieldCount(),
+              internalParameters::put));
+    }
+
     @Override protected void init(Class runtimeContextClass) {
     }
 
@@ -1196,6 +1264,8 @@ protected SqlValidator createSqlValidator(CatalogReader catalogReader,
           CatalogReader.THREAD_LOCAL.set(catalogReader);
           final SqlConformance conformance = context.config().conformance();
           internalParameters.put("_conformance", conformance);
+          internalParameters.put("_parallelism",
+              context.config().parallelism());
           bindable =
               EnumerableInterpretable.toBindable(internalParameters,
                   context.spark(), enumerable,
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.prepare;
+
+import org.apache.calcite.adapter.enumerable.EnumerableTableScan;
+import org.apache.calcite.config.LiteralParameterization;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.rel.RelHomogeneousShuttle;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.logical.LogicalTableScan;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.schema.FilterableTable;
+import org.apache.calcite.schema.ProjectableFilterableTable;
+import org.apache.calcite.schema.TranslatableTable;
+import org.apache.calcite.sql.SqlKind;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Replaces literals in a relational expression with dynamic parameters.
+ *
+ * <p>The value of each literal that is replaced is passed to a consumer, with
+ * the name by which generated code reads it from the
+ * {@link org.apache.calcite.DataContext} (for example "?3"). Two statements
+ * that differ only in the values of such literals therefore generate the same
+ * code, and the second can re-use the class compiled for the first.
+ *
+ * <p>Only numeric and character literals that are an operand of a
+ * comparison, whose other operand is not a literal, are replaced.
+ *
+ * @see LiteralParameterization
+ */
+public class LiteralParameterizer extends RexShuttle {
+  private final RexBuilder rexBuilder;
+  private final LiteralParameterization parameterization;
+  private final BiConsumer<String, Object> parameters;
+  private int nextIndex;
+
+  private LiteralParameterizer(RexBuilder rexBuilder,
+      LiteralParameterization parameterization, int firstIndex,
+      BiConsumer<String, Object> parameters) {
+    this.rexBuilder = requireNonNull(rexBuilder, "rexBuilder");
+    this.parameterization =
+        requireNonNull(parameterization, "parameterization");
+    this.nextIndex = firstIndex;
+    this.parameters = requireNonNull(parameters, "parameters");
+  }
+
+  /** Replaces literals in a relational expression and its inputs.
+   *
+   * @param rel Relational expression
+   * @param parameterization Which literals to replace
+   * @param firstIndex Index of the first parameter to create; the number of
+   *                   dynamic parameters that the statement already has
+   * @param parameters Receives the name and value of each parameter
+   * @return Relational expression with literals replaced
+   */
+  public static RelNode parameterize(RelNode rel,
+      LiteralParameterization parameterization, int firstIndex,
+      BiConsumer<String, Object> parameters) {
+    if (parameterization == LiteralParameterization.NONE) {
+      return rel;
+    }
+    final LiteralParameterizer parameterizer =
+        new LiteralParameterizer(rel.getCluster().getRexBuilder(),
+            parameterization, firstIndex, parameters);
+    return rel.accept(
+        new RelHomogeneousShuttle() {
+          @Override public RelNode visit(RelNode other) {
+            return parameterizer.apply(super.visit(other));
+          }
+        });
+  }
+
+  /** Replaces literals in the expressions of a relational expression, but
+   * not its inputs. */
+  private RelNode apply(RelNode rel) {
+    if (parameterization == LiteralParameterization.SAFE
+        && canFilterScan(rel)) {
+      return rel;
+    }
+    if (rel instanceof Sort) {
+      if (parameterization != LiteralParameterization.ALL) {
+        return rel;
+      }
+      final Sort sort = (Sort) rel;
+      final RexNode offset = replaceFetch(sort.offset);
+      final RexNode fetch = replaceFetch(sort.fetch);
+      if (offset == sort.offset && fetch == sort.fetch) {
+        return sort;
+      }
+      return sort.copy(sort.getTraitSet(), sort.getInput(),
+          sort.getCollation(), offset, fetch);
+    }
+    return rel.accept(this);
+  }
+
+  /** Returns whether a relational expression is a filter on a table that may
+   * use the literals in the filter's condition to skip rows.
+   *
+   * <p>That is the case if the table is a {@link FilterableTable}, or if it
+   * is a {@link TranslatableTable} or is read by an adapter's own scan (such
+   * as the JDBC, Mongo or Elasticsearch adapter's), because the adapter may
+   * push the filter down to its data source. */
+  private static boolean canFilterScan(RelNode rel) {
+    if (!(rel instanceof Filter)) {
+      return false;
+    }
+    final RelNode input = ((Filter) rel).getInput();
+    if (input instanceof TableScan
+        && !(input instanceof LogicalTableScan)
+        && !(input instanceof EnumerableTableScan)) {
+      return true;
+    }
+    final RelOptTable table = input.getTable();
+    return table != null
+        && (table.unwrap(FilterableTable.class) != null
+            || table.unwrap(ProjectableFilterableTable.class) != null
+            || table.unwrap(TranslatableTable.class) != null);
+  }
+
+  private @Nullable RexNode replaceFetch(@Nullable RexNode node) {
+    if (!(node instanceof RexLiteral)) {
+      return node;
+    }
+    // The enumerable convention reads FETCH and OFFSET parameters as INTEGER,
+    // so keep literals that do not fit
+    final long value = RexLiteral.longValue(node);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      return node;
+    }
+    return replace((RexLiteral) node, (int) value);
+  }
+
+  @Override public RexNode visitCall(RexCall call) {
+    final RexNode node = super.visitCall(call);
+    if (!node.isA(SqlKind.BINARY_COMPARISON)) {
+      return node;
+    }
+    final RexCall comparison = (RexCall) node;
+    final RexNode left = comparison.operands.get(0);
+    final RexNode right = comparison.operands.get(1);
+    if (left instanceof RexLiteral == right instanceof RexLiteral) {
+      // Leave comparisons between two literals, or two non-literals
+      return comparison;
+    }
+    final List<RexNode> operands = new ArrayList<>(comparison.operands);
+    final int i = left instanceof RexLiteral ? 0 : 1;
+    final RexLiteral literal = (RexLiteral) operands.get(i);
+    final @Nullable Object value = value(literal);
+    if (value == null) {
+      return comparison;
+    }
+    operands.set(i, replace(literal, value));
+    return comparison.clone(comparison.getType(), operands);
+  }
+
+  private RexNode replace(RexLiteral literal, Object value) {
+    final int index = nextIndex++;
+    parameters.accept("?" + index, value);
+    return rexBuilder.makeDynamicParam(literal.getType(), index);
+  }
+
+  /** Returns the value of a literal, in the representation that generated
+   * code expects for a dynamic parameter of the literal's type, or null if
+   * the literal is not to be replaced. */
+  private static @Nullable Object value(RexLiteral literal) {
+    if (literal.isNull()) {
+      return null;
+    }
+    switch (literal.getType().getSqlTypeName()) {
+    case TINYINT:
+      return literal.getValueAs(Byte.class);
+    case SMALLINT:
+      return literal.getValueAs(Short.class);
+    case INTEGER:
+      return literal.getValueAs(Integer.class);
+    case BIGINT:
+      return literal.getValueAs(Long.class);
+    case DECIMAL:
+      return literal.getValueAs(BigDecimal.class);
+    case REAL:
+      return literal.getValueAs(Float.class);
+    case FLOAT:
+    case DOUBLE:
+      return literal.getValueAs(Double.class);
+    case CHAR:
+    case VARCHAR:
+      return literal.getValueAs(String.class);
+    default:
+      return null;
+    }
+  }
+}
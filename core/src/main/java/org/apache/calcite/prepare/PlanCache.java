@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.prepare;
+
+import org.apache.calcite.avatica.Meta;
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.config.CalciteConnectionConfigImpl;
+import org.apache.calcite.jdbc.CalcitePrepare;
+import org.apache.calcite.jdbc.CalcitePrepare.CalciteSignature;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.schema.SchemaVersion;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of the prepared statements of a connection.
+ *
+ * <p>Each connection has its own cache, because each connection has its own
+ * root schema; a cache is discarded when its connection is discarded.
+ *
+ * <p>A statement is identified by its {@link #normalize normalized} SQL text,
+ * the {@link CalciteSchema#version() version} of the root schema, the
+ * properties of the connection, the default schema path, and the type of row
+ * and maximum number of rows requested. The types of dynamic parameters are
+ * derived from the SQL text, so are not part of the key.
+ *
+ * <p>When a schema changes, its version changes, and statements prepared
+ * against the previous version are no longer found; they are discarded when
+ * DDL is executed, or when the cache reaches its maximum size, whichever
+ * happens first. Changes to the contents of an underlying
+ * {@link org.apache.calcite.schema.Schema} that do not go through
+ * {@link CalciteSchema} are not detected; do not enable the cache if your
+ * schemas change that way.
+ *
+ * <p>The cache is thread-safe.
+ *
+ * @see org.apache.calcite.config.CalciteSystemProperty#PLAN_CACHE_MAX_SIZE
+ */
+public class PlanCache {
+  private final Cache<Key, CalciteSignature<?>> cache;
+
+  /** Creates a PlanCache that holds at most {@code maximumSize}
+   * statements, discarding the least recently used. */
+  public PlanCache(int maximumSize) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .recordStats()
+            .build();
+  }
+
+  /** Returns a prepared statement from the cache, or if it is not present,
+   * prepares it and adds it to the cache.
+   *
+   * <p>Statements that execute DDL are never cached. A statement is not
+   * cached if the schema changes while it is being prepared. */
+  @SuppressWarnings("unchecked")
+  public <T> CalciteSignature<T> get(CalcitePrepare.Context context,
+      String sql, Type elementType, long maxRowCount,
+      Supplier<CalciteSignature<T>> prepare) {
+    final Key key = Key.of(context, sql, elementType, maxRowCount);
+    final CalciteSignature<T> cached =
+        (CalciteSignature<T>) cache.getIfPresent(key);
+    if (cached != null) {
+      return cached;
+    }
+    final CalciteSignature<T> signature = prepare.get();
+    if (signature.statementType != Meta.StatementType.OTHER_DDL
+        && key.version.equals(context.getMutableRootSchema().version())) {
+      cache.put(key, signature);
+    }
+    return signature;
+  }
+
+  /** Removes all statements. Called after DDL has modified the schema. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** Returns the number of statements in the cache. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Returns statistics about the cache, including the number of hits and
+   * misses. */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /** Normalizes a SQL string, so that statements that differ only in
+   * white space have the same key.
+   *
+   * <p>Each run of white space outside quoted strings, quoted identifiers and
+   * comments becomes a single space, and leading and trailing white space is
+   * removed. Case is preserved.
+   *
+   * <p>Between two adjacent string literals, a run that contains a line break
+   * becomes a line break, because {@code 'a'\n'b'} is a valid continuation
+   * of a string literal whereas {@code 'a' 'b'} is not. */
+  public static String normalize(String sql) {
+    final StringBuilder b = new StringBuilder(sql.length());
+    final int n = sql.length();
+    boolean space = false;
+    boolean newline = false;
+    boolean afterString = false;
+    for (int i = 0; i < n;) {
+      final char c = sql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        space = true;
+        newline |= c == '\n' || c == '\r';
+        ++i;
+        continue;
+      }
+      if (space && b.length() > 0) {
+        b.append(newline && afterString && c == '\'' ? '\n' : ' ');
+      }
+      space = false;
+      newline = false;
+      afterString = c == '\'';
+      final int end;
+      switch (c) {
+      case '\'':
+      case '"':
+      case '`':
+        end = endOfQuoted(sql, i, c);
+        break;
+      case '[':
+        end = endOfQuoted(sql, i, ']');
+        break;
+      case '-':
+        end = sql.startsWith("--", i) ? endOfLine(sql, i) : i + 1;
+        break;
+      case '/':
+        end = sql.startsWith("/*", i) ? endOfComment(sql, i) : i + 1;
+        break;
+      default:
+        end = i + 1;
+      }
+      b.append(sql, i, end);
+      i = end;
+    }
+    return b.toString();
+  }
+
+  /** Returns the position after the quote that closes a string or
+   * identifier. A doubled quote character does not close it. */
+  private static int endOfQuoted(String sql, int start, char quote) {
+    for (int i = start + 1; i < sql.length(); i++) {
+      if (sql.charAt(i) == quote) {
+        if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+          ++i;
+        } else {
+          return i + 1;
+        }
+      }
+    }
+    return sql.length();
+  }
+
+  /** Returns the position after the line break that ends a "--" comment;
+   * the line break is part of the comment, so that it is not collapsed into
+   * the comment. */
+  private static int endOfLine(String sql, int start) {
+    final int i = sql.indexOf('\n', start);
+    return i < 0 ? sql.length() : i + 1;
+  }
+
+  /** Returns the position after the end of a "/*" comment. */
+  private static int endOfComment(String sql, int start) {
+    final int i = sql.indexOf("*/", start + 2);
+    return i < 0 ? sql.length() : i + 2;
+  }
+
+  /** Key of a statement in the cache. */
+  private static class Key {
+    final String sql;
+    final SchemaVersion version;
+    final List<String> defaultSchemaPath;
+    final Object config;
+    final Type elementType;
+    final long maxRowCount;
+
+    private Key(String sql, SchemaVersion version,
+        List<String> defaultSchemaPath, Object config, Type elementType,
+        long maxRowCount) {
+      this.sql = requireNonNull(sql, "sql");
+      this.version = requireNonNull(version, "version");
+      this.defaultSchemaPath = ImmutableList.copyOf(defaultSchemaPath);
+      this.config = requireNonNull(config, "config");
+      this.elementType = requireNonNull(elementType, "elementType");
+      this.maxRowCount = maxRowCount;
+    }
+
+    static Key of(CalcitePrepare.Context context, String sql,
+        Type elementType, long maxRowCount) {
+      final CalciteConnectionConfig config = context.config();
+      return new Key(normalize(sql),
+          context.getMutableRootSchema().version(),
+          context.getDefaultSchemaPath(),
+          config instanceof CalciteConnectionConfigImpl
+              ? ((CalciteConnectionConfigImpl) config).toMap()
+              : config,
+          elementType, maxRowCount);
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(sql, version, defaultSchemaPath, config,
+          elementType, maxRowCount);
+    }
+
+    @Override public boolean equals(@Nullable Object obj) {
+      return this == obj
+          || obj instanceof Key
+          && sql.equals(((Key) obj).sql)
+          && version.equals(((Key) obj).version)
+          && defaultSchemaPath.equals(((Key) obj).defaultSchemaPath)
+          && config.equals(((Key) obj).config)
+          && elementType.equals(((Key) obj).elementType)
+          && maxRowCount == ((Key) obj).maxRowCount;
+    }
+  }
+}
@@ -306,6 +306,8 @@ public PreparedResult prepareSql(
       Hook.TRIMMED.run(root.rel);
     }
 
+    root = parameterizeLiterals(root);
+
     // Display physical plan after decorrelation.
     if (sqlExplain != null) {
       switch (sqlExplain.getDepth()) {
@@ -332,6 +334,16 @@ public PreparedResult prepareSql(
     return implement(root);
   }
 
+  /** Replaces literals with dynamic parameters, as specified by
+   * {@link org.apache.calcite.config.CalciteConnectionConfig#literalParameterization()}.
+   *
+   * <p>The default implementation returns the root unchanged; a sub-class
+   * that can supply the values of the new parameters at run time overrides
+   * it. */
+  protected RelRoot parameterizeLiterals(RelRoot root) {
+    return root;
+  }
+
   protected TableModify.@Nullable Operation mapTableModOp(
       boolean isDml, SqlKind sqlKind) {
     if (!isDml) {
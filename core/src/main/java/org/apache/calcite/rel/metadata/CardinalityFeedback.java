@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.config.CalciteSystemProperty;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.plan.hep.HepRelVertex;
+import org.apache.calcite.plan.volcano.RelSubset;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.core.Calc;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexLocalRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.SqlExplainLevel;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.TryThreadLocal;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Row counts observed while executing plans, which
+ * {@link RelMetadataQuery#getRowCount(RelNode)} prefers to its estimates.
+ *
+ * <p>When feedback is enabled, the code generated for each
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableRel} counts the rows
+ * that the operator returns, and calls {@link #record(String, double)} when
+ * its output has been read to the end. Later, when a planner asks for the row
+ * count of a relational expression that computes the same sub-plan, it gets
+ * the observed count.
+ *
+ * <p>Sub-plans are identified by a {@link #key(RelNode) key} that, unlike the
+ * digest, does not depend on the calling convention or traits of the
+ * operators, so that a count recorded for an
+ * {@code EnumerableHashJoin} is used for the equivalent
+ * {@code LogicalJoin}. A {@link Calc} has the same key as the {@link Project}
+ * over a {@link Filter} that it is equivalent to. The key is a SHA-256 hash
+ * of a description of the sub-plan, so that it has the same small size,
+ * in the store and as a constant in generated code, however large the
+ * sub-plan.
+ *
+ * <p>If an operator is read more than once (for example, the right input of a
+ * nested-loop join) the most recent count wins. If its output is closed before
+ * it has been read to the end, nothing is recorded. A sub-plan that contains a
+ * dynamic parameter has no key, because its row count depends on the values
+ * bound to the parameters; nothing is recorded for it.
+ *
+ * <p>The store is thread-safe.
+ *
+ * @see CalciteSystemProperty#CARDINALITY_FEEDBACK_MAX_SIZE
+ */
+public class CardinalityFeedback {
+  /** The store used by {@link RelMetadataQuery} and by generated code, or
+   * null if feedback is disabled. */
+  public static final @Nullable CardinalityFeedback INSTANCE =
+      CalciteSystemProperty.CARDINALITY_FEEDBACK_MAX_SIZE.value() > 0
+          ? new CardinalityFeedback(
+              CalciteSystemProperty.CARDINALITY_FEEDBACK_MAX_SIZE.value())
+          : null;
+
+  /** Store that is used instead of {@link #INSTANCE} in the current thread,
+   * if not null; for testing. */
+  public static final TryThreadLocal<@Nullable CardinalityFeedback>
+      THREAD_INSTANCE = TryThreadLocal.of(null);
+
+  private final Cache<String, Double> cache;
+
+  /** Creates a CardinalityFeedback that holds at most {@code maximumSize}
+   * row counts, discarding the least recently used. */
+  public CardinalityFeedback(int maximumSize) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .build();
+  }
+
+  /** Records the number of rows returned by the sub-plan with a given key. */
+  public void record(String key, double rowCount) {
+    cache.put(key, rowCount);
+  }
+
+  /** Returns the store used in the current thread: {@link #THREAD_INSTANCE}
+   * if set, otherwise {@link #INSTANCE}. */
+  public static @Nullable CardinalityFeedback instance() {
+    final CardinalityFeedback feedback = THREAD_INSTANCE.get();
+    return feedback != null ? feedback : INSTANCE;
+  }
+
+  /** Returns the observed row count of a relational expression, or null if
+   * none has been recorded. */
+  public @Nullable Double getRowCount(RelNode rel) {
+    if (cache.size() == 0) {
+      return null;
+    }
+    final String key = key(rel);
+    return key == null ? null : get(key);
+  }
+
+  /** Returns the observed row count of the sub-plan with a given key, or null
+   * if none has been recorded. */
+  public @Nullable Double get(String key) {
+    return cache.getIfPresent(key);
+  }
+
+  /** Removes all row counts. */
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  /** Returns the number of row counts. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Wraps an enumerable so that when its output has been read to the end,
+   * the number of rows is recorded in the {@link #instance() current store};
+   * called from generated code. */
+  public static <T> Enumerable<T> count(Enumerable<T> enumerable,
+      String key) {
+    final CardinalityFeedback feedback = instance();
+    if (feedback == null) {
+      return enumerable;
+    }
+    return new AbstractEnumerable<T>() {
+      @Override public Enumerator<T> enumerator() {
+        return new CountingEnumerator<>(enumerable.enumerator(), feedback,
+            key);
+      }
+    };
+  }
+
+  /** Returns the key of a relational expression, or null if it has none
+   * (for example, if it contains a cycle or a dynamic parameter).
+   *
+   * <p>The key consists of the name of the operator's family (the first
+   * class in the {@code org.apache.calcite.rel.core} package that it extends,
+   * such as {@code Join}), its attributes, and the descriptions of its
+   * inputs, hashed using SHA-256.
+   * A {@link RelSubset} or {@link HepRelVertex} has the key of the relational
+   * expression it currently represents. */
+  public static @Nullable String key(RelNode rel) {
+    final StringBuilder buf = new StringBuilder();
+    final Set<RelNode> active =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+    return key(rel, buf, active) ? hash(buf.toString()) : null;
+  }
+
+  private static String hash(String description) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+    return BaseEncoding.base16().lowerCase()
+        .encode(digest.digest(description.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static boolean key(RelNode rel, StringBuilder buf,
+      Set<RelNode> active) {
+    if (rel instanceof RelSubset) {
+      return key(((RelSubset) rel).stripped(), buf, active);
+    }
+    if (rel instanceof HepRelVertex) {
+      return key(((HepRelVertex) rel).getCurrentRel(), buf, active);
+    }
+    if (containsDynamicParam(rel) || !active.add(rel)) {
+      return false;
+    }
+    try {
+      if (rel instanceof Calc) {
+        return calcKey((Calc) rel, buf, active);
+      }
+      if (rel instanceof Filter) {
+        return filterKey(((Filter) rel).getCondition(), rel.getInput(0), buf,
+            active);
+      }
+      if (rel instanceof Project) {
+        return projectKey(((Project) rel).getProjects(), rel.getInput(0), null,
+            buf, active);
+      }
+      buf.append(family(rel.getClass()));
+      final List<Pair<String, @Nullable Object>> items = new ArrayList<>();
+      rel.explainTerms(new ItemWriter(items));
+      buf.append(items);
+      buf.append('(');
+      for (int i = 0; i < rel.getInputs().size(); i++) {
+        if (i > 0) {
+          buf.append(", ");
+        }
+        if (!key(rel.getInput(i), buf, active)) {
+          return false;
+        }
+      }
+      buf.append(')');
+      return true;
+    } finally {
+      active.remove(rel);
+    }
+  }
+
+  /** Writes the key of a {@link Calc}, which is the key of the
+   * {@link Project} and {@link Filter} that it is equivalent to. */
+  private static boolean calcKey(Calc calc, StringBuilder buf,
+      Set<RelNode> active) {
+    final RexProgram program = calc.getProgram();
+    final RexLocalRef condition = program.getCondition();
+    return projectKey(program.expandList(program.getProjectList()),
+        calc.getInput(),
+        condition == null ? null : program.expandLocalRef(condition),
+        buf, active);
+  }
+
+  private static boolean projectKey(List<RexNode> projects, RelNode input,
+      @Nullable RexNode condition, StringBuilder buf, Set<RelNode> active) {
+    final boolean trivial =
+        RexUtil.isIdentity(projects, input.getRowType());
+    if (!trivial) {
+      buf.append("Project").append(projects).append('(');
+    }
+    final boolean ok = condition == null
+        ? key(input, buf, active)
+        : filterKey(condition, input, buf, active);
+    if (!trivial) {
+      buf.append(')');
+    }
+    return ok;
+  }
+
+  private static boolean filterKey(RexNode condition, RelNode input,
+      StringBuilder buf, Set<RelNode> active) {
+    buf.append("Filter[").append(condition).append("](");
+    final boolean ok = key(input, buf, active);
+    buf.append(')');
+    return ok;
+  }
+
+  /** Returns whether the expressions of a relational expression, but not of
+   * its inputs, contain a {@link RexDynamicParam}. */
+  private static boolean containsDynamicParam(RelNode rel) {
+    final boolean[] found = {false};
+    rel.accept(
+        new RexShuttle() {
+          @Override public RexNode visitDynamicParam(
+              RexDynamicParam dynamicParam) {
+            found[0] = true;
+            return dynamicParam;
+          }
+        });
+    return found[0];
+  }
+
+  /** Returns the name of the family of a class of relational expression; for
+   * example, "Join" for {@code EnumerableHashJoin}. */
+  private static String family(Class<?> clazz) {
+    for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+      final Package p = c.getPackage();
+      if (p != null && p.getName().equals("org.apache.calcite.rel.core")) {
+        return c.getSimpleName();
+      }
+    }
+    return clazz.getSimpleName();
+  }
+
+  /** Writer that collects the attributes, but not the inputs, of a
+   * relational expression; also used by {@link SharedMetadataCache}. */
+  static class ItemWriter implements RelWriter {
+    private final List<Pair<String, @Nullable Object>> items;
+
+    ItemWriter(List<Pair<String, @Nullable Object>> items) {
+      this.items = items;
+    }
+
+    @Override public void explain(RelNode rel,
+        List<Pair<String, @Nullable Object>> valueList) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public SqlExplainLevel getDetailLevel() {
+      return SqlExplainLevel.DIGEST_ATTRIBUTES;
+    }
+
+    @Override public RelWriter input(String term, RelNode input) {
+      return this;
+    }
+
+    @Override public RelWriter item(String term, @Nullable Object value) {
+      if (!(value instanceof RelNode)) {
+        items.add(Pair.of(term, value));
+      }
+      return this;
+    }
+
+    @Override public RelWriter done(RelNode node) {
+      return this;
+    }
+  }
+
+  /** Enumerator that counts the rows it returns, and records the count when
+   * it reaches the end.
+   *
+   * @param <T> Row type */
+  private static class CountingEnumerator<T> implements Enumerator<T> {
+    private final Enumerator<T> enumerator;
+    private final CardinalityFeedback feedback;
+    private final String key;
+    private long count;
+    private boolean done;
+
+    CountingEnumerator(Enumerator<T> enumerator,
+        CardinalityFeedback feedback, String key) {
+      this.enumerator = enumerator;
+      this.feedback = feedback;
+      this.key = key;
+    }
+
+    @Override public T current() {
+      return enumerator.current();
+    }
+
+    @Override public boolean moveNext() {
+      if (enumerator.moveNext()) {
+        ++count;
+        return true;
+      }
+      if (!done) {
+        done = true;
+        feedback.record(key, count);
+      }
+      return false;
+    }
+
+    @Override public void reset() {
+      enumerator.reset();
+      count = 0;
+      done = false;
+    }
+
+    @Override public void close() {
+      enumerator.close();
+    }
+  }
+}
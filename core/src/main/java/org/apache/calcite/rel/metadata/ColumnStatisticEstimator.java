@@ -0,0 +1,433 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexUnknownAs;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.NlsString;
+import org.apache.calcite.util.RangeSets;
+import org.apache.calcite.util.Sarg;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the selectivity of predicates on a table, and the number of
+ * distinct values of its columns, from the {@link ColumnStatistic}s of the
+ * table's {@link Statistic}.
+ *
+ * <p>Used by {@link RelMdSelectivity} and {@link RelMdDistinctRowCount} for
+ * a {@link TableScan}; other relational expressions, and therefore
+ * {@link RelMdRowCount} for a filter, reach it through them.
+ *
+ * <p>Conjunctions are assumed to be independent. A conjunction that cannot
+ * be estimated from statistics, because it is not a comparison between a
+ * column and a literal or because the column has no statistics, gets the
+ * default guess of {@link RelMdUtil#guessSelectivity(RexNode)}.
+ */
+final class ColumnStatisticEstimator {
+  private ColumnStatisticEstimator() {
+  }
+
+  /** Returns the selectivity of a predicate on a table scan, or null if the
+   * statistics of the table do not help to estimate it. */
+  static @Nullable Double getSelectivity(TableScan scan, RelMetadataQuery mq,
+      @Nullable RexNode predicate) {
+    if (predicate == null || predicate.isAlwaysTrue()) {
+      return null;
+    }
+    final Statistic statistic = statistic(scan);
+    if (statistic == null) {
+      return null;
+    }
+    final double rowCount = rowCount(scan, mq, statistic);
+    double selectivity = 1d;
+    boolean used = false;
+    for (RexNode conjunct : RelOptUtil.conjunctions(predicate)) {
+      final Double s = estimate(statistic, rowCount, conjunct);
+      if (s == null) {
+        selectivity *= RelMdUtil.guessSelectivity(conjunct);
+      } else {
+        selectivity *= s;
+        used = true;
+      }
+    }
+    return used ? selectivity : null;
+  }
+
+  /** Returns the number of distinct values of a set of columns of a table
+   * scan among the rows that satisfy a predicate, or null if the statistics
+   * of the table do not give the number of distinct values of every
+   * column. */
+  static @Nullable Double getDistinctRowCount(TableScan scan,
+      RelMetadataQuery mq, ImmutableBitSet groupKey,
+      @Nullable RexNode predicate) {
+    if (groupKey.isEmpty()) {
+      return null;
+    }
+    final Statistic statistic = statistic(scan);
+    if (statistic == null) {
+      return null;
+    }
+    double distinctCount = 1d;
+    for (int i : groupKey) {
+      final ColumnStatistic columnStatistic = statistic.getColumnStatistic(i);
+      final Double d =
+          columnStatistic == null ? null : columnStatistic.getDistinctCount();
+      if (d == null) {
+        return null;
+      }
+      // Null is a distinct value, if the column has any
+      final Double nullCount = columnStatistic.getNullCount();
+      distinctCount *= nullCount != null && nullCount > 0 ? d + 1 : d;
+    }
+    final double rowCount = rowCount(scan, mq, statistic);
+    distinctCount = Math.min(distinctCount, rowCount);
+    if (predicate == null || predicate.isAlwaysTrue()) {
+      return distinctCount;
+    }
+    final Double selectivity = mq.getSelectivity(scan, predicate);
+    if (selectivity == null) {
+      return distinctCount;
+    }
+    return RelMdUtil.numDistinctVals(distinctCount, rowCount * selectivity);
+  }
+
+  private static @Nullable Statistic statistic(TableScan scan) {
+    final Table table = scan.getTable().unwrap(Table.class);
+    return table == null ? null : table.getStatistic();
+  }
+
+  private static double rowCount(TableScan scan, RelMetadataQuery mq,
+      Statistic statistic) {
+    Double rowCount = statistic.getRowCount();
+    if (rowCount == null) {
+      rowCount = mq.getRowCount(scan);
+    }
+    return Math.max(rowCount == null ? 1d : rowCount, 1d);
+  }
+
+  /** Estimates the selectivity of a predicate that is not an AND. */
+  private static @Nullable Double estimate(Statistic statistic,
+      double rowCount, RexNode e) {
+    switch (e.getKind()) {
+    case OR:
+      double sum = 0d;
+      for (RexNode operand : ((RexCall) e).getOperands()) {
+        final Double s = estimate(statistic, rowCount, operand);
+        if (s == null) {
+          return null;
+        }
+        sum += s;
+      }
+      return Math.min(sum, 1d);
+
+    case IS_NULL:
+    case IS_NOT_NULL:
+      final ColumnStatistic cs0 =
+          columnStatistic(statistic, ((RexCall) e).getOperands().get(0));
+      if (cs0 == null || cs0.getNullCount() == null) {
+        return null;
+      }
+      final double fraction = nullFraction(cs0, rowCount);
+      return e.getKind() == SqlKind.IS_NULL ? fraction : 1d - fraction;
+
+    case SEARCH:
+      final RexCall search = (RexCall) e;
+      final ColumnStatistic cs1 =
+          columnStatistic(statistic, search.getOperands().get(0));
+      final RexNode sargLiteral = search.getOperands().get(1);
+      if (cs1 == null || !(sargLiteral instanceof RexLiteral)) {
+        return null;
+      }
+      final Sarg<?> sarg = ((RexLiteral) sargLiteral).getValueAs(Sarg.class);
+      return sarg == null ? null : estimateSarg(cs1, rowCount, sarg);
+
+    case EQUALS:
+    case NOT_EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      final RexCall call = (RexCall) e;
+      RexNode ref = call.getOperands().get(0);
+      RexNode literal = call.getOperands().get(1);
+      SqlKind kind = e.getKind();
+      if (ref instanceof RexLiteral) {
+        final RexNode t = ref;
+        ref = literal;
+        literal = t;
+        kind = kind.reverse();
+      }
+      final ColumnStatistic cs2 = columnStatistic(statistic, ref);
+      if (cs2 == null || !(literal instanceof RexLiteral)) {
+        return null;
+      }
+      final Comparable value = normalize(((RexLiteral) literal).getValue());
+      if (value == null) {
+        // Comparison with null is never true
+        return 0d;
+      }
+      switch (kind) {
+      case EQUALS:
+        return equalSelectivity(cs2, rowCount, value);
+      case NOT_EQUALS:
+        final Double eq = equalSelectivity(cs2, rowCount, value);
+        return eq == null
+            ? null
+            : Math.max(0d, 1d - nullFraction(cs2, rowCount) - eq);
+      case LESS_THAN:
+        return rangeSelectivity(cs2, rowCount, null, false, value, false);
+      case LESS_THAN_OR_EQUAL:
+        return rangeSelectivity(cs2, rowCount, null, false, value, true);
+      case GREATER_THAN:
+        return rangeSelectivity(cs2, rowCount, value, false, null, false);
+      default:
+        return rangeSelectivity(cs2, rowCount, value, true, null, false);
+      }
+
+    default:
+      return null;
+    }
+  }
+
+  private static @Nullable ColumnStatistic columnStatistic(Statistic statistic,
+      RexNode e) {
+    return e instanceof RexInputRef
+        ? statistic.getColumnStatistic(((RexInputRef) e).getIndex())
+        : null;
+  }
+
+  /** Estimates the selectivity of {@code SEARCH(column, sarg)}, which is
+   * how IN and BETWEEN are represented. */
+  private static @Nullable Double estimateSarg(ColumnStatistic cs,
+      double rowCount, Sarg<?> sarg) {
+    double selectivity = 0d;
+    for (Range<?> range : sarg.rangeSet.asRanges()) {
+      final Double s;
+      if (isPoint(range)) {
+        final Comparable value = normalize(range.lowerEndpoint());
+        s = value == null ? null : equalSelectivity(cs, rowCount, value);
+      } else {
+        s =
+            rangeSelectivity(cs, rowCount,
+                range.hasLowerBound() ? normalize(range.lowerEndpoint()) : null,
+                range.hasLowerBound()
+                    && range.lowerBoundType() == BoundType.CLOSED,
+                range.hasUpperBound() ? normalize(range.upperEndpoint()) : null,
+                range.hasUpperBound()
+                    && range.upperBoundType() == BoundType.CLOSED);
+      }
+      if (s == null) {
+        return null;
+      }
+      selectivity += s;
+    }
+    if (sarg.nullAs == RexUnknownAs.TRUE) {
+      if (cs.getNullCount() == null) {
+        return null;
+      }
+      selectivity += nullFraction(cs, rowCount);
+    }
+    return Math.min(selectivity, 1d);
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static boolean isPoint(Range range) {
+    return RangeSets.isPoint(range);
+  }
+
+  private static double nullFraction(ColumnStatistic cs, double rowCount) {
+    final Double nullCount = cs.getNullCount();
+    return nullCount == null ? 0d : Math.min(nullCount / rowCount, 1d);
+  }
+
+  /** Returns the fraction of rows whose column is equal to a value. */
+  private static @Nullable Double equalSelectivity(ColumnStatistic cs,
+      double rowCount, Comparable value) {
+    double commonFraction = 0d;
+    int commonCount = 0;
+    final Map<Comparable, Double> mostCommonValues = cs.getMostCommonValues();
+    if (mostCommonValues != null) {
+      for (Map.Entry<Comparable, Double> entry : mostCommonValues.entrySet()) {
+        final Comparable v = normalize(entry.getKey());
+        final Integer c = v == null ? null : compare(v, value);
+        if (c != null && c == 0) {
+          return Math.min(entry.getValue() / rowCount, 1d);
+        }
+        commonFraction += entry.getValue() / rowCount;
+        ++commonCount;
+      }
+    }
+    final Comparable min = normalize(cs.getMin());
+    final Comparable max = normalize(cs.getMax());
+    final Integer c0 = min == null ? null : compare(value, min);
+    final Integer c1 = max == null ? null : compare(value, max);
+    if (c0 != null && c0 < 0 || c1 != null && c1 > 0) {
+      // Outside the range of values in the column
+      return 0d;
+    }
+    final Double distinctCount = cs.getDistinctCount();
+    if (distinctCount == null) {
+      return null;
+    }
+    final double remaining =
+        Math.max(0d, 1d - nullFraction(cs, rowCount) - commonFraction);
+    return remaining / Math.max(distinctCount - commonCount, 1d);
+  }
+
+  /** Returns the fraction of rows whose column is within a range; a null
+   * bound means unbounded. */
+  private static @Nullable Double rangeSelectivity(ColumnStatistic cs,
+      double rowCount, @Nullable Comparable lower, boolean lowerInclusive,
+      @Nullable Comparable upper, boolean upperInclusive) {
+    final Double lowerFraction = lower == null ? (Double) 0d : cdf(cs, lower);
+    final Double upperFraction = upper == null ? (Double) 1d : cdf(cs, upper);
+    if (lowerFraction == null || upperFraction == null) {
+      return null;
+    }
+    double selectivity =
+        (upperFraction - lowerFraction) * (1d - nullFraction(cs, rowCount));
+    // cdf gives the fraction of values less than a value, so adjust for
+    // the rows equal to each bound
+    if (upper != null && upperInclusive) {
+      selectivity += orZero(equalSelectivity(cs, rowCount, upper));
+    }
+    if (lower != null && !lowerInclusive) {
+      selectivity -= orZero(equalSelectivity(cs, rowCount, lower));
+    }
+    return Math.min(Math.max(selectivity, 0d), 1d);
+  }
+
+  private static double orZero(@Nullable Double d) {
+    return d == null ? 0d : d;
+  }
+
+  /** Returns the fraction of non-null values of a column that are less
+   * than a given value, or null if not known. Uses the histogram if there
+   * is one, otherwise assumes that values are uniformly distributed
+   * between the minimum and maximum. */
+  private static @Nullable Double cdf(ColumnStatistic cs, Comparable value) {
+    final List<Comparable> histogram = cs.getHistogram();
+    if (histogram != null && histogram.size() >= 2) {
+      final int bucketCount = histogram.size() - 1;
+      for (int i = bucketCount; i >= 0; i--) {
+        final Comparable bound = normalize(histogram.get(i));
+        final Integer c = bound == null ? null : compare(bound, value);
+        if (c == null) {
+          return null;
+        }
+        if (c < 0) {
+          if (i == bucketCount) {
+            return 1d;
+          }
+          final Comparable next = normalize(histogram.get(i + 1));
+          return (i + interpolate(bound, next, value)) / bucketCount;
+        }
+      }
+      return 0d;
+    }
+    final Comparable min = normalize(cs.getMin());
+    final Comparable max = normalize(cs.getMax());
+    if (min == null || max == null) {
+      return null;
+    }
+    final Integer c0 = compare(value, min);
+    final Integer c1 = compare(value, max);
+    if (c0 == null || c1 == null) {
+      return null;
+    }
+    if (c0 <= 0) {
+      return 0d;
+    }
+    if (c1 > 0) {
+      return 1d;
+    }
+    return interpolate(min, max, value);
+  }
+
+  /** Returns where a value lies between two bounds, as a fraction between 0
+   * and 1; or 0.5 if the values are not numeric. */
+  private static double interpolate(Comparable lower,
+      @Nullable Comparable upper, Comparable value) {
+    if (lower instanceof BigDecimal
+        && upper instanceof BigDecimal
+        && value instanceof BigDecimal) {
+      final BigDecimal width = ((BigDecimal) upper).subtract((BigDecimal) lower);
+      if (width.signum() <= 0) {
+        return 1d;
+      }
+      final double fraction =
+          ((BigDecimal) value).subtract((BigDecimal) lower)
+              .divide(width, MathContext.DECIMAL64).doubleValue();
+      return Math.min(Math.max(fraction, 0d), 1d);
+    }
+    return 0.5d;
+  }
+
+  /** Compares two normalized values; returns null if they are of different
+   * types. */
+  @SuppressWarnings("unchecked")
+  private static @Nullable Integer compare(Comparable v0, Comparable v1) {
+    if (v0.getClass() != v1.getClass()) {
+      return null;
+    }
+    return Integer.signum(v0.compareTo(v1));
+  }
+
+  /** Converts a value to a form in which it can be compared with values of
+   * the same type: numbers to {@link BigDecimal}, and character strings to
+   * {@link String}. */
+  private static @Nullable Comparable normalize(@Nullable Object o) {
+    if (o instanceof BigDecimal) {
+      return (BigDecimal) o;
+    }
+    if (o instanceof Double || o instanceof Float) {
+      final double d = ((Number) o).doubleValue();
+      return Double.isNaN(d) || Double.isInfinite(d)
+          ? null
+          : BigDecimal.valueOf(d);
+    }
+    if (o instanceof Number) {
+      return new BigDecimal(o.toString());
+    }
+    if (o instanceof NlsString) {
+      return ((NlsString) o).getValue();
+    }
+    if (o instanceof Character) {
+      return o.toString();
+    }
+    return o instanceof Comparable ? (Comparable) o : null;
+  }
+}
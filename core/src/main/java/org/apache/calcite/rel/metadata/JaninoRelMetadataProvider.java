@@ -21,6 +21,7 @@
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.metadata.janino.RelMetadataHandlerGeneratorUtil;
 import org.apache.calcite.util.Util;
+import org.apache.calcite.util.javac.CompiledClassCache;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.CacheBuilder;
@@ -157,7 +158,10 @@ static  <MH extends MetadataHandler<?>> MH compile(String className,
     }
 
     final ISimpleCompiler compiler = compilerFactory.newSimpleCompiler();
-    compiler.setParentClassLoader(JaninoRexCompiler.class.getClassLoader());
+    final ClassLoader parentClassLoader =
+        requireNonNull(JaninoRexCompiler.class.getClassLoader(),
+            "classLoader");
+    compiler.setParentClassLoader(parentClassLoader);
 
     if (CalciteSystemProperty.DEBUG.value()) {
       // Add line numbers to the generated janino class
@@ -165,12 +169,20 @@ static  <MH extends MetadataHandler<?>> MH compile(String className,
       System.out.println(generatedCode);
     }
 
-    compiler.cook(generatedCode);
+    final CompiledClassCache classCache = CompiledClassCache.INSTANCE;
     final Constructor constructor;
     final Object o;
     try {
-      constructor = compiler.getClassLoader().loadClass(className)
-          .getDeclaredConstructors()[0];
+      final Class<?> clazz;
+      if (classCache != null) {
+        clazz =
+            classCache.load(className, generatedCode, parentClassLoader,
+                compiler);
+      } else {
+        compiler.cook(generatedCode);
+        clazz = compiler.getClassLoader().loadClass(className);
+      }
+      constructor = clazz.getDeclaredConstructors()[0];
       o = constructor.newInstance(argList.toArray());
     } catch (InstantiationException
         | IllegalAccessException
@@ -93,7 +93,13 @@ protected RelMdDistinctRowCount() {}
     if (handler != null) {
       return handler.getDistinctRowCount(scan, mq, groupKey, predicate);
     }
-    return getDistinctRowCount((RelNode) scan, mq, groupKey, predicate);
+    final Double distinctRowCount =
+        getDistinctRowCount((RelNode) scan, mq, groupKey, predicate);
+    if (distinctRowCount != null) {
+      return distinctRowCount;
+    }
+    return ColumnStatisticEstimator.getDistinctRowCount(scan, mq, groupKey,
+        predicate);
   }
 
   public @Nullable Double getDistinctRowCount(Union rel, RelMetadataQuery mq,
@@ -68,6 +68,11 @@ protected RelMdSelectivity() {
     if (handler != null) {
       return handler.getSelectivity(scan, mq, predicate);
     }
+    final Double selectivity =
+        ColumnStatisticEstimator.getSelectivity(scan, mq, predicate);
+    if (selectivity != null) {
+      return selectivity;
+    }
     return getSelectivity((RelNode) scan, mq, predicate);
   }
 
@@ -32,6 +32,7 @@
 
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 
@@ -265,15 +266,33 @@ public static RelMetadataQuery instance() {
    * {@link BuiltInMetadata.RowCount#getRowCount()}
    * statistic.
    *
+   * <p>If the same sub-plan has been executed, returns the number of rows it
+   * returned; see {@link CardinalityFeedback}.
+   *
    * @param rel the relational expression
    * @return estimated row count, or null if no reliable estimate can be
    * determined
    */
   public /* @Nullable: CALCITE-4263 */ Double getRowCount(RelNode rel) {
+    final Double observed = observedRowCount(rel);
+    if (observed != null) {
+      return observed;
+    }
+    final SharedMetadataCache.Key sharedKey = sharedKey(rel, "rowCount");
+    if (sharedKey != null) {
+      final Object v = sharedGet(sharedKey);
+      if (v != null) {
+        return (Double) v;
+      }
+    }
     for (;;) {
       try {
         Double result = rowCountHandler.getRowCount(rel, this);
-        return RelMdUtil.validateResult(castNonNull(result));
+        result = RelMdUtil.validateResult(castNonNull(result));
+        if (sharedKey != null) {
+          sharedPut(sharedKey, result);
+        }
+        return result;
       } catch (MetadataHandlerProvider.NoHandler e) {
         rowCountHandler = revise(BuiltInMetadata.RowCount.Handler.class);
       }
@@ -532,9 +551,26 @@ public static RelMetadataQuery instance() {
    */
   public @Nullable Set<ImmutableBitSet> getUniqueKeys(RelNode rel,
       boolean ignoreNulls) {
+    final SharedMetadataCache.Key sharedKey =
+        sharedKey(rel, ignoreNulls ? "uniqueKeysIgnoreNulls" : "uniqueKeys");
+    if (sharedKey != null) {
+      final Object v = sharedGet(sharedKey);
+      if (v != null) {
+        //noinspection unchecked
+        return v == NullSentinel.INSTANCE ? null : (Set<ImmutableBitSet>) v;
+      }
+    }
     for (;;) {
       try {
-        return uniqueKeysHandler.getUniqueKeys(rel, this, ignoreNulls);
+        Set<ImmutableBitSet> result =
+            uniqueKeysHandler.getUniqueKeys(rel, this, ignoreNulls);
+        if (sharedKey != null) {
+          if (result != null) {
+            result = ImmutableSet.copyOf(result);
+          }
+          sharedPut(sharedKey, result);
+        }
+        return result;
       } catch (MetadataHandlerProvider.NoHandler e) {
         uniqueKeysHandler = revise(BuiltInMetadata.UniqueKeys.Handler.class);
       }
@@ -913,10 +949,23 @@ public RexNode expand(RelNode rel, int column,
    * @return Predicates that can be pulled above this RelNode
    */
   public RelOptPredicateList getPulledUpPredicates(RelNode rel) {
+    final SharedMetadataCache.Key sharedKey = sharedKey(rel, "predicates");
+    if (sharedKey != null) {
+      final Object v = sharedGet(sharedKey);
+      if (v != null) {
+        return (RelOptPredicateList) v;
+      }
+    }
     for (;;) {
       try {
         RelOptPredicateList result = predicatesHandler.getPredicates(rel, this);
-        return result != null ? result : RelOptPredicateList.EMPTY;
+        if (result == null) {
+          result = RelOptPredicateList.EMPTY;
+        }
+        if (sharedKey != null) {
+          sharedPut(sharedKey, result);
+        }
+        return result;
       } catch (MetadataHandlerProvider.NoHandler e) {
         predicatesHandler = revise(BuiltInMetadata.Predicates.Handler.class);
       }
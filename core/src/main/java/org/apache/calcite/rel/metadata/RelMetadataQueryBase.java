@@ -16,6 +16,9 @@
  */
 package org.apache.calcite.rel.metadata;
 
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.hep.HepRelVertex;
+import org.apache.calcite.plan.volcano.RelSubset;
 import org.apache.calcite.rel.RelNode;
 
 import com.google.common.collect.HashBasedTable;
@@ -24,6 +27,8 @@
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 
@@ -79,6 +84,14 @@ public class RelMetadataQueryBase {
   public static final ThreadLocal<@Nullable JaninoRelMetadataProvider> THREAD_PROVIDERS =
       new ThreadLocal<>();
 
+  /** Key in {@link #map} of the detached form of a relational expression
+   * whose metadata may be shared; see {@link #sharedKey(RelNode, Object)}. */
+  private static final Object SHARED_FRAGMENT_KEY = new Object();
+
+  /** Key in {@link #map} of the key of a relational expression in
+   * {@link CardinalityFeedback}; see {@link #observedRowCount(RelNode)}. */
+  private static final Object FEEDBACK_KEY = new Object();
+
   //~ Constructors -----------------------------------------------------------
   @Deprecated // to be removed before 2.0
   protected RelMetadataQueryBase(@Nullable JaninoRelMetadataProvider metadataProvider) {
@@ -134,6 +147,126 @@ protected <MH extends MetadataHandler<?>> MH handler(Class<MH> handlerClass) {
     return getMetadataHandlerProvider().handler(handlerClass);
   }
 
+  /**
+   * Returns the key of a metadata value in the {@link SharedMetadataCache},
+   * or null if the cache is disabled or the value cannot be shared.
+   *
+   * @param rel Relational expression
+   * @param metadataKey Kind of metadata, and its arguments
+   */
+  protected SharedMetadataCache.@Nullable Key sharedKey(RelNode rel,
+      Object metadataKey) {
+    final SharedMetadataCache cache = sharedMetadataCache();
+    if (cache == null || metadataHandlerProvider == null) {
+      return null;
+    }
+    final SharedMetadataCache.Fragment fragment = sharedFragment(rel);
+    if (fragment == null) {
+      return null;
+    }
+    return cache.key(metadataHandlerProvider, fragment, rel.getRowType(),
+        metadataKey);
+  }
+
+  /** Returns a value from the {@link SharedMetadataCache};
+   * {@link NullSentinel#INSTANCE} if the value is null, or null if it is not
+   * present. */
+  protected @Nullable Object sharedGet(SharedMetadataCache.Key key) {
+    return castNonNull(sharedMetadataCache()).get(key);
+  }
+
+  /** Adds a value to the {@link SharedMetadataCache}. */
+  protected void sharedPut(SharedMetadataCache.Key key, @Nullable Object value) {
+    castNonNull(sharedMetadataCache()).put(key, value);
+  }
+
+  /** Returns the cache of metadata values shared with other queries, or null
+   * if values are not shared. By default,
+   * {@link SharedMetadataCache#INSTANCE}. */
+  protected @Nullable SharedMetadataCache sharedMetadataCache() {
+    return SharedMetadataCache.INSTANCE;
+  }
+
+  /** Returns the row counts observed while executing plans, or null if
+   * observed row counts are not used. By default,
+   * {@link CardinalityFeedback#instance()}. */
+  protected @Nullable CardinalityFeedback cardinalityFeedback() {
+    return CardinalityFeedback.instance();
+  }
+
+  /** Returns the row count observed while executing a relational expression,
+   * or null if none has been recorded; the
+   * {@link CardinalityFeedback#key key} of the expression is memoized in
+   * {@link #map}. */
+  protected @Nullable Double observedRowCount(RelNode rel) {
+    final CardinalityFeedback feedback = cardinalityFeedback();
+    if (feedback == null || feedback.size() == 0) {
+      return null;
+    }
+    final String key = feedbackKey(rel);
+    return key == null ? null : feedback.get(key);
+  }
+
+  /** Returns the key of a relational expression in
+   * {@link CardinalityFeedback}; memoized in {@link #map}. A
+   * {@link RelSubset} or {@link HepRelVertex} has the key of the expression
+   * that it currently represents, which may change, so is not memoized. */
+  private @Nullable String feedbackKey(RelNode rel) {
+    if (rel instanceof RelSubset) {
+      return feedbackKey(((RelSubset) rel).stripped());
+    }
+    if (rel instanceof HepRelVertex) {
+      return feedbackKey(((HepRelVertex) rel).getCurrentRel());
+    }
+    Object v = map.get(rel, FEEDBACK_KEY);
+    if (v == null) {
+      v = NullSentinel.mask(CardinalityFeedback.key(rel));
+      map.put(rel, FEEDBACK_KEY, v);
+    }
+    return v == NullSentinel.INSTANCE ? null : (String) v;
+  }
+
+  /** Returns the detached form of a relational expression, or null if its
+   * metadata cannot be shared; memoized in {@link #map}. */
+  private SharedMetadataCache.@Nullable Fragment sharedFragment(RelNode rel) {
+    final Object v = map.get(rel, SHARED_FRAGMENT_KEY);
+    if (v != null) {
+      return v == NullSentinel.INSTANCE
+          ? null
+          : (SharedMetadataCache.Fragment) v;
+    }
+    final SharedMetadataCache.Fragment fragment = computeSharedFragment(rel);
+    map.put(rel, SHARED_FRAGMENT_KEY, NullSentinel.mask(fragment));
+    return fragment;
+  }
+
+  private SharedMetadataCache.@Nullable Fragment computeSharedFragment(
+      RelNode rel) {
+    if (rel instanceof RelSubset || rel instanceof HepRelVertex) {
+      return null;
+    }
+    final List<SharedMetadataCache.Fragment> inputs = new ArrayList<>();
+    for (RelNode input : rel.getInputs()) {
+      final SharedMetadataCache.Fragment inputFragment = sharedFragment(input);
+      if (inputFragment == null) {
+        return null;
+      }
+      inputs.add(inputFragment);
+    }
+    org.apache.calcite.schema.Table table = null;
+    final RelOptTable relOptTable = rel.getTable();
+    if (relOptTable != null) {
+      // Tables are identified by the underlying Table object, which outlives
+      // the RelOptTable of each statement; a RelOptTable would keep the
+      // statement's catalog reader in memory.
+      table = relOptTable.unwrap(org.apache.calcite.schema.Table.class);
+      if (table == null) {
+        return null;
+      }
+    }
+    return SharedMetadataCache.Fragment.of(rel, inputs, table);
+  }
+
   /**
    * Removes cached metadata values for specified RelNode.
    *
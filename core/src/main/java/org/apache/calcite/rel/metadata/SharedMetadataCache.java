@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.config.CalciteSystemProperty;
+import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Cache of metadata values that is shared by all planners and
+ * {@link RelMetadataQuery} instances.
+ *
+ * <p>Each {@link RelMetadataQuery} caches the values it computes, but only
+ * for its own lifetime, and only for the same {@link RelNode} objects. This
+ * cache holds values for plan fragments that are structurally equal, so the
+ * row counts, unique keys and predicates of the same table scans and
+ * sub-plans are not recomputed for every statement.
+ *
+ * <p>Only immutable plan fragments are eligible; a fragment that contains a
+ * {@link org.apache.calcite.plan.volcano.RelSubset} or
+ * {@link org.apache.calcite.plan.hep.HepRelVertex} has metadata that changes
+ * as its planner runs. While a planner is running, the inputs of the
+ * expressions in its memo are such placeholders, so only table scans and
+ * other expressions without inputs share values; fragments with inputs
+ * share values once they have been planned, for example when the metadata
+ * of a final plan is computed, or when a plan is built without a planner.
+ * A fragment that reads a table that cannot be unwrapped to a {@link Table}
+ * is not eligible either.
+ *
+ * <p>A value is identified by the metadata handler provider, a description
+ * of the fragment's structure (the classes, traits and attributes of its
+ * expressions), its row type, the {@link Table} objects it reads, and the
+ * kind of metadata. Keys do not refer to the fragment, so entries do not
+ * keep its cluster and planner in memory. If a table is replaced by a new
+ * object, values for the old object are no longer found; but if the
+ * statistics of a table change, call {@link #invalidate(Table)}.
+ *
+ * <p>The cache is thread-safe.
+ *
+ * @see CalciteSystemProperty#METADATA_SHARED_CACHE_MAX_SIZE
+ */
+public class SharedMetadataCache {
+  /** The cache used by {@link RelMetadataQuery}, or null if the cache is
+   * disabled. */
+  public static final @Nullable SharedMetadataCache INSTANCE =
+      CalciteSystemProperty.METADATA_SHARED_CACHE_MAX_SIZE.value() > 0
+          ? new SharedMetadataCache(
+              CalciteSystemProperty.METADATA_SHARED_CACHE_MAX_SIZE.value())
+          : null;
+
+  private final Cache<Key, Object> cache;
+
+  /** Creates a SharedMetadataCache that holds at most {@code maximumSize}
+   * values, discarding the least recently used. */
+  public SharedMetadataCache(int maximumSize) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .recordStats()
+            .build();
+  }
+
+  /** Returns the key of a metadata value.
+   *
+   * @param provider Metadata handler provider
+   * @param fragment Detached form of a relational expression
+   * @param rowType Row type of the relational expression
+   * @param metadataKey Kind of metadata, and its arguments
+   */
+  Key key(Object provider, Fragment fragment, RelDataType rowType,
+      Object metadataKey) {
+    return new Key(provider, fragment.description,
+        rowType.getFullTypeString(), fragment.tables, metadataKey);
+  }
+
+  /** Returns a cached value, {@link NullSentinel#INSTANCE} if the cached
+   * value is null, or null if there is no cached value. */
+  @Nullable Object get(Key key) {
+    return cache.getIfPresent(key);
+  }
+
+  /** Adds a value to the cache. */
+  void put(Key key, @Nullable Object value) {
+    cache.put(key, NullSentinel.mask(value));
+  }
+
+  /** Removes the values of all plan fragments that read a given table.
+   * Call this method when the statistics of the table change. */
+  public void invalidate(Table table) {
+    cache.asMap().keySet().removeIf(key -> key.tables.contains(table));
+  }
+
+  /** Removes all values. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** Returns the number of values in the cache. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Returns statistics about the use of the cache. */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /** Key of a metadata value. */
+  public static final class Key {
+    final Object provider;
+    final String description;
+    final String rowType;
+    final ImmutableList<Object> tables;
+    final Object metadataKey;
+
+    Key(Object provider, String description, String rowType,
+        List<Object> tables, Object metadataKey) {
+      this.provider = provider;
+      this.description = description;
+      this.rowType = rowType;
+      this.tables = ImmutableList.copyOf(tables);
+      this.metadataKey = metadataKey;
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(provider, description, rowType, tables,
+          metadataKey);
+    }
+
+    @Override public boolean equals(@Nullable Object obj) {
+      return obj == this
+          || obj instanceof Key
+          && provider.equals(((Key) obj).provider)
+          && description.equals(((Key) obj).description)
+          && rowType.equals(((Key) obj).rowType)
+          && tables.equals(((Key) obj).tables)
+          && metadataKey.equals(((Key) obj).metadataKey);
+    }
+  }
+
+  /** Plan fragment in a form that does not refer to its relational
+   * expressions: a description of its structure, and the tables it reads. */
+  static final class Fragment {
+    final String description;
+    final ImmutableList<Object> tables;
+
+    private Fragment(String description, List<Object> tables) {
+      this.description = description;
+      this.tables = ImmutableList.copyOf(tables);
+    }
+
+    /** Creates the fragment of a relational expression, given the fragments
+     * of its inputs and the table it reads, if any. */
+    static Fragment of(RelNode rel, List<Fragment> inputs,
+        @Nullable Table table) {
+      final List<Pair<String, @Nullable Object>> items = new ArrayList<>();
+      rel.explainTerms(new CardinalityFeedback.ItemWriter(items));
+      final StringBuilder buf = new StringBuilder();
+      buf.append(rel.getRelTypeName())
+          .append('.')
+          .append(rel.getTraitSet())
+          .append(items)
+          .append('(');
+      final Set<Object> tables = new LinkedHashSet<>();
+      for (Ord<Fragment> input : Ord.zip(inputs)) {
+        if (input.i > 0) {
+          buf.append(", ");
+        }
+        buf.append(input.e.description);
+        tables.addAll(input.e.tables);
+      }
+      buf.append(')');
+      if (table != null) {
+        tables.add(table);
+      }
+      return new Fragment(buf.toString(), ImmutableList.copyOf(tables));
+    }
+  }
+}
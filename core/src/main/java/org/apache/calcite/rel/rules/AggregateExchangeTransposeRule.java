@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.rules;
+
+import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelRule;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.core.Exchange;
+import org.apache.calcite.rel.logical.LogicalAggregate;
+import org.apache.calcite.rel.logical.LogicalExchange;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlSplittableAggFunction;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.mapping.Mapping;
+import org.apache.calcite.util.mapping.MappingType;
+import org.apache.calcite.util.mapping.Mappings;
+
+import org.immutables.value.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Planner rule that splits an {@link Aggregate} on top of an
+ * {@link Exchange} into a partial aggregate below the exchange and a final
+ * aggregate above it.
+ *
+ * <p>For example,
+ *
+ * <blockquote><pre>
+ * Aggregate(group=[{1}], C=[COUNT()], S=[SUM($2)])
+ *   Exchange(distribution=[hash[1]])
+ *     Scan</pre></blockquote>
+ *
+ * <p>becomes
+ *
+ * <blockquote><pre>
+ * Aggregate(group=[{0}], C=[$SUM0($1)], S=[SUM($2)])
+ *   Exchange(distribution=[hash[0]])
+ *     Aggregate(group=[{1}], C=[COUNT()], S=[SUM($2)])
+ *       Scan</pre></blockquote>
+ *
+ * <p>so that each producer of the exchange sends one partial row per group
+ * rather than every input row. Each aggregate function must implement
+ * {@link SqlSplittableAggFunction}, which defines the partial function and
+ * the function that combines partial results; the distribution of the
+ * exchange must use only grouping columns, so that it can be expressed in
+ * terms of the partial aggregate's output.
+ *
+ * @see CoreRules#AGGREGATE_EXCHANGE_TRANSPOSE
+ */
+@Value.Enclosing
+public class AggregateExchangeTransposeRule
+    extends RelRule<AggregateExchangeTransposeRule.Config>
+    implements TransformationRule {
+
+  /** Creates an AggregateExchangeTransposeRule. */
+  protected AggregateExchangeTransposeRule(Config config) {
+    super(config);
+  }
+
+  @Override public void onMatch(RelOptRuleCall call) {
+    final Aggregate aggregate = call.rel(0);
+    final Exchange exchange = call.rel(1);
+    if (aggregate.getGroupType() != Aggregate.Group.SIMPLE) {
+      return;
+    }
+    final ImmutableBitSet groupSet = aggregate.getGroupSet();
+    final List<SqlSplittableAggFunction> splitters = new ArrayList<>();
+    for (AggregateCall aggCall : aggregate.getAggCallList()) {
+      final SqlSplittableAggFunction splitter =
+          aggCall.getAggregation().unwrap(SqlSplittableAggFunction.class);
+      if (splitter == null
+          || aggCall.isDistinct()
+          || aggCall.distinctKeys != null
+          || aggCall.hasFilter()
+          || !aggCall.getCollation().getFieldCollations().isEmpty()) {
+        return;
+      }
+      splitters.add(splitter);
+    }
+    final RelDistribution distribution = exchange.getDistribution();
+    if (!groupSet.contains(ImmutableBitSet.of(distribution.getKeys()))) {
+      return;
+    }
+    if (RelMdUtil.areColumnsDefinitelyUnique(call.getMetadataQuery(),
+        exchange.getInput(), groupSet)) {
+      // Each group has one input row, as it does once this rule has fired,
+      // so a partial aggregate would not reduce the rows sent.
+      return;
+    }
+
+    final RelBuilder relBuilder = call.builder();
+    final int fieldCount = exchange.getInput().getRowType().getFieldCount();
+    final Mappings.TargetMapping identity =
+        Mappings.createIdentity(fieldCount);
+    final List<AggregateCall> partialCalls = new ArrayList<>();
+    for (Ord<AggregateCall> aggCall : Ord.zip(aggregate.getAggCallList())) {
+      partialCalls.add(splitters.get(aggCall.i).split(aggCall.e, identity));
+    }
+    relBuilder.push(exchange.getInput())
+        .aggregate(relBuilder.groupKey(groupSet), partialCalls);
+
+    // The partial aggregate's output starts with the grouping columns, so
+    // redistribute on the ordinals of the distribution keys among them.
+    final int groupCount = groupSet.cardinality();
+    final Mapping mapping =
+        Mappings.create(MappingType.INVERSE_SURJECTION, fieldCount,
+            groupCount);
+    for (Ord<Integer> key : Ord.zip(groupSet)) {
+      mapping.set(key.e, key.i);
+    }
+    relBuilder.exchange(distribution.apply(mapping));
+
+    final RelDataType partialRowType = relBuilder.peek().getRowType();
+    final List<RexNode> projects = new ArrayList<>(relBuilder.fields());
+    final List<AggregateCall> finalCalls = new ArrayList<>();
+    for (Ord<AggregateCall> aggCall : Ord.zip(aggregate.getAggCallList())) {
+      finalCalls.add(
+          splitters.get(aggCall.i).topSplit(relBuilder.getRexBuilder(),
+              registry(projects), groupCount, partialRowType, aggCall.e,
+              groupCount + aggCall.i, -1));
+    }
+    relBuilder.project(projects)
+        .aggregate(relBuilder.groupKey(ImmutableBitSet.range(groupCount)),
+            finalCalls)
+        .convert(aggregate.getRowType(), false);
+    call.transformTo(relBuilder.build());
+  }
+
+  /** Creates a {@link SqlSplittableAggFunction.Registry} that is a view of a
+   * list. */
+  private static <E> SqlSplittableAggFunction.Registry<E> registry(
+      final List<E> list) {
+    return e -> {
+      int i = list.indexOf(e);
+      if (i < 0) {
+        i = list.size();
+        list.add(e);
+      }
+      return i;
+    };
+  }
+
+  /** Rule configuration. */
+  @Value.Immutable
+  public interface Config extends RelRule.Config {
+    Config DEFAULT = ImmutableAggregateExchangeTransposeRule.Config.of()
+        .withOperandFor(LogicalAggregate.class, LogicalExchange.class);
+
+    @Override default AggregateExchangeTransposeRule toRule() {
+      return new AggregateExchangeTransposeRule(this);
+    }
+
+    /** Defines an operand tree for the given classes. */
+    default Config withOperandFor(Class<? extends Aggregate> aggregateClass,
+        Class<? extends Exchange> exchangeClass) {
+      return withOperandSupplier(b0 ->
+          b0.operand(aggregateClass).oneInput(b1 ->
+              b1.operand(exchangeClass).anyInputs()))
+          .as(Config.class);
+    }
+  }
+}
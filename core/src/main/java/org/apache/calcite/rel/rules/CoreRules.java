@@ -23,6 +23,7 @@
 import org.apache.calcite.rel.core.Aggregate;
 import org.apache.calcite.rel.core.Calc;
 import org.apache.calcite.rel.core.Correlate;
+import org.apache.calcite.rel.core.Exchange;
 import org.apache.calcite.rel.core.Filter;
 import org.apache.calcite.rel.core.Intersect;
 import org.apache.calcite.rel.core.Join;
@@ -173,6 +174,12 @@ private CoreRules() {}
   public static final AggregateUnionTransposeRule AGGREGATE_UNION_TRANSPOSE =
       AggregateUnionTransposeRule.Config.DEFAULT.toRule();
 
+  /** Rule that splits an {@link Aggregate} on top of an {@link Exchange}
+   * into a partial aggregate below the exchange and a final aggregate above
+   * it. */
+  public static final AggregateExchangeTransposeRule AGGREGATE_EXCHANGE_TRANSPOSE =
+      AggregateExchangeTransposeRule.Config.DEFAULT.toRule();
+
   /** Rule that matches an {@link Aggregate} whose input is a {@link Union}
    * one of whose inputs is an {@code Aggregate}.
    *
@@ -26,6 +26,7 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.trace.CalciteTrace;
 
 import com.google.common.collect.ImmutableList;
@@ -37,6 +38,7 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -62,8 +64,18 @@ public class DpHyp {
 
   private final int bloat;
 
+  // maximum time that the enumeration may take, in nanoseconds; 0 means no limit
+  private final long timeLimitNanos;
+
+  private long deadline;
+
   public DpHyp(HyperGraph hyperGraph, RelBuilder builder, RelMetadataQuery relMetadataQuery,
       int bloat) {
+    this(hyperGraph, builder, relMetadataQuery, bloat, 0L);
+  }
+
+  public DpHyp(HyperGraph hyperGraph, RelBuilder builder, RelMetadataQuery relMetadataQuery,
+      int bloat, long timeLimitMillis) {
     this.hyperGraph =
         hyperGraph.copy(
             hyperGraph.getTraitSet(),
@@ -73,6 +85,7 @@ public DpHyp(HyperGraph hyperGraph, RelBuilder builder, RelMetadataQuery relMeta
     this.builder = builder;
     this.mq = relMetadataQuery;
     this.bloat = bloat;
+    this.timeLimitNanos = TimeUnit.MILLISECONDS.toNanos(timeLimitMillis);
   }
 
   /**
@@ -84,17 +97,8 @@ public DpHyp(HyperGraph hyperGraph, RelBuilder builder, RelMetadataQuery relMeta
    */
   public void startEnumerateJoin() {
     int size = hyperGraph.getInputs().size();
-    for (int i = 0; i < size; i++) {
-      long singleNode = LongBitmap.newBitmap(i);
-      LOGGER.debug("Initialize the dp table. Node {{}} is:\n {}",
-          i,
-          RelOptUtil.toString(hyperGraph.getInput(i)));
-      dpTable.put(singleNode, hyperGraph.getInput(i));
-      resultInputOrder.put(
-          singleNode,
-          ImmutableList.of(new HyperGraph.NodeState(i, true)));
-      hyperGraph.initEdgeBitMap(singleNode);
-    }
+    initDpTable();
+    deadline = System.nanoTime() + timeLimitNanos;
 
     try {
       // start enumerating from the second to last
@@ -105,7 +109,82 @@ public void startEnumerateJoin() {
         enumerateCsgRec(csg, forbidden);
       }
     } catch (PlanTooComplexError e) {
-      LOGGER.error("The dp table is too large, and the enumeration ends automatically.");
+      LOGGER.error("The dp table is too large, or the enumeration took too long, "
+          + "and the enumeration ends automatically.");
+    }
+  }
+
+  /**
+   * An alternative to {@link DpHyp#startEnumerateJoin()} for graphs that are too large to
+   * enumerate exhaustively. It follows the Greedy Operator Ordering (GOO) heuristic: starting
+   * from the leaf nodes, it repeatedly joins the pair of connected subgraphs whose join produces
+   * the fewest rows, until a single subgraph remains. It considers O(n^3) csg-cmp pairs, and
+   * may build bushy trees.
+   *
+   * <p>The greedy enumeration is not limited by bloat or by time. If it gets stuck, because no
+   * pair of the remaining subgraphs can be legally joined, {@link DpHyp#getBestPlan()} returns
+   * null.
+   */
+  public void startEnumerateGreedy() {
+    int size = hyperGraph.getInputs().size();
+    initDpTable();
+    List<Long> subgraphs = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      subgraphs.add(LongBitmap.newBitmap(i));
+    }
+
+    while (subgraphs.size() > 1) {
+      int bestLeft = -1;
+      int bestRight = -1;
+      @Nullable Pair<RelNode, ImmutableList<HyperGraph.NodeState>> best = null;
+      for (int i = 0; i < subgraphs.size(); i++) {
+        for (int j = i + 1; j < subgraphs.size(); j++) {
+          long csg = subgraphs.get(i);
+          long cmp = subgraphs.get(j);
+          List<HyperEdge> edges = hyperGraph.connectCsgCmp(csg, cmp);
+          if (edges.isEmpty()) {
+            continue;
+          }
+          Pair<RelNode, ImmutableList<HyperGraph.NodeState>> plan = buildJoin(csg, cmp, edges);
+          if (plan != null && (best == null || isSmaller(plan.left, best.left))) {
+            best = plan;
+            bestLeft = i;
+            bestRight = j;
+          }
+        }
+      }
+      if (best == null) {
+        LOGGER.error("No pair of subgraphs can be joined, and the greedy enumeration ends.");
+        return;
+      }
+      long csg = subgraphs.get(bestLeft);
+      long cmp = subgraphs.get(bestRight);
+      hyperGraph.updateEdgesForUnion(csg, cmp);
+      LOGGER.debug("Greedily joined set {} and {}. The plan is:\n {}",
+          LongBitmap.printBitmap(csg),
+          LongBitmap.printBitmap(cmp),
+          RelOptUtil.toString(best.left));
+      dpTable.put(csg | cmp, best.left);
+      resultInputOrder.put(csg | cmp, best.right);
+      subgraphs.set(bestLeft, csg | cmp);
+      subgraphs.remove(bestRight);
+    }
+  }
+
+  private void initDpTable() {
+    dpTable.clear();
+    resultInputOrder.clear();
+    int size = hyperGraph.getInputs().size();
+    for (int i = 0; i < size; i++) {
+      long singleNode = LongBitmap.newBitmap(i);
+      LOGGER.debug("Initialize the dp table. Node {{}} is:\n {}",
+          i,
+          RelOptUtil.toString(hyperGraph.getInput(i)));
+      dpTable.put(singleNode, hyperGraph.getInput(i));
+      resultInputOrder.put(
+          singleNode,
+          ImmutableList.of(new HyperGraph.NodeState(i, true)));
+      hyperGraph.initEdgeBitMap(singleNode);
     }
   }
 
@@ -200,6 +279,48 @@ private void enumerateCmpRec(long csg, long cmp, long forbidden) {
    * <p>Corresponding to EmitCsgCmp in origin paper.
    */
   private void emitCsgCmp(long csg, long cmp, List<HyperEdge> edges) {
+    if (timeLimitNanos > 0 && System.nanoTime() - deadline > 0) {
+      throw new PlanTooComplexError();
+    }
+    Pair<RelNode, ImmutableList<HyperGraph.NodeState>> plan = buildJoin(csg, cmp, edges);
+    if (plan == null) {
+      return;
+    }
+    RelNode winPlan = plan.left;
+    @Nullable ImmutableList<HyperGraph.NodeState> winOrder = plan.right;
+
+    RelNode oriPlan = dpTable.get(csg | cmp);
+    boolean dpTableUpdated = true;
+    if (oriPlan != null) {
+      winPlan = chooseBetterPlan(winPlan, oriPlan);
+      if (winPlan.equals(oriPlan)) {
+        winOrder = resultInputOrder.get(csg | cmp);
+        dpTableUpdated = false;
+      }
+    } else {
+      // when enumerating a new connected subgraph, check whether the dpTable size is too large
+      if (dpTable.size() > bloat) {
+        throw new PlanTooComplexError();
+      }
+    }
+
+    assert winOrder != null;
+    if (dpTableUpdated) {
+      LOGGER.debug("Dp table is updated. The better plan for subgraph {} now is:\n {}",
+          LongBitmap.printBitmap(csg | cmp),
+          RelOptUtil.toString(winPlan));
+    }
+    dpTable.put(csg | cmp, winPlan);
+    resultInputOrder.put(csg | cmp, winOrder);
+  }
+
+  /**
+   * Given a connected csg-cmp pair and the hyperedges that connect them, build the cheaper of
+   * the Join plans (csg join cmp, and cmp join csg if the join is commutative), and the node list
+   * of that plan. Returns null if the pair cannot be legally joined.
+   */
+  private @Nullable Pair<RelNode, ImmutableList<HyperGraph.NodeState>> buildJoin(
+      long csg, long cmp, List<HyperEdge> edges) {
     RelNode child1 = dpTable.get(csg);
     RelNode child2 = dpTable.get(cmp);
     ImmutableList<HyperGraph.NodeState> csgOrder = resultInputOrder.get(csg);
@@ -209,11 +330,11 @@ private void emitCsgCmp(long csg, long cmp, List<HyperEdge> edges) {
 
     JoinRelType joinType = hyperGraph.extractJoinType(edges);
     if (joinType == null) {
-      return;
+      return null;
     }
     // verify whether the subgraph is legal by using the conflict rules in hyperedges
     if (!hyperGraph.applicable(csg | cmp, edges)) {
-      return;
+      return null;
     }
 
     List<HyperGraph.NodeState> unionOrder = new ArrayList<>(csgOrder);
@@ -290,29 +411,7 @@ private void emitCsgCmp(long csg, long cmp, List<HyperEdge> edges) {
         mq.getCumulativeCost(winPlan),
         mq.getRowCount(winPlan));
 
-    RelNode oriPlan = dpTable.get(csg | cmp);
-    boolean dpTableUpdated = true;
-    if (oriPlan != null) {
-      winPlan = chooseBetterPlan(winPlan, oriPlan);
-      if (winPlan.equals(oriPlan)) {
-        winOrder = resultInputOrder.get(csg | cmp);
-        dpTableUpdated = false;
-      }
-    } else {
-      // when enumerating a new connected subgraph, check whether the dpTable size is too large
-      if (dpTable.size() > bloat) {
-        throw new PlanTooComplexError();
-      }
-    }
-
-    assert winOrder != null;
-    if (dpTableUpdated) {
-      LOGGER.debug("Dp table is updated. The better plan for subgraph {} now is:\n {}",
-          LongBitmap.printBitmap(csg | cmp),
-          RelOptUtil.toString(winPlan));
-    }
-    dpTable.put(csg | cmp, winPlan);
-    resultInputOrder.put(csg | cmp, winOrder);
+    return Pair.of(winPlan, winOrder);
   }
 
   public @Nullable RelNode getBestPlan() {
@@ -338,6 +437,17 @@ private void emitCsgCmp(long csg, long cmp, List<HyperEdge> edges) {
         .build();
   }
 
+  /** Returns whether plan1 produces fewer rows than plan2, using the cumulative cost to
+   * break ties; the criterion of the greedy enumeration. */
+  private boolean isSmaller(RelNode plan1, RelNode plan2) {
+    double rows1 = mq.getRowCount(plan1);
+    double rows2 = mq.getRowCount(plan2);
+    if (rows1 != rows2) {
+      return rows1 < rows2;
+    }
+    return chooseBetterPlan(plan1, plan2) == plan1;
+  }
+
   private RelNode chooseBetterPlan(RelNode plan1, RelNode plan2) {
     RelOptCost cost1 = mq.getCumulativeCost(plan1);
     RelOptCost cost2 = mq.getCumulativeCost(plan2);
@@ -23,9 +23,15 @@
 import org.apache.calcite.rel.core.Join;
 import org.apache.calcite.tools.RelBuilder;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.immutables.value.Value;
 
 /** Rule that re-orders a {@link Join} tree using dphyp algorithm.
+ *
+ * <p>The exhaustive enumeration is limited by {@link Config#bloat()} and
+ * {@link Config#timeLimitMillis()}. If it exceeds either limit and
+ * {@link Config#greedyFallback()} is true, the graph is ordered by
+ * {@link DpHyp#startEnumerateGreedy() greedy enumeration} instead.
  *
  * @see CoreRules#HYPER_GRAPH_OPTIMIZE */
 @Value.Enclosing
@@ -43,9 +49,16 @@ protected DphypJoinReorderRule(Config config) {
     RelBuilder relBuilder = call.builder();
 
     // enumerate by Dphyp
-    DpHyp dpHyp = new DpHyp(hyperGraph, relBuilder, call.getMetadataQuery(), config.bloat());
+    DpHyp dpHyp =
+        new DpHyp(hyperGraph, relBuilder, call.getMetadataQuery(), config.bloat(),
+            config.timeLimitMillis());
     dpHyp.startEnumerateJoin();
-    RelNode orderedJoin = dpHyp.getBestPlan();
+    @Nullable RelNode orderedJoin = dpHyp.getBestPlan();
+    if (orderedJoin == null && config.greedyFallback()) {
+      DpHyp greedy = new DpHyp(hyperGraph, relBuilder, call.getMetadataQuery(), config.bloat());
+      greedy.startEnumerateGreedy();
+      orderedJoin = greedy.getBestPlan();
+    }
     if (orderedJoin == null) {
       return;
     }
@@ -68,8 +81,34 @@ public interface Config extends RelRule.Config {
      * If the graph with n inputs is fully connected and any combination is legal, the size of
      * dpTable is 2^n-1. The default value assumes n=7.
      */
-    default int bloat() {
+    @Value.Default default int bloat() {
       return 127;
     }
+
+    /** Sets {@link #bloat()}. */
+    Config withBloat(int bloat);
+
+    /**
+     * Limit to the time, in milliseconds, that exhaustive enumeration may take. 0, the default,
+     * means no limit.
+     */
+    @Value.Default default long timeLimitMillis() {
+      return 0L;
+    }
+
+    /** Sets {@link #timeLimitMillis()}. */
+    Config withTimeLimitMillis(long timeLimitMillis);
+
+    /**
+     * Whether to order the joins by greedy enumeration if the graph is too large to enumerate
+     * exhaustively within {@link #bloat()} and {@link #timeLimitMillis()}. If false, the rule
+     * does not fire for such graphs.
+     */
+    @Value.Default default boolean greedyFallback() {
+      return true;
+    }
+
+    /** Sets {@link #greedyFallback()}. */
+    Config withGreedyFallback(boolean greedyFallback);
   }
 }
@@ -777,6 +777,9 @@ ExInst<CalciteException> illegalArgumentForTableFunctionCall(String a0,
   @BaseMessage("Modifiable view must be based on a single table")
   ExInst<SqlValidatorException> modifiableViewMustBeBasedOnSingleTable();
 
+  @BaseMessage("Table ''{0}'' does not support ANALYZE TABLE; only tables created by CREATE TABLE do")
+  ExInst<SqlValidatorException> analyzeTableNotSupported(String a0);
+
   @BaseMessage("Modifiable view must be predicated only on equality expressions")
   ExInst<SqlValidatorException> modifiableViewMustHaveOnlyEqualityPredicates();
 
@@ -16,15 +16,20 @@
  */
 package org.apache.calcite.runtime;
 
+import org.apache.calcite.linq4j.SharedExecutor;
 import org.apache.calcite.rel.RelRoot;
 import org.apache.calcite.util.Holder;
 import org.apache.calcite.util.TryThreadLocal;
 import org.apache.calcite.util.Util;
 
+import com.google.common.collect.Lists;
+
 import org.apiguardian.api.API;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -112,6 +117,12 @@ public enum Hook {
   private final TryThreadLocal<List<Consumer<Object>>> threadHandlers =
       TryThreadLocal.withInitial(ArrayList::new);
 
+  static {
+    // Tasks that run on behalf of a query, such as the producer of an
+    // exchange, see the thread handlers of the thread that started them.
+    SharedExecutor.addContextPropagator(Hook::propagateThreadHandlers);
+  }
+
   /** Adds a handler for this Hook.
    *
    * <p>Returns a {@link Hook.Closeable} so that you can use the following
@@ -179,6 +190,31 @@ private static <T, R> Consumer<T> functionConsumer(
     };
   }
 
+  /** Returns a task that runs a given task with the calling thread's
+   * thread handlers. */
+  private static Runnable propagateThreadHandlers(Runnable task) {
+    final Map<Hook, List<Consumer<Object>>> map = new EnumMap<>(Hook.class);
+    for (Hook hook : values()) {
+      final List<Consumer<Object>> handlers = hook.threadHandlers.get();
+      if (!handlers.isEmpty()) {
+        map.put(hook, new ArrayList<>(handlers));
+      }
+    }
+    if (map.isEmpty()) {
+      return task;
+    }
+    return () -> {
+      final List<TryThreadLocal.Memo> memos = new ArrayList<>();
+      try {
+        map.forEach((hook, handlers) ->
+            memos.add(hook.threadHandlers.push(handlers)));
+        task.run();
+      } finally {
+        Lists.reverse(memos).forEach(TryThreadLocal.Memo::close);
+      }
+    };
+  }
+
   /** Removes a thread handler from this Hook. */
   @SuppressWarnings({"rawtypes", "UnusedReturnValue"})
   private boolean removeThread(Consumer handler) {
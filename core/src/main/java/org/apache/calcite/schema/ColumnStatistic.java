@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics about a column of a {@link Table}.
+ *
+ * <p>Values are represented as Java objects of the column's type, such as
+ * {@link Integer}, {@link java.math.BigDecimal} or {@link String}; numeric
+ * values of different classes are compared by value.
+ *
+ * <p>Each of the methods may return {@code null} meaning "not known".
+ *
+ * @see Statistic#getColumnStatistic(int)
+ * @see Statistics#ofColumn
+ */
+public interface ColumnStatistic {
+  /** Returns the approximate number of distinct non-null values in the
+   * column. */
+  default @Nullable Double getDistinctCount() {
+    return null;
+  }
+
+  /** Returns the approximate number of rows in which the column is null. */
+  default @Nullable Double getNullCount() {
+    return null;
+  }
+
+  /** Returns the smallest non-null value in the column. */
+  default @Nullable Comparable getMin() {
+    return null;
+  }
+
+  /** Returns the largest non-null value in the column. */
+  default @Nullable Comparable getMax() {
+    return null;
+  }
+
+  /** Returns the boundaries of an equi-depth histogram of the non-null
+   * values in the column.
+   *
+   * <p>A list of {@code n + 1} ascending values describes {@code n} buckets
+   * that each hold about the same number of rows; the first value is the
+   * minimum and the last is the maximum. */
+  default @Nullable List<Comparable> getHistogram() {
+    return null;
+  }
+
+  /** Returns the most common values in the column, each with the
+   * approximate number of rows that have that value. */
+  default @Nullable Map<Comparable, Double> getMostCommonValues() {
+    return null;
+  }
+}
@@ -65,4 +65,9 @@ default boolean isKey(ImmutableBitSet columns) {
   default @Nullable RelDistribution getDistribution()  {
     return null;
   }
+
+  /** Returns statistics about the column with a given ordinal. */
+  default @Nullable ColumnStatistic getColumnStatistic(int ordinal) {
+    return null;
+  }
 }
@@ -19,12 +19,15 @@
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelReferentialConstraint;
 import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.ImmutableNullableList;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Utility functions regarding {@link Statistic}.
@@ -65,11 +68,24 @@ public static Statistic of(final @Nullable Double rowCount,
       final @Nullable List<ImmutableBitSet> keys,
       final @Nullable List<RelReferentialConstraint> referentialConstraints,
       final @Nullable List<RelCollation> collations) {
+    return of(rowCount, keys, referentialConstraints, collations, null);
+  }
+
+  /** Returns a statistic with a given row count, set of unique keys,
+   * referential constraints, collations, and statistics for each column. */
+  public static Statistic of(final @Nullable Double rowCount,
+      final @Nullable List<ImmutableBitSet> keys,
+      final @Nullable List<RelReferentialConstraint> referentialConstraints,
+      final @Nullable List<RelCollation> collations,
+      final @Nullable List<? extends @Nullable ColumnStatistic> columnStatistics) {
     List<ImmutableBitSet> keysCopy = keys == null ? ImmutableList.of() : ImmutableList.copyOf(keys);
     List<RelReferentialConstraint> referentialConstraintsCopy =
         referentialConstraints == null ? null : ImmutableList.copyOf(referentialConstraints);
     List<RelCollation> collationsCopy =
         collations == null ? null : ImmutableList.copyOf(collations);
+    List<@Nullable ColumnStatistic> columnStatisticsCopy =
+        columnStatistics == null ? null
+            : ImmutableNullableList.copyOf(columnStatistics);
 
     return new Statistic() {
       @Override public @Nullable Double getRowCount() {
@@ -96,6 +112,59 @@ public static Statistic of(final @Nullable Double rowCount,
       @Override public @Nullable List<RelCollation> getCollations() {
         return collationsCopy;
       }
+
+      @Override public @Nullable ColumnStatistic getColumnStatistic(int ordinal) {
+        return columnStatisticsCopy == null
+            || ordinal >= columnStatisticsCopy.size()
+            ? null
+            : columnStatisticsCopy.get(ordinal);
+      }
+    };
+  }
+
+  /** Returns statistics about a column.
+   *
+   * @param distinctCount Number of distinct non-null values, or null
+   * @param nullCount Number of null values, or null
+   * @param min Smallest non-null value, or null
+   * @param max Largest non-null value, or null
+   * @param histogram Boundaries of an equi-depth histogram, or null
+   * @param mostCommonValues Most common values and their number of rows,
+   *                         or null
+   */
+  public static ColumnStatistic ofColumn(final @Nullable Double distinctCount,
+      final @Nullable Double nullCount, final @Nullable Comparable min,
+      final @Nullable Comparable max,
+      final @Nullable List<? extends Comparable> histogram,
+      final @Nullable Map<? extends Comparable, Double> mostCommonValues) {
+    final @Nullable List<Comparable> histogramCopy =
+        histogram == null ? null : ImmutableList.copyOf(histogram);
+    final @Nullable Map<Comparable, Double> mostCommonValuesCopy =
+        mostCommonValues == null ? null : ImmutableMap.copyOf(mostCommonValues);
+    return new ColumnStatistic() {
+      @Override public @Nullable Double getDistinctCount() {
+        return distinctCount;
+      }
+
+      @Override public @Nullable Double getNullCount() {
+        return nullCount;
+      }
+
+      @Override public @Nullable Comparable getMin() {
+        return min;
+      }
+
+      @Override public @Nullable Comparable getMax() {
+        return max;
+      }
+
+      @Override public @Nullable List<Comparable> getHistogram() {
+        return histogramCopy;
+      }
+
+      @Override public @Nullable Map<Comparable, Double> getMostCommonValues() {
+        return mostCommonValuesCopy;
+      }
     };
   }
 }
@@ -1302,6 +1302,9 @@ public enum SqlKind {
   /** {@code TRUNCATE TABLE} DDL statement. */
   TRUNCATE_TABLE,
 
+  /** {@code ANALYZE TABLE} DDL statement. */
+  ANALYZE_TABLE,
+
   /** {@code CREATE VIEW} DDL statement. */
   CREATE_VIEW,
 
@@ -1414,7 +1417,7 @@ public enum SqlKind {
       EnumSet.of(COMMIT, ROLLBACK, ALTER_SESSION,
           CREATE_SCHEMA, CREATE_FOREIGN_SCHEMA, DROP_SCHEMA,
           CREATE_TABLE, CREATE_TABLE_LIKE,
-          ALTER_TABLE, DROP_TABLE, TRUNCATE_TABLE,
+          ALTER_TABLE, DROP_TABLE, TRUNCATE_TABLE, ANALYZE_TABLE,
           CREATE_FUNCTION, DROP_FUNCTION,
           CREATE_VIEW, ALTER_VIEW, DROP_VIEW,
           CREATE_MATERIALIZED_VIEW, ALTER_MATERIALIZED_VIEW,
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.sql.ddl;
+
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlDdl;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlOperator;
+import org.apache.calcite.sql.SqlSpecialOperator;
+import org.apache.calcite.sql.SqlWriter;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.util.ImmutableNullableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Parse tree for {@code ANALYZE TABLE} statement.
+ *
+ * <p>If {@link #columnList} is null, computes statistics for all columns;
+ * otherwise only for the given columns.
+ */
+public class SqlAnalyzeTable extends SqlDdl {
+  private static final SqlOperator OPERATOR =
+      new SqlSpecialOperator("ANALYZE TABLE", SqlKind.ANALYZE_TABLE) {
+        @Override public SqlCall createCall(@Nullable SqlLiteral functionQualifier,
+            SqlParserPos pos, @Nullable SqlNode... operands) {
+          return new SqlAnalyzeTable(pos,
+              (SqlIdentifier) requireNonNull(operands[0], "name"),
+              (SqlNodeList) operands[1]);
+        }
+      };
+
+  public final SqlIdentifier name;
+  public final @Nullable SqlNodeList columnList;
+
+  /** Creates a SqlAnalyzeTable. */
+  SqlAnalyzeTable(SqlParserPos pos, SqlIdentifier name,
+      @Nullable SqlNodeList columnList) {
+    super(OPERATOR, pos);
+    this.name = requireNonNull(name, "name");
+    this.columnList = columnList; // may be null
+  }
+
+  @SuppressWarnings("nullness")
+  @Override public List<SqlNode> getOperandList() {
+    return ImmutableNullableList.of(name, columnList);
+  }
+
+  @Override public void unparse(SqlWriter writer, int leftPrec, int rightPrec) {
+    writer.keyword("ANALYZE");
+    writer.keyword("TABLE");
+    name.unparse(writer, leftPrec, rightPrec);
+    writer.keyword("COMPUTE STATISTICS");
+    if (columnList != null) {
+      writer.keyword("FOR COLUMNS");
+      final SqlWriter.Frame frame = writer.startList("", "");
+      for (SqlNode c : columnList) {
+        writer.sep(",");
+        c.unparse(writer, 0, 0);
+      }
+      writer.endList(frame);
+    }
+  }
+}
@@ -26,6 +26,8 @@
 import org.apache.calcite.sql.SqlOperator;
 import org.apache.calcite.sql.parser.SqlParserPos;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 /**
  * Utilities concerning {@link SqlNode} for DDL.
  */
@@ -115,6 +117,12 @@ public static SqlTruncateTable truncateTable(SqlParserPos pos,
     return new SqlTruncateTable(pos, name, continueIdentity);
   }
 
+  /** Creates an ANALYZE TABLE. */
+  public static SqlAnalyzeTable analyzeTable(SqlParserPos pos,
+      SqlIdentifier name, @Nullable SqlNodeList columnList) {
+    return new SqlAnalyzeTable(pos, name, columnList);
+  }
+
   /** Creates a DROP VIEW. */
   public static SqlDrop dropView(SqlParserPos pos, boolean ifExists,
       SqlIdentifier name) {
@@ -42,11 +42,13 @@
 import org.apache.calcite.linq4j.MemoryFactory;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
+import org.apache.calcite.linq4j.SlidingAggregate;
 import org.apache.calcite.linq4j.function.EqualityComparer;
 import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Functions;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.NullablePredicate2;
 import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
@@ -82,6 +84,7 @@
 import org.apache.calcite.rel.metadata.BuiltInMetadata.Size;
 import org.apache.calcite.rel.metadata.BuiltInMetadata.TableReferences;
 import org.apache.calcite.rel.metadata.BuiltInMetadata.UniqueKeys;
+import org.apache.calcite.rel.metadata.CardinalityFeedback;
 import org.apache.calcite.rel.metadata.Metadata;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.runtime.ArrayBindable;
@@ -214,6 +217,14 @@ public enum BuiltInMethod {
       Function1.class,
       Function1.class, Function2.class, EqualityComparer.class,
       boolean.class, boolean.class, Predicate2.class),
+  HASH_JOIN_WITH_MEMORY_BUDGET(EnumerableDefaults.class, "hashJoin",
+      Enumerable.class, Enumerable.class, Function1.class, Function1.class,
+      Function2.class, EqualityComparer.class, boolean.class, boolean.class,
+      Predicate2.class, long.class),
+  HASH_JOIN_LONG_KEY(EnumerableDefaults.class, "hashJoin", Enumerable.class,
+      Enumerable.class, LongFunction1.class, Predicate1.class,
+      LongFunction1.class, Predicate1.class, Function2.class, boolean.class,
+      boolean.class, Predicate2.class, long.class),
   LEFT_MARK_HASH_JOIN(ExtendedEnumerable.class, "leftMarkHashJoin", Enumerable.class,
       Function1.class,            // outer key null aware selector
       Function1.class,            // inner key null aware selector
@@ -251,12 +262,21 @@ public enum BuiltInMethod {
       Enumerable.class, Function1.class, Function1.class, Predicate2.class, Function2.class,
       JoinType.class, Comparator.class, EqualityComparer.class),
   SLICE0(Enumerables.class, "slice0", Enumerable.class),
+  CARDINALITY_FEEDBACK_COUNT(CardinalityFeedback.class, "count",
+      Enumerable.class, String.class),
   SEMI_JOIN(EnumerableDefaults.class, "semiJoin", Enumerable.class,
       Enumerable.class, Function1.class, Function1.class,
       EqualityComparer.class, Predicate2.class),
   ANTI_JOIN(EnumerableDefaults.class, "antiJoin", Enumerable.class,
       Enumerable.class, Function1.class, Function1.class,
       EqualityComparer.class, Predicate2.class),
+  SEMI_JOIN_WITH_MEMORY_BUDGET(EnumerableDefaults.class, "semiJoin",
+      Enumerable.class, Enumerable.class, Function1.class, Function1.class,
+      EqualityComparer.class, boolean.class, Predicate2.class, long.class),
+  SEMI_JOIN_LONG_KEY(EnumerableDefaults.class, "semiJoin", Enumerable.class,
+      Enumerable.class, LongFunction1.class, Predicate1.class,
+      LongFunction1.class, Predicate1.class, boolean.class, Predicate2.class,
+      long.class),
   NESTED_LOOP_JOIN(EnumerableDefaults.class, "nestedLoopJoin", Enumerable.class,
       Enumerable.class, Predicate2.class, Function2.class, JoinType.class),
   LEFT_MARK_NESTED_LOOP_JOIN(ExtendedEnumerable.class, "leftMarkNestedLoopJoin",
@@ -284,6 +304,12 @@ public enum BuiltInMethod {
   GROUP_BY(ExtendedEnumerable.class, "groupBy", Function1.class),
   GROUP_BY2(ExtendedEnumerable.class, "groupBy", Function1.class,
       Function0.class, Function2.class, Function2.class),
+  GROUP_BY_WITH_MEMORY_BUDGET(EnumerableDefaults.class, "groupBy",
+      Enumerable.class, Function1.class, Function0.class, Function2.class,
+      Function2.class, long.class),
+  GROUP_BY_LONG_KEY(EnumerableDefaults.class, "groupBy", Enumerable.class,
+      LongFunction1.class, Predicate1.class, Function1.class, Function0.class,
+      Function2.class, Function2.class, long.class),
   GROUP_BY_MULTIPLE(EnumerableDefaults.class, "groupByMultiple",
       Enumerable.class, List.class, Function0.class, Function2.class,
       Function2.class),
@@ -293,6 +319,25 @@ public enum BuiltInMethod {
       Comparator.class),
   ORDER_BY_WITH_FETCH_AND_OFFSET(EnumerableDefaults.class, "orderBy", Enumerable.class,
       Function1.class, Comparator.class, int.class, int.class),
+  ORDER_BY_WITH_MEMORY_BUDGET(EnumerableDefaults.class, "orderBy",
+      Enumerable.class, Function1.class, Comparator.class, long.class),
+  ORDER_BY_WITH_FETCH_AND_OFFSET_AND_MEMORY_BUDGET(EnumerableDefaults.class,
+      "orderBy", Enumerable.class, Function1.class, Comparator.class,
+      int.class, int.class, long.class),
+  TOP_N(EnumerableDefaults.class, "topN", Enumerable.class, Function1.class,
+      Comparator.class, Function1.class, Comparator.class, int.class,
+      int.class, long.class),
+  MEMORY_BUDGET(EnumUtils.class, "memoryBudget", DataContext.class,
+      String.class),
+  PARALLEL(EnumerableDefaults.class, "parallel", Enumerable.class,
+      Function1.class, int.class),
+  PARALLEL_ORDER_BY(EnumerableDefaults.class, "parallelOrderBy",
+      Enumerable.class, Function1.class, Comparator.class, int.class,
+      long.class),
+  EXCHANGE(EnumerableDefaults.class, "exchange", Enumerable.class),
+  SLIDING_WINDOW(EnumerableDefaults.class, "slidingWindow", Enumerable.class,
+      Function1.class, Function1.class, Comparator.class, int.class,
+      SlidingAggregate[].class, Function1.class, Function2.class),
   UNION(ExtendedEnumerable.class, "union", Enumerable.class),
   CONCAT(ExtendedEnumerable.class, "concat", Enumerable.class),
   REPEAT_UNION(EnumerableDefaults.class, "repeatUnion", Enumerable.class,
@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.util.javac;
+
+import org.apache.calcite.config.CalciteSystemProperty;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.ISimpleCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of compiled classes in a directory, so that a JVM that is restarted
+ * does not need to compile them again.
+ *
+ * <p>The bytecode of the classes compiled from a source file is stored in a
+ * jar file whose name is a hash of the source, the name of the class, and the
+ * contents of the Calcite jar. A later call with the same source, in the same
+ * JVM or another, defines the classes from that file instead of compiling the
+ * source again. The cache is disabled if Calcite was not loaded from a jar
+ * file, because then there is no way to tell whether the code that generates
+ * the sources has changed.
+ *
+ * <p>When the directory holds more than a given number of files, the files
+ * that were least recently used are deleted.
+ *
+ * <p>Each call returns a class defined by a new class loader, just as if it
+ * had been compiled; the classes that Calcite generates for different
+ * queries often have the same name, so cannot share a class loader.
+ *
+ * <p>Generated code may refer to application classes, such as the element
+ * types of the tables in a
+ * {@link org.apache.calcite.adapter.java.ReflectiveSchema}. If those classes
+ * change in a way that does not change the source of the generated code (for
+ * example, the type of a field changes), the directory must be cleared.
+ *
+ * @see CalciteSystemProperty#CLASS_CACHE_DIR
+ * @see CalciteSystemProperty#CLASS_CACHE_MAX_SIZE
+ */
+public class CompiledClassCache {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(CompiledClassCache.class);
+
+  /** Cache in the directory given by
+   * {@link CalciteSystemProperty#CLASS_CACHE_DIR}, or null if that property
+   * is not set or if Calcite was not loaded from a jar file. */
+  public static final @Nullable CompiledClassCache INSTANCE = create();
+
+  private final Path directory;
+  private final String version;
+  private final int maxSize;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  /** Creates a CompiledClassCache.
+   *
+   * @param directory Directory in which to store compiled classes; created if
+   *                  it does not exist
+   * @param version   Version of the code that generates the sources; classes
+   *                  stored by a different version are not used
+   * @param maxSize   Maximum number of files in the directory
+   */
+  public CompiledClassCache(Path directory, String version, int maxSize) {
+    this.directory = requireNonNull(directory, "directory");
+    this.version = requireNonNull(version, "version");
+    this.maxSize = maxSize;
+  }
+
+  private static @Nullable CompiledClassCache create() {
+    final String directory = CalciteSystemProperty.CLASS_CACHE_DIR.value();
+    if (directory.isEmpty()) {
+      return null;
+    }
+    final @Nullable String version = calciteVersion();
+    if (version == null) {
+      LOGGER.warn("Compiled class cache is disabled, because Calcite was not "
+          + "loaded from a jar file");
+      return null;
+    }
+    return new CompiledClassCache(Paths.get(directory), version,
+        CalciteSystemProperty.CLASS_CACHE_MAX_SIZE.value());
+  }
+
+  /** Returns a hash of the jar file from which Calcite was loaded, or null if
+   * Calcite was not loaded from a jar file.
+   *
+   * <p>The version number of Calcite is not sufficient, because snapshot
+   * builds with different code have the same version number. */
+  private static @Nullable String calciteVersion() {
+    try {
+      final @Nullable CodeSource codeSource =
+          CompiledClassCache.class.getProtectionDomain().getCodeSource();
+      final @Nullable URL location =
+          codeSource == null ? null : codeSource.getLocation();
+      if (location == null) {
+        return null;
+      }
+      final Path jar = Paths.get(location.toURI());
+      if (!Files.isRegularFile(jar)) {
+        return null;
+      }
+      final MessageDigest digest = sha256();
+      try (InputStream in = Files.newInputStream(jar)) {
+        final byte[] buf = new byte[8192];
+        for (int n; (n = in.read(buf)) >= 0;) {
+          digest.update(buf, 0, n);
+        }
+      }
+      return hex(digest.digest());
+    } catch (IOException | URISyntaxException | RuntimeException e) {
+      LOGGER.warn("Unable to read Calcite jar file", e);
+      return null;
+    }
+  }
+
+  /** Returns a class compiled from a Java compilation unit.
+   *
+   * <p>Reads the bytecode from the directory if the same source has been
+   * compiled before; otherwise compiles the source using {@code compiler},
+   * and writes the bytecode to the directory.
+   *
+   * @param className Fully-qualified name of the class
+   * @param source    Source of the compilation unit that declares the class
+   * @param parent    Class loader of the classes that the source refers to
+   * @param compiler  Compiler, created by the configured compiler factory
+   * @return Class
+   * @throws CompileException if the source cannot be compiled
+   * @throws ClassNotFoundException if the source does not declare the class
+   */
+  public Class<?> load(String className, String source, ClassLoader parent,
+      ISimpleCompiler compiler)
+      throws CompileException, ClassNotFoundException {
+    final Path file = directory.resolve(key(className, source) + ".jar");
+    final Map<String, byte[]> bytecodes = read(file);
+    if (bytecodes != null) {
+      hitCount.incrementAndGet();
+      touch(file);
+      return new ByteArrayClassLoader(parent, bytecodes).loadClass(className);
+    }
+    missCount.incrementAndGet();
+    compiler.setParentClassLoader(parent);
+    compiler.cook(source);
+    write(file, compiler.getBytecodes());
+    evict();
+    return compiler.getClassLoader().loadClass(className);
+  }
+
+  /** Returns the number of calls to {@link #load} that read classes from the
+   * directory. */
+  public long hitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of calls to {@link #load} that compiled classes. */
+  public long missCount() {
+    return missCount.get();
+  }
+
+  private String key(String className, String source) {
+    final MessageDigest digest = sha256();
+    for (String s : new String[] {version, className, source}) {
+      digest.update(s.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+    return hex(digest.digest());
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    final StringBuilder b = new StringBuilder();
+    for (byte x : bytes) {
+      b.append(Character.forDigit((x >> 4) & 0xF, 16))
+          .append(Character.forDigit(x & 0xF, 16));
+    }
+    return b.toString();
+  }
+
+  /** Marks a file as recently used, so that it is evicted after files that
+   * have not been used since. */
+  private static void touch(Path file) {
+    try {
+      Files.setLastModifiedTime(file,
+          FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // ignore; the file is merely more likely to be evicted
+    }
+  }
+
+  /** Deletes the least recently used files, if the directory holds more than
+   * {@link #maxSize} files. Another thread or JVM may be reading or deleting
+   * the same files; a file that is deleted while it is being read is simply
+   * compiled again. */
+  private void evict() {
+    final List<Path> files = new ArrayList<>();
+    try (Stream<Path> paths = Files.list(directory)) {
+      paths.filter(path -> path.toString().endsWith(".jar"))
+          .forEach(files::add);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to list compiled class directory {}", directory, e);
+      return;
+    }
+    if (files.size() <= maxSize) {
+      return;
+    }
+    final Map<Path, FileTime> times = new HashMap<>();
+    for (Path file : files) {
+      try {
+        times.put(file, Files.getLastModifiedTime(file));
+      } catch (IOException e) {
+        times.put(file, FileTime.fromMillis(0));
+      }
+    }
+    files.sort(Comparator.comparing(file -> requireNonNull(times.get(file))));
+    for (Path file : files.subList(0, files.size() - maxSize)) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        LOGGER.warn("Unable to delete compiled class file {}", file, e);
+      }
+    }
+  }
+
+  /** Reads the classes in a jar file, or returns null if the file does not
+   * exist or cannot be read. */
+  private static @Nullable Map<String, byte[]> read(Path file) {
+    final Map<String, byte[]> bytecodes = new HashMap<>();
+    try (InputStream in = Files.newInputStream(file);
+         JarInputStream jar = new JarInputStream(in)) {
+      for (;;) {
+        final @Nullable JarEntry entry = jar.getNextJarEntry();
+        if (entry == null) {
+          break;
+        }
+        final String name = entry.getName();
+        if (name.endsWith(".class")) {
+          bytecodes.put(
+              name.substring(0, name.length() - ".class".length())
+                  .replace('/', '.'),
+              readFully(jar));
+        }
+      }
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      LOGGER.warn("Ignoring unreadable compiled class file {}", file, e);
+      return null;
+    }
+    return bytecodes.isEmpty() ? null : bytecodes;
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] buf = new byte[8192];
+    for (int n; (n = in.read(buf)) >= 0;) {
+      out.write(buf, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  /** Writes classes to a jar file. Writes to a temporary file and renames
+   * it, so that another thread or JVM never reads a partial file. A failure
+   * is logged but does not prevent the classes from being used. */
+  private void write(Path file, Map<String, byte[]> bytecodes) {
+    @Nullable Path tmp = null;
+    try {
+      Files.createDirectories(directory);
+      tmp = Files.createTempFile(directory, "tmp-", ".jar");
+      try (OutputStream out = Files.newOutputStream(tmp);
+           JarOutputStream jar = new JarOutputStream(out)) {
+        for (Map.Entry<String, byte[]> entry : bytecodes.entrySet()) {
+          jar.putNextEntry(
+              new JarEntry(entry.getKey().replace('.', '/') + ".class"));
+          jar.write(entry.getValue());
+          jar.closeEntry();
+        }
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to write compiled class file {}", file, e);
+      if (tmp != null) {
+        try {
+          Files.deleteIfExists(tmp);
+        } catch (IOException e2) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  /** Class loader that defines classes from bytecode in memory.
+   *
+   * <p>Looks in the bytecode before asking its parent, in case the parent
+   * can also see a class of the same name. */
+  private static class ByteArrayClassLoader extends ClassLoader {
+    private final Map<String, byte[]> bytecodes;
+
+    ByteArrayClassLoader(ClassLoader parent, Map<String, byte[]> bytecodes) {
+      super(parent);
+      this.bytecodes = ImmutableMap.copyOf(bytecodes);
+    }
+
+    @Override protected Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> c = findLoadedClass(name);
+        if (c == null) {
+          final byte[] bytes = bytecodes.get(name);
+          if (bytes == null) {
+            return super.loadClass(name, resolve);
+          }
+          c = defineClass(name, bytes, 0, bytes.length);
+        }
+        if (resolve) {
+          resolveClass(c);
+        }
+        return c;
+      }
+    }
+  }
+}
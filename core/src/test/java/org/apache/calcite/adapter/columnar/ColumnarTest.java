@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.columnar;
+
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.test.CalciteAssert;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit test for {@link ColumnarPredicate}, {@link ColumnarBatch} and the
+ * planner rules in {@link ColumnarRules}.
+ */
+class ColumnarTest {
+  /** Evaluates a condition on batches whose vectors are a view onto
+   * primitive arrays, and on batches whose vectors hold objects and
+   * nulls. */
+  @Test void testPredicate() {
+    final int n = 2_500;
+    final int[] indexes = new int[n];
+    final int[] ints = new int[n];
+    final double[] doubles = new double[n];
+    final @Nullable Object[] objects = new Object[n];
+    for (int i = 0; i < n; i++) {
+      indexes[i] = i;
+      ints[i] = i % 100;
+      doubles[i] = i * 0.5;
+      objects[i] = i % 7 == 0 ? null : i % 10;
+    }
+    final List<ColumnarBatch> batches = new ArrayList<>();
+    for (int start = 0; start < n; start += ColumnarBatch.MAX_SIZE) {
+      final int size = Math.min(ColumnarBatch.MAX_SIZE, n - start);
+      batches.add(
+          new ColumnarBatch(size,
+              ImmutableList.of(
+                  ColumnVector.ofPrimitives(indexes, Primitive.INT, start),
+                  ColumnVector.ofPrimitives(ints, Primitive.INT, start),
+                  ColumnVector.ofPrimitives(doubles, Primitive.DOUBLE,
+                      start),
+                  ColumnVector.ofObjects(objects, start, size))));
+    }
+
+    // (c1 > 90 AND c3 <> 3) OR c3 IS NULL OR c2 <= 10
+    final ColumnarPredicate predicate =
+        ColumnarPredicate.or(
+            ColumnarPredicate.and(
+                ColumnarPredicate.compare(1, SqlKind.GREATER_THAN, 90L),
+                ColumnarPredicate.compare(3, SqlKind.NOT_EQUALS, 3L)),
+            ColumnarPredicate.isNull(3),
+            ColumnarPredicate.compare(2, SqlKind.LESS_THAN_OR_EQUAL, 10d));
+    final List<Object> expected = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      if (ints[i] > 90 && objects[i] != null && (Integer) objects[i] != 3
+          || objects[i] == null
+          || doubles[i] <= 10d) {
+        expected.add(i);
+      }
+    }
+    assertThat(
+        ColumnarBatch.rows(Linq4j.asEnumerable(batches), predicate,
+            new int[] {0}).toList(),
+        is(expected));
+    assertThat(
+        ColumnarBatch.rows(Linq4j.asEnumerable(batches), null,
+            new int[] {0, 3}).count(),
+        is(n));
+  }
+
+  /** A NaN value, in the data or as the operand, fails every comparison
+   * except {@code <>}, as it does in Java and in {@code EnumerableCalc}. */
+  @Test void testPredicateNaN() {
+    final double[] doubles = {Double.NaN, 4d, 5d, 6d, -0d};
+    final @Nullable Object[] objects = {Double.NaN, 4d, 5d, 6d, null};
+    final ColumnarBatch batch =
+        new ColumnarBatch(doubles.length,
+            ImmutableList.of(
+                ColumnVector.ofPrimitives(doubles, Primitive.DOUBLE, 0),
+                ColumnVector.ofObjects(objects, 0, objects.length)));
+    final SqlKind[] kinds = {SqlKind.EQUALS, SqlKind.NOT_EQUALS,
+        SqlKind.LESS_THAN, SqlKind.LESS_THAN_OR_EQUAL, SqlKind.GREATER_THAN,
+        SqlKind.GREATER_THAN_OR_EQUAL};
+    for (double value : new double[] {5d, 0d, Double.NaN}) {
+      for (SqlKind kind : kinds) {
+        for (int column = 0; column < 2; column++) {
+          final List<Integer> expected = new ArrayList<>();
+          for (int i = 0; i < doubles.length; i++) {
+            final double v = column == 0 ? doubles[i]
+                : objects[i] == null ? Double.NaN : (Double) objects[i];
+            if ((column == 0 || objects[i] != null)
+                && compare(kind, v, value)) {
+              expected.add(i);
+            }
+          }
+          final int[] selection = {0, 1, 2, 3, 4};
+          final int count =
+              ColumnarPredicate.compare(column, kind, value)
+                  .filter(batch, selection, selection.length);
+          final List<Integer> actual = new ArrayList<>();
+          for (int i = 0; i < count; i++) {
+            actual.add(selection[i]);
+          }
+          assertThat("column " + column + " " + kind + " " + value, actual,
+              is(expected));
+        }
+      }
+    }
+  }
+
+  private static boolean compare(SqlKind kind, double v, double w) {
+    switch (kind) {
+    case EQUALS:
+      return v == w;
+    case NOT_EQUALS:
+      return v != w;
+    case LESS_THAN:
+      return v < w;
+    case LESS_THAN_OR_EQUAL:
+      return v <= w;
+    case GREATER_THAN:
+      return v > w;
+    case GREATER_THAN_OR_EQUAL:
+      return v >= w;
+    default:
+      throw new AssertionError(kind);
+    }
+  }
+
+  /** Tests that a filter on a table of a clone schema is evaluated on
+   * columnar batches if the connection sets "vectorize". */
+  @Test void testVectorizedFilter() {
+    final String sql = "select empno, ename\n"
+        + "from \"scott\".emp\n"
+        + "where deptno = 20 and empno > 7500";
+    CalciteAssert.that()
+        .with(CalciteAssert.Config.SCOTT)
+        .with(CalciteConnectionProperty.VECTORIZE, true)
+        .query(sql)
+        .explainContains("ColumnarToEnumerableConverter")
+        .explainContains("ColumnarFilter(condition=")
+        .returnsUnordered("EMPNO=7566; ENAME=JONES",
+            "EMPNO=7788; ENAME=SCOTT",
+            "EMPNO=7876; ENAME=ADAMS",
+            "EMPNO=7902; ENAME=FORD");
+  }
+
+  /** Tests that null values, which a clone schema does not hold in
+   * primitive arrays, are tested using the vector's null bitmap. */
+  @Test void testVectorizedIsNull() {
+    final String sql = "select ename\n"
+        + "from \"scott\".emp\n"
+        + "where mgr is null or empno < 7500";
+    CalciteAssert.that()
+        .with(CalciteAssert.Config.SCOTT)
+        .with(CalciteConnectionProperty.VECTORIZE, true)
+        .query(sql)
+        .explainContains("ColumnarFilter(condition=")
+        .returnsUnordered("ENAME=ALLEN",
+            "ENAME=KING",
+            "ENAME=SMITH");
+  }
+
+  /** Tests that a query is not vectorized by default. */
+  @Test void testNotVectorizedByDefault() {
+    final String sql = "select ename\n"
+        + "from \"scott\".emp\n"
+        + "where deptno = 10";
+    CalciteAssert.that()
+        .with(CalciteAssert.Config.SCOTT)
+        .query(sql)
+        .explainContains("EnumerableTableScan(table=[[scott, EMP]])")
+        .returnsUnordered("ENAME=CLARK",
+            "ENAME=KING",
+            "ENAME=MILLER");
+  }
+}
@@ -18,6 +18,7 @@
 
 import org.apache.calcite.materialize.Lattice.Measure;
 import org.apache.calcite.prepare.PlannerImpl;
+import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.sql.SqlDialect;
@@ -893,6 +894,77 @@ private void checkUnion(String setOp) throws Exception {
     assertThat(t.s.getLatticeSet(), isGraphs(g, measures));
   }
 
+  /** Tests that {@link LatticeAdvisor} recommends the tiles that save the
+   * most rows per row stored, for queries collected by a
+   * {@link WorkloadRecorder}, within a budget. */
+  @Test void testLatticeAdvisor() throws Exception {
+    final Tester t = new Tester();
+    final String q0 = "select dept.dname, count(*), sum(sal)\n"
+        + "from emp\n"
+        + "join dept using (deptno)\n"
+        + "group by dept.dname";
+    final String q1 = "select job, count(*)\n"
+        + "from emp\n"
+        + "group by job";
+    final String q2 = "select job, dept.dname, count(*)\n"
+        + "from emp\n"
+        + "join dept using (deptno)\n"
+        + "where sal > 1000\n"
+        + "group by job, dept.dname";
+    final String q3 = "select ename from emp";
+    final WorkloadRecorder recorder = new WorkloadRecorder(7);
+    for (String q : Arrays.asList(q3, q0, q0, q0, q1, q1, q2, q3)) {
+      recorder.record(q);
+    }
+    assertThat(recorder.size(), is(7));
+    assertThat(recorder.discardedCount(), is(1L));
+
+    // EMP has 10 rows; JOB has 5 values, DNAME has 4, and other columns 10.
+    final LatticeAdvisor advisor =
+        new LatticeAdvisor(t.config, lattice -> columns -> {
+          double rowCount = 1d;
+          for (Lattice.Column column : columns) {
+            rowCount *= column.alias.equals("JOB") ? 5d
+                : column.alias.equals("DNAME") ? 4d
+                : 10d;
+          }
+          return rowCount;
+        });
+    advisor.addQueries(recorder);
+    assertThat(recorder.size(), is(0));
+
+    // Statements that are not queries are ignored
+    advisor.addQuery("explain plan for " + q1);
+    advisor.addQuery("insert into emp (empno) values (1)");
+    assertThat(advisor.getLatticeSet(),
+        isGraphs("EMP (DEPT:DEPTNO)", "[COUNT(), SUM(EMP.SAL)]",
+            "EMP", "[COUNT()]",
+            "EMP (DEPT:DEPTNO)", "[COUNT()]",
+            "EMP", "[]"));
+
+    // A tile on (DNAME) saves 6 rows for each of 3 queries, and a tile on
+    // (JOB) saves 5 rows for each of 2 queries; a tile on (DNAME, JOB, SAL)
+    // would be as large as EMP, so is not recommended.
+    final List<LatticeAdvisor.Recommendation> recommendations =
+        advisor.advise(10, 100d);
+    assertThat(recommendations, hasSize(2));
+    final LatticeAdvisor.Recommendation r0 = recommendations.get(0);
+    assertThat(Util.transform(r0.tile.dimensions, c -> c.alias),
+        hasToString("[DNAME]"));
+    assertThat(r0.rowCount, is(4d));
+    assertThat(r0.benefit, is(18d));
+    assertThat(r0.queryCount, is(3));
+    final LatticeAdvisor.Recommendation r1 = recommendations.get(1);
+    assertThat(Util.transform(r1.tile.dimensions, c -> c.alias),
+        hasToString("[JOB]"));
+    assertThat(r1.benefit, is(10d));
+    assertThat(r1.lattice, is(r0.lattice));
+
+    // With a budget of 8 rows, or 1 tile, only the (DNAME) tile fits
+    assertThat(advisor.advise(10, 8d), hasSize(1));
+    assertThat(advisor.advise(1, 100d), hasSize(1));
+  }
+
   /** Creates a matcher that matches query graphs to strings. */
   private BaseMatcher<Collection<Lattice>> isGraphs(
       String... strings) {
@@ -930,7 +1002,7 @@ public void describeTo(Description description) {
   /** Test helper. */
   private static class Tester {
     final LatticeSuggester s;
-    private final FrameworkConfig config;
+    final FrameworkConfig config;
 
     Tester() {
       this(
@@ -971,11 +1043,17 @@ private Frameworks.ConfigBuilder builder() {
 
     List<Lattice> addQuery(String q) throws SqlParseException,
         ValidationException, RelConversionException {
+      return s.addQuery(rel(q));
+    }
+
+    /** Parses, validates and converts a query. */
+    RelNode rel(String q) throws SqlParseException, ValidationException,
+        RelConversionException {
       final Planner planner = new PlannerImpl(config);
       final SqlNode node = planner.parse(q);
       final SqlNode node2 = planner.validate(node);
       final RelRoot root = planner.rel(node2);
-      return s.addQuery(root.project());
+      return root.project();
     }
 
     /** Parses a query returns its graph. */
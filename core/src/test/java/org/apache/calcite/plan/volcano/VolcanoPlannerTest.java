@@ -23,6 +23,7 @@
 import org.apache.calcite.plan.ConventionTraitDef;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptListener;
+import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.plan.RelOptRuleCall;
 import org.apache.calcite.plan.RelOptUtil;
@@ -75,6 +76,7 @@
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
@@ -170,6 +172,76 @@ class VolcanoPlannerTest {
     assertThat(result.getInput(1), is(result.getInput(0)));
   }
 
+  /** Tests that {@link VolcanoPlanner#warmStart()} reuses, for the next
+   * query, the equivalence sets of sub-plans that were registered while
+   * optimizing the previous query. */
+  @Test void testWarmStart() {
+    VolcanoPlanner planner = new VolcanoPlanner();
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+    planner.addRule(PhysLeafRule.INSTANCE);
+    planner.addRule(GoodSingleRule.INSTANCE);
+
+    RelOptCluster cluster = newCluster(planner);
+    NoneSingleRel singleRel =
+        new NoneSingleRel(cluster, new NoneLeafRel(cluster, "a"));
+    planner.setRoot(
+        planner.changeTraits(singleRel,
+            cluster.traitSetOf(PHYS_CALLING_CONVENTION)));
+    RelNode result = planner.chooseDelegate().findBestExp();
+    assertThat(result, instanceOf(PhysSingleRel.class));
+    final int setCount = planner.allSets.size();
+
+    // The second query contains the first, so registering it creates just
+    // one new set
+    planner.warmStart();
+    NoneSingleRel singleRel2 =
+        new NoneSingleRel(cluster,
+            new NoneSingleRel(cluster, new NoneLeafRel(cluster, "a")));
+    planner.setRoot(
+        planner.changeTraits(singleRel2,
+            cluster.traitSetOf(PHYS_CALLING_CONVENTION)));
+    assertThat(planner.allSets, hasSize(setCount + 1));
+    RelNode result2 = planner.chooseDelegate().findBestExp();
+    assertThat(result2, instanceOf(PhysSingleRel.class));
+    assertThat(result2.getInput(0), instanceOf(PhysSingleRel.class));
+    assertThat(result2.getInput(0).getInput(0), instanceOf(PhysLeafRel.class));
+  }
+
+  /** Tests that the planner stops firing rules when its budget is
+   * exhausted, and fails only if no complete plan has been found. */
+  @Test void testPlanningBudget() {
+    VolcanoPlanner planner = createBudgetPlanner(-1);
+    RelNode result = planner.chooseDelegate().findBestExp();
+    assertThat(result, instanceOf(PhysSingleRel.class));
+    assertThat(planner.isBudgetExhausted(), is(false));
+    assertTrue(planner.getRuleFiringCount() >= 2);
+    assertThat(planner.getSetCount(), is(2));
+    assertTrue(planner.getSubsetCount() >= planner.getSetCount());
+
+    // With no rule firings allowed, the root has no physical implementation
+    final VolcanoPlanner planner2 = createBudgetPlanner(0);
+    assertThrows(RelOptPlanner.CannotPlanException.class,
+        () -> planner2.chooseDelegate().findBestExp());
+    assertThat(planner2.isBudgetExhausted(), is(true));
+    assertThat(planner2.getRuleFiringCount(), is(0L));
+  }
+
+  private static VolcanoPlanner createBudgetPlanner(long maxRuleFirings) {
+    VolcanoPlanner planner = new VolcanoPlanner();
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+    planner.addRule(PhysLeafRule.INSTANCE);
+    planner.addRule(GoodSingleRule.INSTANCE);
+    planner.setPlanningBudget(-1, maxRuleFirings, -1);
+
+    RelOptCluster cluster = newCluster(planner);
+    NoneSingleRel singleRel =
+        new NoneSingleRel(cluster, new NoneLeafRel(cluster, "a"));
+    planner.setRoot(
+        planner.changeTraits(singleRel,
+            cluster.traitSetOf(PHYS_CALLING_CONVENTION)));
+    return planner;
+  }
+
   @Test void testPlanToDot() {
     VolcanoPlanner planner = new VolcanoPlanner();
     planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
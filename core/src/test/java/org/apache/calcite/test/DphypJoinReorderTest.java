@@ -42,6 +42,7 @@
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.rules.CoreRules;
 import org.apache.calcite.rel.rules.DpHyp;
+import org.apache.calcite.rel.rules.DphypJoinReorderRule;
 import org.apache.calcite.rel.rules.HyperGraph;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rex.RexBuilder;
@@ -58,11 +59,16 @@
 import java.util.Set;
 import java.util.function.Function;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
 /**
  * Tests for execution results of all candidate plans generated by dphyp.
  */
 public class DphypJoinReorderTest {
 
+  /** Also checks the plans of greedy enumeration, which must respect the conflict rules of
+   * the outer and semi joins. */
   @Test void testInnerLeftSemiJoinReorder() {
     // select * from t1 inner join t2 on id1=id2
     // left join t3 on id2=id3
@@ -91,6 +97,7 @@ public class DphypJoinReorderTest {
 
     String expectedResult = "id1=1; name1=Tom; id2=1; name2=Tom; id3=1; name3=Tom\n";
     run(function, expectedResult);
+    run(function, expectedResult, true);
   }
 
   @Test void testChainInnerJoinReorder() {
@@ -156,6 +163,72 @@ public class DphypJoinReorderTest {
         "id1=1; name1=Tom; id2=1; name2=Tom; id3=1; name3=Tom; id4=1; name4=Tom\n"
             + "id1=2; name1=Lucy; id2=2; name2=Lucy; id3=2; name3=Lucy; id4=2; name4=Lucy\n";
     run(function, expectedResult);
+    run(function, expectedResult, true);
+  }
+
+  /** Tests that {@link DphypJoinReorderRule} orders a graph by greedy enumeration only if
+   * exhaustive enumeration exceeds the bloat. */
+  @Test void testRuleGreedyFallback() {
+    // A star of 4 inputs has 2^3+3 = 11 connected subgraphs
+    final Function<RelBuilder, RelNode> function = builder -> star(builder, 4);
+    final DphypJoinReorderRule.Config config = DphypJoinReorderRule.Config.DEFAULT;
+    assertThat(reorders(function, config), is(true));
+    assertThat(reorders(function, config.withBloat(11).withGreedyFallback(false)),
+        is(true));
+    assertThat(reorders(function, config.withBloat(4).withGreedyFallback(false)),
+        is(false));
+    assertThat(reorders(function, config.withBloat(4)), is(true));
+  }
+
+  /** Tests that {@link DphypJoinReorderRule} stops exhaustive enumeration when it exceeds
+   * {@link DphypJoinReorderRule.Config#timeLimitMillis()}. */
+  @Test void testRuleTimeLimit() {
+    // A star of 10 inputs has 2^9+9 = 521 connected subgraphs, and takes much longer than 1
+    // millisecond to enumerate
+    final Function<RelBuilder, RelNode> function = builder -> star(builder, 10);
+    final DphypJoinReorderRule.Config config =
+        DphypJoinReorderRule.Config.DEFAULT.withBloat(1 << 20);
+    assertThat(
+        reorders(function, config.withTimeLimitMillis(60_000).withGreedyFallback(false)),
+        is(true));
+    assertThat(
+        reorders(function, config.withTimeLimitMillis(1).withGreedyFallback(false)),
+        is(false));
+    assertThat(reorders(function, config.withTimeLimitMillis(1)), is(true));
+  }
+
+  /** Builds a star join of {@code n} inputs, each joined to the first. */
+  private static RelNode star(RelBuilder builder, int n) {
+    builder.values(new String[]{"id0", "name0"}, 1, "Tom", 2, "Lucy");
+    for (int i = 1; i < n; i++) {
+      builder
+          .values(new String[]{"id" + i, "name" + i}, 1, "Tom", 2, "Lucy", 3, "Li")
+          .join(
+              JoinRelType.INNER,
+              builder.equals(
+                  builder.field(2, 0, "id0"),
+                  builder.field(2, 1, "id" + i)));
+    }
+    return builder.build();
+  }
+
+  /** Converts a plan to a {@link HyperGraph}, applies a {@link DphypJoinReorderRule}, and
+   * returns whether the rule replaced the graph with an ordered join. */
+  private static boolean reorders(Function<RelBuilder, RelNode> customPlanFunction,
+      DphypJoinReorderRule.Config config) {
+    RelOptCluster cluster =
+        RelOptCluster.create(new VolcanoPlanner(), new RexBuilder(new JavaTypeFactoryImpl()));
+    RelBuilder builder = RelFactories.LOGICAL_BUILDER.create(cluster, null);
+    RelNode initRel = customPlanFunction.apply(builder);
+
+    HepProgram program = new HepProgramBuilder()
+        .addMatchOrder(HepMatchOrder.BOTTOM_UP)
+        .addRuleInstance(CoreRules.JOIN_TO_HYPER_GRAPH)
+        .addRuleInstance(config.toRule())
+        .build();
+    HepPlanner hepPlanner = new HepPlanner(program);
+    hepPlanner.setRoot(initRel);
+    return !(hepPlanner.findBestExp() instanceof HyperGraph);
   }
 
   /**
@@ -166,6 +239,19 @@ public class DphypJoinReorderTest {
    * @param expectedResult      expected result
    */
   void run(Function<RelBuilder, RelNode> customPlanFunction, String expectedResult) {
+    run(customPlanFunction, expectedResult, false);
+  }
+
+  /**
+   * Run the customized plan and check whether its execution results meet expectations
+   * (ignore row order).
+   *
+   * @param customPlanFunction  a function that accepts one RelBuilder and produces a RelNode
+   * @param expectedResult      expected result
+   * @param greedy              whether to use greedy enumeration rather than dphyp
+   */
+  void run(Function<RelBuilder, RelNode> customPlanFunction, String expectedResult,
+      boolean greedy) {
     VolcanoPlanner volcanoPlanner = new VolcanoPlanner();
     volcanoPlanner.addRelTraitDef(ConventionTraitDef.INSTANCE);
     volcanoPlanner.addRelTraitDef(RelCollationTraitDef.INSTANCE);
@@ -196,7 +282,12 @@ void run(Function<RelBuilder, RelNode> customPlanFunction, String expectedResult
             builder,
             hyperGraph.getCluster().getMetadataQuery(),
             127);
-    dphyp.startEnumerateJoin();
+    if (greedy) {
+      dphyp.startEnumerateGreedy();
+    } else {
+      dphyp.startEnumerateJoin();
+    }
+    assert dphyp.getBestPlan() != null : "No plan was enumerated for the whole graph";
 
     // verify the execution results of each candidate plan enumerated by dphyp
     for (RelNode candidatePlan : dphyp.candidateList) {
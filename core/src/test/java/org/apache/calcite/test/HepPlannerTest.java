@@ -17,6 +17,7 @@
 package org.apache.calcite.test;
 
 import org.apache.calcite.config.CalciteSystemProperty;
+import org.apache.calcite.plan.PlannerProfiler;
 import org.apache.calcite.plan.RelOptListener;
 import org.apache.calcite.plan.RelOptMaterialization;
 import org.apache.calcite.plan.RelOptUtil;
@@ -51,7 +52,10 @@
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
 import static java.util.Objects.requireNonNull;
 
@@ -397,6 +401,71 @@ private void assertIncludesExactlyOnce(String message, String digest,
     assertThat(applyTimes, is(65L));
   }
 
+  /** Tests that worklist mode, which revisits only vertices affected by a
+   * transformation, produces the same plan as iterating to a fixed point,
+   * with no more rule attempts. */
+  @Test void testWorklistMode() {
+    for (HepMatchOrder matchOrder
+        : ImmutableList.of(HepMatchOrder.ARBITRARY, HepMatchOrder.DEPTH_FIRST)) {
+      final HepTestListener listener = new HepTestListener(0);
+      final String plan = runReduce(matchOrder, false, listener);
+      final HepTestListener worklistListener = new HepTestListener(0);
+      final String worklistPlan = runReduce(matchOrder, true, worklistListener);
+      assertThat(worklistPlan, is(plan));
+      assertThat(worklistListener.getApplyTimes(),
+          lessThanOrEqualTo(listener.getApplyTimes()));
+    }
+  }
+
+  /** Tests that {@link PlannerProfiler} records what each rule, and each
+   * kind of metadata, did. */
+  @Test void testPlannerProfiler() {
+    final HepProgram program = HepProgram.builder()
+        .addRuleInstance(CoreRules.FILTER_REDUCE_EXPRESSIONS)
+        .addRuleInstance(CoreRules.PROJECT_REDUCE_EXPRESSIONS)
+        .build();
+    final HepPlanner planner = new HepPlanner(program);
+    final PlannerProfiler profiler = new PlannerProfiler();
+    planner.addListener(profiler);
+    final RelNode rel = sql(COMPLEX_UNION_TREE).toRel();
+    profiler.profileMetadata(rel.getCluster());
+    planner.setRoot(rel);
+    planner.findBestExp();
+
+    final PlannerProfiler.Snapshot snapshot = profiler.snapshot();
+    final PlannerProfiler.RuleProfile filterReduce =
+        requireNonNull(
+            snapshot.rules.get(CoreRules.FILTER_REDUCE_EXPRESSIONS.toString()));
+    assertThat(filterReduce.fireCount, greaterThan(0L));
+    assertThat(filterReduce.matchCount,
+        greaterThanOrEqualTo(filterReduce.fireCount));
+    final long producedRelCount = snapshot.rules.values().stream()
+        .mapToLong(profile -> profile.producedRelCount).sum();
+    assertThat(producedRelCount, greaterThan(0L));
+    final PlannerProfiler.MetadataProfile predicates =
+        requireNonNull(snapshot.metadata.get("Predicates"));
+    assertThat(predicates.callCount, greaterThan(0L));
+
+    profiler.reset();
+    assertThat(profiler.snapshot().rules.isEmpty(), is(true));
+  }
+
+  private String runReduce(HepMatchOrder matchOrder, boolean worklistMode,
+      HepTestListener listener) {
+    final HepProgram program = HepProgram.builder()
+        .addMatchOrder(matchOrder)
+        .addRuleInstance(CoreRules.FILTER_REDUCE_EXPRESSIONS)
+        .addRuleInstance(CoreRules.PROJECT_REDUCE_EXPRESSIONS)
+        .addRuleInstance(CoreRules.PROJECT_MERGE)
+        .build();
+    final HepPlanner planner = new HepPlanner(program);
+    planner.setLargePlanMode(true);
+    planner.setWorklistMode(worklistMode);
+    planner.addListener(listener);
+    planner.setRoot(sql(COMPLEX_UNION_TREE).toRel());
+    return RelOptUtil.toString(planner.findBestExp());
+  }
+
   @Test void testOrderSensitivePrograms() {
     diffRepos = DiffRepository.lookup(HepPlannerTest.class);
 
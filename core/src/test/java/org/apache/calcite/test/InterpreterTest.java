@@ -21,6 +21,9 @@
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.util.DateTimeUtils;
 import org.apache.calcite.interpreter.Interpreter;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.plan.hep.HepPlanner;
 import org.apache.calcite.plan.hep.HepProgram;
@@ -29,17 +32,21 @@
 import org.apache.calcite.rel.RelRoot;
 import org.apache.calcite.rel.rules.CoreRules;
 import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.schema.ScalarFunction;
+import org.apache.calcite.schema.ScannableTable;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.TableFunction;
 import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.schema.impl.ScalarFunctionImpl;
 import org.apache.calcite.schema.impl.TableFunctionImpl;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.sql2rel.SqlToRelConverter;
 import org.apache.calcite.tools.FrameworkConfig;
 import org.apache.calcite.tools.Frameworks;
@@ -64,11 +71,13 @@
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
 
 import static java.util.Objects.requireNonNull;
 
@@ -318,6 +327,77 @@ private static void assertRows(Interpreter interpreter,
         closeCount.get(), is(2));
   }
 
+  /** Tests that rows flow through the interpreter as a pipeline, so that a
+   * query with a fetch stops reading its input once it has enough rows,
+   * rather than projecting the whole table first. */
+  @Test void testInterpretFetchStopsReading() {
+    final AtomicInteger readCount = new AtomicInteger();
+    rootSchema().add("big", new AbstractTable implements ScannableTable {
+      @Override public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+        return typeFactory.builder()
+            .add("i", SqlTypeName.INTEGER)
+            .build();
+      }
+
+      @Override public Enumerable<@Nullable Object[]> scan(DataContext root) {
+        return Linq4j.asEnumerable(() ->
+            IntStream.range(0, 1_000_000)
+                .mapToObj(i -> {
+                  readCount.incrementAndGet();
+                  return new @Nullable Object[] {i};
+                })
+                .iterator());
+      }
+    });
+    sql("select \"i\" + 1 from \"big\" fetch next 3 rows only")
+        .returnsRows("[1]", "[2]", "[3]");
+    assertThat(readCount.get(), lessThan(10_000));
+  }
+
+  /** Tests that an interpreter can be enumerated more than once, and that an
+   * enumerator can be reset; each time, the nodes (including the aggregate,
+   * which has state) run again from the start. */
+  @Test void testInterpretTwiceAndReset() {
+    final String sql = "select x, count(*) as c\n"
+        + "from (values (1, 'a'), (2, 'b'), (1, 'c')) as t(x, y)\n"
+        + "group by x";
+    try (Planner planner = sql(sql).createPlanner()) {
+      final SqlNode validate = planner.validate(planner.parse(sql));
+      final RelNode convert = planner.rel(validate).rel;
+      final MyDataContext dataContext =
+          new MyDataContext(rootSchema(), convert);
+      try (Interpreter interpreter = new Interpreter(dataContext, convert)) {
+        final List<String> expected = Arrays.asList("[1, 2]", "[2, 1]");
+        assertThat(toStrings(interpreter), is(expected));
+        assertThat(toStrings(interpreter), is(expected));
+        try (Enumerator<@Nullable Object[]> enumerator =
+                 interpreter.enumerator()) {
+          assertThat(enumerator.moveNext(), is(true));
+          enumerator.reset();
+          final List<String> list = new ArrayList<>();
+          while (enumerator.moveNext()) {
+            list.add(Arrays.toString(enumerator.current()));
+          }
+          Collections.sort(list);
+          assertThat(list, is(expected));
+        }
+      }
+    } catch (ValidationException
+        | SqlParseException
+        | RelConversionException e) {
+      throw Util.throwAsRuntime(e);
+    }
+  }
+
+  private static List<String> toStrings(Interpreter interpreter) {
+    final List<String> list = new ArrayList<>();
+    for (@Nullable Object[] row : interpreter) {
+      list.add(Arrays.toString(row));
+    }
+    Collections.sort(list);
+    return list;
+  }
+
   @Test void testAggregateCount() {
     rootSchema().add("beatles", new ScannableTableTest.BeatlesTable());
     sql("select count(*) from \"beatles\"")
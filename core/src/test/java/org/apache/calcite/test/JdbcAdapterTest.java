@@ -20,6 +20,7 @@
 import org.apache.calcite.adapter.java.ReflectiveSchema;
 import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.config.Lex;
+import org.apache.calcite.config.LiteralParameterization;
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.prepare.Prepare;
 import org.apache.calcite.runtime.Hook;
@@ -149,6 +150,23 @@ class JdbcAdapterTest {
             + "WHERE CAST(\"EMPNO\" AS INTEGER) > 10");
   }
 
+  /** Tests that when literals are replaced with dynamic parameters, the
+   * literals in a filter on a JDBC table are kept, so that the filter is still
+   * pushed down to the database. */
+  @Test void testFilterPushDownWithLiteralParameterization() {
+    CalciteAssert.model(JdbcTest.SCOTT_MODEL)
+        .with(CalciteConnectionProperty.LITERAL_PARAMETERIZATION,
+            LiteralParameterization.SAFE)
+        .query("select ename from SCOTT.emp where empno > 7900")
+        .explainContains("JdbcFilter(condition=[>(CAST($0):INTEGER NOT NULL, 7900)])")
+        .runs()
+        .enable(CalciteAssert.DB == CalciteAssert.DatabaseInstance.HSQLDB)
+        .planHasSql("SELECT CAST(\"ENAME\" AS VARCHAR(30)) AS \"ENAME\"\n"
+            + "FROM \"SCOTT\".\"EMP\"\n"
+            + "WHERE CAST(\"EMPNO\" AS INTEGER) > 7900")
+        .returnsUnordered("ENAME=FORD", "ENAME=MILLER");
+  }
+
   /** Test case for
    * <a href="https://issues.apache.org/jira/browse/CALCITE-6268">[CALCITE-6268]
    * Support implementing custom JdbcSchema</a>. */
@@ -36,6 +36,7 @@
 import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.config.CalciteSystemProperty;
 import org.apache.calcite.config.Lex;
+import org.apache.calcite.config.LiteralParameterization;
 import org.apache.calcite.config.NullCollation;
 import org.apache.calcite.jdbc.CalciteConnection;
 import org.apache.calcite.jdbc.CalcitePrepare;
@@ -49,7 +50,9 @@
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
+import org.apache.calcite.prepare.PlanCache;
 import org.apache.calcite.prepare.Prepare;
+import org.apache.calcite.rel.metadata.CardinalityFeedback;
 import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
 import org.apache.calcite.rel.rules.CoreRules;
 import org.apache.calcite.rel.type.RelDataType;
@@ -913,6 +916,100 @@ private void checkTableFunctionInModel(Class<?> clazz) {
         });
   }
 
+  /** Tests {@link PlanCache}. A statement that differs only in white space
+   * is not prepared again; a change to the schema causes it to be prepared
+   * again. */
+  @Test void testPlanCache() throws SQLException {
+    final PlanCache planCache = new PlanCache(10);
+    final Driver driver =
+        new Driver().withPrepareFactory(() ->
+            new CalcitePrepareImpl() {
+              @Override protected PlanCache planCache(
+                  CalcitePrepare.Context context) {
+                return planCache;
+              }
+            });
+    try (Connection connection =
+             driver.connect("jdbc:calcite:", new Properties())) {
+      final SchemaPlus rootSchema =
+          connection.unwrap(CalciteConnection.class).getRootSchema();
+      rootSchema.add("hr", new ReflectiveSchema(new HrSchema()));
+      final String sql = "select count(*) from \"hr\".\"emps\"\n"
+          + "where \"deptno\" = ?";
+      assertThat(countEmps(connection, sql, 10), is(3));
+      assertThat(planCache.stats().hitCount(), is(0L));
+      assertThat(planCache.stats().missCount(), is(1L));
+
+      final String sql2 = "  select count(*)\tfrom \"hr\".\"emps\"  "
+          + "where \"deptno\" = ?\n";
+      assertThat(countEmps(connection, sql2, 20), is(1));
+      assertThat(planCache.stats().hitCount(), is(1L));
+      assertThat(planCache.stats().missCount(), is(1L));
+
+      // Adding a schema changes the version, so the statement is prepared
+      // again.
+      rootSchema.add("hr2", new ReflectiveSchema(new HrSchema()));
+      assertThat(countEmps(connection, sql, 10), is(3));
+      assertThat(planCache.stats().hitCount(), is(1L));
+      assertThat(planCache.stats().missCount(), is(2L));
+      assertThat(planCache.size(), is(2L));
+    }
+  }
+
+  private static int countEmps(Connection connection, String sql, int deptno)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setInt(1, deptno);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        assertThat(resultSet.next(), is(true));
+        return resultSet.getInt(1);
+      }
+    }
+  }
+
+  /** Tests {@link PlanCache#normalize(String)}. */
+  @Test void testPlanCacheNormalize() {
+    assertThat(PlanCache.normalize(" select  *\n from t\t"),
+        is("select * from t"));
+    // White space in strings, quoted identifiers and comments is preserved
+    assertThat(PlanCache.normalize("select 'a  b', \"c  d\" from t"),
+        is("select 'a  b', \"c  d\" from t"));
+    assertThat(PlanCache.normalize("select 'it''s  x'  from t"),
+        is("select 'it''s  x' from t"));
+    assertThat(PlanCache.normalize("select /*  c  */ 1"),
+        is("select /*  c  */ 1"));
+    // The line break that ends a comment is not collapsed
+    assertThat(PlanCache.normalize("select a -- x\n  from t"),
+        is("select a -- x\n from t"));
+    // A line break between string literals is a continuation; a space is not
+    assertThat(PlanCache.normalize("select 'a'\n  'b' from t"),
+        is("select 'a'\n'b' from t"));
+    assertThat(PlanCache.normalize("select 'a'  'b' from t"),
+        is("select 'a' 'b' from t"));
+    assertThat(PlanCache.normalize("select 'a'\n  b from t"),
+        is("select 'a' b from t"));
+  }
+
+  /** Tests {@link CardinalityFeedback}. Executing a query records the number
+   * of rows produced by its operators, and planning the same query again
+   * uses the observed row count rather than the estimate. */
+  @Test void testCardinalityFeedback() {
+    final CardinalityFeedback feedback = new CardinalityFeedback(100);
+    final String sql = "select \"name\" from \"hr\".\"emps\"\n"
+        + "where \"deptno\" = 10";
+    try (TryThreadLocal.Memo ignored =
+             CardinalityFeedback.THREAD_INSTANCE.push(feedback)) {
+      CalciteAssert.hr()
+          .query(sql)
+          .returnsUnordered("name=Bill", "name=Sebastian", "name=Theodore");
+      assertThat(feedback.size() > 0, is(true));
+      CalciteAssert.hr()
+          .query(sql)
+          .explainMatches("including all attributes ",
+              CalciteAssert.checkResultContains("rowcount = 3.0"));
+    }
+  }
+
   static void checkMockDdl(AtomicInteger counter, boolean hasCommit,
       Driver driver) {
     try (Connection connection =
@@ -3701,6 +3798,30 @@ private void checkOrderByNullsLast(CalciteAssert.Config config) {
             + "store_id=0; grocery_sqft=null\n");
   }
 
+  /** Tests ORDER BY with a memory budget so small that the sort writes every
+   * row to a temporary file; see
+   * {@link CalciteConnectionProperty#SORT_MEMORY_BUDGET}. */
+  @Test void testOrderBySortMemoryBudget() {
+    final CalciteAssert.AssertThat with = CalciteAssert.that()
+        .with(CalciteAssert.Config.FOODMART_CLONE)
+        .with(CalciteConnectionProperty.SORT_MEMORY_BUDGET, 0L);
+    with.query("select \"store_id\", \"grocery_sqft\" from \"store\"\n"
+            + "where \"store_id\" < 7 order by 2 desc nulls first")
+        .returnsOrdered("store_id=0; grocery_sqft=null",
+            "store_id=3; grocery_sqft=24390",
+            "store_id=2; grocery_sqft=22271",
+            "store_id=1; grocery_sqft=17475",
+            "store_id=4; grocery_sqft=16844",
+            "store_id=6; grocery_sqft=15337",
+            "store_id=5; grocery_sqft=15012");
+    with.query("select \"store_id\", \"grocery_sqft\" from \"store\"\n"
+            + "where \"store_id\" < 7 order by 2 desc nulls first\n"
+            + "offset 1 rows fetch next 3 rows only")
+        .returnsOrdered("store_id=3; grocery_sqft=24390",
+            "store_id=2; grocery_sqft=22271",
+            "store_id=1; grocery_sqft=17475");
+  }
+
   /** Tests ORDER BY ...  with various values of
    * {@link CalciteConnectionConfig#defaultNullCollation()}. */
   @Test void testOrderByVarious() {
@@ -3862,6 +3983,70 @@ public void checkOrderBy(final boolean desc,
             "deptno=10; commission=250; S=11500.0");
   }
 
+  /** Tests GROUP BY with a memory budget so small that the aggregate
+   * partitions the rows of all but its first group to temporary files; see
+   * {@link CalciteConnectionProperty#AGGREGATE_MEMORY_BUDGET}. */
+  @Test void testGroupByAggregateMemoryBudget() {
+    final CalciteAssert.AssertThat with = CalciteAssert.hr()
+        .with(CalciteConnectionProperty.AGGREGATE_MEMORY_BUDGET, 0L);
+    with.query("select \"deptno\", \"commission\", sum(\"salary\") s\n"
+            + "from \"hr\".\"emps\"\n"
+            + "group by \"deptno\", \"commission\"")
+        .returnsUnordered(
+            "deptno=10; commission=null; S=7000.0",
+            "deptno=20; commission=500; S=8000.0",
+            "deptno=10; commission=1000; S=10000.0",
+            "deptno=10; commission=250; S=11500.0");
+    with.query("select \"deptno\", count(*) as c, sum(\"salary\") as s\n"
+            + "from \"hr\".\"emps\"\n"
+            + "group by \"deptno\"")
+        .returnsUnordered(
+            "deptno=10; C=3; S=28500.0",
+            "deptno=20; C=1; S=8000.0");
+  }
+
+  /** Tests {@link CalciteConnectionProperty#LITERAL_PARAMETERIZATION}.
+   * Queries that differ only in the values of literals in comparisons
+   * generate the same code; the FETCH literal is kept unless the policy is
+   * ALL. */
+  @Test void testLiteralParameterization() {
+    final CalciteAssert.AssertThat with = CalciteAssert.hr()
+        .with(CalciteConnectionProperty.LITERAL_PARAMETERIZATION,
+            LiteralParameterization.SAFE);
+    final List<String> codes = new ArrayList<>();
+    with.query("select \"name\" from \"hr\".\"emps\"\n"
+            + "where \"deptno\" = 10 and \"name\" <> 'Bill'")
+        .withHook(Hook.JAVA_PLAN, (Consumer<String>) codes::add)
+        .returnsUnordered("name=Sebastian", "name=Theodore");
+    final List<String> codes2 = new ArrayList<>();
+    with.query("select \"name\" from \"hr\".\"emps\"\n"
+            + "where \"deptno\" = 20 and \"name\" <> 'Bill'")
+        .withHook(Hook.JAVA_PLAN, (Consumer<String>) codes2::add)
+        .returnsUnordered("name=Eric");
+    assertThat(codes.isEmpty(), is(false));
+    assertThat(Util.last(codes2), is(Util.last(codes)));
+
+    final String sql = "select \"name\" from \"hr\".\"emps\"\n"
+        + "where \"deptno\" = 10\n"
+        + "order by \"name\" fetch next 2 rows only";
+    with.query(sql)
+        .explainContains("?0")
+        .explainContains("fetch=[2]")
+        .returnsOrdered("name=Bill", "name=Sebastian");
+    with.with(CalciteConnectionProperty.LITERAL_PARAMETERIZATION,
+            LiteralParameterization.ALL)
+        .query(sql)
+        .explainContains("fetch=[?1]")
+        .returnsOrdered("name=Bill", "name=Sebastian");
+
+    // A FETCH literal that does not fit in an INTEGER is kept
+    with.with(CalciteConnectionProperty.LITERAL_PARAMETERIZATION,
+            LiteralParameterization.ALL)
+        .query("select \"name\" from \"hr\".\"emps\"\n"
+            + "order by \"name\" fetch next 3000000000 rows only")
+        .explainContains("fetch=[3000000000]");
+  }
+
   @Test void testGroupingSets() {
     CalciteAssert.hr()
         .query("select \"deptno\", count(*) as c, sum(\"salary\") as s\n"
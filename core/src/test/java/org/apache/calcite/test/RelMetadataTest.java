@@ -60,6 +60,7 @@
 import org.apache.calcite.rel.core.Values;
 import org.apache.calcite.rel.hint.RelHint;
 import org.apache.calcite.rel.logical.LogicalAggregate;
+import org.apache.calcite.rel.logical.LogicalCalc;
 import org.apache.calcite.rel.logical.LogicalExchange;
 import org.apache.calcite.rel.logical.LogicalFilter;
 import org.apache.calcite.rel.logical.LogicalJoin;
@@ -69,6 +70,7 @@
 import org.apache.calcite.rel.logical.LogicalUnion;
 import org.apache.calcite.rel.logical.LogicalValues;
 import org.apache.calcite.rel.metadata.BuiltInMetadata;
+import org.apache.calcite.rel.metadata.CardinalityFeedback;
 import org.apache.calcite.rel.metadata.ChainedRelMetadataProvider;
 import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
 import org.apache.calcite.rel.metadata.JaninoRelMetadataProvider;
@@ -88,6 +90,7 @@
 import org.apache.calcite.rel.metadata.RelMdUtil;
 import org.apache.calcite.rel.metadata.RelMetadataProvider;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.metadata.SharedMetadataCache;
 import org.apache.calcite.rel.metadata.UnboundMetadata;
 import org.apache.calcite.rel.rules.CoreRules;
 import org.apache.calcite.rel.type.RelDataType;
@@ -98,9 +101,16 @@
 import org.apache.calcite.rex.RexInputRef;
 import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexProgram;
 import org.apache.calcite.rex.RexTableInputRef;
 import org.apache.calcite.rex.RexTableInputRef.RelTableRef;
 import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.sql.SqlBasicFunction;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlOperator;
@@ -120,6 +130,7 @@
 import org.apache.calcite.util.Util;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
@@ -141,6 +152,8 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -5189,6 +5202,208 @@ public void checkAllPredicatesAndTableSetOp(String sql) {
       SqlBasicFunction.create("NDC", ReturnTypes.BOOLEAN, OperandTypes.VARIADIC)
           .withDeterministic(false);
 
+  /** Tests that {@link SharedMetadataCache} shares metadata values between
+   * queries, and between plans that are structurally equal, and that
+   * {@link SharedMetadataCache#invalidate(Table)} removes the values of plans
+   * that read a table. */
+  @Test void testSharedMetadataCache() {
+    final SharedMetadataCache cache = new SharedMetadataCache(100);
+    final RelBuilder builder = RelBuilderTest.createBuilder();
+    final Function<RelBuilder, RelNode> f = b ->
+        b.scan("orders")
+            .filter(b.greaterThan(b.field("UNITS"), b.literal(10)))
+            .aggregate(b.groupKey("PRODUCT"), b.countStar("C"))
+            .build();
+    final RelNode rel1 = f.apply(builder);
+    final RelNode rel2 = f.apply(builder);
+    assertThat(rel2, not(sameInstance(rel1)));
+
+    final Supplier<RelMetadataQuery> mqSupplier = () ->
+        new RelMetadataQuery(
+            JaninoRelMetadataProvider.of(DefaultRelMetadataProvider.INSTANCE)) {
+          @Override protected SharedMetadataCache sharedMetadataCache() {
+            return cache;
+          }
+        };
+    final RelMetadataQuery mq1 = mqSupplier.get();
+    final Double rowCount = mq1.getRowCount(rel1);
+    final Set<ImmutableBitSet> uniqueKeys = mq1.getUniqueKeys(rel1);
+    assertThat(uniqueKeys, is(ImmutableSet.of(ImmutableBitSet.of(0))));
+    final long size = cache.size();
+    assertThat(size > 0, is(true));
+    final long hitCount = cache.stats().hitCount();
+
+    // A different query, on a structurally equal plan, finds the values
+    final RelMetadataQuery mq2 = mqSupplier.get();
+    assertThat(mq2.getRowCount(rel2), is(rowCount));
+    assertThat(mq2.getUniqueKeys(rel2), is(uniqueKeys));
+    assertThat(cache.stats().hitCount(), is(hitCount + 2));
+    assertThat(cache.size(), is(size));
+
+    // After the table's statistics change, the values are computed again
+    final Table table =
+        RelOptUtil.findAllTables(rel1).get(0).unwrap(Table.class);
+    cache.invalidate(requireNonNull(table, "table"));
+    assertThat(cache.size(), is(0L));
+    final long missCount = cache.stats().missCount();
+    assertThat(mqSupplier.get().getRowCount(rel2), is(rowCount));
+    assertThat(cache.stats().missCount() > missCount, is(true));
+    assertThat(cache.size() > 0, is(true));
+  }
+
+  /** Tests that {@link RelMetadataQuery#getRowCount} prefers a row count
+   * recorded in {@link CardinalityFeedback}, and that a {@link Calc} has the
+   * same key as the equivalent {@link Project} over a {@link Filter}. */
+  @Test void testCardinalityFeedback() {
+    final CardinalityFeedback feedback = new CardinalityFeedback(100);
+    final RelBuilder b = RelBuilderTest.createBuilder();
+    final RelNode project =
+        b.scan("EMP")
+            .filter(b.greaterThan(b.field("SAL"), b.literal(1000)))
+            .project(b.field("ENAME"), b.field("DEPTNO"))
+            .build();
+    final RelNode filter = project.getInput(0);
+    final RelNode scan = filter.getInput(0);
+    final RexProgram program =
+        RexProgram.create(scan.getRowType(), ((Project) project).getProjects(),
+            ((Filter) filter).getCondition(), project.getRowType(),
+            b.getRexBuilder());
+    final RelNode calc = LogicalCalc.create(scan, program);
+    final String key = CardinalityFeedback.key(project);
+    assertThat(key, notNullValue());
+    // The key is a hash, so its size does not depend on the plan
+    assertThat(requireNonNull(key, "key").length(), is(64));
+    assertThat(CardinalityFeedback.key(calc), is(key));
+    assertThat(CardinalityFeedback.key(filter), not(is(key)));
+
+    // A plan whose row count depends on the values bound to its parameters
+    // has no key
+    final RelNode paramFilter =
+        b.scan("EMP")
+            .filter(
+                b.greaterThan(b.field("SAL"),
+                    b.getRexBuilder().makeDynamicParam(
+                        b.field("SAL").getType(), 0)))
+            .build();
+    assertThat(CardinalityFeedback.key(paramFilter), nullValue());
+
+    final Supplier<RelMetadataQuery> mqSupplier = () ->
+        new RelMetadataQuery(
+            JaninoRelMetadataProvider.of(DefaultRelMetadataProvider.INSTANCE)) {
+          @Override protected CardinalityFeedback cardinalityFeedback() {
+            return feedback;
+          }
+        };
+    final Double filterRowCount = mqSupplier.get().getRowCount(filter);
+    assertThat(mqSupplier.get().getRowCount(project), is(filterRowCount));
+
+    // After the plan has been executed, the observed row count is used for
+    // the plan and its equivalent, but not for other plans
+    feedback.record(requireNonNull(key, "key"), 3);
+    assertThat(feedback.size(), is(1L));
+    assertThat(mqSupplier.get().getRowCount(project), is(3d));
+    assertThat(mqSupplier.get().getRowCount(calc), is(3d));
+    assertThat(mqSupplier.get().getRowCount(filter), is(filterRowCount));
+
+    feedback.clear();
+    assertThat(mqSupplier.get().getRowCount(calc), not(is(3d)));
+  }
+
+  /** Tests that {@link RelMetadataQuery#getSelectivity} and
+   * {@link RelMetadataQuery#getDistinctRowCount} use the
+   * {@link ColumnStatistic}s of a table. */
+  @Test void testColumnStatistics() {
+    // 1,000 rows; column A has 100 distinct values between 0 and 1,000, of
+    // which 7 occurs 300 times, and 100 nulls; column B has 10 distinct
+    // values and no statistics other than that.
+    final ColumnStatistic a =
+        Statistics.ofColumn(100d, 100d, 0, 1_000,
+            ImmutableList.of(0, 10, 20, 100, 1_000),
+            ImmutableMap.of(7, 300d));
+    final ColumnStatistic b =
+        Statistics.ofColumn(10d, null, null, null, null, null);
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    rootSchema.add("T", new AbstractTable() {
+      @Override public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+        return typeFactory.builder()
+            .add("A", SqlTypeName.INTEGER).nullable(true)
+            .add("B", SqlTypeName.INTEGER)
+            .build();
+      }
+
+      @Override public Statistic getStatistic() {
+        return Statistics.of(1_000d, null, null, null, ImmutableList.of(a, b));
+      }
+    });
+    final RelBuilder builder =
+        RelBuilder.create(
+            Frameworks.newConfigBuilder().defaultSchema(rootSchema).build());
+    final RelNode scan = builder.scan("T").build();
+    final RelMetadataQuery mq = scan.getCluster().getMetadataQuery();
+    final RexNode refA = builder.push(scan).field("A");
+    final RexNode refB = builder.field("B");
+    builder.build();
+
+    // A most common value
+    assertThat(mq.getSelectivity(scan, builder.equals(refA, builder.literal(7))),
+        isAlmost(0.3d));
+    // Other values share the remaining 600 rows: 600 / 99 rows each
+    assertThat(mq.getSelectivity(scan, builder.equals(refA, builder.literal(8))),
+        isAlmost(600d / 99 / 1_000));
+    // Outside the range of values
+    assertThat(
+        mq.getSelectivity(scan, builder.equals(refA, builder.literal(2_000))),
+        isAlmost(0d));
+    assertThat(mq.getSelectivity(scan, builder.isNull(refA)), isAlmost(0.1d));
+
+    // Each histogram bucket holds a quarter of the 900 non-null values; 50 is
+    // 3/8 of the way through the third bucket
+    assertThat(
+        mq.getSelectivity(scan,
+            builder.lessThan(refA, builder.literal(50))),
+        isAlmost(0.9d * (2 + 30d / 80) / 4));
+    assertThat(
+        mq.getSelectivity(scan,
+            builder.greaterThanOrEqual(builder.literal(50), refA)),
+        isAlmost(0.9d * (2 + 30d / 80) / 4 + 600d / 99 / 1_000));
+
+    // IN is a SEARCH with two points
+    assertThat(
+        mq.getSelectivity(scan,
+            builder.in(refA, builder.literal(7), builder.literal(8))),
+        isAlmost(0.3d + 600d / 99 / 1_000));
+
+    // Column B has no range statistics, so gets the default guess; the
+    // conjunction on A still uses statistics
+    assertThat(
+        mq.getSelectivity(scan,
+            builder.and(builder.equals(refA, builder.literal(7)),
+                builder.lessThan(refB, builder.literal(3)))),
+        isAlmost(0.3d * RelMdUtil.guessSelectivity(
+            builder.lessThan(refB, builder.literal(3)))));
+
+    // Distinct values: 100 plus null for A; 10 for B; product capped at the
+    // row count
+    assertThat(mq.getDistinctRowCount(scan, ImmutableBitSet.of(0), null),
+        isAlmost(101d));
+    assertThat(mq.getDistinctRowCount(scan, ImmutableBitSet.of(1), null),
+        isAlmost(10d));
+    assertThat(mq.getDistinctRowCount(scan, ImmutableBitSet.of(0, 1), null),
+        isAlmost(1_000d));
+
+    // The row count of a filter, and of an aggregate, follow
+    final RelNode filter =
+        builder.push(scan)
+            .filter(builder.equals(builder.field("A"), builder.literal(7)))
+            .build();
+    assertThat(mq.getRowCount(filter), isAlmost(300d));
+    final RelNode aggregate =
+        builder.push(scan)
+            .aggregate(builder.groupKey("B"))
+            .build();
+    assertThat(mq.getRowCount(aggregate), isAlmost(10d));
+  }
+
   /** Tests calling {@link RelMetadataQuery#getTableOrigin} for
    * an aggregate with no columns. Previously threw. */
   @Test void testEmptyAggregateTableOrigin() {
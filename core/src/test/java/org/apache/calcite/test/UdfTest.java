@@ -864,20 +864,18 @@ private static CalciteAssert.AssertThat withBadUdf(Class<?> clazz) {
     with.query("select deptno, \"adhoc\".my_sum(deptno) as p\n"
         + "from scott.emp\n"
         + "group by deptno\n")
-        .returns(
-            "DEPTNO=20; P=100\n"
-                + "DEPTNO=10; P=30\n"
-                + "DEPTNO=30; P=180\n");
+        .returnsUnordered("DEPTNO=20; P=100",
+            "DEPTNO=10; P=30",
+            "DEPTNO=30; P=180");
 
     with.query("select deptno,\n"
         + "  \"adhoc\".my_sum(deptno) filter (where job = 'CLERK') as c,\n"
         + "  \"adhoc\".my_sum(deptno) filter (where job = 'XXX') as x\n"
         + "from scott.emp\n"
         + "group by deptno\n")
-        .returns(
-            "DEPTNO=20; C=40; X=0\n"
-                + "DEPTNO=10; C=10; X=0\n"
-                + "DEPTNO=30; C=30; X=0\n");
+        .returnsUnordered("DEPTNO=20; C=40; X=0",
+            "DEPTNO=10; C=10; X=0",
+            "DEPTNO=30; C=30; X=0");
   }
 
   /** Tests resolution of functions using schema paths. */
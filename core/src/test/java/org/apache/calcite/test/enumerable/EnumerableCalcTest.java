@@ -17,6 +17,7 @@
 package org.apache.calcite.test.enumerable;
 
 import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.sql.SqlOperator;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.test.CalciteAssert;
@@ -56,6 +57,19 @@ class EnumerableCalcTest {
             "$f0=1000");
   }
 
+  /** Tests that a filter and projection are applied to morsels of the input
+   * in parallel if {@link CalciteConnectionProperty#PARALLELISM} is greater
+   * than 1, and that rows keep their order. */
+  @Test void testParallelism() {
+    CalciteAssert.that()
+        .withSchema("s", new ReflectiveSchema(new HrSchema()))
+        .with(CalciteConnectionProperty.PARALLELISM, 4)
+        .query("select \"empid\" + 1 as e from \"s\".\"emps\"\n"
+            + "where \"deptno\" = 10")
+        .planContains("org.apache.calcite.linq4j.EnumerableDefaults.parallel(")
+        .returnsOrdered("E=101", "E=151", "E=111");
+  }
+
   /**
    * Test cases for
    * <a href="https://issues.apache.org/jira/browse/CALCITE-4419">[CALCITE-4419]
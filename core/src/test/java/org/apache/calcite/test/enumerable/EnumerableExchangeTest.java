@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgram;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelDistributions;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.rules.CoreRules;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.schemata.hr.HrSchema;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableExchange} and
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableSortExchange}, and
+ * for rules that involve exchanges.
+ */
+class EnumerableExchangeTest {
+  @Test void exchange() {
+    tester()
+        .withRel(builder -> builder
+            .scan("s", "emps")
+            .exchange(RelDistributions.hash(ImmutableList.of(1)))
+            .project(builder.field("empid"), builder.field("name"))
+            .build())
+        .explainHookContains("EnumerableExchange(distribution=[hash[1]])")
+        .returnsOrdered(
+            "empid=100; name=Bill",
+            "empid=200; name=Eric",
+            "empid=150; name=Sebastian",
+            "empid=110; name=Theodore");
+  }
+
+  @Test void sortExchange() {
+    tester()
+        .withRel(builder -> builder
+            .scan("s", "emps")
+            .sortExchange(RelDistributions.hash(ImmutableList.of(1)),
+                RelCollations.of(
+                    new RelFieldCollation(0,
+                        RelFieldCollation.Direction.DESCENDING)))
+            .project(builder.field("empid"), builder.field("name"))
+            .build())
+        .explainHookContains("EnumerableSortExchange(distribution=[hash[1]], "
+            + "collation=[[0 DESC]])")
+        .returnsOrdered(
+            "empid=200; name=Eric",
+            "empid=150; name=Sebastian",
+            "empid=110; name=Theodore",
+            "empid=100; name=Bill");
+  }
+
+  /** {@link CoreRules#AGGREGATE_EXCHANGE_TRANSPOSE} computes a partial
+   * aggregate below the exchange, and combines the partial results above
+   * it. */
+  @Test void aggregateSplitByExchange() {
+    tester()
+        .withRel(builder -> {
+          final RelNode rel = builder
+              .scan("s", "emps")
+              .exchange(RelDistributions.hash(ImmutableList.of(1)))
+              .aggregate(builder.groupKey("deptno"),
+                  builder.countStar("C"),
+                  builder.max("M", builder.field("commission")),
+                  builder.min("N", builder.field("empid")))
+              .build();
+          final HepPlanner planner =
+              new HepPlanner(
+                  HepProgram.builder()
+                      .addRuleInstance(CoreRules.AGGREGATE_EXCHANGE_TRANSPOSE)
+                      .build());
+          planner.setRoot(rel);
+          return planner.findBestExp();
+        })
+        .explainHookContains(""
+            + "EnumerableAggregate(group=[{0}], C=[$SUM0($1)], M=[MAX($2)], N=[MIN($3)])\n"
+            + "  EnumerableExchange(distribution=[hash[0]])\n"
+            + "    EnumerableAggregate(group=[{1}], C=[COUNT()], M=[MAX($4)], N=[MIN($0)])\n")
+        .returnsUnordered(
+            "deptno=10; C=3; M=1000; N=100",
+            "deptno=20; C=1; M=500; N=200");
+  }
+
+  private static CalciteAssert.AssertThat tester() {
+    return CalciteAssert.that()
+        .withSchema("s", new ReflectiveSchema(new HrSchema()))
+        .with(CalciteConnectionProperty.PARALLELISM, 4);
+  }
+}
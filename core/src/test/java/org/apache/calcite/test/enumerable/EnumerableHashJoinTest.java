@@ -315,6 +315,65 @@ class EnumerableHashJoinTest {
             "empid=null; empid=150");
   }
 
+  /** As {@link #fullOuterJoinWithCompositeKeyAndNullValues()}, but with a
+   * memory budget so small that the join partitions its inputs to disk. */
+  @Test void fullOuterJoinWithCompositeKeyAndNullValuesAndMemoryBudget() {
+    tester(false, new HrSchema())
+        .with(CalciteConnectionProperty.HASH_JOIN_MEMORY_BUDGET, 0L)
+        .query(
+            "select e1.empid, e2.empid from emps e1 full outer join emps e2 "
+                + "on e1.deptno=e2.deptno and e1.commission=e2.commission")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .explainContains("EnumerableHashJoin(condition=[AND(=($1, $4), =($2, $5))], "
+            + "joinType=[full])\n")
+        .returnsUnordered(
+            "empid=100; empid=100",
+            "empid=110; empid=110",
+            "empid=150; empid=null",
+            "empid=200; empid=200",
+            "empid=null; empid=150");
+  }
+
+  /** Full outer join on a single nullable integer key, which uses a hash
+   * table of primitive {@code long} keys; rows whose key is null match
+   * nothing. */
+  @Test void fullOuterJoinWithIntegerKeyAndNullValues() {
+    tester(false, new HrSchema())
+        .query(
+            "select e1.empid, e2.empid from emps e1 full outer join emps e2 "
+                + "on e1.commission=e2.commission")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .explainContains("EnumerableHashJoin(condition=[=($1, $3)], "
+            + "joinType=[full])\n")
+        .returnsUnordered(
+            "empid=100; empid=100",
+            "empid=110; empid=110",
+            "empid=150; empid=null",
+            "empid=200; empid=200",
+            "empid=null; empid=150");
+  }
+
+  /** As {@link #semiJoinWithCompositeKeyAndNullValues()}, but with a memory
+   * budget so small that the join partitions its inputs to disk; the outer
+   * rows are returned in their original order. */
+  @Test void semiJoinWithCompositeKeyAndNullValuesAndMemoryBudget() {
+    tester(true, new HrSchema())
+        .with(CalciteConnectionProperty.HASH_JOIN_MEMORY_BUDGET, 0L)
+        .query(
+            "select e1.empid from emps e1 where exists (select 1 from emps e2 "
+                + "where e1.deptno=e2.deptno and e1.commission=e2.commission)")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .explainContains("EnumerableHashJoin(condition=[AND(=($1, $4), =($2, $7))], "
+            + "joinType=[semi])\n")
+        .returnsOrdered(
+            "empid=100",
+            "empid=200",
+            "empid=110");
+  }
+
   @Test void semiJoinWithCompositeKeyAndNullValues() {
     tester(true, new HrSchema())
         .query(
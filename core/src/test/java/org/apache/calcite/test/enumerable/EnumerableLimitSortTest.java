@@ -108,6 +108,20 @@ public class EnumerableLimitSortTest {
                     "commission=null; salary=7000.0; empid=11");
   }
 
+  /** As {@link #multiOrderByColumnsWithLimitAndOffset()} but with a memory
+   * budget that is exceeded by the first row. The rows are instances of a
+   * Java class, which cannot be written to disk, so the sort falls back to
+   * sorting in memory. */
+  @Test void multiOrderByColumnsWithLimitAndOffsetAndMemoryBudget() {
+    tester(0L, "select commission, salary, empid from emps"
+        + " order by commission nulls first, salary asc, empid desc limit 4 offset 6 ")
+        .returnsOrdered(
+            "commission=null; salary=7000.0; empid=23",
+            "commission=null; salary=7000.0; empid=19",
+            "commission=null; salary=7000.0; empid=15",
+            "commission=null; salary=7000.0; empid=11");
+  }
+
   @Test void multiOrderByColumnsWithLimit() {
     tester("select commission, deptno from emps"
         + " order by commission desc nulls first, deptno asc limit 13 ")
@@ -159,8 +173,14 @@ public class EnumerableLimitSortTest {
   }
 
   private CalciteAssert.AssertQuery tester(String sqlQuery) {
+    return tester(-1L, sqlQuery);
+  }
+
+  private CalciteAssert.AssertQuery tester(long sortMemoryBudget,
+      String sqlQuery) {
     return CalciteAssert.that()
         .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.SORT_MEMORY_BUDGET, sortMemoryBudget)
         .with(CalciteConnectionProperty.FORCE_DECORRELATE, false)
         .withSchema("s", new ReflectiveSchema(new HrSchemaBig()))
         .query(sqlQuery)
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.schemata.hr.HrSchema;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableWindow}.
+ */
+class EnumerableWindowTest {
+  /** A ROWS frame that ends at the current row is computed in one pass over
+   * sorted input, removing values that leave the frame. */
+  @Test void slidingRows() {
+    tester()
+        .query("select \"empid\",\n"
+            + "  count(\"commission\") over w as c,\n"
+            + "  sum(\"empid\") over w as s,\n"
+            + "  min(\"commission\") over w as mn,\n"
+            + "  max(\"commission\") over w as mx\n"
+            + "from \"s\".\"emps\"\n"
+            + "window w as (partition by \"deptno\" order by \"empid\"\n"
+            + "  rows 1 preceding)")
+        .planContains("slidingWindow(")
+        .returnsUnordered(
+            "empid=100; C=1; S=100; MN=1000; MX=1000",
+            "empid=110; C=2; S=210; MN=250; MX=1000",
+            "empid=150; C=1; S=260; MN=250; MX=250",
+            "empid=200; C=1; S=200; MN=500; MX=500");
+  }
+
+  /** The default frame of a window with ORDER BY, RANGE BETWEEN UNBOUNDED
+   * PRECEDING AND CURRENT ROW, includes the peers of the current row. */
+  @Test void slidingRange() {
+    tester()
+        .query("select \"empid\",\n"
+            + "  sum(\"commission\") over (partition by \"deptno\"\n"
+            + "    order by \"deptno\") as s,\n"
+            + "  count(*) over (order by \"deptno\") as c\n"
+            + "from \"s\".\"emps\"")
+        .planContains("slidingWindow(")
+        .returnsUnordered(
+            "empid=100; S=1250; C=3",
+            "empid=110; S=1250; C=3",
+            "empid=150; S=1250; C=3",
+            "empid=200; S=500; C=4");
+  }
+
+  /** A frame that extends beyond the current row is computed by collecting
+   * each partition into memory. */
+  @Test void following() {
+    tester()
+        .query("select \"empid\",\n"
+            + "  sum(\"empid\") over (partition by \"deptno\"\n"
+            + "    order by \"empid\" rows between current row\n"
+            + "    and 1 following) as s\n"
+            + "from \"s\".\"emps\"")
+        .returnsUnordered(
+            "empid=100; S=210",
+            "empid=110; S=260",
+            "empid=150; S=150",
+            "empid=200; S=200");
+  }
+
+  private static CalciteAssert.AssertThat tester() {
+    return CalciteAssert.that()
+        .withSchema("s", new ReflectiveSchema(new HrSchema()));
+  }
+}
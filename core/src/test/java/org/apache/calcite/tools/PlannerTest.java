@@ -37,6 +37,7 @@
 import org.apache.calcite.plan.RelRule;
 import org.apache.calcite.plan.RelTraitDef;
 import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.plan.volcano.VolcanoPlanner;
 import org.apache.calcite.rel.RelCollationTraitDef;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
@@ -85,6 +86,7 @@
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.hamcrest.Matcher;
 import org.immutables.value.Value;
 import org.junit.jupiter.api.Assertions;
@@ -94,6 +96,10 @@
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.calcite.test.Matchers.sortsAs;
 
@@ -905,14 +911,64 @@ private void checkJoinNWay(int n) throws Exception {
     //      13 OOM              96
     //      35 OOM           1,716
     //      60 OOM          12,230
+    assertThat(planJoinNWay(n, 1),
+        containsString(
+            "EnumerableHashJoin(condition=[=($0, $5)], joinType=[inner])"));
+  }
+
+  /** Tests a planner that fires rule matches on several threads. It must
+   * produce the same plan as a planner that fires one match at a time, however
+   * the threads are scheduled.
+   *
+   * @see VolcanoPlanner#setRuleParallelism(int) */
+  @Test void testPlan5WayJoinParallel() throws Exception {
+    final String plan = planJoinNWay(5, 1);
+    assertThat(plan, containsString("EnumerableHashJoin("));
+    for (int i = 0; i < 3; i++) {
+      assertThat(planJoinNWay(5, 4), is(plan));
+    }
+
+    // Matches fire on the executor given to the planner
+    final AtomicInteger taskCount = new AtomicInteger();
+    final ExecutorService pool = Executors.newFixedThreadPool(3);
+    try {
+      final Executor executor = task -> {
+        taskCount.incrementAndGet();
+        pool.execute(task);
+      };
+      assertThat(planJoinNWay(5, 4, executor), is(plan));
+      assertThat(taskCount.get() > 0, is(true));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /** Plans a query that joins {@code n} tables, and returns the plan. */
+  private String planJoinNWay(int n, int ruleParallelism) throws Exception {
+    return planJoinNWay(n, ruleParallelism, null);
+  }
+
+  private String planJoinNWay(int n, int ruleParallelism,
+      @Nullable Executor executor) throws Exception {
     final StringBuilder buf = new StringBuilder();
     buf.append("select * from \"depts\" as d0");
     for (int i = 1; i < n; i++) {
       buf.append("\njoin \"depts\" as d").append(i);
       buf.append("\non d").append(i).append(".\"deptno\" = d").append(i - 1).append(".\"deptno\"");
     }
+    final Program program =
+        Programs.heuristicJoinOrder(Programs.RULE_SET, false, 6);
     Planner planner =
-        getPlanner(null, Programs.heuristicJoinOrder(Programs.RULE_SET, false, 6));
+        getPlanner(null,
+            (relOptPlanner, rel, requiredOutputTraits, materializations,
+                lattices) -> {
+              final VolcanoPlanner volcanoPlanner =
+                  (VolcanoPlanner) relOptPlanner;
+              volcanoPlanner.setRuleParallelism(ruleParallelism);
+              volcanoPlanner.setRuleExecutor(executor);
+              return program.run(relOptPlanner, rel, requiredOutputTraits,
+                  materializations, lattices);
+            });
     SqlNode parse = planner.parse(buf.toString());
 
     SqlNode validate = planner.validate(parse);
@@ -920,9 +976,7 @@ private void checkJoinNWay(int n) throws Exception {
     RelTraitSet traitSet = convert.getTraitSet()
         .replace(EnumerableConvention.INSTANCE);
     RelNode transform = planner.transform(0, traitSet, convert);
-    assertThat(toString(transform),
-        containsString(
-            "EnumerableHashJoin(condition=[=($0, $5)], joinType=[inner])"));
+    return toString(transform);
   }
 
   /** Test case for
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.util;
+
+import org.apache.calcite.util.javac.CompiledClassCache;
+
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.ISimpleCompiler;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for {@link CompiledClassCache}.
+ */
+class CompiledClassCacheTest {
+  /** Source of a class that has an anonymous inner class, so compiles to
+   * two class files. */
+  private static final String SOURCE = "public final class Foo\n"
+      + "    implements java.util.function.Supplier {\n"
+      + "  public Object get() {\n"
+      + "    return new Object() {\n"
+      + "      public String toString() {\n"
+      + "        return \"foo\";\n"
+      + "      }\n"
+      + "    }.toString();\n"
+      + "  }\n"
+      + "}\n";
+
+  @Test void testLoad() throws Exception {
+    final Path directory = Files.createTempDirectory("calcite-class-cache");
+    try {
+      final ClassLoader parent = getClass().getClassLoader();
+      final CompiledClassCache cache =
+          new CompiledClassCache(directory, "1.0", 100);
+      assertThat(get(cache.load("Foo", SOURCE, parent, compiler())),
+          is("foo"));
+      assertThat(cache.hitCount(), is(0L));
+      assertThat(cache.missCount(), is(1L));
+      assertThat(get(cache.load("Foo", SOURCE, parent, compiler())),
+          is("foo"));
+      assertThat(cache.hitCount(), is(1L));
+      assertThat(cache.missCount(), is(1L));
+
+      // A new cache on the same directory, as after a restart, reads the
+      // classes rather than compiling them.
+      final CompiledClassCache cache2 =
+          new CompiledClassCache(directory, "1.0", 100);
+      assertThat(get(cache2.load("Foo", SOURCE, parent, compiler())),
+          is("foo"));
+      assertThat(cache2.hitCount(), is(1L));
+      assertThat(cache2.missCount(), is(0L));
+
+      // A different version does not use the classes.
+      final CompiledClassCache cache3 =
+          new CompiledClassCache(directory, "2.0", 100);
+      assertThat(get(cache3.load("Foo", SOURCE, parent, compiler())),
+          is("foo"));
+      assertThat(cache3.hitCount(), is(0L));
+      assertThat(cache3.missCount(), is(1L));
+    } finally {
+      delete(directory);
+    }
+  }
+
+  /** Tests that the least recently used files are deleted when the directory
+   * holds more than the maximum number of files. */
+  @Test void testEvict() throws Exception {
+    final Path directory = Files.createTempDirectory("calcite-class-cache");
+    try {
+      final ClassLoader parent = getClass().getClassLoader();
+      final CompiledClassCache cache =
+          new CompiledClassCache(directory, "1.0", 2);
+      cache.load("Foo", SOURCE, parent, compiler());
+      cache.load("Foo", SOURCE.replace("foo", "bar"), parent, compiler());
+      assertThat(count(directory), is(2L));
+
+      // Use the first file, so that the second is least recently used.
+      Thread.sleep(10);
+      cache.load("Foo", SOURCE, parent, compiler());
+      assertThat(cache.hitCount(), is(1L));
+      Thread.sleep(10);
+      cache.load("Foo", SOURCE.replace("foo", "baz"), parent, compiler());
+      assertThat(count(directory), is(2L));
+      assertThat(cache.missCount(), is(3L));
+
+      cache.load("Foo", SOURCE, parent, compiler());
+      assertThat(cache.hitCount(), is(2L));
+      cache.load("Foo", SOURCE.replace("foo", "bar"), parent, compiler());
+      assertThat(cache.missCount(), is(4L));
+    } finally {
+      delete(directory);
+    }
+  }
+
+  private static ISimpleCompiler compiler() throws Exception {
+    return CompilerFactoryFactory
+        .getDefaultCompilerFactory(CompiledClassCacheTest.class.getClassLoader())
+        .newSimpleCompiler();
+  }
+
+  private static long count(Path directory) throws Exception {
+    try (Stream<Path> paths = Files.list(directory)) {
+      return paths.count();
+    }
+  }
+
+  private static void delete(Path directory) throws Exception {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder())
+          .map(Path::toFile)
+          .forEach(File::delete);
+    }
+  }
+
+  private static Object get(Class<?> clazz) throws Exception {
+    return ((Supplier<?>) clazz.getDeclaredConstructor().newInstance()).get();
+  }
+}
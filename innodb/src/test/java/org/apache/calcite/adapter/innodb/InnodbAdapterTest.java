@@ -999,9 +999,9 @@ public class InnodbAdapterTest {
             + "  InnodbToEnumerableConverter\n"
             + "    InnodbFilter(condition=[(SK_RANGE_QUERY, index=AGE_KEY, AGE>30)])\n"
             + "      InnodbTableScan(table=[[test, EMP]])\n")
-        .returns("DEPTNO=20; TOTAL_SAL=4100.00\n"
-            + "DEPTNO=10; TOTAL_SAL=3750.00\n"
-            + "DEPTNO=30; TOTAL_SAL=6550.00\n");
+        .returnsUnordered("DEPTNO=20; TOTAL_SAL=4100.00",
+            "DEPTNO=10; TOTAL_SAL=3750.00",
+            "DEPTNO=30; TOTAL_SAL=6550.00");
   }
 
   @Test void testJoinProjectAndFilterPushDown() {
@@ -53,6 +53,7 @@
 import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -610,6 +611,20 @@ public static <TSource> Enumerable<TSource> except(
     return Linq4j.asEnumerable(collection).select(unwrapper);
   }
 
+  /**
+   * Returns the elements of a sequence, in the same order, computing them on
+   * a separate thread.
+   *
+   * <p>The source is enumerated by a producer on a thread of the
+   * {@link SharedExecutor}, which hands elements to the consumer through a
+   * bounded queue, so that the source and the consumer run at the same time.
+   * If no thread is free, the consumer enumerates the source itself.
+   */
+  public static <TSource> Enumerable<TSource> exchange(
+      Enumerable<TSource> source) {
+    return new ExchangeEnumerable<>(source);
+  }
+
   /**
    * Returns the first element of a sequence. (Defined
    * by Enumerable.)
@@ -783,6 +798,36 @@ public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
         accumulatorInitializer, accumulatorAdder, resultSelector);
   }
 
+  /**
+   * Groups the elements of a sequence according to a specified key selector
+   * function, initializing an accumulator for each group and adding to it
+   * each time an element with the same key is seen, holding at most
+   * approximately {@code memoryBudget} bytes of groups in memory.
+   *
+   * <p>When the budget is exceeded, the elements of groups that are not yet
+   * in memory are partitioned to temporary files by the hash of their key,
+   * and each partition is aggregated after the groups in memory have been
+   * returned. If {@code memoryBudget} is negative, behaves like
+   * {@link #groupBy(Enumerable, Function1, Function0, Function2, Function2)}.
+   *
+   * @param memoryBudget Approximate number of bytes of groups to hold in
+   *                     memory, or -1 for no limit
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
+      Enumerable<TSource> enumerable, Function1<TSource, TKey> keySelector,
+      Function0<TAccumulate> accumulatorInitializer,
+      Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      long memoryBudget) {
+    if (memoryBudget < 0) {
+      return groupBy(enumerable, keySelector, accumulatorInitializer,
+          accumulatorAdder, resultSelector);
+    }
+    return new SpillingHashAggregate<>(enumerable, keySelector,
+        accumulatorInitializer, accumulatorAdder, resultSelector,
+        memoryBudget);
+  }
+
   /**
    * Groups the elements of a sequence according to a list of
    * specified key selector functions, initializing an accumulator for each
@@ -833,6 +878,101 @@ public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
         resultSelector);
   }
 
+  /**
+   * As {@link #groupBy(Enumerable, LongFunction1, Predicate1, Function1, Function0, Function2, Function2)},
+   * but if {@code memoryBudget} is not negative, holds at most
+   * approximately that many bytes of groups in memory, like
+   * {@link #groupBy(Enumerable, Function1, Function0, Function2, Function2, long)}.
+   *
+   * @param memoryBudget Approximate number of bytes of groups to hold in
+   *                     memory, or -1 for no limit
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
+      Enumerable<TSource> enumerable, LongFunction1<TSource> longKeySelector,
+      @Nullable Predicate1<TSource> keyIsNull,
+      Function1<TSource, TKey> keySelector,
+      Function0<TAccumulate> accumulatorInitializer,
+      Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      long memoryBudget) {
+    if (memoryBudget >= 0) {
+      return groupBy(enumerable, keySelector, accumulatorInitializer,
+          accumulatorAdder, resultSelector, memoryBudget);
+    }
+    return groupBy(enumerable, longKeySelector, keyIsNull, keySelector,
+        accumulatorInitializer, accumulatorAdder, resultSelector);
+  }
+
+  /**
+   * Groups the elements of a sequence according to a key that is a single
+   * integral value, initializing an accumulator for each group and adding to
+   * it each time an element with the same key is seen. Creates a result value
+   * from each accumulator and its key using a specified function.
+   *
+   * <p>Produces the same groups as
+   * {@link #groupBy(Enumerable, Function1, Function0, Function2, Function2)},
+   * but looks up groups in a {@link LongHashTable} by the primitive value of
+   * the key, so does not box the key of each element. Groups are returned in
+   * the order in which their keys are first seen.
+   * {@code keySelector} is called only for the first element of each group.
+   *
+   * @param longKeySelector Returns the key of an element as a {@code long};
+   *                        not called if the key is null
+   * @param keyIsNull       Returns whether the key of an element is null, or
+   *                        null if the key is never null
+   * @param keySelector     Returns the key of an element, as passed to
+   *                        {@code resultSelector}
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
+      Enumerable<TSource> enumerable, LongFunction1<TSource> longKeySelector,
+      @Nullable Predicate1<TSource> keyIsNull,
+      Function1<TSource, TKey> keySelector,
+      Function0<TAccumulate> accumulatorInitializer,
+      Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector) {
+    final LongHashTable table = new LongHashTable();
+    // For each key in the table, the ordinal of its group.
+    int[] groupOrdinals = new int[16];
+    int nullGroupOrdinal = -1;
+    final List<TKey> keys = new ArrayList<>();
+    final List<TAccumulate> accumulators = new ArrayList<>();
+    try (Enumerator<TSource> os = enumerable.enumerator()) {
+      while (os.moveNext()) {
+        final TSource o = os.current();
+        final int group;
+        if (keyIsNull != null && keyIsNull.apply(o)) {
+          if (nullGroupOrdinal < 0) {
+            nullGroupOrdinal = keys.size();
+            keys.add(keySelector.apply(o));
+            accumulators.add(accumulatorInitializer.apply());
+          }
+          group = nullGroupOrdinal;
+        } else {
+          final int size = table.size();
+          final int k = table.add(longKeySelector.apply(o));
+          if (table.size() > size) {
+            groupOrdinals = LongHashTable.ensureCapacity(groupOrdinals, k + 1);
+            groupOrdinals[k] = keys.size();
+            keys.add(keySelector.apply(o));
+            accumulators.add(accumulatorInitializer.apply());
+          }
+          group = groupOrdinals[k];
+        }
+        final TAccumulate accumulator0 = accumulators.get(group);
+        final TAccumulate accumulator =
+            accumulatorAdder.apply(accumulator0, o);
+        if (accumulator != accumulator0) {
+          accumulators.set(group, accumulator);
+        }
+      }
+    }
+    final List<TResult> results = new ArrayList<>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      results.add(resultSelector.apply(keys.get(i), accumulators.get(i)));
+    }
+    return Linq4j.asEnumerable(results);
+  }
+
   /**
    * Group keys are sorted already. Key values are compared by using a
    * specified comparator. Groups the elements of a sequence according to a
@@ -1486,6 +1626,38 @@ public static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoin(
     }
   }
 
+  /**
+   * Correlates the elements of two sequences based on matching keys, using a
+   * bounded amount of memory for the inner input.
+   *
+   * <p>If the inner input is larger than {@code memoryBudget} bytes, both
+   * inputs are partitioned to disk by the hash of their key, and each pair of
+   * partitions is joined in memory. The result is the same, and in the same
+   * order, as
+   * {@link #hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean, Predicate2)}.
+   * If {@code memoryBudget} is negative, joins in memory.
+   *
+   * @param memoryBudget Approximate number of bytes of inner rows to hold in
+   *                     memory, or -1 for no limit
+   */
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoin(
+      Enumerable<TSource> outer, Enumerable<TInner> inner,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<TSource, TInner, TResult> resultSelector,
+      @Nullable EqualityComparer<TKey> comparer, boolean generateNullsOnLeft,
+      boolean generateNullsOnRight,
+      @Nullable Predicate2<TSource, TInner> predicate, long memoryBudget) {
+    if (memoryBudget < 0) {
+      return hashJoin(outer, inner, outerKeySelector, innerKeySelector,
+          resultSelector, comparer, generateNullsOnLeft, generateNullsOnRight,
+          predicate);
+    }
+    return GraceHashJoin.hashJoin(outer, inner, outerKeySelector,
+        innerKeySelector, resultSelector, comparer, generateNullsOnLeft,
+        generateNullsOnRight, predicate, memoryBudget);
+  }
+
   /** Implementation of join that builds the right input and probes with the
    * left. */
   private static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashEquiJoin_(
@@ -1686,6 +1858,63 @@ private static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoinWith
     };
   }
 
+  /**
+   * Correlates the elements of two sequences based on matching keys that are
+   * single integral values.
+   *
+   * <p>Produces the same result as
+   * {@link #hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean, Predicate2)},
+   * and in the same order (except that, for a right or full join, the inner
+   * elements that have no match are returned in the order that they were
+   * read), but indexes the inner input in a {@link LongHashTable} by the
+   * primitive value of the key, so does not box keys or allocate a list for
+   * each key. Elements whose key is null match nothing.
+   *
+   * <p>If {@code memoryBudget} is not negative, joins as
+   * {@link #hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean, Predicate2, long)}.
+   *
+   * @param outerKeySelector Returns the key of an outer element as a
+   *                         {@code long}; not called if the key is null
+   * @param outerKeyIsNull   Returns whether the key of an outer element is
+   *                         null, or null if the key is never null
+   * @param memoryBudget     Approximate number of bytes of inner rows to hold
+   *                         in memory, or -1 for no limit
+   */
+  public static <TSource, TInner, TResult> Enumerable<TResult> hashJoin(
+      Enumerable<TSource> outer, Enumerable<TInner> inner,
+      LongFunction1<TSource> outerKeySelector,
+      @Nullable Predicate1<TSource> outerKeyIsNull,
+      LongFunction1<TInner> innerKeySelector,
+      @Nullable Predicate1<TInner> innerKeyIsNull,
+      Function2<TSource, TInner, TResult> resultSelector,
+      boolean generateNullsOnLeft, boolean generateNullsOnRight,
+      @Nullable Predicate2<TSource, TInner> predicate, long memoryBudget) {
+    if (memoryBudget >= 0) {
+      return hashJoin(outer, inner, boxed(outerKeySelector, outerKeyIsNull),
+          boxed(innerKeySelector, innerKeyIsNull), resultSelector, null,
+          generateNullsOnLeft, generateNullsOnRight, predicate, memoryBudget);
+    }
+    return new AbstractEnumerable<TResult>() {
+      @Override public Enumerator<TResult> enumerator() {
+        final LongLookup<TInner> lookup =
+            new LongLookup<>(inner, innerKeySelector, innerKeyIsNull);
+        return new LongHashJoinEnumerator<>(outer.enumerator(), lookup,
+            outerKeySelector, outerKeyIsNull, resultSelector,
+            generateNullsOnLeft, generateNullsOnRight, predicate);
+      }
+    };
+  }
+
+  /** Converts a selector of primitive keys into a selector of boxed keys
+   * that returns null if the key is null. */
+  private static <T> Function1<T, Long> boxed(LongFunction1<T> keySelector,
+      @Nullable Predicate1<T> keyIsNull) {
+    if (keyIsNull == null) {
+      return keySelector::apply;
+    }
+    return o -> keyIsNull.apply(o) ? castNonNull(null) : keySelector.apply(o);
+  }
+
   /**
    * Left mark join implementation based on hash. It will keep all rows from the left side and
    * creates a new attribute to mark the rows from left input as having join partners from right
@@ -2458,6 +2687,89 @@ public static <TSource, TInner, TKey> Enumerable<TSource> semiJoin(
     }
   }
 
+  /**
+   * Returns elements of {@code outer} for which there is (semi-join) / is not
+   * (anti-semi-join) a member of {@code inner} with a matching key, using a
+   * bounded amount of memory for the inner input.
+   *
+   * <p>If the inner input is larger than {@code memoryBudget} bytes, both
+   * inputs are partitioned to disk by the hash of their key. The result is
+   * the same, and in the same order, as
+   * {@link #semiJoin(Enumerable, Enumerable, Function1, Function1, EqualityComparer, boolean, Predicate2)}.
+   * If {@code memoryBudget} is negative, joins in memory.
+   *
+   * @param memoryBudget Approximate number of bytes of inner rows to hold in
+   *                     memory, or -1 for no limit
+   */
+  public static <TSource, TInner, TKey> Enumerable<TSource> semiJoin(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final @Nullable EqualityComparer<TKey> comparer,
+      final boolean anti,
+      final @Nullable Predicate2<TSource, TInner> nonEquiPredicate,
+      long memoryBudget) {
+    if (memoryBudget < 0) {
+      return semiJoin(outer, inner, outerKeySelector, innerKeySelector,
+          castNonNull(comparer), anti, castNonNull(nonEquiPredicate));
+    }
+    return GraceHashJoin.semiJoin(outer, inner, outerKeySelector,
+        innerKeySelector, comparer, anti, nonEquiPredicate, memoryBudget);
+  }
+
+  /**
+   * Returns elements of {@code outer} for which there is (semi-join) / is not
+   * (anti-semi-join) a member of {@code inner} with a matching key, where keys
+   * are single integral values.
+   *
+   * <p>Produces the same result as
+   * {@link #semiJoin(Enumerable, Enumerable, Function1, Function1, EqualityComparer, boolean, Predicate2)},
+   * but indexes the inner input in a {@link LongHashTable} by the primitive
+   * value of the key. Elements whose key is null match nothing. If
+   * {@code memoryBudget} is not negative, joins as
+   * {@link #semiJoin(Enumerable, Enumerable, Function1, Function1, EqualityComparer, boolean, Predicate2, long)}.
+   */
+  public static <TSource, TInner> Enumerable<TSource> semiJoin(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final LongFunction1<TSource> outerKeySelector,
+      final @Nullable Predicate1<TSource> outerKeyIsNull,
+      final LongFunction1<TInner> innerKeySelector,
+      final @Nullable Predicate1<TInner> innerKeyIsNull,
+      final boolean anti,
+      final @Nullable Predicate2<TSource, TInner> nonEquiPredicate,
+      long memoryBudget) {
+    if (memoryBudget >= 0) {
+      return semiJoin(outer, inner, boxed(outerKeySelector, outerKeyIsNull),
+          boxed(innerKeySelector, innerKeyIsNull), null, anti,
+          nonEquiPredicate, memoryBudget);
+    }
+    return new AbstractEnumerable<TSource>() {
+      @Override public Enumerator<TSource> enumerator() {
+        // As in semiEquiJoin_, build the lookup only when the first outer
+        // element is read (CALCITE-2909)
+        final Supplier<LongLookup<TInner>> lookup =
+            Suppliers.memoize(() ->
+                new LongLookup<>(inner, innerKeySelector, innerKeyIsNull));
+        final Predicate1<TSource> predicate = v0 -> {
+          boolean found = false;
+          if (outerKeyIsNull == null || !outerKeyIsNull.apply(v0)) {
+            final LongLookup<TInner> l = lookup.get();
+            for (int r = l.first(outerKeySelector.apply(v0)); r >= 0;
+                 r = l.next[r]) {
+              if (nonEquiPredicate == null
+                  || nonEquiPredicate.apply(v0, l.rows.get(r))) {
+                found = true;
+                break;
+              }
+            }
+          }
+          return anti != found;
+        };
+        return EnumerableDefaults.where(outer.enumerator(), predicate);
+      }
+    };
+  }
+
   private static <TSource, TInner, TKey> Enumerable<TSource> semiJoinWithPredicate_(
       final Enumerable<TSource> outer, final Enumerable<TInner> inner,
       final Function1<TSource, TKey> outerKeySelector,
@@ -3230,6 +3542,69 @@ public static <TSource, TKey> Enumerable<TSource> orderBy(
     };
   }
 
+  /**
+   * Sorts the elements of a sequence in ascending
+   * order by using a specified comparer, holding at most approximately
+   * {@code memoryBudget} bytes of rows in memory.
+   *
+   * <p>When the budget is exceeded, sorted runs are written to temporary
+   * files and merged; see {@link SpillCodec} for the rows that can be
+   * written. If {@code memoryBudget} is negative, sorts in memory, like
+   * {@link #orderBy(Enumerable, Function1, Comparator)}.
+   *
+   * @param memoryBudget Approximate number of bytes of rows to hold in memory,
+   *                     or -1 for no limit
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(
+      Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      @Nullable Comparator<TKey> comparator, long memoryBudget) {
+    if (memoryBudget < 0) {
+      return orderBy(source, keySelector, comparator);
+    }
+    return new ExternalSortEnumerable<>(source, keySelector, comparator,
+        memoryBudget, -1);
+  }
+
+  /**
+   * Computes windowed aggregates over a sequence that is sorted by partition
+   * key and then by order key, holding only the current frame in memory.
+   *
+   * <p>If {@code peerKeySelector} is null, the frame of each element is the
+   * element and the {@code preceding} elements before it in the same
+   * partition (ROWS BETWEEN n PRECEDING AND CURRENT ROW), or all elements
+   * before it if {@code preceding} is negative. Otherwise the frame is every
+   * element in the partition up to and including the last element whose peer
+   * key is equal to the element's peer key (RANGE BETWEEN UNBOUNDED PRECEDING
+   * AND CURRENT ROW).
+   *
+   * @param source Sequence, sorted by partition key and peer key
+   * @param partitionKeySelector Function that returns an element's partition
+   *                             key, or null if there is one partition
+   * @param peerKeySelector Function that returns an element's order key, or
+   *                        null to use ROWS frames
+   * @param peerComparator Comparator for peer keys, or null for natural order
+   * @param preceding Number of elements before the current element in a ROWS
+   *                  frame, or -1 for unbounded
+   * @param aggregates Aggregate functions
+   * @param argumentSelector Function that returns the argument of each
+   *                         aggregate function for an element; a non-null
+   *                         value for COUNT(*)
+   * @param resultSelector Function that creates an output element from an
+   *                       input element and the values of the aggregate
+   *                       functions over its frame
+   */
+  public static <TSource, TResult> Enumerable<TResult> slidingWindow(
+      Enumerable<TSource> source,
+      @Nullable Function1<TSource, ?> partitionKeySelector,
+      @Nullable Function1<TSource, ?> peerKeySelector,
+      @Nullable Comparator<?> peerComparator, int preceding,
+      SlidingAggregate[] aggregates,
+      Function1<TSource, @Nullable Object[]> argumentSelector,
+      Function2<TSource, @Nullable Object[], TResult> resultSelector) {
+    return new SlidingWindowEnumerable<>(source, partitionKeySelector,
+        peerKeySelector, peerComparator, preceding, aggregates,
+        argumentSelector, resultSelector);
+  }
 
   /**
    * A sort implementation optimized for a sort with a fetch size (LIMIT).
@@ -3327,6 +3702,81 @@ public static <TSource, TKey> Enumerable<TSource> orderBy(
     };
   }
 
+  /**
+   * A sort implementation optimized for a sort with a fetch size (LIMIT),
+   * holding at most approximately {@code memoryBudget} bytes of rows in
+   * memory.
+   *
+   * <p>Each sorted run is truncated to {@code offset + fetch} rows before it
+   * is written to disk, so small limits rarely spill at all. If
+   * {@code memoryBudget} is negative, behaves like
+   * {@link #orderBy(Enumerable, Function1, Comparator, int, int)}.
+   *
+   * @param offset how many rows are skipped from the sorted output.
+   *               Must be greater than or equal to 0.
+   * @param fetch how many rows are retrieved. Must be greater than or equal to 0.
+   * @param memoryBudget Approximate number of bytes of rows to hold in memory,
+   *                     or -1 for no limit
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(
+      Enumerable<TSource> source,
+      Function1<TSource, TKey> keySelector,
+      Comparator<TKey> comparator,
+      int offset, int fetch, long memoryBudget) {
+    if (memoryBudget < 0) {
+      return orderBy(source, keySelector, comparator, offset, fetch);
+    }
+    if (fetch == 0) {
+      return Linq4j.emptyEnumerable();
+    }
+    final Enumerable<TSource> sorted =
+        new ExternalSortEnumerable<>(source, keySelector, comparator,
+            memoryBudget, fetch + (long) offset);
+    return take(skip(sorted, offset), fetch);
+  }
+
+  /**
+   * Returns the first {@code fetch} elements of a sequence, after skipping
+   * {@code offset} elements, in the order of a key; a top-N sort.
+   *
+   * <p>Returns the same elements, in the same order, as
+   * {@link #orderBy(Enumerable, Function1, Comparator, int, int)}, but keeps
+   * the candidate rows in a bounded binary heap, which is faster than a tree
+   * if most keys are distinct.
+   *
+   * <p>If {@code prefixSelector} is not null, the source must already be
+   * sorted on the key that it returns, in the order of
+   * {@code prefixComparator}, and that key must be a prefix of the sort key;
+   * the sort then stops reading the source once no later element can be in
+   * the result.
+   *
+   * <p>If {@code memoryBudget} is not negative, behaves like
+   * {@link #orderBy(Enumerable, Function1, Comparator, int, int, long)}.
+   *
+   * @param prefixSelector Selects the prefix of the key on which the source
+   *                       is sorted, or null
+   * @param prefixComparator Order of the source on the prefix, or null
+   * @param offset how many rows are skipped from the sorted output.
+   *               Must be greater than or equal to 0.
+   * @param fetch how many rows are retrieved. Must be greater than or equal to 0.
+   * @param memoryBudget Approximate number of bytes of rows to hold in memory,
+   *                     or -1 for no limit
+   */
+  public static <TSource, TKey, TPrefix> Enumerable<TSource> topN(
+      Enumerable<TSource> source,
+      Function1<TSource, TKey> keySelector,
+      Comparator<TKey> comparator,
+      @Nullable Function1<TSource, TPrefix> prefixSelector,
+      @Nullable Comparator<TPrefix> prefixComparator,
+      int offset, int fetch, long memoryBudget) {
+    if (memoryBudget >= 0) {
+      return orderBy(source, keySelector, comparator, offset, fetch,
+          memoryBudget);
+    }
+    return new TopNEnumerable<>(source, keySelector, comparator,
+        prefixSelector, prefixComparator, offset, fetch);
+  }
+
   /**
    * Sorts the elements of a sequence in descending
    * order according to a key.
@@ -3346,6 +3796,72 @@ public static <TSource, TKey> Enumerable<TSource> orderByDescending(
     return orderBy(source, keySelector, Collections.reverseOrder(comparator));
   }
 
+  /**
+   * Applies a pipeline to a sequence, splitting the sequence into morsels and
+   * applying the pipeline to several morsels at the same time.
+   *
+   * <p>The result has the same elements, in the same order, as
+   * {@code pipeline.apply(source)}. The pipeline is called once per morsel,
+   * possibly from several threads at once, so it must not keep state from
+   * one element to the next; filters and projections qualify.
+   *
+   * @param source      Input sequence; it is read on the calling thread
+   * @param pipeline    Function that transforms a morsel of the input
+   * @param parallelism Number of morsels to process at the same time; if 1
+   *                    or less, the pipeline is applied to the whole input
+   *                    on the calling thread
+   */
+  public static <TSource, TResult> Enumerable<TResult> parallel(
+      Enumerable<TSource> source,
+      Function1<Enumerable<TSource>, Enumerable<TResult>> pipeline,
+      int parallelism) {
+    if (parallelism <= 1) {
+      return pipeline.apply(source);
+    }
+    return new MorselEnumerable<>(source, pipeline, parallelism);
+  }
+
+  /**
+   * Sorts the elements of a sequence in ascending order by using a specified
+   * comparer, sorting parts of the sequence on several threads at the same
+   * time.
+   *
+   * <p>The result is the same as that of
+   * {@link #orderBy(Enumerable, Function1, Comparator)}; in particular, the
+   * sort is stable.
+   *
+   * @param parallelism Number of parts to sort at the same time; if 1 or
+   *                    less, the sequence is sorted on the calling thread
+   */
+  public static <TSource, TKey> Enumerable<TSource> parallelOrderBy(
+      Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      @Nullable Comparator<TKey> comparator, int parallelism) {
+    return parallelOrderBy(source, keySelector, comparator, parallelism, -1);
+  }
+
+  /**
+   * Sorts the elements of a sequence in ascending order by using a specified
+   * comparer, sorting parts of the sequence on several threads at the same
+   * time, and holding at most approximately {@code memoryBudget} bytes of
+   * rows in memory.
+   *
+   * <p>When the budget is exceeded, sorted parts are written to temporary
+   * files and merged, as in
+   * {@link #orderBy(Enumerable, Function1, Comparator, long)}.
+   *
+   * @param parallelism  Number of parts to sort at the same time; if 1 or
+   *                     less, the sequence is sorted on the calling thread
+   * @param memoryBudget Approximate number of bytes of rows to hold in memory,
+   *                     or -1 for no limit
+   */
+  public static <TSource, TKey> Enumerable<TSource> parallelOrderBy(
+      Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      @Nullable Comparator<TKey> comparator, int parallelism,
+      long memoryBudget) {
+    return new ParallelSortEnumerable<>(source, keySelector, comparator,
+        parallelism, memoryBudget);
+  }
+
   /**
    * Inverts the order of the elements in a
    * sequence.
@@ -5389,4 +5905,170 @@ public static <TSource, TKey> Enumerable<TSource> mergeUnion(
       }
     };
   }
+
+  /** Rows of the inner input of a join, indexed by a key that is a single
+   * integral value. Rows with the same key are chained, in the order they
+   * were read, using arrays of row ordinals.
+   *
+   * @param <T> row type */
+  private static class LongLookup<T> {
+    final LongHashTable table = new LongHashTable();
+    final List<T> rows = new ArrayList<>();
+    /** For each key, the ordinal of its first and last row. */
+    int[] first = new int[16];
+    int[] last = new int[16];
+    /** For each row, the ordinal of the next row with the same key, or -1.
+     * Rows whose key is null are kept, so that a right join can return
+     * them, but are not in any chain. */
+    int[] next = new int[16];
+
+    LongLookup(Enumerable<T> source, LongFunction1<T> keySelector,
+        @Nullable Predicate1<T> keyIsNull) {
+      try (Enumerator<T> os = source.enumerator()) {
+        while (os.moveNext()) {
+          final T o = os.current();
+          final int r = rows.size();
+          rows.add(o);
+          next = LongHashTable.ensureCapacity(next, r + 1);
+          next[r] = -1;
+          if (keyIsNull != null && keyIsNull.apply(o)) {
+            continue;
+          }
+          final int size = table.size();
+          final int k = table.add(keySelector.apply(o));
+          if (table.size() > size) {
+            first = LongHashTable.ensureCapacity(first, k + 1);
+            last = LongHashTable.ensureCapacity(last, k + 1);
+            first[k] = r;
+          } else {
+            next[last[k]] = r;
+          }
+          last[k] = r;
+        }
+      }
+    }
+
+    /** Returns the ordinal of the first row with a given key, or -1. */
+    int first(long key) {
+      final int k = table.find(key);
+      return k < 0 ? -1 : first[k];
+    }
+  }
+
+  /** Enumerator that probes a {@link LongLookup} with each element of the
+   * outer input of a join.
+   *
+   * @param <TSource> outer row type
+   * @param <TInner> inner row type
+   * @param <TResult> result type */
+  private static class LongHashJoinEnumerator<TSource, TInner, TResult>
+      implements Enumerator<TResult> {
+    private final Enumerator<TSource> outers;
+    private final LongLookup<TInner> lookup;
+    private final LongFunction1<TSource> outerKeySelector;
+    private final @Nullable Predicate1<TSource> outerKeyIsNull;
+    private final Function2<TSource, TInner, TResult> resultSelector;
+    private final boolean generateNullsOnRight;
+    private final @Nullable Predicate2<TSource, TInner> predicate;
+    /** Inner rows that have matched, if this is a right or full join. */
+    private final @Nullable BitSet matched;
+
+    private @Nullable TSource outer;
+    private @Nullable TInner inner;
+    private boolean hasOuter;
+    private boolean outerMatched;
+    /** Ordinal of the next inner row to try to match with the current outer
+     * row, or -1. */
+    private int candidate = -1;
+    /** Ordinal of the next inner row to check for a match, after all outer
+     * rows have been read, if this is a right or full join; or -1. */
+    private int leftover = -1;
+
+    LongHashJoinEnumerator(Enumerator<TSource> outers,
+        LongLookup<TInner> lookup, LongFunction1<TSource> outerKeySelector,
+        @Nullable Predicate1<TSource> outerKeyIsNull,
+        Function2<TSource, TInner, TResult> resultSelector,
+        boolean generateNullsOnLeft, boolean generateNullsOnRight,
+        @Nullable Predicate2<TSource, TInner> predicate) {
+      this.outers = outers;
+      this.lookup = lookup;
+      this.outerKeySelector = outerKeySelector;
+      this.outerKeyIsNull = outerKeyIsNull;
+      this.resultSelector = resultSelector;
+      this.generateNullsOnRight = generateNullsOnRight;
+      this.predicate = predicate;
+      this.matched = generateNullsOnLeft ? new BitSet() : null;
+    }
+
+    @Override public TResult current() {
+      return resultSelector.apply(castNonNull(outer), castNonNull(inner));
+    }
+
+    @Override public boolean moveNext() {
+      for (;;) {
+        if (leftover >= 0) {
+          final int r = castNonNull(matched).nextClearBit(leftover);
+          if (r >= lookup.rows.size()) {
+            leftover = r;
+            return false;
+          }
+          leftover = r + 1;
+          outer = null;
+          inner = lookup.rows.get(r);
+          return true;
+        }
+        while (candidate >= 0) {
+          final int r = candidate;
+          candidate = lookup.next[r];
+          final TInner i = lookup.rows.get(r);
+          if (predicate == null || predicate.apply(castNonNull(outer), i)) {
+            outerMatched = true;
+            if (matched != null) {
+              matched.set(r);
+            }
+            inner = i;
+            return true;
+          }
+        }
+        if (hasOuter && !outerMatched && generateNullsOnRight) {
+          outerMatched = true;
+          inner = null;
+          return true;
+        }
+        if (!outers.moveNext()) {
+          hasOuter = false;
+          if (matched != null) {
+            // We have read all outer rows. If this is a right or full join,
+            // return inner rows that did not match.
+            leftover = 0;
+            continue;
+          }
+          return false;
+        }
+        final TSource o = outers.current();
+        outer = o;
+        hasOuter = true;
+        outerMatched = false;
+        candidate = outerKeyIsNull != null && outerKeyIsNull.apply(o)
+            ? -1
+            : lookup.first(outerKeySelector.apply(o));
+      }
+    }
+
+    @Override public void reset() {
+      outers.reset();
+      outer = null;
+      inner = null;
+      hasOuter = false;
+      candidate = -1;
+      leftover = -1;
+      if (matched != null) {
+        matched.clear();
+      }
+    }
+
+    @Override public void close() {
+      outers.close();
+    }
+  }
 }
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reads its input on another thread, and hands rows to the consumer in
+ * batches through a bounded queue.
+ *
+ * <p>The input is therefore computed at the same time as whatever consumes
+ * the output; the producer blocks when {@link #QUEUE_CAPACITY} batches are
+ * waiting, so memory use is bounded. Rows are returned in the order of the
+ * input. If the input throws, the consumer throws the same exception.
+ *
+ * <p>The producer runs on a thread of the {@link SharedExecutor}; if no
+ * thread is free, the consumer reads the input itself.
+ *
+ * @param <T> Row type
+ */
+final class ExchangeEnumerable<T> extends AbstractEnumerable<T> {
+  /** Number of rows in each batch. */
+  static final int BATCH_SIZE = 256;
+
+  /** Number of batches that may be waiting to be consumed. */
+  static final int QUEUE_CAPACITY = 16;
+
+  /** How long closing the enumerator waits for the producer to close the
+   * input, in milliseconds. A producer that is blocked in a call that
+   * cannot be interrupted closes the input when the call returns. */
+  static final long CLOSE_TIMEOUT_MILLIS = 5_000;
+
+  private final Enumerable<T> source;
+
+  ExchangeEnumerable(Enumerable<T> source) {
+    this.source = source;
+  }
+
+  @Override public Enumerator<T> enumerator() {
+    return new ExchangeEnumerator<>(source);
+  }
+
+  /** Message from the producer; either a batch of rows, the end of the
+   * input, or a failure.
+   *
+   * @param <T> Row type */
+  private static class Message<T> {
+    final List<T> rows;
+    final @Nullable Throwable failure;
+
+    Message(List<T> rows, @Nullable Throwable failure) {
+      this.rows = rows;
+      this.failure = failure;
+    }
+
+    /** Whether this is the last message from the producer. */
+    boolean isLast() {
+      return rows.isEmpty();
+    }
+  }
+
+  /** Task that reads the input and puts batches of rows into a queue.
+   *
+   * @param <T> Row type */
+  private static class Producer<T> implements Runnable {
+    final Enumerable<T> source;
+    final BlockingQueue<Message<T>> queue =
+        new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    final FutureTask<@Nullable Void> task = new FutureTask<>(this, null);
+    /** Set by whichever comes first: the producer starting, or the consumer
+     * cancelling a producer that has not started. */
+    final AtomicBoolean started = new AtomicBoolean();
+    /** Released when the producer has closed the input. */
+    final CountDownLatch finished = new CountDownLatch(1);
+
+    Producer(Enumerable<T> source) {
+      this.source = source;
+    }
+
+    @Override public void run() {
+      if (!started.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        produce();
+      } finally {
+        finished.countDown();
+      }
+    }
+
+    private void produce() {
+      try {
+        try (Enumerator<T> enumerator = source.enumerator()) {
+          List<T> batch = new ArrayList<>(BATCH_SIZE);
+          while (enumerator.moveNext()) {
+            batch.add(enumerator.current());
+            if (batch.size() == BATCH_SIZE) {
+              queue.put(new Message<>(batch, null));
+              batch = new ArrayList<>(BATCH_SIZE);
+            }
+            if (Thread.interrupted()) {
+              // The consumer has closed the enumerator.
+              return;
+            }
+          }
+          if (!batch.isEmpty()) {
+            queue.put(new Message<>(batch, null));
+          }
+        }
+        queue.put(new Message<>(Collections.emptyList(), null));
+      } catch (InterruptedException e) {
+        // The consumer has closed the enumerator; stop reading.
+      } catch (Throwable e) {
+        // Pass the failure to the consumer, discarding rows that it has not
+        // yet read to make room.
+        final Message<T> failure = new Message<>(Collections.emptyList(), e);
+        while (!queue.offer(failure)) {
+          queue.poll();
+        }
+      }
+    }
+
+    /** Stops the producer, and waits a bounded time for it to close the
+     * input. */
+    void cancel() {
+      task.cancel(true);
+      if (started.compareAndSet(false, true)) {
+        // The producer never started, and now never will.
+        return;
+      }
+      try {
+        finished.await(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Enumerator that starts a producer and consumes its batches.
+   *
+   * @param <T> Row type */
+  private static class ExchangeEnumerator<T> implements Enumerator<T> {
+    private final Enumerable<T> source;
+    private @Nullable Producer<T> producer;
+    /** Enumerator of the input, if the consumer is reading the input itself
+     * because no thread was free. */
+    private @Nullable Enumerator<T> input;
+    private List<T> rows = Collections.emptyList();
+    private int index = -1;
+    private boolean done;
+
+    ExchangeEnumerator(Enumerable<T> source) {
+      this.source = source;
+    }
+
+    @Override public T current() {
+      if (input != null) {
+        return input.current();
+      }
+      if (index < 0 || index >= rows.size()) {
+        throw new NoSuchElementException();
+      }
+      return rows.get(index);
+    }
+
+    @Override public boolean moveNext() {
+      if (input != null) {
+        return input.moveNext();
+      }
+      if (++index < rows.size()) {
+        return true;
+      }
+      if (done) {
+        index = rows.size();
+        return false;
+      }
+      Producer<T> producer = this.producer;
+      if (producer == null) {
+        producer = new Producer<>(source);
+        if (!SharedExecutor.tryExecute(producer.task)) {
+          final Enumerator<T> input = source.enumerator();
+          this.input = input;
+          return input.moveNext();
+        }
+        this.producer = producer;
+      }
+      final Message<T> message;
+      try {
+        message = producer.queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+      if (message.failure != null) {
+        done = true;
+        rows = Collections.emptyList();
+        if (message.failure instanceof RuntimeException) {
+          throw (RuntimeException) message.failure;
+        }
+        if (message.failure instanceof Error) {
+          throw (Error) message.failure;
+        }
+        throw new RuntimeException(message.failure);
+      }
+      if (message.isLast()) {
+        done = true;
+        rows = Collections.emptyList();
+        index = 0;
+        return false;
+      }
+      rows = message.rows;
+      index = 0;
+      return true;
+    }
+
+    @Override public void reset() {
+      if (input != null) {
+        input.reset();
+        return;
+      }
+      stop();
+      rows = Collections.emptyList();
+      index = -1;
+      done = false;
+    }
+
+    @Override public void close() {
+      if (input != null) {
+        input.close();
+        return;
+      }
+      stop();
+    }
+
+    /** Stops the producer, if running. */
+    private void stop() {
+      final Producer<T> producer = this.producer;
+      if (producer != null) {
+        this.producer = null;
+        producer.cancel();
+      }
+    }
+  }
+}
@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Sorts its input using a bounded amount of memory.
+ *
+ * <p>Rows are accumulated in memory until their estimated size exceeds the
+ * memory budget; the buffer is then sorted and written to a
+ * {@link SpillFile} (a "run"). After the input is exhausted, the runs and the
+ * final in-memory buffer are combined using a k-way merge. If there are more
+ * runs than can be merged at once, groups of runs are merged into longer
+ * runs, level by level, until few enough remain.
+ *
+ * <p>The sort is stable: rows with equal keys are returned in the order in
+ * which they were read, like
+ * {@link EnumerableDefaults#orderBy(Enumerable, Function1, Comparator)}.
+ *
+ * <p>If the input contains a row that {@link SpillCodec} cannot encode,
+ * the remaining rows are sorted in memory.
+ *
+ * @param <TSource> Row type
+ * @param <TKey> Sort key type
+ */
+final class ExternalSortEnumerable<TSource, TKey>
+    extends AbstractEnumerable<TSource> {
+  /** Maximum number of runs that are merged at the same time. */
+  static final int MAX_FAN_IN = 64;
+
+  private final Enumerable<TSource> source;
+  private final Function1<TSource, TKey> keySelector;
+  private final Comparator<TKey> comparator;
+  private final long memoryBudget;
+  private final long needed;
+
+  /**
+   * Creates an ExternalSortEnumerable.
+   *
+   * @param memoryBudget Approximate number of bytes of rows to hold in memory
+   *                     before writing a run to disk
+   * @param needed       Number of leading rows of the sorted output that the
+   *                     consumer needs, or -1 if it needs all of them; each
+   *                     run is truncated to this many rows
+   */
+  ExternalSortEnumerable(Enumerable<TSource> source,
+      Function1<TSource, TKey> keySelector,
+      @Nullable Comparator<TKey> comparator, long memoryBudget, long needed) {
+    this.source = source;
+    this.keySelector = keySelector;
+    //noinspection unchecked
+    this.comparator = comparator != null
+        ? comparator
+        : (Comparator<TKey>) (Comparator) Comparator.naturalOrder();
+    this.memoryBudget = memoryBudget;
+    this.needed = needed;
+  }
+
+  @Override public Enumerator<TSource> enumerator() {
+    final List<SpillFile<TSource>> runs = new ArrayList<>();
+    List<TSource> buffer = new ArrayList<>();
+    try {
+      long bytes = 0;
+      boolean spillable = true;
+      try (Enumerator<TSource> os = source.enumerator()) {
+        while (os.moveNext()) {
+          final TSource o = os.current();
+          buffer.add(o);
+          if (!spillable) {
+            continue;
+          }
+          final long size = SpillCodec.estimateSize(o);
+          if (size < 0) {
+            // This row cannot be written to disk; keep the rest in memory.
+            spillable = false;
+            continue;
+          }
+          bytes += size;
+          if (bytes > memoryBudget) {
+            buffer = sortRun(buffer);
+            if (needed >= 0 && buffer.size() == needed) {
+              // With a small limit, truncating the buffer may free enough
+              // memory that it does not need to be written to disk.
+              bytes = estimateSize(buffer);
+              if (bytes <= memoryBudget / 2) {
+                continue;
+              }
+            }
+            runs.add(spill(buffer));
+            buffer = new ArrayList<>();
+            bytes = 0;
+          }
+        }
+      }
+      buffer = sortRun(buffer);
+      if (runs.isEmpty()) {
+        return Linq4j.enumerator(buffer);
+      }
+      return merge(runs, Collections.singletonList(buffer), keySelector,
+          comparator, needed);
+    } catch (RuntimeException | Error e) {
+      for (SpillFile<TSource> run : runs) {
+        run.close();
+      }
+      throw e;
+    }
+  }
+
+  /** Sorts a buffer, and truncates it to the number of rows needed. */
+  private List<TSource> sortRun(List<TSource> buffer) {
+    buffer.sort((o1, o2) ->
+        comparator.compare(keySelector.apply(o1), keySelector.apply(o2)));
+    if (needed >= 0 && buffer.size() > needed) {
+      return new ArrayList<>(buffer.subList(0, (int) needed));
+    }
+    return buffer;
+  }
+
+  private static <TSource> long estimateSize(List<TSource> rows) {
+    long size = 0;
+    for (TSource row : rows) {
+      size += SpillCodec.estimateSize(row);
+    }
+    return size;
+  }
+
+  private static <TSource> SpillFile<TSource> spill(List<TSource> rows) {
+    final SpillFile<TSource> run = SpillFile.create("calcite-sort");
+    try {
+      for (TSource row : rows) {
+        run.add(row);
+      }
+      return run.finish();
+    } catch (RuntimeException | Error e) {
+      run.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns an enumerator that merges sorted runs, followed by sorted
+   * in-memory buffers; rows with equal keys are returned in the order of the
+   * runs and buffers. The runs are deleted when the enumerator is closed.
+   *
+   * <p>If there are more than {@link #MAX_FAN_IN} inputs, the runs are first
+   * merged in passes; each pass merges groups of {@link #MAX_FAN_IN} runs,
+   * reducing the number of runs by that factor.
+   *
+   * @param needed Number of leading rows that are needed, or -1 if all rows
+   *               are needed
+   */
+  static <T, K> Enumerator<T> merge(List<SpillFile<T>> runs,
+      List<List<T>> buffers, Function1<T, K> keySelector,
+      Comparator<K> comparator, long needed) {
+    try {
+      while (runs.size() > 1
+          && runs.size() + buffers.size() > MAX_FAN_IN) {
+        // Merge each group of MAX_FAN_IN consecutive runs into one run, so
+        // that each pass reads and writes every row once. Groups stay in
+        // the order of their runs, so the order of equal keys is preserved.
+        final List<SpillFile<T>> level = new ArrayList<>();
+        while (!runs.isEmpty()) {
+          final List<SpillFile<T>> groupRuns =
+              runs.subList(0, Math.min(runs.size(), MAX_FAN_IN));
+          final List<SpillFile<T>> group = new ArrayList<>(groupRuns);
+          groupRuns.clear();
+          if (group.size() == 1) {
+            level.add(group.get(0));
+            continue;
+          }
+          final SpillFile<T> merged = SpillFile.create("calcite-merge");
+          level.add(merged);
+          try (Enumerator<T> e =
+                   new MergeEnumerator<>(group, Collections.emptyList(),
+                       keySelector, comparator)) {
+            long count = 0;
+            while (e.moveNext() && (needed < 0 || count++ < needed)) {
+              merged.add(e.current());
+            }
+          } catch (RuntimeException | Error e) {
+            for (SpillFile<T> run : level) {
+              run.close();
+            }
+            throw e;
+          }
+          merged.finish();
+        }
+        runs.addAll(level);
+      }
+      return new MergeEnumerator<>(runs, buffers, keySelector, comparator);
+    } catch (RuntimeException | Error e) {
+      for (SpillFile<T> run : runs) {
+        run.close();
+      }
+      throw e;
+    }
+  }
+
+  /** Current row of one of the inputs to a merge.
+   *
+   * @param <T> Row type
+   * @param <K> Key type */
+  private static class Cursor<T, K> {
+    final int ordinal;
+    final Enumerator<T> enumerator;
+    final Function1<T, K> keySelector;
+    @Nullable T row;
+    @Nullable K key;
+
+    Cursor(int ordinal, Enumerator<T> enumerator,
+        Function1<T, K> keySelector) {
+      this.ordinal = ordinal;
+      this.enumerator = enumerator;
+      this.keySelector = keySelector;
+    }
+
+    boolean advance() {
+      if (enumerator.moveNext()) {
+        row = enumerator.current();
+        key = keySelector.apply(castNonNull(row));
+        return true;
+      }
+      row = null;
+      key = null;
+      return false;
+    }
+  }
+
+  /** Enumerator that merges sorted runs and in-memory lists, and deletes
+   * the runs when closed.
+   *
+   * @param <T> Row type
+   * @param <K> Key type */
+  private static class MergeEnumerator<T, K> implements Enumerator<T> {
+    private final List<SpillFile<T>> runs;
+    private final List<Cursor<T, K>> cursors = new ArrayList<>();
+    private final PriorityQueue<Cursor<T, K>> queue;
+    private @Nullable T current;
+    private boolean hasCurrent;
+
+    MergeEnumerator(List<SpillFile<T>> runs, List<List<T>> buffers,
+        Function1<T, K> keySelector, Comparator<K> comparator) {
+      this.runs = runs;
+      for (SpillFile<T> run : runs) {
+        cursors.add(new Cursor<>(cursors.size(), run.enumerator(), keySelector));
+      }
+      for (List<T> buffer : buffers) {
+        cursors.add(
+            new Cursor<>(cursors.size(), Linq4j.enumerator(buffer),
+                keySelector));
+      }
+      this.queue =
+          new PriorityQueue<>(Math.max(1, cursors.size()), (c1, c2) -> {
+            final int c =
+                comparator.compare(castNonNull(c1.key), castNonNull(c2.key));
+            return c != 0 ? c : Integer.compare(c1.ordinal, c2.ordinal);
+          });
+      fill();
+    }
+
+    private void fill() {
+      for (Cursor<T, K> cursor : cursors) {
+        if (cursor.advance()) {
+          queue.add(cursor);
+        }
+      }
+    }
+
+    @Override public T current() {
+      if (!hasCurrent) {
+        throw new NoSuchElementException();
+      }
+      return castNonNull(current);
+    }
+
+    @Override public boolean moveNext() {
+      final Cursor<T, K> cursor = queue.poll();
+      if (cursor == null) {
+        current = null;
+        hasCurrent = false;
+        return false;
+      }
+      current = cursor.row;
+      hasCurrent = true;
+      if (cursor.advance()) {
+        queue.add(cursor);
+      }
+      return true;
+    }
+
+    @Override public void reset() {
+      queue.clear();
+      for (Cursor<T, K> cursor : cursors) {
+        cursor.enumerator.reset();
+      }
+      current = null;
+      hasCurrent = false;
+      fill();
+    }
+
+    @Override public void close() {
+      queue.clear();
+      for (Cursor<T, K> cursor : cursors) {
+        cursor.enumerator.close();
+      }
+      for (SpillFile<T> run : runs) {
+        run.close();
+      }
+    }
+  }
+}
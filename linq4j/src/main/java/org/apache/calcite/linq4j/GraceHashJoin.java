@@ -0,0 +1,399 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Hash join that partitions its inputs to disk if the build (inner) input
+ * does not fit in a memory budget.
+ *
+ * <p>The inner input is read into memory. If its estimated size stays within
+ * the budget, the join is the usual in-memory hash join. Otherwise both
+ * inputs are partitioned into {@link #PARTITION_COUNT} {@link SpillFile}s by
+ * the hash of their join key, and each pair of partitions is joined in
+ * memory, using the same methods as the in-memory join; so the semantics of
+ * outer, semi and anti joins, and of null keys, do not change. A partition
+ * whose inner side is still too large is partitioned again, using a
+ * different hash function, up to {@link #MAX_DEPTH} times.
+ *
+ * <p>The in-memory join returns rows in the order of the outer input (for
+ * right and full joins, followed by the unmatched inner rows), and the
+ * planner relies on this. To keep the order, each outer row is tagged with
+ * its ordinal before it is partitioned, the output of each partition is
+ * written to disk with the ordinal of its outer row, and the outputs are
+ * merged on ordinal.
+ *
+ * @param <TSource> Outer row type
+ * @param <TInner> Inner row type
+ * @param <TKey> Key type
+ */
+final class GraceHashJoin<TSource, TInner, TKey> {
+  /** Number of partitions each input is split into. */
+  static final int PARTITION_COUNT = 32;
+
+  /** Maximum number of times a partition is partitioned. */
+  static final int MAX_DEPTH = 3;
+
+  /** Minimum number of inner rows in a partition for it to be partitioned
+   * again; below this, partitioning costs more in files than it saves in
+   * memory. */
+  static final int MIN_PARTITION_ROWS = 4 * PARTITION_COUNT;
+
+  /** Ordinal given to output rows that have no outer row. They come after
+   * all other rows, as in the in-memory join. */
+  private static final long NO_OUTER = Long.MAX_VALUE;
+
+  private final Function1<TSource, TKey> outerKeySelector;
+  private final Function1<TInner, TKey> innerKeySelector;
+  private final @Nullable EqualityComparer<TKey> comparer;
+  private final long memoryBudget;
+
+  private GraceHashJoin(Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      @Nullable EqualityComparer<TKey> comparer, long memoryBudget) {
+    this.outerKeySelector = outerKeySelector;
+    this.innerKeySelector = innerKeySelector;
+    this.comparer = comparer;
+    this.memoryBudget = memoryBudget;
+  }
+
+  /** Implements
+   * {@link EnumerableDefaults#hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean, Predicate2, long)}. */
+  static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoin(
+      Enumerable<TSource> outer, Enumerable<TInner> inner,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<TSource, TInner, TResult> resultSelector,
+      @Nullable EqualityComparer<TKey> comparer,
+      boolean generateNullsOnLeft, boolean generateNullsOnRight,
+      @Nullable Predicate2<TSource, TInner> predicate, long memoryBudget) {
+    final GraceHashJoin<TSource, TInner, TKey> join =
+        new GraceHashJoin<>(outerKeySelector, innerKeySelector, comparer,
+            memoryBudget);
+    return new AbstractEnumerable<TResult>() {
+      @Override public Enumerator<TResult> enumerator() {
+        return join.enumerator(outer, inner,
+            (outer1, inner1) ->
+                EnumerableDefaults.hashJoin(outer1, inner1,
+                    outerKeySelector, innerKeySelector, resultSelector,
+                    comparer, generateNullsOnLeft, generateNullsOnRight,
+                    predicate),
+            (outer1, inner1) ->
+                EnumerableDefaults.hashJoin(outer1, inner1,
+                    e -> outerKeySelector.apply(row(e)),
+                    innerKeySelector,
+                    (e, i) -> new Object[] {
+                        e == null ? NO_OUTER : e[0],
+                        resultSelector.apply(row(e), i)},
+                    comparer, generateNullsOnLeft, generateNullsOnRight,
+                    predicate == null
+                        ? null
+                        : (e, i) -> predicate.apply(row(e), i)));
+      }
+    };
+  }
+
+  /** Implements
+   * {@link EnumerableDefaults#semiJoin(Enumerable, Enumerable, Function1, Function1, EqualityComparer, boolean, Predicate2, long)}. */
+  static <TSource, TInner, TKey> Enumerable<TSource> semiJoin(
+      Enumerable<TSource> outer, Enumerable<TInner> inner,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      @Nullable EqualityComparer<TKey> comparer, boolean anti,
+      @Nullable Predicate2<TSource, TInner> predicate, long memoryBudget) {
+    final GraceHashJoin<TSource, TInner, TKey> join =
+        new GraceHashJoin<>(outerKeySelector, innerKeySelector, comparer,
+            memoryBudget);
+    return new AbstractEnumerable<TSource>() {
+      @Override public Enumerator<TSource> enumerator() {
+        return join.enumerator(outer, inner,
+            (outer1, inner1) ->
+                EnumerableDefaults.semiJoin(outer1, inner1, outerKeySelector,
+                    innerKeySelector, castNonNull(comparer), anti,
+                    castNonNull(predicate)),
+            (outer1, inner1) ->
+                EnumerableDefaults.semiJoin(outer1, inner1,
+                    e -> outerKeySelector.apply(row(e)),
+                    innerKeySelector, castNonNull(comparer), anti,
+                    predicate == null
+                        ? castNonNull(null)
+                        : (Predicate2<Object[], TInner>) (e, i) ->
+                            predicate.apply(row(e), i)));
+      }
+    };
+  }
+
+  /** Returns the outer row of an entry of an outer partition, which is an
+   * array of its ordinal and the row; or null if there is no entry, as for
+   * the unmatched inner rows of a right join. */
+  @SuppressWarnings("unchecked")
+  private static <TSource> TSource row(Object @Nullable [] entry) {
+    return (TSource) castNonNull(entry == null ? null : entry[1]);
+  }
+
+  /**
+   * Creates an enumerator for a join.
+   *
+   * @param inMemoryJoin Joins the outer input with the inner rows, if they
+   *                     fit in memory
+   * @param partitionJoin Joins a partition of outer entries (arrays of
+   *                      ordinal and row) with a partition of inner rows,
+   *                      returning arrays of outer ordinal and result row,
+   *                      ordered on ordinal
+   */
+  private <TResult> Enumerator<TResult> enumerator(Enumerable<TSource> outer,
+      Enumerable<TInner> inner,
+      Function2<Enumerable<TSource>, Enumerable<TInner>, Enumerable<TResult>> inMemoryJoin,
+      Function2<Enumerable<Object[]>, Enumerable<TInner>, Enumerable<Object[]>> partitionJoin) {
+    final List<TInner> buffer = new ArrayList<>();
+    long bytes = 0;
+    final Enumerator<TInner> inners = inner.enumerator();
+    try {
+      while (inners.moveNext()) {
+        final TInner o = inners.current();
+        buffer.add(o);
+        final long size = SpillCodec.estimateSize(o);
+        if (size < 0) {
+          // This row cannot be written to disk, so probably no other row can.
+          // Stay in memory.
+          bytes = Long.MIN_VALUE;
+        } else {
+          bytes += size;
+        }
+        if (bytes > memoryBudget) {
+          return spilled(outer, buffer, inners, partitionJoin);
+        }
+      }
+    } finally {
+      inners.close();
+    }
+    return inMemoryJoin.apply(outer, Linq4j.asEnumerable(buffer)).enumerator();
+  }
+
+  /** Continues a join whose inner input has exceeded the memory budget. */
+  private <TResult> Enumerator<TResult> spilled(Enumerable<TSource> outer,
+      List<TInner> buffer, Enumerator<TInner> inners,
+      Function2<Enumerable<Object[]>, Enumerable<TInner>, Enumerable<Object[]>> partitionJoin) {
+    final Partitions<TInner> innerPartitions =
+        new Partitions<>("calcite-join-inner");
+    final Partitions<Object[]> outerPartitions =
+        new Partitions<>("calcite-join-outer");
+    final List<SpillFile<Object[]>> outputs = new ArrayList<>();
+    try {
+      for (TInner o : buffer) {
+        addInner(innerPartitions, o, 0);
+      }
+      buffer.clear();
+      while (inners.moveNext()) {
+        addInner(innerPartitions, inners.current(), 0);
+      }
+      long ordinal = 0;
+      try (Enumerator<TSource> outers = outer.enumerator()) {
+        while (outers.moveNext()) {
+          final TSource o = outers.current();
+          outerPartitions.add(partition(outerKeySelector.apply(o), 0),
+              new Object[] {ordinal++, o}, 0);
+        }
+      }
+      joinPartitions(outerPartitions, innerPartitions, 1, partitionJoin,
+          outputs);
+    } catch (RuntimeException | Error e) {
+      closeAll(outputs);
+      throw e;
+    } finally {
+      innerPartitions.close();
+      outerPartitions.close();
+    }
+    final Enumerator<Object[]> merged =
+        ExternalSortEnumerable.<Object[], Long>merge(outputs,
+            Collections.emptyList(),
+            e -> (Long) e[0], Comparator.naturalOrder(), -1);
+    return Linq4j.transform(merged, e -> {
+      @SuppressWarnings("unchecked")
+      final TResult result = (TResult) e[1];
+      return result;
+    });
+  }
+
+  /** Joins each pair of partitions, adding the output to a list of files,
+   * each of which is sorted by outer ordinal. */
+  private void joinPartitions(Partitions<Object[]> outerPartitions,
+      Partitions<TInner> innerPartitions, int depth,
+      Function2<Enumerable<Object[]>, Enumerable<TInner>, Enumerable<Object[]>> partitionJoin,
+      List<SpillFile<Object[]>> outputs) {
+    for (int i = 0; i < PARTITION_COUNT; i++) {
+      final SpillFile<Object[]> outerPartition = outerPartitions.finish(i);
+      final SpillFile<TInner> innerPartition = innerPartitions.finish(i);
+      if (outerPartition == null && innerPartition == null) {
+        continue;
+      }
+      if (innerPartition != null
+          && innerPartitions.bytes[i] > memoryBudget
+          && depth < MAX_DEPTH
+          && innerPartition.size() >= MIN_PARTITION_ROWS) {
+        // The partition is still too large. Partition it again.
+        final Partitions<TInner> innerSubPartitions =
+            new Partitions<>("calcite-join-inner");
+        final Partitions<Object[]> outerSubPartitions =
+            new Partitions<>("calcite-join-outer");
+        try {
+          try (Enumerator<TInner> e = innerPartition.enumerator()) {
+            while (e.moveNext()) {
+              addInner(innerSubPartitions, e.current(), depth);
+            }
+          }
+          innerPartitions.close(i);
+          if (outerPartition != null) {
+            try (Enumerator<Object[]> e = outerPartition.enumerator()) {
+              while (e.moveNext()) {
+                final Object[] entry = e.current();
+                final TSource o = row(entry);
+                outerSubPartitions.add(
+                    partition(outerKeySelector.apply(o), depth), entry, 0);
+              }
+            }
+            outerPartitions.close(i);
+          }
+          joinPartitions(outerSubPartitions, innerSubPartitions, depth + 1,
+              partitionJoin, outputs);
+        } finally {
+          innerSubPartitions.close();
+          outerSubPartitions.close();
+        }
+        continue;
+      }
+      final SpillFile<Object[]> output =
+          SpillFile.create("calcite-join-output");
+      outputs.add(output);
+      final Enumerable<Object[]> outerRows =
+          outerPartition == null
+              ? Linq4j.emptyEnumerable()
+              : outerPartition.asEnumerable();
+      final List<TInner> innerRows =
+          innerPartition == null
+              ? new ArrayList<>()
+              : innerPartition.asEnumerable().toList();
+      try (Enumerator<Object[]> e =
+               partitionJoin.apply(outerRows, Linq4j.asEnumerable(innerRows))
+                   .enumerator()) {
+        while (e.moveNext()) {
+          output.add(e.current());
+        }
+      }
+      output.finish();
+      innerPartitions.close(i);
+      outerPartitions.close(i);
+    }
+  }
+
+  private void addInner(Partitions<TInner> partitions, TInner o, int depth) {
+    partitions.add(partition(innerKeySelector.apply(o), depth), o,
+        Math.max(SpillCodec.estimateSize(o), 0));
+  }
+
+  /** Returns the partition for a key. Null keys never match, and always go
+   * to partition 0. */
+  private int partition(@Nullable TKey key, int depth) {
+    if (key == null) {
+      return 0;
+    }
+    return partition(
+        comparer == null ? key.hashCode() : comparer.hashCode(key), depth);
+  }
+
+  /** Returns the partition for a hash code at a given depth of
+   * partitioning. */
+  static int partition(int hashCode, int depth) {
+    // Mix the hash differently at each depth, so that a partition that is
+    // partitioned again does not end up in a single sub-partition.
+    int h = (hashCode ^ (depth * 0x9E3779B9)) * 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return (h & Integer.MAX_VALUE) % PARTITION_COUNT;
+  }
+
+  private static <T> void closeAll(List<SpillFile<T>> files) {
+    for (SpillFile<T> file : files) {
+      file.close();
+    }
+  }
+
+  /** Set of partitions of an input. The file for a partition is created
+   * when the first row is added to it.
+   *
+   * @param <T> Row type */
+  static class Partitions<T> {
+    private final String prefix;
+    private final List<@Nullable SpillFile<T>> files = new ArrayList<>();
+    /** Estimated size of the rows in each partition, in bytes. */
+    final long[] bytes = new long[PARTITION_COUNT];
+
+    Partitions(String prefix) {
+      this.prefix = prefix;
+      for (int i = 0; i < PARTITION_COUNT; i++) {
+        files.add(null);
+      }
+    }
+
+    void add(int i, T row, long size) {
+      SpillFile<T> file = files.get(i);
+      if (file == null) {
+        file = SpillFile.create(prefix);
+        files.set(i, file);
+      }
+      file.add(row);
+      bytes[i] += size;
+    }
+
+    /** Finishes writing a partition, and returns its file, or null if it is
+     * empty. */
+    @Nullable SpillFile<T> finish(int i) {
+      final SpillFile<T> file = files.get(i);
+      return file == null ? null : file.finish();
+    }
+
+    /** Deletes the file of a partition. */
+    void close(int i) {
+      final SpillFile<T> file = files.get(i);
+      if (file != null) {
+        files.set(i, null);
+        file.close();
+      }
+    }
+
+    /** Deletes the files of all partitions. */
+    void close() {
+      for (int i = 0; i < PARTITION_COUNT; i++) {
+        close(i);
+      }
+    }
+  }
+}
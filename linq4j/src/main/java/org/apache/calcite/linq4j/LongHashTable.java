@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import java.util.Arrays;
+
+/**
+ * Hash table whose keys are primitive {@code long} values, used by joins and
+ * aggregates whose key is a single integral column.
+ *
+ * <p>Each distinct key is given an ordinal, 0, 1, 2, ..., in the order in
+ * which keys are first added; callers keep the state of each key in arrays
+ * or lists indexed by ordinal. Keys are stored using open addressing with
+ * linear probing, so neither {@link #add} nor {@link #find} allocates
+ * (except when the table grows).
+ */
+final class LongHashTable {
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** Key in each slot. */
+  private long[] keys;
+  /** Ordinal of the key in each slot, plus one; 0 means the slot is empty. */
+  private int[] ordinals;
+  private int mask;
+  private int size;
+
+  LongHashTable() {
+    keys = new long[INITIAL_CAPACITY];
+    ordinals = new int[INITIAL_CAPACITY];
+    mask = INITIAL_CAPACITY - 1;
+  }
+
+  /** Returns the number of distinct keys. */
+  int size() {
+    return size;
+  }
+
+  /** Returns the ordinal of a key, or -1 if the key is not present. */
+  int find(long key) {
+    for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+      final int ordinal = ordinals[slot];
+      if (ordinal == 0) {
+        return -1;
+      }
+      if (keys[slot] == key) {
+        return ordinal - 1;
+      }
+    }
+  }
+
+  /** Returns the ordinal of a key, adding the key if it is not present. If
+   * the key is added, its ordinal is the previous {@link #size()}. */
+  int add(long key) {
+    for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+      final int ordinal = ordinals[slot];
+      if (ordinal == 0) {
+        keys[slot] = key;
+        ordinals[slot] = ++size;
+        if (size > (mask + 1) >>> 1) {
+          // Keep the load factor below 0.5, so that probe sequences are
+          // short.
+          grow();
+        }
+        return size - 1;
+      }
+      if (keys[slot] == key) {
+        return ordinal - 1;
+      }
+    }
+  }
+
+  private void grow() {
+    final long[] oldKeys = keys;
+    final int[] oldOrdinals = ordinals;
+    final int capacity = oldKeys.length * 2;
+    keys = new long[capacity];
+    ordinals = new int[capacity];
+    mask = capacity - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldOrdinals[i] != 0) {
+        int slot = hash(oldKeys[i]) & mask;
+        while (ordinals[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        ordinals[slot] = oldOrdinals[i];
+      }
+    }
+  }
+
+  /** Hashes a key. Keys are often small, consecutive integers, so the bits
+   * are mixed (using the finalizer of MurmurHash3) to spread them over the
+   * table. */
+  private static int hash(long key) {
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  /** Returns an array that is at least {@code minLength} long, containing
+   * the elements of {@code array}; grows by doubling. */
+  static int[] ensureCapacity(int[] array, int minLength) {
+    if (minLength <= array.length) {
+      return array;
+    }
+    return Arrays.copyOf(array, Math.max(minLength, array.length * 2));
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Applies a pipeline to its input in parallel, one morsel at a time.
+ *
+ * <p>The input is read on the consuming thread and cut into morsels of
+ * {@link #MORSEL_SIZE} rows. The pipeline is applied to each morsel as a task
+ * on a thread of the {@link SharedExecutor}, with at most twice the degree
+ * of parallelism tasks in flight, and the results of the morsels are
+ * returned in the order of the input. The pipeline must therefore be
+ * stateless between rows, such as a filter or a projection; it is invoked
+ * concurrently, and each invocation sees only one morsel.
+ *
+ * <p>If the whole input fits in one morsel, or if no thread is free, the
+ * pipeline is applied on the consuming thread.
+ *
+ * @param <TSource> Input row type
+ * @param <TResult> Output row type
+ */
+final class MorselEnumerable<TSource, TResult>
+    extends AbstractEnumerable<TResult> {
+  /** Number of input rows in each morsel. */
+  static final int MORSEL_SIZE = 1024;
+
+  private final Enumerable<TSource> source;
+  private final Function1<Enumerable<TSource>, Enumerable<TResult>> pipeline;
+  private final int parallelism;
+
+  MorselEnumerable(Enumerable<TSource> source,
+      Function1<Enumerable<TSource>, Enumerable<TResult>> pipeline,
+      int parallelism) {
+    this.source = source;
+    this.pipeline = pipeline;
+    this.parallelism = parallelism;
+  }
+
+  @Override public Enumerator<TResult> enumerator() {
+    return new MorselEnumerator();
+  }
+
+  private List<TResult> apply(List<TSource> morsel) {
+    return pipeline.apply(Linq4j.asEnumerable(morsel)).toList();
+  }
+
+  /** Enumerator that schedules morsels and returns their results in
+   * order. */
+  private class MorselEnumerator implements Enumerator<TResult> {
+    private final Deque<CompletableFuture<List<TResult>>> tasks =
+        new ArrayDeque<>();
+    private final Enumerator<TSource> input;
+    private boolean inputDone;
+    private List<TResult> results = Collections.emptyList();
+    private int index = -1;
+
+    MorselEnumerator() {
+      this.input = source.enumerator();
+    }
+
+    @Override public TResult current() {
+      if (index < 0 || index >= results.size()) {
+        throw new NoSuchElementException();
+      }
+      return results.get(index);
+    }
+
+    @Override public boolean moveNext() {
+      while (++index >= results.size()) {
+        schedule();
+        final CompletableFuture<List<TResult>> task = tasks.poll();
+        if (task == null) {
+          results = Collections.emptyList();
+          index = -1;
+          return false;
+        }
+        results = join(task);
+        index = -1;
+      }
+      return true;
+    }
+
+    /** Reads morsels from the input, and submits them as tasks, until
+     * enough tasks are in flight or the input is exhausted. */
+    private void schedule() {
+      while (!inputDone && tasks.size() < 2 * parallelism) {
+        final List<TSource> morsel = new ArrayList<>(MORSEL_SIZE);
+        while (morsel.size() < MORSEL_SIZE) {
+          if (!input.moveNext()) {
+            inputDone = true;
+            break;
+          }
+          morsel.add(input.current());
+        }
+        if (morsel.isEmpty()) {
+          break;
+        }
+        if (inputDone && tasks.isEmpty()) {
+          // The last (and perhaps only) morsel would be returned next;
+          // another thread would not finish it any sooner.
+          tasks.add(CompletableFuture.completedFuture(apply(morsel)));
+        } else {
+          tasks.add(SharedExecutor.supplyAsync(() -> apply(morsel)));
+        }
+      }
+    }
+
+    @Override public void reset() {
+      cancel();
+      input.reset();
+      inputDone = false;
+      results = Collections.emptyList();
+      index = -1;
+    }
+
+    @Override public void close() {
+      cancel();
+      input.close();
+    }
+
+    private void cancel() {
+      for (CompletableFuture<List<TResult>> task : tasks) {
+        task.cancel(false);
+      }
+      tasks.clear();
+    }
+  }
+
+  /** Waits for a task to complete, and returns its result; if the task
+   * failed, rethrows its exception. */
+  private static <T> T join(CompletableFuture<T> task) {
+    try {
+      return castNonNull(task.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException | CancellationException e) {
+      final @Nullable Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause != null ? cause : e);
+    }
+  }
+}
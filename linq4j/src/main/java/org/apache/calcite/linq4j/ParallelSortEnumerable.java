@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Sorts its input by splitting it into partitions, sorting the partitions
+ * at the same time on different threads, and merging the sorted partitions.
+ *
+ * <p>The input is read on the calling thread. Each partition is a contiguous
+ * range of the input, of at most {@link #MAX_PARTITION_SIZE} rows, and rows
+ * with equal keys are merged in the order of the partitions, so the sort is
+ * stable, like
+ * {@link EnumerableDefaults#orderBy(Enumerable, Function1, Comparator)}.
+ * At most {@code parallelism} partitions are being read or sorted at a time;
+ * they are sorted on threads of the {@link SharedExecutor}.
+ *
+ * <p>If there is a memory budget, a partition also ends when its rows'
+ * estimated size reaches the budget divided by the degree of parallelism.
+ * Once the sorted partitions no longer fit in the budget, they are written
+ * to disk as runs, like the runs of {@link ExternalSortEnumerable}, and the
+ * runs are merged.
+ *
+ * @param <TSource> Row type
+ * @param <TKey> Sort key type
+ */
+final class ParallelSortEnumerable<TSource, TKey>
+    extends AbstractEnumerable<TSource> {
+  /** Maximum number of rows in a partition. An input smaller than this is
+   * sorted on the calling thread. */
+  static final int MAX_PARTITION_SIZE = 1 << 16;
+
+  private final Enumerable<TSource> source;
+  private final Function1<TSource, TKey> keySelector;
+  private final Comparator<TKey> comparator;
+  private final int parallelism;
+  private final long memoryBudget;
+
+  /**
+   * Creates a ParallelSortEnumerable.
+   *
+   * @param memoryBudget Approximate number of bytes of rows to hold in memory
+   *                     before writing runs to disk, or -1 for no limit
+   */
+  ParallelSortEnumerable(Enumerable<TSource> source,
+      Function1<TSource, TKey> keySelector,
+      @Nullable Comparator<TKey> comparator, int parallelism,
+      long memoryBudget) {
+    this.source = source;
+    this.keySelector = keySelector;
+    //noinspection unchecked
+    this.comparator = comparator != null
+        ? comparator
+        : (Comparator<TKey>) (Comparator) Comparator.naturalOrder();
+    this.parallelism = Math.max(1, parallelism);
+    this.memoryBudget = memoryBudget;
+  }
+
+  @Override public Enumerator<TSource> enumerator() {
+    // Sorted partitions, in the order of the input. Each is either in memory
+    // or, once memory is short, in a run; runs precede in-memory partitions.
+    final List<CompletableFuture<Partition<TSource>>> partitions =
+        new ArrayList<>();
+    try {
+      final long partitionBudget = memoryBudget / parallelism;
+      boolean spillable = memoryBudget >= 0;
+      boolean spilling = false;
+      long heldBytes = 0;
+      List<TSource> buffer = new ArrayList<>();
+      long bytes = 0;
+      try (Enumerator<TSource> os = source.enumerator()) {
+        while (os.moveNext()) {
+          final TSource o = os.current();
+          buffer.add(o);
+          if (spillable) {
+            final long size = SpillCodec.estimateSize(o);
+            if (size < 0) {
+              // This row cannot be written to disk; keep the rest in memory.
+              spillable = false;
+            } else {
+              bytes += size;
+            }
+          }
+          if (buffer.size() < MAX_PARTITION_SIZE
+              && !(spillable && bytes > partitionBudget)) {
+            continue;
+          }
+          if (spillable && !spilling && heldBytes + bytes > memoryBudget) {
+            // Memory is short. Write the partitions sorted so far to disk,
+            // and write each later partition to disk once it is sorted.
+            spilling = true;
+            for (int i = 0; i < partitions.size(); i++) {
+              partitions.set(i,
+                  CompletableFuture.completedFuture(
+                      join(partitions.get(i)).spill()));
+            }
+          }
+          final List<TSource> rows = buffer;
+          final boolean spill = spilling && spillable;
+          if (parallelism == 1) {
+            partitions.add(
+                CompletableFuture.completedFuture(sort(rows, spill)));
+          } else {
+            if (partitions.size() >= parallelism - 1) {
+              // Wait for a partition to finish before reading another.
+              join(partitions.get(partitions.size() - (parallelism - 1)));
+            }
+            partitions.add(
+                SharedExecutor.supplyAsync(() -> sort(rows, spill)));
+          }
+          if (!spill) {
+            heldBytes += bytes;
+          }
+          buffer = new ArrayList<>();
+          bytes = 0;
+        }
+      }
+      final Partition<TSource> last = sort(buffer, false);
+      final List<SpillFile<TSource>> runs = new ArrayList<>();
+      final List<List<TSource>> lists = new ArrayList<>();
+      for (CompletableFuture<Partition<TSource>> partition : partitions) {
+        join(partition).addTo(runs, lists);
+      }
+      partitions.clear();
+      last.addTo(runs, lists);
+      if (runs.isEmpty() && lists.size() == 1) {
+        return Linq4j.enumerator(lists.get(0));
+      }
+      return ExternalSortEnumerable.merge(runs, lists, keySelector,
+          comparator, -1);
+    } catch (RuntimeException | Error e) {
+      for (CompletableFuture<Partition<TSource>> partition : partitions) {
+        try {
+          partition.join().close();
+        } catch (RuntimeException e2) {
+          // The partition failed, so it holds no run.
+        }
+      }
+      throw e;
+    }
+  }
+
+  /** Sorts a partition, and writes it to a run if {@code spill}. */
+  private Partition<TSource> sort(List<TSource> rows, boolean spill) {
+    rows.sort((o1, o2) ->
+        comparator.compare(keySelector.apply(o1), keySelector.apply(o2)));
+    final Partition<TSource> partition = new Partition<>(rows, null);
+    return spill ? partition.spill() : partition;
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      final @Nullable Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+
+  /** Sorted partition, held either in memory or in a run.
+   *
+   * @param <T> Row type */
+  private static class Partition<T> {
+    final @Nullable List<T> rows;
+    final @Nullable SpillFile<T> run;
+
+    Partition(@Nullable List<T> rows, @Nullable SpillFile<T> run) {
+      this.rows = rows;
+      this.run = run;
+    }
+
+    /** Returns a partition with the same rows, held in a run. */
+    Partition<T> spill() {
+      if (rows == null) {
+        return this;
+      }
+      final SpillFile<T> run = SpillFile.create("calcite-sort");
+      try {
+        for (T row : rows) {
+          run.add(row);
+        }
+        return new Partition<>(null, run.finish());
+      } catch (RuntimeException | Error e) {
+        run.close();
+        throw e;
+      }
+    }
+
+    void addTo(List<SpillFile<T>> runs, List<List<T>> lists) {
+      if (run != null) {
+        runs.add(run);
+      } else if (rows != null && !rows.isEmpty()) {
+        lists.add(rows);
+      }
+    }
+
+    void close() {
+      if (run != null) {
+        run.close();
+      }
+    }
+  }
+}
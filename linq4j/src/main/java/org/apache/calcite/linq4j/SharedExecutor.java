@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.apiguardian.api.API;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Pool of threads on which operators such as
+ * {@link EnumerableDefaults#exchange(Enumerable)},
+ * {@link EnumerableDefaults#parallelOrderBy} and
+ * {@link EnumerableDefaults#parallel} do work in the background.
+ *
+ * <p>The pool has at most one thread per processor, and does not queue
+ * tasks; if every thread is busy, the operator does the work on its own
+ * thread instead. So the number of threads is bounded, and a task never
+ * waits for a thread that is itself waiting for the task's output. Idle
+ * threads end after a few seconds.
+ *
+ * <p>A task does not see the thread-local state of the thread that
+ * submitted it, unless a {@link ContextPropagator} copies it; for example,
+ * Calcite registers one that copies thread-local hooks.
+ */
+@API(since = "1.42", status = API.Status.EXPERIMENTAL)
+public final class SharedExecutor {
+  private static final List<ContextPropagator> PROPAGATORS =
+      new CopyOnWriteArrayList<>();
+
+  private static final ThreadPoolExecutor POOL = createPool();
+
+  private SharedExecutor() {
+  }
+
+  private static ThreadPoolExecutor createPool() {
+    final int threadCount = Runtime.getRuntime().availableProcessors();
+    return new ThreadPoolExecutor(0, threadCount, 5, TimeUnit.SECONDS,
+        new SynchronousQueue<>(),
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("calcite-worker-%d")
+            .build());
+  }
+
+  /** Registers a propagator, which will be applied to every task that is
+   * submitted from then on. */
+  public static void addContextPropagator(ContextPropagator propagator) {
+    PROPAGATORS.add(propagator);
+  }
+
+  /** Runs a task on a pool thread, in the context of the calling thread.
+   * Returns false, and does not run the task, if every thread is busy. */
+  public static boolean tryExecute(Runnable task) {
+    Runnable wrapped = task;
+    for (ContextPropagator propagator : PROPAGATORS) {
+      wrapped = propagator.wrap(wrapped);
+    }
+    try {
+      POOL.execute(wrapped);
+      return true;
+    } catch (RejectedExecutionException e) {
+      return false;
+    }
+  }
+
+  /** Computes a value on a pool thread, in the context of the calling
+   * thread; or, if every thread is busy, on the calling thread. */
+  static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    final Runnable task = () -> {
+      try {
+        future.complete(supplier.get());
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    };
+    if (!tryExecute(task)) {
+      task.run();
+    }
+    return future;
+  }
+
+  /** Copies the thread-local state of a thread that submits a task to the
+   * thread that runs it. */
+  @FunctionalInterface
+  public interface ContextPropagator {
+    /** Called on the thread that submits a task; returns a task that runs
+     * {@code task} with the submitting thread's state, and restores the
+     * running thread's state afterwards. */
+    Runnable wrap(Runnable task);
+  }
+}
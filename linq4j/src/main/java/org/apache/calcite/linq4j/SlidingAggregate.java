@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+/**
+ * Aggregate function that {@link EnumerableDefaults#slidingWindow} can
+ * compute incrementally over a frame that moves forward through its input.
+ *
+ * <p>Each function can remove the oldest value from its frame without
+ * visiting the other values; COUNT and the SUM variants subtract it, and
+ * MIN and MAX keep a deque of the values that may become the extreme value
+ * when older values leave the frame.
+ */
+public enum SlidingAggregate {
+  /** Number of non-null values; result is a {@link Long}. */
+  COUNT,
+  /** Sum of integer values; result is a {@link Long}, or null if the frame
+   * has no non-null values. */
+  SUM,
+  /** Sum of integer values; result is a {@link Long}, or 0 if the frame has
+   * no non-null values. */
+  SUM0,
+  /** Sum of {@link java.math.BigDecimal} values; result is a
+   * {@link java.math.BigDecimal}, or null if the frame has no non-null
+   * values. */
+  SUM_DECIMAL,
+  /** Sum of {@link java.math.BigDecimal} values; result is a
+   * {@link java.math.BigDecimal}, or 0 if the frame has no non-null
+   * values. */
+  SUM0_DECIMAL,
+  /** Least non-null value, or null; values must be {@link Comparable}. */
+  MIN,
+  /** Greatest non-null value, or null; values must be
+   * {@link Comparable}. */
+  MAX
+}
@@ -0,0 +1,399 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Computes windowed aggregates over input that is sorted by partition key
+ * and then by the window's order key, reading the input once.
+ *
+ * <p>In ROWS mode ({@code peerKeySelector} is null), the frame of each row is
+ * the row and up to {@code preceding} rows before it in the same partition
+ * (or all rows before it, if {@code preceding} is negative). Only the
+ * arguments of the rows in the frame are held in memory, and each row adds
+ * one value to, and removes at most one value from, each aggregate.
+ *
+ * <p>In RANGE mode, the frame of each row is every row in the partition up to
+ * and including the last of its peers, the rows with an equal order key.
+ * Only the rows of the current peer group are held in memory.
+ *
+ * @param <TSource> Input row type
+ * @param <TResult> Output row type
+ */
+final class SlidingWindowEnumerable<TSource, TResult>
+    extends AbstractEnumerable<TResult> {
+  private final Enumerable<TSource> source;
+  private final @Nullable Function1<TSource, Object> partitionKeySelector;
+  private final @Nullable Function1<TSource, Object> peerKeySelector;
+  private final Comparator<Object> peerComparator;
+  private final int preceding;
+  private final SlidingAggregate[] aggregates;
+  private final Function1<TSource, @Nullable Object[]> argumentSelector;
+  private final Function2<TSource, @Nullable Object[], TResult> resultSelector;
+
+  @SuppressWarnings("unchecked")
+  SlidingWindowEnumerable(Enumerable<TSource> source,
+      @Nullable Function1<TSource, ?> partitionKeySelector,
+      @Nullable Function1<TSource, ?> peerKeySelector,
+      @Nullable Comparator<?> peerComparator, int preceding,
+      SlidingAggregate[] aggregates,
+      Function1<TSource, @Nullable Object[]> argumentSelector,
+      Function2<TSource, @Nullable Object[], TResult> resultSelector) {
+    this.source = source;
+    this.partitionKeySelector =
+        (@Nullable Function1<TSource, Object>) partitionKeySelector;
+    this.peerKeySelector = (@Nullable Function1<TSource, Object>) peerKeySelector;
+    this.peerComparator = peerComparator != null
+        ? (Comparator<Object>) peerComparator
+        : (Comparator<Object>) (Comparator) Comparator.naturalOrder();
+    this.preceding = preceding;
+    this.aggregates = aggregates.clone();
+    this.argumentSelector = argumentSelector;
+    this.resultSelector = resultSelector;
+  }
+
+  @Override public Enumerator<TResult> enumerator() {
+    return new SlidingWindowEnumerator();
+  }
+
+  static Accumulator accumulator(SlidingAggregate aggregate) {
+    switch (aggregate) {
+    case COUNT:
+      return new CountAccumulator();
+    case SUM:
+    case SUM0:
+      return new LongSumAccumulator(aggregate == SlidingAggregate.SUM0);
+    case SUM_DECIMAL:
+    case SUM0_DECIMAL:
+      return new DecimalSumAccumulator(
+          aggregate == SlidingAggregate.SUM0_DECIMAL);
+    case MIN:
+      return new ExtremeAccumulator(-1);
+    case MAX:
+      return new ExtremeAccumulator(1);
+    default:
+      throw new AssertionError(aggregate);
+    }
+  }
+
+  /** Enumerator for a {@link SlidingWindowEnumerable}. */
+  private class SlidingWindowEnumerator implements Enumerator<TResult> {
+    private final Enumerator<TSource> input = source.enumerator();
+    private final Accumulator[] accumulators =
+        new Accumulator[aggregates.length];
+    /** Arguments of the rows in the frame, oldest first; used only in ROWS
+     * mode with a bounded frame. */
+    private final ArrayDeque<@Nullable Object[]> frame = new ArrayDeque<>();
+    /** Rows of the current peer group; used only in RANGE mode. */
+    private final List<TSource> peers = new ArrayList<>();
+    private int peerIndex;
+    private @Nullable Object[] peerResults = new Object[0];
+    /** Row that has been read but belongs to the next peer group. */
+    private @Nullable TSource pending;
+    private boolean hasPending;
+    private @Nullable Object partitionKey;
+    private boolean started;
+    private @Nullable TResult current;
+    private boolean hasCurrent;
+
+    @Override public TResult current() {
+      if (!hasCurrent) {
+        throw new NoSuchElementException();
+      }
+      return castNonNull(current);
+    }
+
+    @Override public boolean moveNext() {
+      hasCurrent = false;
+      if (peerKeySelector == null) {
+        if (!input.moveNext()) {
+          return false;
+        }
+        final TSource row = input.current();
+        startRow(row);
+        final @Nullable Object[] arguments = argumentSelector.apply(row);
+        add(arguments);
+        if (preceding >= 0) {
+          frame.addLast(arguments);
+          if (frame.size() > preceding + 1) {
+            final @Nullable Object[] oldest = frame.removeFirst();
+            for (int i = 0; i < accumulators.length; i++) {
+              accumulators[i].remove(oldest[i]);
+            }
+          }
+        }
+        return setCurrent(row, results());
+      }
+      if (peerIndex < peers.size()) {
+        return setCurrent(peers.get(peerIndex++), peerResults);
+      }
+      peers.clear();
+      peerIndex = 0;
+      final TSource first;
+      if (hasPending) {
+        first = castNonNull(pending);
+        hasPending = false;
+        pending = null;
+      } else if (input.moveNext()) {
+        first = input.current();
+      } else {
+        return false;
+      }
+      startRow(first);
+      add(argumentSelector.apply(first));
+      peers.add(first);
+      final Object peerKey = peerKeySelector.apply(first);
+      while (input.moveNext()) {
+        final TSource row = input.current();
+        if (!Objects.equals(partitionKey(row), partitionKey)
+            || peerComparator.compare(peerKey, peerKeySelector.apply(row))
+                != 0) {
+          pending = row;
+          hasPending = true;
+          break;
+        }
+        add(argumentSelector.apply(row));
+        peers.add(row);
+      }
+      peerResults = results();
+      return setCurrent(peers.get(peerIndex++), peerResults);
+    }
+
+    private boolean setCurrent(TSource row, @Nullable Object[] results) {
+      current = resultSelector.apply(row, results);
+      hasCurrent = true;
+      return true;
+    }
+
+    private @Nullable Object partitionKey(TSource row) {
+      return partitionKeySelector == null
+          ? null
+          : partitionKeySelector.apply(row);
+    }
+
+    /** Starts a new partition if {@code row} is the first row, or has a
+     * different partition key than the previous row. */
+    private void startRow(TSource row) {
+      final @Nullable Object key = partitionKey(row);
+      if (!started || !Objects.equals(key, partitionKey)) {
+        started = true;
+        partitionKey = key;
+        frame.clear();
+        for (int i = 0; i < aggregates.length; i++) {
+          accumulators[i] = accumulator(aggregates[i]);
+        }
+      }
+    }
+
+    private void add(@Nullable Object[] arguments) {
+      for (int i = 0; i < accumulators.length; i++) {
+        accumulators[i].add(arguments[i]);
+      }
+    }
+
+    private @Nullable Object[] results() {
+      final @Nullable Object[] results = new Object[accumulators.length];
+      for (int i = 0; i < accumulators.length; i++) {
+        results[i] = accumulators[i].result();
+      }
+      return results;
+    }
+
+    @Override public void reset() {
+      input.reset();
+      frame.clear();
+      peers.clear();
+      peerIndex = 0;
+      pending = null;
+      hasPending = false;
+      partitionKey = null;
+      started = false;
+      current = null;
+      hasCurrent = false;
+    }
+
+    @Override public void close() {
+      input.close();
+    }
+  }
+
+  /** State of an aggregate function over a frame. Values are removed in the
+   * order in which they were added. */
+  abstract static class Accumulator {
+    /** Adds the value of the newest row of the frame. */
+    abstract void add(@Nullable Object value);
+
+    /** Removes the value of the oldest row of the frame. */
+    abstract void remove(@Nullable Object value);
+
+    abstract @Nullable Object result();
+  }
+
+  /** Accumulator for {@link SlidingAggregate#COUNT}. */
+  private static class CountAccumulator extends Accumulator {
+    private long count;
+
+    @Override void add(@Nullable Object value) {
+      if (value != null) {
+        ++count;
+      }
+    }
+
+    @Override void remove(@Nullable Object value) {
+      if (value != null) {
+        --count;
+      }
+    }
+
+    @Override Object result() {
+      return count;
+    }
+  }
+
+  /** Accumulator for {@link SlidingAggregate#SUM} and
+   * {@link SlidingAggregate#SUM0}. */
+  private static class LongSumAccumulator extends Accumulator {
+    private final boolean zeroIfEmpty;
+    private long sum;
+    private long count;
+
+    LongSumAccumulator(boolean zeroIfEmpty) {
+      this.zeroIfEmpty = zeroIfEmpty;
+    }
+
+    @Override void add(@Nullable Object value) {
+      if (value != null) {
+        sum += ((Number) value).longValue();
+        ++count;
+      }
+    }
+
+    @Override void remove(@Nullable Object value) {
+      if (value != null) {
+        sum -= ((Number) value).longValue();
+        --count;
+      }
+    }
+
+    @Override @Nullable Object result() {
+      return count == 0 && !zeroIfEmpty ? null : sum;
+    }
+  }
+
+  /** Accumulator for {@link SlidingAggregate#SUM_DECIMAL} and
+   * {@link SlidingAggregate#SUM0_DECIMAL}. */
+  private static class DecimalSumAccumulator extends Accumulator {
+    private final boolean zeroIfEmpty;
+    private BigDecimal sum = BigDecimal.ZERO;
+    private long count;
+
+    DecimalSumAccumulator(boolean zeroIfEmpty) {
+      this.zeroIfEmpty = zeroIfEmpty;
+    }
+
+    @Override void add(@Nullable Object value) {
+      if (value != null) {
+        sum = sum.add((BigDecimal) value);
+        ++count;
+      }
+    }
+
+    @Override void remove(@Nullable Object value) {
+      if (value != null) {
+        sum = sum.subtract((BigDecimal) value);
+        --count;
+      }
+    }
+
+    @Override @Nullable Object result() {
+      return count == 0 && !zeroIfEmpty ? null : sum;
+    }
+  }
+
+  /** Accumulator for {@link SlidingAggregate#MIN} and
+   * {@link SlidingAggregate#MAX}.
+   *
+   * <p>Keeps the values that may yet become the extreme value, in the order
+   * they were added; each value is better than all values after it, so the
+   * first value is the result. A new value discards the values at the end of
+   * the deque that are no better than it, so each value is added and
+   * discarded at most once. */
+  private static class ExtremeAccumulator extends Accumulator {
+    /** 1 for MAX, -1 for MIN. */
+    private final int sign;
+    private final ArrayDeque<Entry> deque = new ArrayDeque<>();
+    /** Number of values added; the position of the next value. */
+    private long added;
+    /** Number of values removed; the position of the oldest value. */
+    private long removed;
+
+    ExtremeAccumulator(int sign) {
+      this.sign = sign;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override void add(@Nullable Object value) {
+      if (value != null) {
+        final Comparable<Object> c = (Comparable<Object>) value;
+        while (!deque.isEmpty()
+            && Integer.signum(c.compareTo(deque.getLast().value)) * sign
+                >= 0) {
+          deque.removeLast();
+        }
+        deque.addLast(new Entry(added, c));
+      }
+      ++added;
+    }
+
+    @Override void remove(@Nullable Object value) {
+      if (!deque.isEmpty() && deque.getFirst().position == removed) {
+        deque.removeFirst();
+      }
+      ++removed;
+    }
+
+    @Override @Nullable Object result() {
+      final Entry first = deque.peekFirst();
+      return first == null ? null : first.value;
+    }
+
+    /** Value and its position in the frame. */
+    private static class Entry {
+      final long position;
+      final Comparable<Object> value;
+
+      Entry(long position, Comparable<Object> value) {
+        this.position = position;
+        this.value = value;
+      }
+    }
+  }
+}
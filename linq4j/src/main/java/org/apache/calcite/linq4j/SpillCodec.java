@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.avatica.util.ByteString;
+
+import org.apiguardian.api.API;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary format for rows that are written to disk when an operator
+ * exceeds its memory budget.
+ *
+ * <p>A row is either a scalar or an {@code Object[]} of scalars; this is how
+ * the enumerable convention represents rows whose physical type is
+ * {@code SCALAR} or {@code ARRAY}. Each value is written as a one-byte tag
+ * followed by a type-specific payload. Lists and maps (the runtime
+ * representation of SQL {@code ARRAY}, {@code MULTISET} and {@code MAP}
+ * values) are written recursively.
+ *
+ * <p>Values of other classes (for example the synthetic row classes generated
+ * for {@code CUSTOM} physical types) cannot be encoded;
+ * {@link #estimateSize(Object)} returns -1 for them, and callers are expected
+ * to keep such rows in memory.
+ */
+@API(since = "1.42", status = API.Status.EXPERIMENTAL)
+public final class SpillCodec {
+  private static final byte NULL = 0;
+  private static final byte TRUE = 1;
+  private static final byte FALSE = 2;
+  private static final byte BYTE = 3;
+  private static final byte SHORT = 4;
+  private static final byte INT = 5;
+  private static final byte LONG = 6;
+  private static final byte FLOAT = 7;
+  private static final byte DOUBLE = 8;
+  private static final byte CHAR = 9;
+  private static final byte STRING = 10;
+  private static final byte DECIMAL = 11;
+  private static final byte BYTE_STRING = 12;
+  private static final byte BYTES = 13;
+  private static final byte OBJECT_ARRAY = 14;
+  private static final byte LIST = 15;
+  private static final byte MAP = 16;
+
+  /** Approximate heap size of an object header plus a reference to it. */
+  private static final int OBJECT_OVERHEAD = 16 + 8;
+
+  private SpillCodec() {
+  }
+
+  /** Returns whether a value can be written by {@link #write}. */
+  public static boolean canEncode(@Nullable Object o) {
+    return estimateSize(o) >= 0;
+  }
+
+  /**
+   * Returns an estimate of the number of bytes of heap that a value occupies,
+   * or -1 if the value cannot be encoded.
+   *
+   * <p>The estimate is deliberately cheap and approximate; it is used to
+   * decide when an operator has exceeded its memory budget, not to account
+   * for memory exactly.
+   */
+  public static long estimateSize(@Nullable Object o) {
+    if (o == null) {
+      return 8;
+    }
+    if (o instanceof Object[]) {
+      final Object[] values = (Object[]) o;
+      long size = OBJECT_OVERHEAD + 8L * values.length;
+      for (Object value : values) {
+        final long s = estimateSize(value);
+        if (s < 0) {
+          return -1;
+        }
+        size += s;
+      }
+      return size;
+    }
+    if (o instanceof String) {
+      return OBJECT_OVERHEAD + 24 + ((String) o).length();
+    }
+    if (o instanceof Integer
+        || o instanceof Long
+        || o instanceof Double
+        || o instanceof Float
+        || o instanceof Short
+        || o instanceof Byte
+        || o instanceof Character
+        || o instanceof Boolean) {
+      return OBJECT_OVERHEAD;
+    }
+    if (o instanceof BigDecimal) {
+      return OBJECT_OVERHEAD + 48
+          + ((BigDecimal) o).unscaledValue().bitLength() / 8;
+    }
+    if (o instanceof ByteString) {
+      return OBJECT_OVERHEAD + 24 + ((ByteString) o).length();
+    }
+    if (o instanceof byte[]) {
+      return OBJECT_OVERHEAD + ((byte[]) o).length;
+    }
+    if (o instanceof List) {
+      long size = OBJECT_OVERHEAD + 24;
+      for (Object value : (List<?>) o) {
+        final long s = estimateSize(value);
+        if (s < 0) {
+          return -1;
+        }
+        size += 8 + s;
+      }
+      return size;
+    }
+    if (o instanceof Map) {
+      long size = OBJECT_OVERHEAD + 48;
+      for (Map.Entry<?, ?> e : ((Map<?, ?>) o).entrySet()) {
+        final long k = estimateSize(e.getKey());
+        final long v = estimateSize(e.getValue());
+        if (k < 0 || v < 0) {
+          return -1;
+        }
+        size += 32 + k + v;
+      }
+      return size;
+    }
+    return -1;
+  }
+
+  /** Writes a value.
+   *
+   * @throws IllegalArgumentException if the value cannot be encoded
+   */
+  public static void write(DataOutput out, @Nullable Object o)
+      throws IOException {
+    if (o == null) {
+      out.writeByte(NULL);
+    } else if (o instanceof Object[]) {
+      final Object[] values = (Object[]) o;
+      out.writeByte(OBJECT_ARRAY);
+      writeLength(out, values.length);
+      for (Object value : values) {
+        write(out, value);
+      }
+    } else if (o instanceof String) {
+      out.writeByte(STRING);
+      final byte[] bytes = ((String) o).getBytes(StandardCharsets.UTF_8);
+      writeLength(out, bytes.length);
+      out.write(bytes);
+    } else if (o instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) o);
+    } else if (o instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) o);
+    } else if (o instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) o);
+    } else if (o instanceof Boolean) {
+      out.writeByte((Boolean) o ? TRUE : FALSE);
+    } else if (o instanceof BigDecimal) {
+      final BigDecimal d = (BigDecimal) o;
+      final byte[] bytes = d.unscaledValue().toByteArray();
+      out.writeByte(DECIMAL);
+      out.writeInt(d.scale());
+      writeLength(out, bytes.length);
+      out.write(bytes);
+    } else if (o instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) o);
+    } else if (o instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) o);
+    } else if (o instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) o);
+    } else if (o instanceof Character) {
+      out.writeByte(CHAR);
+      out.writeChar((Character) o);
+    } else if (o instanceof ByteString) {
+      final byte[] bytes = ((ByteString) o).getBytes();
+      out.writeByte(BYTE_STRING);
+      writeLength(out, bytes.length);
+      out.write(bytes);
+    } else if (o instanceof byte[]) {
+      final byte[] bytes = (byte[]) o;
+      out.writeByte(BYTES);
+      writeLength(out, bytes.length);
+      out.write(bytes);
+    } else if (o instanceof List) {
+      final List<?> list = (List<?>) o;
+      out.writeByte(LIST);
+      writeLength(out, list.size());
+      for (Object value : list) {
+        write(out, value);
+      }
+    } else if (o instanceof Map) {
+      final Map<?, ?> map = (Map<?, ?>) o;
+      out.writeByte(MAP);
+      writeLength(out, map.size());
+      for (Map.Entry<?, ?> e : map.entrySet()) {
+        write(out, e.getKey());
+        write(out, e.getValue());
+      }
+    } else {
+      throw new IllegalArgumentException("cannot spill value of "
+          + o.getClass());
+    }
+  }
+
+  /** Reads a value that was written by {@link #write}. */
+  public static @Nullable Object read(DataInput in) throws IOException {
+    final byte tag = in.readByte();
+    switch (tag) {
+    case NULL:
+      return null;
+    case TRUE:
+      return Boolean.TRUE;
+    case FALSE:
+      return Boolean.FALSE;
+    case BYTE:
+      return in.readByte();
+    case SHORT:
+      return in.readShort();
+    case INT:
+      return in.readInt();
+    case LONG:
+      return in.readLong();
+    case FLOAT:
+      return in.readFloat();
+    case DOUBLE:
+      return in.readDouble();
+    case CHAR:
+      return in.readChar();
+    case STRING:
+      return new String(readBytes(in), StandardCharsets.UTF_8);
+    case DECIMAL:
+      final int scale = in.readInt();
+      return new BigDecimal(new BigInteger(readBytes(in)), scale);
+    case BYTE_STRING:
+      return new ByteString(readBytes(in));
+    case BYTES:
+      return readBytes(in);
+    case OBJECT_ARRAY:
+      final @Nullable Object[] values = new Object[readLength(in)];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = read(in);
+      }
+      return values;
+    case LIST:
+      final int size = readLength(in);
+      final List<@Nullable Object> list = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        list.add(read(in));
+      }
+      return list;
+    case MAP:
+      final int entryCount = readLength(in);
+      final Map<@Nullable Object, @Nullable Object> map =
+          new LinkedHashMap<>();
+      for (int i = 0; i < entryCount; i++) {
+        final Object key = read(in);
+        map.put(key, read(in));
+      }
+      return map;
+    default:
+      throw new IllegalStateException("unknown tag " + tag);
+    }
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    final byte[] bytes = new byte[readLength(in)];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  /** Writes a non-negative length in a variable number of bytes; short
+   * strings and arrays, by far the most common, need one byte. */
+  private static void writeLength(DataOutput out, int length)
+      throws IOException {
+    int v = length;
+    while ((v & ~0x7F) != 0) {
+      out.writeByte((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    out.writeByte(v);
+  }
+
+  private static int readLength(DataInput in) throws IOException {
+    int v = 0;
+    for (int shift = 0;; shift += 7) {
+      final int b = in.readByte();
+      v |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return v;
+      }
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apiguardian.api.API;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Temporary file that holds a sequence of rows, written in the format of
+ * {@link SpillCodec}.
+ *
+ * <p>Rows are appended by calling {@link #add}; after {@link #finish} the
+ * file may be read any number of times by calling {@link #enumerator()}.
+ * {@link #close} deletes the file.
+ *
+ * <p>A row that {@link SpillCodec} cannot encode is kept in memory, and the
+ * file holds a reference to it; so operators can spill inputs that are mostly,
+ * but not entirely, made of encodable rows.
+ *
+ * @param <T> Row type
+ */
+@API(since = "1.42", status = API.Status.EXPERIMENTAL)
+public final class SpillFile<T> implements AutoCloseable {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Path path;
+  private @Nullable DataOutputStream out;
+  private int count;
+  /** Rows that could not be encoded, in the order they were added. */
+  private final List<T> residentRows = new ArrayList<>();
+
+  private SpillFile(Path path) throws IOException {
+    this.path = path;
+    this.out =
+        new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(path),
+                BUFFER_SIZE));
+  }
+
+  /** Creates a spill file in the default temporary-file directory. */
+  public static <T> SpillFile<T> create(String prefix) {
+    try {
+      return new SpillFile<>(Files.createTempFile(prefix, ".spill"));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Returns the number of rows in this file. */
+  public int size() {
+    return count;
+  }
+
+  /** Appends a row. */
+  public void add(T row) {
+    final DataOutputStream out = this.out;
+    if (out == null) {
+      throw new IllegalStateException("spill file is finished");
+    }
+    try {
+      if (SpillCodec.canEncode(row)) {
+        out.writeBoolean(false);
+        SpillCodec.write(out, row);
+      } else {
+        out.writeBoolean(true);
+        out.writeInt(residentRows.size());
+        residentRows.add(row);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    ++count;
+  }
+
+  /** Finishes writing. After this method, the file can be read but no more
+   * rows can be added. */
+  public SpillFile<T> finish() {
+    final DataOutputStream out = this.out;
+    if (out != null) {
+      this.out = null;
+      try {
+        out.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return this;
+  }
+
+  /** Returns an enumerator over the rows in this file, in the order they were
+   * added. The file must be finished. */
+  public Enumerator<T> enumerator() {
+    if (out != null) {
+      throw new IllegalStateException("spill file is not finished");
+    }
+    return new SpillEnumerator();
+  }
+
+  /** Returns an enumerable over the rows in this file. */
+  public Enumerable<T> asEnumerable() {
+    return new AbstractEnumerable<T>() {
+      @Override public Enumerator<T> enumerator() {
+        return SpillFile.this.enumerator();
+      }
+    };
+  }
+
+  /** Deletes the file. */
+  @Override public void close() {
+    residentRows.clear();
+    try {
+      finish();
+    } finally {
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /** Enumerator that reads rows from the file. */
+  private class SpillEnumerator implements Enumerator<T> {
+    private @Nullable DataInputStream in;
+    private int remaining;
+    private @Nullable T current;
+
+    SpillEnumerator() {
+      this.remaining = count;
+    }
+
+    @Override public T current() {
+      return castNonNull(current);
+    }
+
+    @Override public boolean moveNext() {
+      if (remaining <= 0) {
+        current = null;
+        return false;
+      }
+      try {
+        DataInputStream in = this.in;
+        if (in == null) {
+          in =
+              new DataInputStream(
+                  new BufferedInputStream(Files.newInputStream(path),
+                      BUFFER_SIZE));
+          this.in = in;
+        }
+        if (in.readBoolean()) {
+          current = residentRows.get(in.readInt());
+        } else {
+          //noinspection unchecked
+          current = (T) SpillCodec.read(in);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      --remaining;
+      return true;
+    }
+
+    @Override public void reset() {
+      close();
+      remaining = count;
+    }
+
+    @Override public void close() {
+      final DataInputStream in = this.in;
+      current = null;
+      if (in != null) {
+        this.in = null;
+        try {
+          in.close();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Hash aggregation that writes input rows to disk if its groups do not fit
+ * in a memory budget.
+ *
+ * <p>Rows are aggregated into a hash table of accumulators until the
+ * estimated size of the table exceeds the budget. After that, rows whose key
+ * is already in the table are still aggregated in memory, but rows of new
+ * groups are partitioned into {@link GraceHashJoin#PARTITION_COUNT}
+ * {@link SpillFile}s by the hash of their key. When the input is exhausted,
+ * the groups in memory are returned, and then each partition is aggregated
+ * in the same way, so that a partition whose groups do not fit is
+ * partitioned again, up to {@link GraceHashJoin#MAX_DEPTH} times.
+ *
+ * <p>Every row of a group is therefore aggregated by the same accumulator,
+ * either in the first pass or in the pass over its partition, so any
+ * aggregate function can be computed, not just those whose partial results
+ * can be combined. Accumulators are never written to disk; this matters
+ * because the enumerable convention generates accumulator classes that
+ * {@link SpillCodec} cannot encode.
+ *
+ * <p>If the input contains a row that {@link SpillCodec} cannot encode, the
+ * aggregation stays in memory, like
+ * {@link EnumerableDefaults#groupBy(Enumerable, Function1, Function0, Function2, Function2)}.
+ *
+ * @param <TSource> Input row type
+ * @param <TKey> Key type
+ * @param <TAccumulate> Accumulator type
+ * @param <TResult> Output row type
+ */
+final class SpillingHashAggregate<TSource, TKey, TAccumulate, TResult>
+    extends AbstractEnumerable<TResult> {
+  /** Estimated size, in bytes, of an accumulator that {@link SpillCodec}
+   * cannot measure, plus the entry in the hash table that holds it. */
+  static final int GROUP_OVERHEAD = 64;
+
+  private final Enumerable<TSource> source;
+  private final Function1<TSource, TKey> keySelector;
+  private final Function0<TAccumulate> accumulatorInitializer;
+  private final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder;
+  private final Function2<TKey, TAccumulate, TResult> resultSelector;
+  private final long memoryBudget;
+
+  SpillingHashAggregate(Enumerable<TSource> source,
+      Function1<TSource, TKey> keySelector,
+      Function0<TAccumulate> accumulatorInitializer,
+      Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      Function2<TKey, TAccumulate, TResult> resultSelector,
+      long memoryBudget) {
+    this.source = source;
+    this.keySelector = keySelector;
+    this.accumulatorInitializer = accumulatorInitializer;
+    this.accumulatorAdder = accumulatorAdder;
+    this.resultSelector = resultSelector;
+    this.memoryBudget = memoryBudget;
+  }
+
+  @Override public Enumerator<TResult> enumerator() {
+    return new AggregateEnumerator();
+  }
+
+  /** Partition that has been written to disk, and the number of times its
+   * rows have been partitioned.
+   *
+   * @param <TSource> Row type */
+  private static class Partition<TSource> {
+    final SpillFile<TSource> file;
+    final int depth;
+
+    Partition(SpillFile<TSource> file, int depth) {
+      this.file = file;
+      this.depth = depth;
+    }
+  }
+
+  /** Enumerator that returns the groups of one pass, then starts a pass
+   * over the next partition. */
+  private class AggregateEnumerator implements Enumerator<TResult> {
+    private final Deque<Partition<TSource>> partitions = new ArrayDeque<>();
+    private @Nullable Iterator<Map.Entry<TKey, TAccumulate>> groups;
+    private boolean started;
+    private @Nullable TResult current;
+    private boolean hasCurrent;
+
+    @Override public TResult current() {
+      if (!hasCurrent) {
+        throw new NoSuchElementException();
+      }
+      return castNonNull(current);
+    }
+
+    @Override public boolean moveNext() {
+      for (;;) {
+        if (groups != null && groups.hasNext()) {
+          final Map.Entry<TKey, TAccumulate> group = groups.next();
+          current = resultSelector.apply(group.getKey(), group.getValue());
+          hasCurrent = true;
+          return true;
+        }
+        groups = null;
+        hasCurrent = false;
+        if (!started) {
+          started = true;
+          try (Enumerator<TSource> rows = source.enumerator()) {
+            groups = aggregate(rows, 0);
+          }
+          continue;
+        }
+        final Partition<TSource> partition = partitions.pollFirst();
+        if (partition == null) {
+          return false;
+        }
+        try (Enumerator<TSource> rows = partition.file.enumerator()) {
+          groups = aggregate(rows, partition.depth);
+        } finally {
+          partition.file.close();
+        }
+      }
+    }
+
+    /** Aggregates rows, returning the groups that fit in memory and adding
+     * the rows of the other groups to {@link #partitions}. */
+    private Iterator<Map.Entry<TKey, TAccumulate>> aggregate(
+        Enumerator<TSource> rows, int depth) {
+      final Map<TKey, TAccumulate> map = new HashMap<>();
+      long bytes = 0;
+      GraceHashJoin.@Nullable Partitions<TSource> spill = null;
+      try {
+        while (rows.moveNext()) {
+          final TSource row = rows.current();
+          final TKey key = keySelector.apply(row);
+          @SuppressWarnings("argument.type.incompatible")
+          final TAccumulate accumulator = map.get(key);
+          if (accumulator != null) {
+            final TAccumulate accumulator1 =
+                accumulatorAdder.apply(accumulator, row);
+            if (accumulator1 != accumulator) {
+              map.put(key, accumulator1);
+            }
+            continue;
+          }
+          if (spill != null) {
+            spill.add(partition(key, depth), row, 0);
+            continue;
+          }
+          final TAccumulate accumulator1 =
+              accumulatorAdder.apply(accumulatorInitializer.apply(), row);
+          map.put(key, accumulator1);
+          if (SpillCodec.estimateSize(row) < 0) {
+            // This row cannot be written to disk, so probably no other row
+            // can. Stay in memory.
+            bytes = Long.MIN_VALUE;
+          } else {
+            bytes += Math.max(SpillCodec.estimateSize(key), 0)
+                + Math.max(SpillCodec.estimateSize(accumulator1), 0)
+                + GROUP_OVERHEAD;
+          }
+          if (bytes > memoryBudget && depth < GraceHashJoin.MAX_DEPTH) {
+            spill = new GraceHashJoin.Partitions<>("calcite-aggregate");
+          }
+        }
+        if (spill != null) {
+          for (int i = GraceHashJoin.PARTITION_COUNT - 1; i >= 0; i--) {
+            final SpillFile<TSource> file = spill.finish(i);
+            if (file != null) {
+              partitions.addFirst(new Partition<>(file, depth + 1));
+            }
+          }
+          spill = null;
+        }
+      } finally {
+        if (spill != null) {
+          spill.close();
+        }
+      }
+      return map.entrySet().iterator();
+    }
+
+    private int partition(@Nullable TKey key, int depth) {
+      return key == null ? 0 : GraceHashJoin.partition(key.hashCode(), depth);
+    }
+
+    @Override public void reset() {
+      close();
+      started = false;
+    }
+
+    @Override public void close() {
+      groups = null;
+      current = null;
+      hasCurrent = false;
+      for (Partition<TSource> partition : partitions) {
+        partition.file.close();
+      }
+      partitions.clear();
+    }
+  }
+}
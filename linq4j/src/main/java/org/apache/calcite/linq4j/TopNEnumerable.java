@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Returns the first rows of its input in the order of a key; a top-N sort.
+ *
+ * <p>Keeps the best {@code offset + fetch} rows seen so far in a bounded
+ * binary heap whose largest row is at the top. Each row displaces the top
+ * if it is smaller, and is otherwise discarded, so a row costs at most
+ * O(log N) comparisons and no allocation. The heap holds slot numbers into
+ * arrays of rows and keys, rather than objects.
+ *
+ * <p>Rows with equal keys are returned in the order of the input, like
+ * {@link EnumerableDefaults#orderBy(Enumerable, Function1, Comparator, int, int)}.
+ *
+ * <p>If the input is known to be sorted on a prefix of the key, the
+ * enumerator stops reading as soon as the heap is full and a row's prefix is
+ * greater than the prefix of the largest row in the heap, because no later
+ * row can be smaller.
+ *
+ * @param <TSource> Row type
+ * @param <TKey> Sort key type
+ * @param <TPrefix> Type of the prefix of the sort key on which the input is
+ *                  sorted
+ */
+final class TopNEnumerable<TSource, TKey, TPrefix>
+    extends AbstractEnumerable<TSource> {
+  /** Initial number of slots; the arrays grow as required, up to
+   * {@code offset + fetch}. */
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final Enumerable<TSource> source;
+  private final Function1<TSource, TKey> keySelector;
+  private final Comparator<TKey> comparator;
+  private final @Nullable Function1<TSource, TPrefix> prefixSelector;
+  private final @Nullable Comparator<TPrefix> prefixComparator;
+  private final int offset;
+  private final int fetch;
+
+  TopNEnumerable(Enumerable<TSource> source,
+      Function1<TSource, TKey> keySelector, Comparator<TKey> comparator,
+      @Nullable Function1<TSource, TPrefix> prefixSelector,
+      @Nullable Comparator<TPrefix> prefixComparator,
+      int offset, int fetch) {
+    this.source = source;
+    this.keySelector = keySelector;
+    this.comparator = comparator;
+    this.prefixSelector = prefixSelector;
+    this.prefixComparator = prefixComparator;
+    this.offset = offset;
+    this.fetch = fetch;
+  }
+
+  @Override public Enumerator<TSource> enumerator() {
+    if (fetch == 0) {
+      return Linq4j.emptyEnumerator();
+    }
+    final Heap heap =
+        new Heap((int) Math.min(Integer.MAX_VALUE - 8, fetch + (long) offset));
+    try (Enumerator<TSource> enumerator = source.enumerator()) {
+      while (enumerator.moveNext()) {
+        if (!heap.add(enumerator.current())) {
+          break;
+        }
+      }
+    }
+    final int[] order = heap.sort();
+    if (offset >= order.length) {
+      return Linq4j.emptyEnumerator();
+    }
+    final List<TSource> list = new ArrayList<>(order.length - offset);
+    for (int i = offset; i < order.length; i++) {
+      list.add(heap.row(order[i]));
+    }
+    return Linq4j.enumerator(list);
+  }
+
+  /** Bounded binary max-heap of rows.
+   *
+   * <p>Slot {@code s} holds a row, its key, and its sequence number in the
+   * input, which breaks ties between equal keys. {@code heap[0]} is the slot
+   * of the largest row. */
+  private class Heap {
+    private final int limit;
+    private @Nullable Object[] rows;
+    private @Nullable Object[] keys;
+    private long[] seqs;
+    private int[] heap;
+    private int size;
+    private long seq;
+
+    Heap(int limit) {
+      this.limit = limit;
+      final int capacity = Math.min(limit, INITIAL_CAPACITY);
+      this.rows = new Object[capacity];
+      this.keys = new Object[capacity];
+      this.seqs = new long[capacity];
+      this.heap = new int[capacity];
+    }
+
+    @SuppressWarnings("unchecked")
+    TSource row(int slot) {
+      return (TSource) rows[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    private TKey key(int slot) {
+      return (TKey) keys[slot];
+    }
+
+    /** Adds a row, if it is among the best rows seen so far; returns false
+     * if no later row can be, and the caller may stop reading. */
+    boolean add(TSource row) {
+      final TKey key = keySelector.apply(row);
+      final long rowSeq = seq++;
+      if (size < limit) {
+        if (size == heap.length) {
+          grow();
+        }
+        final int slot = size++;
+        set(slot, row, key, rowSeq);
+        heap[slot] = slot;
+        siftUp(slot);
+        return true;
+      }
+      final int top = heap[0];
+      if (comparator.compare(key, key(top)) >= 0) {
+        // The row is not among the best. If the input is sorted on a prefix
+        // of the key, and the row's prefix is greater than the top row's, no
+        // later row can be among the best either.
+        return prefixSelector == null
+            || prefixComparator == null
+            || prefixComparator.compare(prefixSelector.apply(row),
+                prefixSelector.apply(row(top))) <= 0;
+      }
+      set(top, row, key, rowSeq);
+      siftDown(0, size);
+      return true;
+    }
+
+    /** Empties the heap, returning its slots in ascending order. */
+    int[] sort() {
+      final int[] order = new int[size];
+      for (int n = size; n > 0; n--) {
+        order[n - 1] = heap[0];
+        swap(0, n - 1);
+        siftDown(0, n - 1);
+      }
+      size = 0;
+      return order;
+    }
+
+    private void set(int slot, TSource row, TKey key, long rowSeq) {
+      rows[slot] = row;
+      keys[slot] = key;
+      seqs[slot] = rowSeq;
+    }
+
+    private void grow() {
+      final int capacity = (int) Math.min(limit, 2L * heap.length);
+      rows = Arrays.copyOf(rows, capacity);
+      keys = Arrays.copyOf(keys, capacity);
+      seqs = Arrays.copyOf(seqs, capacity);
+      heap = Arrays.copyOf(heap, capacity);
+    }
+
+    /** Compares the rows in two slots by key, then by sequence number. */
+    private int compare(int slot0, int slot1) {
+      final int c = comparator.compare(key(slot0), key(slot1));
+      return c != 0 ? c : Long.compare(seqs[slot0], seqs[slot1]);
+    }
+
+    private void siftUp(int i) {
+      while (i > 0) {
+        final int parent = (i - 1) >>> 1;
+        if (compare(heap[i], heap[parent]) <= 0) {
+          return;
+        }
+        swap(i, parent);
+        i = parent;
+      }
+    }
+
+    private void siftDown(int i, int n) {
+      for (;;) {
+        int largest = i;
+        final int left = 2 * i + 1;
+        final int right = left + 1;
+        if (left < n && compare(heap[left], heap[largest]) > 0) {
+          largest = left;
+        }
+        if (right < n && compare(heap[right], heap[largest]) > 0) {
+          largest = right;
+        }
+        if (largest == i) {
+          return;
+        }
+        swap(i, largest);
+        i = largest;
+      }
+    }
+
+    private void swap(int i, int j) {
+      final int t = heap[i];
+      heap[i] = heap[j];
+      heap[j] = t;
+    }
+  }
+}
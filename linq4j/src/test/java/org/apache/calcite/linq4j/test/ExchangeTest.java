@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j.test;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.SharedExecutor;
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link EnumerableDefaults#exchange(Enumerable)} and
+ * {@link EnumerableDefaults#parallelOrderBy}.
+ */
+class ExchangeTest {
+  private static List<Integer> ints(int n) {
+    final List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      list.add(i);
+    }
+    return list;
+  }
+
+  @Test void testExchange() {
+    for (int n : new int[] {0, 1, 255, 256, 257, 100_000}) {
+      assertThat(
+          EnumerableDefaults.exchange(Linq4j.asEnumerable(ints(n))).toList(),
+          is(ints(n)));
+    }
+  }
+
+  @Test void testExchangeException() {
+    final Enumerable<Integer> result =
+        EnumerableDefaults.exchange(
+            Linq4j.asEnumerable(ints(10_000)).select(i -> {
+              if (i == 5_000) {
+                throw new IllegalStateException("bad row " + i);
+              }
+              return i;
+            }));
+    final IllegalStateException e =
+        assertThrows(IllegalStateException.class, result::toList);
+    assertThat(e.getMessage(), is("bad row 5000"));
+  }
+
+  /** If the consumer closes the enumerator before the end, the producer
+   * thread stops and closes the input. */
+  @Test void testExchangeClose() {
+    final AtomicBoolean closed = new AtomicBoolean();
+    final Enumerable<Integer> source =
+        new AbstractEnumerable<Integer>() {
+          @Override public Enumerator<Integer> enumerator() {
+            final Enumerator<Integer> enumerator =
+                Linq4j.enumerator(ints(1_000_000));
+            return new Enumerator<Integer>() {
+              @Override public Integer current() {
+                return enumerator.current();
+              }
+
+              @Override public boolean moveNext() {
+                return enumerator.moveNext();
+              }
+
+              @Override public void reset() {
+                enumerator.reset();
+              }
+
+              @Override public void close() {
+                closed.set(true);
+              }
+            };
+          }
+        };
+    try (Enumerator<Integer> enumerator =
+             EnumerableDefaults.exchange(source).enumerator()) {
+      for (int i = 0; i < 1_000; i++) {
+        assertThat(enumerator.moveNext(), is(true));
+        assertThat(enumerator.current(), is(i));
+      }
+      enumerator.reset();
+      assertThat(enumerator.moveNext(), is(true));
+      assertThat(enumerator.current(), is(0));
+    }
+    assertThat(closed.get(), is(true));
+  }
+
+  /** The producer of an exchange sees thread-local state of the consumer's
+   * thread that a {@link SharedExecutor.ContextPropagator} copies. */
+  @Test void testExchangeContext() {
+    final ThreadLocal<@Nullable String> context = new ThreadLocal<>();
+    SharedExecutor.addContextPropagator(task -> {
+      final String value = context.get();
+      return () -> {
+        final String previous = context.get();
+        context.set(value);
+        try {
+          task.run();
+        } finally {
+          context.set(previous);
+        }
+      };
+    });
+    context.set("query 1");
+    try {
+      final List<@Nullable String> values =
+          EnumerableDefaults.exchange(
+              Linq4j.asEnumerable(ints(1_000)).select(i -> context.get()))
+              .distinct().toList();
+      assertThat(values, is(Collections.singletonList("query 1")));
+    } finally {
+      context.remove();
+    }
+  }
+
+  /** The parallel sort returns the same rows, in the same order, as the
+   * sequential sort, including the order of rows with equal keys. */
+  @Test void testParallelOrderBy() {
+    final Function1<int[], Integer> keySelector = row -> row[0];
+    final Comparator<Integer> comparator = Comparator.reverseOrder();
+    for (int n : new int[] {0, 100, 4_095, 200_000}) {
+      final Random random = new Random(n);
+      final List<int[]> rows = new ArrayList<>();
+      for (int i = 0; i < n; i++) {
+        rows.add(new int[] {random.nextInt(1_000), i});
+      }
+      final List<String> expected =
+          toStrings(
+              EnumerableDefaults.orderBy(Linq4j.asEnumerable(rows),
+                  keySelector, comparator));
+      for (int parallelism : new int[] {1, 3, 8}) {
+        assertThat("n " + n + ", parallelism " + parallelism,
+            toStrings(
+                EnumerableDefaults.parallelOrderBy(Linq4j.asEnumerable(rows),
+                    keySelector, comparator, parallelism)),
+            is(expected));
+      }
+    }
+  }
+
+  /** With a memory budget, the parallel sort writes sorted partitions to
+   * disk, and still returns the same rows as the sequential sort. */
+  @Test void testParallelOrderBySpill() {
+    final Function1<Object[], Integer> keySelector = row -> (Integer) row[0];
+    final Comparator<Integer> comparator = Comparator.reverseOrder();
+    final Random random = new Random(0);
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 200_000; i++) {
+      rows.add(new Object[] {random.nextInt(1_000), i});
+    }
+    final List<String> expected =
+        rowsToStrings(
+            EnumerableDefaults.orderBy(Linq4j.asEnumerable(rows),
+                keySelector, comparator));
+    for (int parallelism : new int[] {1, 3, 8}) {
+      for (long memoryBudget : new long[] {0, 100_000, 10_000_000}) {
+        assertThat("parallelism " + parallelism + ", budget " + memoryBudget,
+            rowsToStrings(
+                EnumerableDefaults.parallelOrderBy(Linq4j.asEnumerable(rows),
+                    keySelector, comparator, parallelism, memoryBudget)),
+            is(expected));
+      }
+    }
+  }
+
+  private static List<String> rowsToStrings(Enumerable<Object[]> rows) {
+    final List<String> list = new ArrayList<>();
+    for (Object[] row : rows) {
+      list.add(row[0] + ":" + row[1]);
+    }
+    return list;
+  }
+
+  private static List<String> toStrings(Enumerable<int[]> rows) {
+    final List<String> list = new ArrayList<>();
+    for (int[] row : rows) {
+      list.add(row[0] + ":" + row[1]);
+    }
+    return list;
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j.test;
+
+import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.SpillCodec;
+import org.apache.calcite.linq4j.SpillFile;
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for the spilling variants of
+ * {@link EnumerableDefaults#orderBy(Enumerable, Function1, Comparator, long)}
+ * and {@link SpillFile}.
+ */
+class ExternalSortTest {
+  private static List<Object[]> rows(long seed, int n) {
+    final Random random = new Random(seed);
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      final Integer key = random.nextInt(10) == 0 ? null : random.nextInt(n / 4 + 1);
+      rows.add(new Object[] {key, i, "row " + i});
+    }
+    return rows;
+  }
+
+  private static final Function1<Object[], Integer> KEY = row -> (Integer) row[0];
+
+  private static final Comparator<Integer> COMPARATOR =
+      Comparator.nullsFirst(Comparator.<Integer>naturalOrder());
+
+  private static String toString(List<Object[]> rows) {
+    final StringBuilder b = new StringBuilder();
+    for (Object[] row : rows) {
+      b.append(Arrays.toString(row)).append('\n');
+    }
+    return b.toString();
+  }
+
+  /** Sorts with budgets small enough to cause many runs and a multi-pass
+   * merge, and checks that the result is the same as, and as stable as, the
+   * in-memory sort. */
+  @Test void testOrderBySpills() {
+    final List<Object[]> rows = rows(1234L, 20_000);
+    final String expected =
+        toString(
+            EnumerableDefaults.orderBy(Linq4j.asEnumerable(rows), KEY,
+                COMPARATOR).toList());
+    for (long budget : new long[] {0L, 1_000L, 100_000L, Long.MAX_VALUE}) {
+      final List<Object[]> actual =
+          EnumerableDefaults.orderBy(Linq4j.asEnumerable(rows), KEY,
+              COMPARATOR, budget).toList();
+      assertThat("budget " + budget, toString(actual), is(expected));
+    }
+  }
+
+  @Test void testOrderByFetchOffsetSpills() {
+    final List<Object[]> rows = rows(5678L, 10_000);
+    final int[][] offsetFetches = {{0, 10}, {5, 1}, {100, 5_000}, {9_990, 100},
+        {20_000, 10}, {0, 0}, {3, Integer.MAX_VALUE}};
+    for (int[] offsetFetch : offsetFetches) {
+      final int offset = offsetFetch[0];
+      final int fetch = offsetFetch[1];
+      final String expected =
+          toString(
+              EnumerableDefaults.orderBy(Linq4j.asEnumerable(rows), KEY,
+                  COMPARATOR, offset, fetch).toList());
+      for (long budget : new long[] {0L, 2_000L, Long.MAX_VALUE}) {
+        final List<Object[]> actual =
+            EnumerableDefaults.orderBy(Linq4j.asEnumerable(rows), KEY,
+                COMPARATOR, offset, fetch, budget).toList();
+        assertThat("offset " + offset + ", fetch " + fetch + ", budget "
+            + budget, toString(actual), is(expected));
+      }
+    }
+  }
+
+  /** Rows that cannot be written to disk are sorted in memory. */
+  @Test void testOrderByUnspillableRows() {
+    final List<Object> rows = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      rows.add(i % 2 == 0 ? (Object) (100 - i) : new StringBuilder("x"));
+    }
+    final List<Object> actual =
+        EnumerableDefaults.orderBy(Linq4j.asEnumerable(rows),
+            o -> o instanceof Integer ? (Integer) o : -1,
+            Comparator.<Integer>naturalOrder(), 0L).toList();
+    assertThat(actual.size(), is(100));
+    assertThat(actual.get(50), is(2));
+    assertThat(actual.get(99), is(100));
+  }
+
+  @Test void testSpillFileRoundTrip() {
+    final Map<String, Integer> map = new LinkedHashMap<>();
+    map.put("a", 1);
+    map.put("b", null);
+    final Object[] row = {
+        null, true, false, (byte) 1, (short) 2, 3, 4L, 5.5f, 6.5d, 'c',
+        "déjà vu", new BigDecimal("-123.4500"),
+        new ByteString(new byte[] {1, 2, 3}), Arrays.asList(1, null, "x"), map,
+        new Object[] {1, "nested"}
+    };
+    assertThat(SpillCodec.canEncode(row), is(true));
+    assertThat(SpillCodec.canEncode(new Object[] {1, new Object()}),
+        is(false));
+    try (SpillFile<Object[]> file = SpillFile.create("test")) {
+      file.add(row);
+      file.add(new Object[0]);
+      file.finish();
+      assertThat(file.size(), is(2));
+      for (int pass = 0; pass < 2; pass++) {
+        try (Enumerator<Object[]> e = file.enumerator()) {
+          assertThat(e.moveNext(), is(true));
+          assertThat(Arrays.deepToString(e.current()),
+              is(Arrays.deepToString(row)));
+          assertThat(e.moveNext(), is(true));
+          assertThat(e.current().length, is(0));
+          assertThat(e.moveNext(), is(false));
+        }
+      }
+    }
+  }
+}
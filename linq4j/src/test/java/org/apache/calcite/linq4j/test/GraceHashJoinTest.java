@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j.test;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for the spilling variants of
+ * {@link EnumerableDefaults#hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean, Predicate2, long)}
+ * and
+ * {@link EnumerableDefaults#semiJoin(Enumerable, Enumerable, Function1, Function1, EqualityComparer, boolean, Predicate2, long)}.
+ */
+class GraceHashJoinTest {
+  private static final long[] BUDGETS = {0L, 5_000L, Long.MAX_VALUE};
+
+  private static final Function1<Object[], Integer> KEY =
+      row -> (Integer) row[0];
+
+  private static final Function2<Object[], Object[], String> RESULT =
+      (o, i) -> Arrays.toString(o) + Arrays.toString(i);
+
+  private static final Predicate2<Object[], Object[]> PREDICATE =
+      (o, i) -> ((Integer) o[1] + (Integer) i[1]) % 3 != 0;
+
+  private static List<Object[]> rows(long seed, int n, int keyCount) {
+    final Random random = new Random(seed);
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      final Integer key = random.nextInt(10) == 0 ? null : random.nextInt(keyCount);
+      rows.add(new Object[] {key, i});
+    }
+    return rows;
+  }
+
+  /** Returns the rows of a result, sorted if the join may return rows that
+   * have no outer row, whose order is not defined. */
+  private static <T> List<String> toStrings(Enumerable<T> result,
+      boolean sort) {
+    final List<String> list = new ArrayList<>();
+    for (T t : result) {
+      list.add(t instanceof Object[] ? Arrays.toString((Object[]) t)
+          : String.valueOf(t));
+    }
+    if (sort) {
+      Collections.sort(list);
+    }
+    return list;
+  }
+
+  @Test void testHashJoinSpills() {
+    checkHashJoin(rows(1L, 1_500, 300), rows(2L, 1_000, 400));
+  }
+
+  /** Most rows have the same key, so partitions cannot be made small enough
+   * by partitioning again. */
+  @Test void testHashJoinSkewedKeys() {
+    final List<Object[]> inner = rows(3L, 600, 3);
+    checkHashJoin(rows(4L, 50, 3), inner);
+  }
+
+  private static void checkHashJoin(List<Object[]> outer,
+      List<Object[]> inner) {
+    for (boolean nullsOnLeft : new boolean[] {false, true}) {
+      for (boolean nullsOnRight : new boolean[] {false, true}) {
+        for (Predicate2<Object[], Object[]> predicate
+            : Arrays.<Predicate2<Object[], Object[]>>asList(null, PREDICATE)) {
+          final List<String> expected =
+              toStrings(
+                  EnumerableDefaults.hashJoin(Linq4j.asEnumerable(outer),
+                      Linq4j.asEnumerable(inner), KEY, KEY, RESULT, null,
+                      nullsOnLeft, nullsOnRight, predicate), nullsOnLeft);
+          for (long budget : BUDGETS) {
+            final List<String> actual =
+                toStrings(
+                    EnumerableDefaults.hashJoin(Linq4j.asEnumerable(outer),
+                        Linq4j.asEnumerable(inner), KEY, KEY, RESULT, null,
+                        nullsOnLeft, nullsOnRight, predicate, budget),
+                    nullsOnLeft);
+            assertThat("nullsOnLeft " + nullsOnLeft + ", nullsOnRight "
+                    + nullsOnRight + ", predicate " + (predicate != null)
+                    + ", budget " + budget,
+                actual, is(expected));
+          }
+        }
+      }
+    }
+  }
+
+  @Test void testSemiJoinSpills() {
+    final List<Object[]> outer = rows(5L, 1_500, 300);
+    final List<Object[]> inner = rows(6L, 1_000, 400);
+    for (boolean anti : new boolean[] {false, true}) {
+      for (Predicate2<Object[], Object[]> predicate
+          : Arrays.<Predicate2<Object[], Object[]>>asList(null, PREDICATE)) {
+        final List<String> expected =
+            toStrings(
+                EnumerableDefaults.semiJoin(Linq4j.asEnumerable(outer),
+                    Linq4j.asEnumerable(inner), KEY, KEY, null, anti,
+                    predicate), false);
+        for (long budget : BUDGETS) {
+          final List<String> actual =
+              toStrings(
+                  EnumerableDefaults.semiJoin(Linq4j.asEnumerable(outer),
+                      Linq4j.asEnumerable(inner), KEY, KEY, null, anti,
+                      predicate, budget), false);
+          assertThat("anti " + anti + ", predicate " + (predicate != null)
+                  + ", budget " + budget,
+              actual, is(expected));
+        }
+      }
+    }
+  }
+
+  /** An inner input that fits within the budget is joined in memory, and
+   * an empty outer input gives an empty result. */
+  @Test void testHashJoinEmptyInputs() {
+    final List<Object[]> rows = rows(7L, 100, 10);
+    final List<Object[]> empty = Collections.emptyList();
+    assertThat(
+        EnumerableDefaults.hashJoin(Linq4j.asEnumerable(empty),
+            Linq4j.asEnumerable(rows), KEY, KEY, RESULT, null, false, false,
+            null, 0L).count(),
+        is(0));
+    assertThat(
+        EnumerableDefaults.semiJoin(Linq4j.asEnumerable(rows),
+            Linq4j.asEnumerable(empty), KEY, KEY, null, true, null, 0L)
+            .count(),
+        is(100));
+  }
+}
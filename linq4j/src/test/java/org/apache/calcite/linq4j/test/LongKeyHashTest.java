@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j.test;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.LongFunction1;
+import org.apache.calcite.linq4j.function.Predicate1;
+import org.apache.calcite.linq4j.function.Predicate2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for the variants of
+ * {@link EnumerableDefaults#hashJoin}, {@link EnumerableDefaults#semiJoin}
+ * and {@link EnumerableDefaults#groupBy} whose key is a primitive
+ * {@code long}.
+ */
+class LongKeyHashTest {
+  private static final Function1<Object[], Integer> KEY =
+      row -> (Integer) row[0];
+
+  private static final LongFunction1<Object[]> LONG_KEY =
+      row -> (Integer) row[0];
+
+  private static final Predicate1<Object[]> KEY_IS_NULL =
+      row -> row[0] == null;
+
+  private static final Function2<Object[], Object[], String> RESULT =
+      (o, i) -> Arrays.toString(o) + Arrays.toString(i);
+
+  private static final Predicate2<Object[], Object[]> PREDICATE =
+      (o, i) -> ((Integer) o[1] + (Integer) i[1]) % 3 != 0;
+
+  private static List<Object[]> rows(long seed, int n, int keyCount) {
+    final Random random = new Random(seed);
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      final Integer key = random.nextInt(10) == 0
+          ? null
+          : random.nextInt(keyCount) - keyCount / 2;
+      rows.add(new Object[] {key, i});
+    }
+    return rows;
+  }
+
+  private static <T> List<String> toStrings(Enumerable<T> result,
+      boolean sort) {
+    final List<String> list = new ArrayList<>();
+    for (T t : result) {
+      list.add(t instanceof Object[] ? Arrays.toString((Object[]) t)
+          : String.valueOf(t));
+    }
+    if (sort) {
+      Collections.sort(list);
+    }
+    return list;
+  }
+
+  /** Checks that a join on a long key gives the same rows, in the same
+   * order, as a join on a boxed key; except that for right and full joins,
+   * whose unmatched inner rows may come in a different order, rows are
+   * sorted. */
+  @Test void testHashJoin() {
+    final List<Object[]> outer = rows(1L, 2_000, 300);
+    final List<Object[]> inner = rows(2L, 1_500, 400);
+    for (boolean nullsOnLeft : new boolean[] {false, true}) {
+      for (boolean nullsOnRight : new boolean[] {false, true}) {
+        for (Predicate2<Object[], Object[]> predicate
+            : Arrays.<Predicate2<Object[], Object[]>>asList(null, PREDICATE)) {
+          final List<String> expected =
+              toStrings(
+                  EnumerableDefaults.hashJoin(Linq4j.asEnumerable(outer),
+                      Linq4j.asEnumerable(inner), KEY, KEY, RESULT, null,
+                      nullsOnLeft, nullsOnRight, predicate), nullsOnLeft);
+          final List<String> actual =
+              toStrings(
+                  EnumerableDefaults.hashJoin(Linq4j.asEnumerable(outer),
+                      Linq4j.asEnumerable(inner), LONG_KEY, KEY_IS_NULL,
+                      LONG_KEY, KEY_IS_NULL, RESULT, nullsOnLeft,
+                      nullsOnRight, predicate, -1L), nullsOnLeft);
+          assertThat("nullsOnLeft " + nullsOnLeft + ", nullsOnRight "
+                  + nullsOnRight + ", predicate " + (predicate != null),
+              actual, is(expected));
+        }
+      }
+    }
+  }
+
+  @Test void testSemiJoin() {
+    final List<Object[]> outer = rows(3L, 2_000, 300);
+    final List<Object[]> inner = rows(4L, 1_500, 400);
+    for (boolean anti : new boolean[] {false, true}) {
+      for (Predicate2<Object[], Object[]> predicate
+          : Arrays.<Predicate2<Object[], Object[]>>asList(null, PREDICATE)) {
+        final List<String> expected =
+            toStrings(
+                EnumerableDefaults.semiJoin(Linq4j.asEnumerable(outer),
+                    Linq4j.asEnumerable(inner), KEY, KEY, null, anti,
+                    predicate), false);
+        final List<String> actual =
+            toStrings(
+                EnumerableDefaults.semiJoin(Linq4j.asEnumerable(outer),
+                    Linq4j.asEnumerable(inner), LONG_KEY, KEY_IS_NULL,
+                    LONG_KEY, KEY_IS_NULL, anti, predicate, -1L), false);
+        assertThat("anti " + anti + ", predicate " + (predicate != null),
+            actual, is(expected));
+      }
+    }
+  }
+
+  /** Returns the same groups as the {@code HashMap}-based {@code groupBy},
+   * in the order in which their keys are first seen. */
+  @Test void testGroupBy() {
+    for (int keyCount : new int[] {1, 12, 13, 100, 5_000}) {
+      final List<Object[]> rows = rows(keyCount, 10_000, keyCount);
+      final List<String> expected =
+          toStrings(
+              EnumerableDefaults.groupBy(Linq4j.asEnumerable(rows), KEY,
+                  () -> 0, (acc, row) -> acc + (Integer) row[1],
+                  (key, acc) -> key + ":" + acc), true);
+      final Enumerable<String> result =
+          EnumerableDefaults.groupBy(Linq4j.asEnumerable(rows), LONG_KEY,
+              KEY_IS_NULL, KEY, () -> 0,
+              (acc, row) -> acc + (Integer) row[1],
+              (key, acc) -> key + ":" + acc);
+      assertThat("keyCount " + keyCount, toStrings(result, true),
+          is(expected));
+
+      final Set<String> firstSeen = new LinkedHashSet<>();
+      for (Object[] row : rows) {
+        firstSeen.add(String.valueOf(row[0]));
+      }
+      final List<String> keys = new ArrayList<>();
+      for (String group : result) {
+        keys.add(group.substring(0, group.indexOf(':')));
+      }
+      assertThat("keyCount " + keyCount, keys,
+          is(new ArrayList<>(firstSeen)));
+    }
+  }
+}
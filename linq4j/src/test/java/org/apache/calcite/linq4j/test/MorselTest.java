@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j.test;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for
+ * {@link EnumerableDefaults#parallel(Enumerable, Function1, int)}, which
+ * applies a pipeline to morsels of its input in parallel.
+ */
+class MorselTest {
+  private static final Function1<Enumerable<Integer>, Enumerable<String>>
+      PIPELINE = morsel -> morsel
+          .where(i -> i % 3 != 0)
+          .select(i -> "#" + i);
+
+  private static List<Integer> ints(int n) {
+    final List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      list.add(i);
+    }
+    return list;
+  }
+
+  /** The result has the same rows, in the same order, as applying the
+   * pipeline to the whole input. */
+  @Test void testParallel() {
+    for (int n : new int[] {0, 1, 1023, 1024, 1025, 50_000}) {
+      final Enumerable<Integer> source = Linq4j.asEnumerable(ints(n));
+      final List<String> expected = PIPELINE.apply(source).toList();
+      for (int parallelism : new int[] {1, 2, 8}) {
+        assertThat("n " + n + ", parallelism " + parallelism,
+            EnumerableDefaults.parallel(source, PIPELINE, parallelism)
+                .toList(),
+            is(expected));
+      }
+    }
+  }
+
+  /** An input that fits in one morsel is processed on the calling
+   * thread. */
+  @Test void testSmallInputRunsOnCallingThread() {
+    final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    final List<Integer> result =
+        EnumerableDefaults.parallel(Linq4j.asEnumerable(ints(100)),
+            morsel -> morsel.select(i -> {
+              threads.add(Thread.currentThread());
+              return i;
+            }), 4).toList();
+    assertThat(result, is(ints(100)));
+    assertThat(threads.size(), is(1));
+    assertThat(threads.contains(Thread.currentThread()), is(true));
+  }
+
+  /** An exception thrown while processing a morsel is thrown to the
+   * consumer. */
+  @Test void testException() {
+    final Enumerable<Integer> result =
+        EnumerableDefaults.parallel(Linq4j.asEnumerable(ints(10_000)),
+            morsel -> morsel.select(i -> {
+              if (i == 7_777) {
+                throw new IllegalStateException("bad row " + i);
+              }
+              return i;
+            }), 4);
+    final IllegalStateException e =
+        assertThrows(IllegalStateException.class, result::toList);
+    assertThat(e.getMessage(), is("bad row 7777"));
+  }
+
+  /** The consumer may stop early, and may restart. */
+  @Test void testCloseAndReset() {
+    final Enumerable<String> result =
+        EnumerableDefaults.parallel(Linq4j.asEnumerable(ints(20_000)),
+            PIPELINE, 4);
+    try (Enumerator<String> enumerator = result.enumerator()) {
+      for (int pass = 0; pass < 2; pass++) {
+        assertThat(enumerator.moveNext(), is(true));
+        assertThat(enumerator.current(), is("#1"));
+        assertThat(enumerator.moveNext(), is(true));
+        assertThat(enumerator.current(), is("#2"));
+        assertThat(enumerator.moveNext(), is(true));
+        assertThat(enumerator.current(), is("#4"));
+        enumerator.reset();
+      }
+    }
+  }
+}
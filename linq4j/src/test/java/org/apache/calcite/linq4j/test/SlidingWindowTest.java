@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j.test;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.SlidingAggregate;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for {@link EnumerableDefaults#slidingWindow}.
+ */
+class SlidingWindowTest {
+  private static final SlidingAggregate[] AGGREGATES = {
+      SlidingAggregate.COUNT, SlidingAggregate.SUM, SlidingAggregate.SUM0,
+      SlidingAggregate.SUM_DECIMAL, SlidingAggregate.MIN, SlidingAggregate.MAX
+  };
+
+  /** Rows are {partition, order key, value}; the value is null about one
+   * time in five. */
+  private static List<@Nullable Integer[]> rows(int n, long seed) {
+    final Random random = new Random(seed);
+    final List<@Nullable Integer[]> rows = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      rows.add(
+          new Integer[] {random.nextInt(4), random.nextInt(10),
+              random.nextInt(5) == 0 ? null : random.nextInt(100) - 50});
+    }
+    rows.sort((r0, r1) -> r0[0].equals(r1[0])
+        ? r0[1].compareTo(r1[1])
+        : r0[0].compareTo(r1[0]));
+    return rows;
+  }
+
+  private static @Nullable Object[] arguments(@Nullable Integer[] row) {
+    final Integer v = row[2];
+    return new Object[] {v, v, v, v == null ? null : BigDecimal.valueOf(v),
+        v, v};
+  }
+
+  /** Computes the aggregates over a frame by visiting all of its rows. */
+  private static String expected(List<@Nullable Integer[]> frame) {
+    long count = 0;
+    long sum = 0;
+    Integer min = null;
+    Integer max = null;
+    for (@Nullable Integer[] row : frame) {
+      final Integer v = row[2];
+      if (v != null) {
+        ++count;
+        sum += v;
+        min = min == null || v < min ? v : min;
+        max = max == null || v > max ? v : max;
+      }
+    }
+    return Arrays.toString(
+        new Object[] {count, count == 0 ? null : sum, sum,
+            count == 0 ? null : BigDecimal.valueOf(sum), min, max});
+  }
+
+  private static List<String> slidingWindow(List<@Nullable Integer[]> rows,
+      boolean range, int preceding) {
+    return EnumerableDefaults.slidingWindow(Linq4j.asEnumerable(rows),
+            row -> row[0], range ? row -> row[1] : null, null, preceding,
+            AGGREGATES, SlidingWindowTest::arguments,
+            (row, values) -> Arrays.toString(values))
+        .toList();
+  }
+
+  @Test void testRows() {
+    final List<@Nullable Integer[]> rows = rows(2_000, 1);
+    for (int preceding : new int[] {-1, 0, 1, 5, 100}) {
+      final List<String> expected = new ArrayList<>();
+      for (int i = 0; i < rows.size(); i++) {
+        int start = i;
+        while (start > 0
+            && rows.get(start - 1)[0].equals(rows.get(i)[0])
+            && (preceding < 0 || start > i - preceding)) {
+          --start;
+        }
+        expected.add(expected(rows.subList(start, i + 1)));
+      }
+      assertThat("preceding " + preceding,
+          slidingWindow(rows, false, preceding), is(expected));
+    }
+  }
+
+  @Test void testRange() {
+    final List<@Nullable Integer[]> rows = rows(2_000, 2);
+    final List<String> expected = new ArrayList<>();
+    for (int i = 0; i < rows.size(); i++) {
+      int start = i;
+      while (start > 0 && rows.get(start - 1)[0].equals(rows.get(i)[0])) {
+        --start;
+      }
+      int end = i + 1;
+      while (end < rows.size()
+          && rows.get(end)[0].equals(rows.get(i)[0])
+          && rows.get(end)[1].equals(rows.get(i)[1])) {
+        ++end;
+      }
+      expected.add(expected(rows.subList(start, end)));
+    }
+    assertThat(slidingWindow(rows, true, -1), is(expected));
+  }
+
+  @Test void testEmptyAndReset() {
+    assertThat(slidingWindow(new ArrayList<>(), false, 2).isEmpty(),
+        is(true));
+    assertThat(slidingWindow(new ArrayList<>(), true, -1).isEmpty(),
+        is(true));
+    final Enumerable<String> result =
+        EnumerableDefaults.slidingWindow(
+            Linq4j.asEnumerable(Arrays.asList(1, 2, 3, 4)), null, null, null,
+            1, new SlidingAggregate[] {SlidingAggregate.SUM},
+            i -> new Object[] {i}, (i, values) -> i + ":" + values[0]);
+    try (Enumerator<String> enumerator = result.enumerator()) {
+      for (int pass = 0; pass < 2; pass++) {
+        final List<String> list = new ArrayList<>();
+        while (enumerator.moveNext()) {
+          list.add(enumerator.current());
+        }
+        assertThat(list, is(Arrays.asList("1:1", "2:3", "3:5", "4:7")));
+        enumerator.reset();
+      }
+    }
+  }
+}
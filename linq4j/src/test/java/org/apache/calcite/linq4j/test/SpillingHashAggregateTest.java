@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j.test;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for the spilling variant of
+ * {@link EnumerableDefaults#groupBy(Enumerable, Function1, Function0, Function2, Function2, long)}.
+ */
+class SpillingHashAggregateTest {
+  private static final long[] BUDGETS = {0L, 5_000L, Long.MAX_VALUE};
+
+  private static List<Object[]> rows(long seed, int n, int keyCount) {
+    final Random random = new Random(seed);
+    final List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      final Integer key =
+          random.nextInt(10) == 0 ? null : random.nextInt(keyCount);
+      rows.add(new Object[] {key, i});
+    }
+    return rows;
+  }
+
+  /** Aggregates rows into "key:count:sum" strings, sorted, because the order
+   * of groups is not defined. Accumulators are arrays of longs, which cannot
+   * be written to disk. */
+  private static <T> List<String> aggregate(Enumerable<T> rows,
+      Function1<T, Integer> keySelector, Function1<T, Integer> valueSelector,
+      long memoryBudget) {
+    final List<String> list =
+        EnumerableDefaults.groupBy(rows, keySelector, () -> new long[2],
+            (long[] acc, T row) -> {
+              acc[0]++;
+              acc[1] += valueSelector.apply(row);
+              return acc;
+            },
+            (key, acc) -> key + ":" + acc[0] + ":" + acc[1],
+            memoryBudget).toList();
+    final List<String> sorted = new ArrayList<>(list);
+    Collections.sort(sorted);
+    return sorted;
+  }
+
+  private static List<String> expected(List<Object[]> rows) {
+    final List<String> list =
+        EnumerableDefaults.groupBy(Linq4j.asEnumerable(rows),
+            row -> (Integer) row[0], () -> new long[2],
+            (long[] acc, Object[] row) -> {
+              acc[0]++;
+              acc[1] += (Integer) row[1];
+              return acc;
+            },
+            (key, acc) -> key + ":" + acc[0] + ":" + acc[1]).toList();
+    final List<String> sorted = new ArrayList<>(list);
+    Collections.sort(sorted);
+    return sorted;
+  }
+
+  @Test void testGroupBySpills() {
+    for (int keyCount : new int[] {1, 50, 3_000}) {
+      final List<Object[]> rows = rows(keyCount, 10_000, keyCount);
+      final List<String> expected = expected(rows);
+      for (long budget : BUDGETS) {
+        assertThat("keys " + keyCount + ", budget " + budget,
+            aggregate(Linq4j.asEnumerable(rows), row -> (Integer) row[0],
+                row -> (Integer) row[1], budget),
+            is(expected));
+      }
+    }
+  }
+
+  @Test void testGroupByEmpty() {
+    for (long budget : BUDGETS) {
+      assertThat(
+          aggregate(Linq4j.asEnumerable(new ArrayList<Object[]>()),
+              row -> (Integer) row[0], row -> (Integer) row[1], budget)
+              .isEmpty(),
+          is(true));
+    }
+  }
+
+  /** Rows that cannot be written to disk are aggregated in memory. */
+  @Test void testGroupByUnencodableRows() {
+    final List<Object[]> rows = rows(1L, 2_000, 500);
+    final List<int[]> intRows = new ArrayList<>();
+    for (Object[] row : rows) {
+      intRows.add(
+          new int[] {row[0] == null ? -1 : (Integer) row[0],
+              (Integer) row[1]});
+    }
+    final List<String> expected =
+        aggregate(Linq4j.asEnumerable(intRows), row -> row[0], row -> row[1],
+            -1L);
+    assertThat(
+        aggregate(Linq4j.asEnumerable(intRows), row -> row[0], row -> row[1],
+            0L),
+        is(expected));
+  }
+
+  /** The consumer may stop early, which deletes the partitions, and
+   * restart. */
+  @Test void testCloseAndReset() {
+    final List<Object[]> rows = rows(2L, 5_000, 2_000);
+    final Enumerable<String> result =
+        EnumerableDefaults.groupBy(Linq4j.asEnumerable(rows),
+            row -> (Integer) row[0], () -> new long[1],
+            (long[] acc, Object[] row) -> {
+              acc[0]++;
+              return acc;
+            },
+            (key, acc) -> key + ":" + acc[0], 0L);
+    final int groupCount = expected(rows).size();
+    try (Enumerator<String> enumerator = result.enumerator()) {
+      for (int i = 0; i < 10; i++) {
+        assertThat(enumerator.moveNext(), is(true));
+      }
+      enumerator.reset();
+      int count = 0;
+      while (enumerator.moveNext()) {
+        ++count;
+      }
+      assertThat(count, is(groupCount));
+    }
+  }
+}
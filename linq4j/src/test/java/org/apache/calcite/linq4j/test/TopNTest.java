@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j.test;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for {@link EnumerableDefaults#topN}, the top-N sort.
+ */
+class TopNTest {
+  private static final Function1<int[], Integer> KEY = row -> row[0];
+  private static final Function1<int[], Integer> PREFIX = row -> row[0] / 10;
+
+  private static List<int[]> rows(int n, int distinct, long seed) {
+    final Random random = new Random(seed);
+    final List<int[]> rows = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      rows.add(new int[] {random.nextInt(distinct), i});
+    }
+    return rows;
+  }
+
+  private static List<String> toStrings(Enumerable<int[]> rows) {
+    final List<String> list = new ArrayList<>();
+    for (int[] row : rows) {
+      list.add(row[0] + ":" + row[1]);
+    }
+    return list;
+  }
+
+  /** The top-N sort returns the same rows, in the same order, as the sort
+   * that uses a tree, including the order of rows with equal keys. */
+  @Test void testTopN() {
+    final Comparator<Integer> comparator = Comparator.reverseOrder();
+    for (int n : new int[] {0, 1, 10, 1_000}) {
+      for (int distinct : new int[] {3, 1_000_000}) {
+        final Enumerable<int[]> source =
+            Linq4j.asEnumerable(rows(n, distinct, n + distinct));
+        for (int offset : new int[] {0, 1, 7, 2_000}) {
+          for (int fetch : new int[] {0, 1, 5, 100, Integer.MAX_VALUE}) {
+            assertThat("n " + n + ", distinct " + distinct + ", offset "
+                    + offset + ", fetch " + fetch,
+                toStrings(
+                    EnumerableDefaults.topN(source, KEY, comparator, null,
+                        null, offset, fetch, -1L)),
+                is(
+                    toStrings(
+                        EnumerableDefaults.orderBy(source, KEY, comparator,
+                            offset, fetch))));
+          }
+        }
+      }
+    }
+  }
+
+  /** If the source is sorted on a prefix of the key, the top-N sort stops
+   * reading once no later row can be in the result. */
+  @Test void testTopNSortedPrefix() {
+    final List<int[]> rows = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      // Sorted on row[0] / 10, but not on row[0].
+      rows.add(new int[] {i / 10 * 10 + 9 - i % 10, i});
+    }
+    final AtomicInteger readCount = new AtomicInteger();
+    final Enumerable<int[]> source =
+        Linq4j.asEnumerable(rows).select(row -> {
+          readCount.incrementAndGet();
+          return row;
+        });
+    final Comparator<Integer> comparator = Comparator.naturalOrder();
+    assertThat(
+        toStrings(
+            EnumerableDefaults.topN(source, KEY, comparator, PREFIX,
+                comparator, 2, 13, -1L)),
+        is(
+            toStrings(
+                EnumerableDefaults.orderBy(Linq4j.asEnumerable(rows), KEY,
+                    comparator, 2, 13))));
+    assertThat(readCount.get(), is(21));
+  }
+}
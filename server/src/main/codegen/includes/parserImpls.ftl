@@ -454,6 +454,29 @@ SqlTruncate SqlTruncateTable(Span s) :
     }
 }
 
+SqlNode SqlAnalyzeTable() :
+{
+    final Span s;
+    final SqlIdentifier id;
+    final List<SqlNode> columns = new ArrayList<SqlNode>();
+    SqlNodeList columnList = null;
+}
+{
+    <ANALYZE> { s = span(); }
+    <TABLE> id = CompoundIdentifier()
+    [
+        <COMPUTE> <STATISTICS>
+        [
+            <FOR> <COLUMNS> AddSimpleIdentifiers(columns) {
+                columnList = new SqlNodeList(columns, s.end(this));
+            }
+        ]
+    ]
+    {
+        return SqlDdlNodes.analyzeTable(s.end(this), id, columnList);
+    }
+}
+
 SqlDrop SqlDropView(Span s, boolean replace) :
 {
     final boolean ifExists;
@@ -24,19 +24,34 @@
 import org.apache.calcite.rel.logical.LogicalTableModify;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.schema.ModifiableTable;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.impl.AbstractTable;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.List;
 
+import static java.util.Objects.requireNonNull;
+
 /** Abstract base class for implementations of {@link ModifiableTable}. */
 abstract class AbstractModifiableTable
     extends AbstractTable implements ModifiableTable {
+  /** Statistics computed by {@code ANALYZE TABLE}. */
+  private volatile Statistic statistic = Statistics.UNKNOWN;
+
   AbstractModifiableTable(String ignoredTableName) {
     super();
   }
 
+  @Override public Statistic getStatistic() {
+    return statistic;
+  }
+
+  void setStatistic(Statistic statistic) {
+    this.statistic = requireNonNull(statistic, "statistic");
+  }
+
   @Override public TableModify toModificationRel(
       RelOptCluster cluster,
       RelOptTable table,
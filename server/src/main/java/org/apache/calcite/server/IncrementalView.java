@@ -0,0 +1,627 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.server;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.DataContexts;
+import org.apache.calcite.adapter.java.AbstractQueryableTable;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.CalciteMetaImpl;
+import org.apache.calcite.jdbc.CalcitePrepare;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.QueryProvider;
+import org.apache.calcite.linq4j.Queryable;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.rex.RexVisitorImpl;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTableQueryable;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.Planner;
+import org.apache.calcite.tools.RelConversionException;
+import org.apache.calcite.tools.ValidationException;
+import org.apache.calcite.util.Util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.calcite.rex.RexUtil.SubQueryFinder.containsSubQuery;
+
+import static java.util.Objects.requireNonNull;
+
+/** Maintains the contents of a materialized view as rows are added to the
+ * tables that it reads.
+ *
+ * <p>A view can be maintained if its query is a tree of scans of
+ * {@link MutableArrayTable}s, stable filters and projects, and inner
+ * joins, each table being read at most once; optionally topped by an
+ * aggregate whose calls are {@code SUM}, {@code COUNT}, {@code MIN} and
+ * {@code MAX} (without {@code DISTINCT} or {@code FILTER}) and whose output
+ * includes every group key.
+ *
+ * <p>Each table that the view reads has a watermark, the number of rows that
+ * it had when the view was last brought up to date. Rows are only ever
+ * appended to a {@link MutableArrayTable.RowList} unless its
+ * {@link MutableArrayTable.RowList#rewriteCount rewriteCount} changes, so the
+ * rows beyond the watermark are the rows inserted since. The view is brought
+ * up to date lazily, before it is scanned, by running the view's query over
+ * just the new rows (and, for joins, over the other tables in full) and
+ * merging the result into the view: appending rows to a view without an
+ * aggregate, and combining each row with the existing row of the same group
+ * for an aggregate view.
+ *
+ * <p>If a table has been truncated or had rows deleted or updated, or the
+ * view's own rows have been modified, the view is recomputed in full.
+ *
+ * <p>The view's query runs on a private connection, which is closed by
+ * {@link #detach()} when the view is dropped. */
+class IncrementalView {
+  private final MaterializedViewTable view;
+  private final List<Source> sources;
+  /** How each column of the view is merged, or null if the view does not
+   * aggregate. */
+  private final @Nullable List<Role> roles;
+  private final CalciteConnection connection;
+  private final CalcitePrepare.CalciteSignature<Object> signature;
+  /** For an aggregate view, the position of each group's row in the view. */
+  private final Map<List<@Nullable Object>, Integer> groups = new HashMap<>();
+  private final int fieldCount;
+  private int viewSize;
+  private int viewRewriteCount;
+
+  private IncrementalView(MaterializedViewTable view, List<Source> sources,
+      @Nullable List<Role> roles, CalciteConnection connection,
+      CalcitePrepare.CalciteSignature<Object> signature, int fieldCount) {
+    this.view = view;
+    this.sources = ImmutableList.copyOf(sources);
+    this.roles = roles == null ? null : ImmutableList.copyOf(roles);
+    this.connection = connection;
+    this.signature = signature;
+    this.fieldCount = fieldCount;
+    this.sources.forEach(Source::mark);
+  }
+
+  /** Creates a maintainer for a materialized view, or returns null if the
+   * view's query cannot be maintained incrementally.
+   *
+   * <p>Call this before the view is populated, so that the watermarks match
+   * the rows that the view is computed from, and call {@link #attach()}
+   * after.
+   *
+   * @param view Table that holds the contents of the view
+   * @param schema Schema that contains the view
+   * @param sql SQL query that defines the view
+   * @param schemaPath Path of the schema that contains the view
+   */
+  static @Nullable IncrementalView create(MaterializedViewTable view,
+      CalciteSchema schema, String sql, List<String> schemaPath) {
+    final FrameworkConfig config = Frameworks.newConfigBuilder()
+        .defaultSchema(schema.plus())
+        .build();
+    final Planner planner = Frameworks.getPlanner(config);
+    final RelNode rel;
+    try {
+      final SqlNode query = planner.validate(planner.parse(sql));
+      rel = planner.rel(query).project();
+    } catch (SqlParseException | ValidationException
+        | RelConversionException e) {
+      throw Util.throwAsRuntime(e);
+    }
+
+    // Find the aggregate, if any, and the SPJ query beneath it.
+    final @Nullable List<Role> roles;
+    final RelNode input;
+    if (rel instanceof Project
+        && ((Project) rel).getInput() instanceof Aggregate) {
+      final Project project = (Project) rel;
+      final List<Integer> fields = new ArrayList<>();
+      for (RexNode e : project.getProjects()) {
+        if (!(e instanceof RexInputRef)) {
+          return null;
+        }
+        fields.add(((RexInputRef) e).getIndex());
+      }
+      final Aggregate aggregate = (Aggregate) project.getInput();
+      roles = roles(aggregate, fields);
+      input = aggregate.getInput();
+    } else if (rel instanceof Aggregate) {
+      final Aggregate aggregate = (Aggregate) rel;
+      roles =
+          roles(aggregate,
+              Util.range(aggregate.getRowType().getFieldCount()));
+      input = aggregate.getInput();
+    } else {
+      roles = null;
+      input = rel;
+    }
+    if (input != rel && roles == null) {
+      return null;
+    }
+    // Tables do not override equals, so the map is keyed by identity.
+    final Map<MutableArrayTable, List<String>> tables = new LinkedHashMap<>();
+    if (!isSpj(input, tables)) {
+      return null;
+    }
+
+    // Build a private root schema in which each table that the view reads
+    // is replaced by a window onto a range of its rows, and prepare the
+    // view's query against it, once.
+    final CalciteSchema mirror = CalciteSchema.createRootSchema(false, false);
+    final List<Source> sources = new ArrayList<>();
+    tables.forEach((table, path) -> {
+      final WindowTable window = new WindowTable(table);
+      subSchema(mirror, Util.skipLast(path)).add(Util.last(path), window);
+      sources.add(new Source(table, window));
+    });
+    subSchema(mirror, schemaPath);
+    final CalciteConnection connection = CalciteMetaImpl.connect(mirror, null);
+    final CalcitePrepare.CalciteSignature<Object> signature;
+    try {
+      signature =
+          Schemas.prepare(connection, mirror, schemaPath, sql,
+              ImmutableMap.of(
+                  CalciteConnectionProperty.CREATE_MATERIALIZATIONS, "false",
+                  CalciteConnectionProperty.MATERIALIZATIONS_ENABLED,
+                  "false"));
+    } catch (RuntimeException e) {
+      // The query uses an object, such as a view or function, that is not
+      // in the private schema; the view will not be maintained.
+      close(connection);
+      return null;
+    }
+    return new IncrementalView(view, sources, roles, connection, signature,
+        rel.getRowType().getFieldCount());
+  }
+
+  /** Returns how each output field of an aggregate view is merged, or null
+   * if the aggregate cannot be maintained. */
+  private static @Nullable List<Role> roles(Aggregate aggregate,
+      List<Integer> fields) {
+    if (aggregate.getGroupType() != Aggregate.Group.SIMPLE) {
+      return null;
+    }
+    final List<Role> aggregateRoles = new ArrayList<>();
+    for (int i = 0; i < aggregate.getGroupCount(); i++) {
+      if (!fields.contains(i)) {
+        // Without every group key, rows cannot be matched to groups.
+        return null;
+      }
+      aggregateRoles.add(Role.KEY);
+    }
+    for (AggregateCall call : aggregate.getAggCallList()) {
+      if (call.isDistinct() || call.filterArg >= 0
+          || call.distinctKeys != null) {
+        return null;
+      }
+      switch (call.getAggregation().getKind()) {
+      case SUM:
+      case SUM0:
+      case COUNT:
+        aggregateRoles.add(Role.ADD);
+        break;
+      case MIN:
+        aggregateRoles.add(Role.MIN);
+        break;
+      case MAX:
+        aggregateRoles.add(Role.MAX);
+        break;
+      default:
+        return null;
+      }
+    }
+    return Util.transform(fields, aggregateRoles::get);
+  }
+
+  /** Returns whether a relational expression consists of scans of distinct
+   * {@link MutableArrayTable}s, stable filters and projects, and inner
+   * joins; populates {@code tables} with the tables scanned. */
+  private static boolean isSpj(RelNode rel,
+      Map<MutableArrayTable, List<String>> tables) {
+    if (rel instanceof TableScan) {
+      final RelOptTable table = ((TableScan) rel).getTable();
+      final MutableArrayTable t = table.unwrap(MutableArrayTable.class);
+      return t != null && tables.put(t, table.getQualifiedName()) == null;
+    } else if (rel instanceof Filter) {
+      final Filter filter = (Filter) rel;
+      if (containsSubQuery(filter)
+          || !isStable(filter.getCondition())) {
+        return false;
+      }
+    } else if (rel instanceof Project) {
+      final Project project = (Project) rel;
+      if (containsSubQuery(project)
+          || project.containsOver()
+          || !project.getProjects().stream()
+              .allMatch(IncrementalView::isStable)) {
+        return false;
+      }
+    } else if (rel instanceof Join) {
+      final Join join = (Join) rel;
+      if (join.getJoinType() != JoinRelType.INNER
+          || containsSubQuery(join)
+          || !isStable(join.getCondition())) {
+        return false;
+      }
+    } else {
+      return false;
+    }
+    for (RelNode input : rel.getInputs()) {
+      if (!isSpj(input, tables)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether an expression always has the same value for the same
+   * input row: it is deterministic, and does not call a dynamic function,
+   * such as {@code CURRENT_TIMESTAMP}, whose value changes between
+   * statements. Rows computed at different times would otherwise see
+   * different values. */
+  private static boolean isStable(RexNode e) {
+    if (!RexUtil.isDeterministic(e)) {
+      return false;
+    }
+    try {
+      e.accept(
+          new RexVisitorImpl<Void>(true) {
+            @Override public Void visitCall(RexCall call) {
+              if (call.getOperator().isDynamicFunction()) {
+                throw Util.FoundOne.NULL;
+              }
+              return super.visitCall(call);
+            }
+          });
+      return true;
+    } catch (Util.FoundOne ex) {
+      Util.swallow(ex, null);
+      return false;
+    }
+  }
+
+  /** Returns the sub-schema with a given path, creating it and its
+   * ancestors if necessary. */
+  private static CalciteSchema subSchema(CalciteSchema schema,
+      List<String> path) {
+    for (String name : path) {
+      final CalciteSchema subSchema = schema.getSubSchema(name, true);
+      schema = subSchema != null
+          ? subSchema
+          : schema.add(name, new AbstractSchema());
+    }
+    return schema;
+  }
+
+  /** Starts maintaining the view; call after the view has been populated. */
+  void attach() {
+    markView();
+    index();
+    view.maintainer = this;
+  }
+
+  /** Stops maintaining the view, and closes the connection on which its
+   * query runs; call when the view is dropped. */
+  synchronized void detach() {
+    if (view.maintainer == this) {
+      view.maintainer = null;
+    }
+    close(connection);
+  }
+
+  private static void close(CalciteConnection connection) {
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      throw Util.throwAsRuntime(e);
+    }
+  }
+
+  /** Brings the view up to date with the tables it reads. */
+  synchronized void refresh() {
+    if (view.maintainer != this) {
+      // The view has been dropped, and its connection closed.
+      return;
+    }
+    for (Source source : sources) {
+      // If the table is itself a materialized view, bring it up to date.
+      source.table.beforeScan();
+    }
+    if (view.rows.size() != viewSize
+        || view.rows.rewriteCount != viewRewriteCount
+        || sources.stream().anyMatch(Source::isRewritten)) {
+      recompute();
+      return;
+    }
+    final int[] sizes = new int[sources.size()];
+    for (int i = 0; i < sources.size(); i++) {
+      sizes[i] = sources.get(i).table.rows.size();
+    }
+    try {
+      // The delta of a join is the union, over each table k that has new
+      // rows, of the join of: the new rows of table k; all current rows of
+      // the tables before k; and the old rows of the tables after k.
+      for (int k = 0; k < sources.size(); k++) {
+        if (sizes[k] == sources.get(k).size) {
+          continue;
+        }
+        for (int j = 0; j < sources.size(); j++) {
+          final Source source = sources.get(j);
+          if (j < k) {
+            source.window.set(0, sizes[j]);
+          } else if (j == k) {
+            source.window.set(source.size, sizes[j]);
+          } else {
+            source.window.set(0, source.size);
+          }
+        }
+        merge(execute());
+      }
+    } catch (UnsupportedOperationException e) {
+      // A value could not be merged; start again.
+      recompute();
+      return;
+    }
+    for (int i = 0; i < sources.size(); i++) {
+      sources.get(i).size = sizes[i];
+    }
+    markView();
+  }
+
+  /** Recomputes the view from all rows of the tables it reads. */
+  private void recompute() {
+    for (Source source : sources) {
+      source.mark();
+      source.window.set(0, source.size);
+    }
+    final List<@Nullable Object> rows = execute();
+    view.rows.clear();
+    view.rows.addAll(rows);
+    index();
+    markView();
+  }
+
+  /** Executes the view's query over the current windows. */
+  private List<@Nullable Object> execute() {
+    final DataContext dataContext =
+        DataContexts.of(connection,
+            requireNonNull(signature.rootSchema, "rootSchema").plus());
+    return signature.enumerable(dataContext).toList();
+  }
+
+  /** Merges rows of the delta of the view's query into the view. */
+  private void merge(List<@Nullable Object> rows) {
+    final List<Role> roles = this.roles;
+    if (roles == null) {
+      view.rows.addAll(rows);
+      return;
+    }
+    for (@Nullable Object row : rows) {
+      final @Nullable Object[] values = values(row);
+      final List<@Nullable Object> key = key(values);
+      final Integer i = groups.get(key);
+      if (i == null) {
+        groups.put(key, view.rows.size());
+        view.rows.add(row);
+        continue;
+      }
+      final @Nullable Object[] oldValues = values(view.rows.get(i));
+      final @Nullable Object[] newValues = oldValues.clone();
+      for (int j = 0; j < roles.size(); j++) {
+        newValues[j] = roles.get(j).merge(oldValues[j], values[j]);
+      }
+      view.rows.set(i, fieldCount == 1 ? newValues[0] : newValues);
+    }
+  }
+
+  /** Rebuilds the index from group keys to rows. */
+  private void index() {
+    groups.clear();
+    if (roles != null) {
+      for (int i = 0; i < view.rows.size(); i++) {
+        groups.put(key(values(view.rows.get(i))), i);
+      }
+    }
+  }
+
+  private void markView() {
+    viewSize = view.rows.size();
+    viewRewriteCount = view.rows.rewriteCount;
+  }
+
+  /** Returns the values of the fields of a row; a table with one column
+   * stores each row as a scalar. */
+  private @Nullable Object[] values(@Nullable Object row) {
+    if (fieldCount == 1
+        && !(row instanceof Object[] && ((Object[]) row).length == 1)) {
+      return new @Nullable Object[] {row};
+    }
+    return (@Nullable Object[]) requireNonNull(row, "row");
+  }
+
+  private List<@Nullable Object> key(@Nullable Object[] values) {
+    final List<Role> roles = requireNonNull(this.roles, "roles");
+    final List<@Nullable Object> key = new ArrayList<>();
+    for (int i = 0; i < roles.size(); i++) {
+      if (roles.get(i) == Role.KEY) {
+        key.add(values[i]);
+      }
+    }
+    return key;
+  }
+
+  /** How a column of an aggregate view combines an existing value with the
+   * value computed from new rows. */
+  private enum Role {
+    /** Group key; the values are equal. */
+    KEY {
+      @Override @Nullable Object merge(@Nullable Object v0,
+          @Nullable Object v1) {
+        return v0;
+      }
+    },
+    /** {@code SUM} or {@code COUNT}; the values are added. */
+    ADD {
+      @Override @Nullable Object merge(@Nullable Object v0,
+          @Nullable Object v1) {
+        if (v0 == null) {
+          return v1;
+        }
+        if (v1 == null) {
+          return v0;
+        }
+        if (v0 instanceof BigDecimal) {
+          return ((BigDecimal) v0).add((BigDecimal) v1);
+        }
+        if (v0 instanceof Long) {
+          return (Long) v0 + ((Number) v1).longValue();
+        }
+        if (v0 instanceof Integer) {
+          return (Integer) v0 + ((Number) v1).intValue();
+        }
+        if (v0 instanceof Short) {
+          return (short) ((Short) v0 + ((Number) v1).shortValue());
+        }
+        if (v0 instanceof Byte) {
+          return (byte) ((Byte) v0 + ((Number) v1).byteValue());
+        }
+        if (v0 instanceof Double) {
+          return (Double) v0 + ((Number) v1).doubleValue();
+        }
+        if (v0 instanceof Float) {
+          return (Float) v0 + ((Number) v1).floatValue();
+        }
+        throw new UnsupportedOperationException("cannot add " + v0.getClass());
+      }
+    },
+    /** {@code MIN}; the lesser value is kept. */
+    MIN {
+      @Override @Nullable Object merge(@Nullable Object v0,
+          @Nullable Object v1) {
+        return v0 == null || v1 != null && compare(v1, v0) < 0 ? v1 : v0;
+      }
+    },
+    /** {@code MAX}; the greater value is kept. */
+    MAX {
+      @Override @Nullable Object merge(@Nullable Object v0,
+          @Nullable Object v1) {
+        return v0 == null || v1 != null && compare(v1, v0) > 0 ? v1 : v0;
+      }
+    };
+
+    abstract @Nullable Object merge(@Nullable Object v0, @Nullable Object v1);
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static int compare(Object v0, Object v1) {
+      if (!(v0 instanceof Comparable)) {
+        throw new UnsupportedOperationException("cannot compare "
+            + v0.getClass());
+      }
+      return ((Comparable) v0).compareTo(v1);
+    }
+  }
+
+  /** A table that the view reads, and its watermark. */
+  private static class Source {
+    final MutableArrayTable table;
+    final WindowTable window;
+    /** Number of rows that the view has seen. */
+    int size;
+    int rewriteCount;
+
+    Source(MutableArrayTable table, WindowTable window) {
+      this.table = table;
+      this.window = window;
+    }
+
+    void mark() {
+      size = table.rows.size();
+      rewriteCount = table.rows.rewriteCount;
+    }
+
+    /** Returns whether rows have been removed, replaced or moved since the
+     * view last saw the table. */
+    boolean isRewritten() {
+      return table.rows.rewriteCount != rewriteCount
+          || table.rows.size() < size;
+    }
+  }
+
+  /** Table whose rows are a range of the rows of a
+   * {@link MutableArrayTable}. */
+  private static class WindowTable extends AbstractQueryableTable {
+    private final MutableArrayTable base;
+    private int start;
+    private int end;
+
+    WindowTable(MutableArrayTable base) {
+      super(Object[].class);
+      this.base = base;
+    }
+
+    void set(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return base.getRowType(typeFactory);
+    }
+
+    @Override public <T> Queryable<T> asQueryable(QueryProvider queryProvider,
+        SchemaPlus schema, String tableName) {
+      return new AbstractTableQueryable<T>(queryProvider, schema, this,
+          tableName) {
+        @Override public Enumerator<T> enumerator() {
+          //noinspection unchecked
+          return (Enumerator<T>) Linq4j.enumerator(
+              base.rows.subList(start, end));
+        }
+      };
+    }
+  }
+}
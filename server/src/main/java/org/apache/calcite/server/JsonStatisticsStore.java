@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.server;
+
+import org.apache.calcite.runtime.JsonFunctions;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.util.JsonBuilder;
+import org.apache.calcite.util.Util;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of {@link StatisticsStore} that saves statistics in a JSON
+ * file.
+ *
+ * <p>The file is read when the store is first used, and written each time
+ * statistics change. It looks like this:
+ *
+ * <blockquote><pre>{@code
+ * {
+ *   "tables": [ {
+ *     "name": [ "S", "T" ],
+ *     "rowCount": 1000,
+ *     "columns": {
+ *       "A": {
+ *         "distinctCount": 100,
+ *         "nullCount": 10,
+ *         "min": 0,
+ *         "max": 990,
+ *         "histogram": [ 0, 250, 500, 750, 990 ],
+ *         "mostCommonValues": [ [ 7, 300 ] ]
+ *       }
+ *     }
+ *   } ]
+ * }
+ * }</pre></blockquote>
+ *
+ * <p>Only numeric, character and boolean values are saved; for a column of
+ * another type, such as {@code DATE}, only the number of distinct values and
+ * the number of nulls are saved.
+ */
+public class JsonStatisticsStore implements StatisticsStore {
+  private final File file;
+  private @Nullable Map<List<String>, TableEntry> tables;
+
+  /** Creates a JsonStatisticsStore that uses the given file. The file does
+   * not need to exist. */
+  public JsonStatisticsStore(File file) {
+    this.file = requireNonNull(file, "file");
+  }
+
+  @Override public synchronized @Nullable Statistic get(List<String> tableName,
+      List<String> columnNames) {
+    final TableEntry entry = tables().get(tableName);
+    if (entry == null) {
+      return null;
+    }
+    return Statistics.of(entry.rowCount, null, null, null,
+        Util.transform(columnNames, entry.columns::get));
+  }
+
+  @Override public synchronized void put(List<String> tableName,
+      List<String> columnNames, Statistic statistic) {
+    final Double rowCount = statistic.getRowCount();
+    if (rowCount == null) {
+      remove(tableName);
+      return;
+    }
+    final Map<String, ColumnStatistic> columns = new LinkedHashMap<>();
+    for (int i = 0; i < columnNames.size(); i++) {
+      final ColumnStatistic columnStatistic = statistic.getColumnStatistic(i);
+      if (columnStatistic != null) {
+        columns.put(columnNames.get(i), columnStatistic);
+      }
+    }
+    tables().put(ImmutableList.copyOf(tableName),
+        new TableEntry(rowCount, columns));
+    save();
+  }
+
+  @Override public synchronized void remove(List<String> tableName) {
+    if (tables().remove(tableName) != null) {
+      save();
+    }
+  }
+
+  private Map<List<String>, TableEntry> tables() {
+    if (tables == null) {
+      tables = load();
+    }
+    return tables;
+  }
+
+  /** Reads the file. */
+  @SuppressWarnings("unchecked")
+  private Map<List<String>, TableEntry> load() {
+    final Map<List<String>, TableEntry> map = new LinkedHashMap<>();
+    if (!file.exists()) {
+      return map;
+    }
+    final Object o;
+    try {
+      o = JsonFunctions.dejsonize(
+          new String(Files.readAllBytes(file.toPath()),
+              StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw Util.throwAsRuntime("while reading statistics from " + file, e);
+    }
+    final Map<String, Object> root = (Map<String, Object>) requireNonNull(o);
+    for (Object t : (List<Object>) requireNonNull(root.get("tables"))) {
+      final Map<String, Object> table = (Map<String, Object>) t;
+      final List<String> name =
+          ImmutableList.copyOf((List<String>) requireNonNull(table.get("name")));
+      final double rowCount =
+          ((Number) requireNonNull(table.get("rowCount"))).doubleValue();
+      final Map<String, ColumnStatistic> columns = new LinkedHashMap<>();
+      final Map<String, Object> columnMap =
+          (Map<String, Object>) requireNonNull(table.get("columns"));
+      columnMap.forEach((columnName, c) ->
+          columns.put(columnName, toColumnStatistic((Map<String, Object>) c)));
+      map.put(name, new TableEntry(rowCount, columns));
+    }
+    return map;
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static ColumnStatistic toColumnStatistic(Map<String, Object> map) {
+    final List<Comparable> histogram = (List<Comparable>) map.get("histogram");
+    Map<Comparable, Double> mostCommonValues = null;
+    final List<List<Object>> pairs =
+        (List<List<Object>>) map.get("mostCommonValues");
+    if (pairs != null) {
+      mostCommonValues = new HashMap<>();
+      for (List<Object> pair : pairs) {
+        mostCommonValues.put((Comparable) pair.get(0),
+            ((Number) pair.get(1)).doubleValue());
+      }
+    }
+    return Statistics.ofColumn(toDouble(map.get("distinctCount")),
+        toDouble(map.get("nullCount")),
+        (Comparable) map.get("min"), (Comparable) map.get("max"),
+        histogram, mostCommonValues);
+  }
+
+  private static @Nullable Double toDouble(@Nullable Object o) {
+    return o == null ? null : ((Number) o).doubleValue();
+  }
+
+  /** Writes the file. */
+  private void save() {
+    final JsonBuilder jsonBuilder = new JsonBuilder();
+    final List<@Nullable Object> tableList = jsonBuilder.list();
+    tables().forEach((name, entry) -> {
+      final Map<String, @Nullable Object> table = jsonBuilder.map();
+      table.put("name", new ArrayList<>(name));
+      table.put("rowCount", entry.rowCount);
+      final Map<String, @Nullable Object> columns = jsonBuilder.map();
+      entry.columns.forEach((columnName, columnStatistic) ->
+          columns.put(columnName, toMap(jsonBuilder, columnStatistic)));
+      table.put("columns", columns);
+      tableList.add(table);
+    });
+    final Map<String, @Nullable Object> root = jsonBuilder.map();
+    root.put("tables", tableList);
+    try {
+      Files.write(file.toPath(),
+          jsonBuilder.toJsonString(root).getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw Util.throwAsRuntime("while writing statistics to " + file, e);
+    }
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static Map<String, @Nullable Object> toMap(JsonBuilder jsonBuilder,
+      ColumnStatistic columnStatistic) {
+    final Map<String, @Nullable Object> map = jsonBuilder.map();
+    jsonBuilder.putIf(map, "distinctCount", columnStatistic.getDistinctCount());
+    jsonBuilder.putIf(map, "nullCount", columnStatistic.getNullCount());
+    final Comparable min = columnStatistic.getMin();
+    final Comparable max = columnStatistic.getMax();
+    final List<Comparable> histogram = columnStatistic.getHistogram();
+    final Map<Comparable, Double> mostCommonValues =
+        columnStatistic.getMostCommonValues();
+    if (!isJson(min)
+        || !isJson(max)
+        || histogram != null && !histogram.stream().allMatch(JsonStatisticsStore::isJson)
+        || mostCommonValues != null
+            && !mostCommonValues.keySet().stream().allMatch(JsonStatisticsStore::isJson)) {
+      return map;
+    }
+    jsonBuilder.putIf(map, "min", min);
+    jsonBuilder.putIf(map, "max", max);
+    if (histogram != null) {
+      map.put("histogram", new ArrayList<Object>(histogram));
+    }
+    if (mostCommonValues != null) {
+      final List<@Nullable Object> pairs = jsonBuilder.list();
+      mostCommonValues.forEach((value, count) ->
+          pairs.add(ImmutableList.of(value, count)));
+      map.put("mostCommonValues", pairs);
+    }
+    return map;
+  }
+
+  /** Returns whether a value can be written to JSON and read back as a value
+   * that compares the same. */
+  private static boolean isJson(@Nullable Object o) {
+    return o == null
+        || o instanceof Number
+        || o instanceof String
+        || o instanceof Boolean;
+  }
+
+  /** Statistics of a table, as held in the file. */
+  private static class TableEntry {
+    final double rowCount;
+    final Map<String, ColumnStatistic> columns;
+
+    TableEntry(double rowCount, Map<String, ColumnStatistic> columns) {
+      this.rowCount = rowCount;
+      this.columns = columns;
+    }
+  }
+}
@@ -30,6 +30,10 @@
    * or null if not (yet) materialized. */
   @Nullable MaterializationKey key;
 
+  /** Maintains the contents of this view as rows are added to the tables it
+   * reads, or null if the view is computed only when it is created. */
+  volatile @Nullable IncrementalView maintainer;
+
   MaterializedViewTable(String name, RelProtoDataType protoRowType) {
     super(name, protoRowType, protoRowType,
         NullInitializerExpressionFactory.INSTANCE);
@@ -39,6 +43,21 @@
     return Schema.TableType.MATERIALIZED_VIEW;
   }
 
+  @Override void beforeScan() {
+    final IncrementalView maintainer = this.maintainer;
+    if (maintainer != null) {
+      maintainer.refresh();
+    }
+  }
+
+  /** Stops maintaining this view; called when it is dropped. */
+  void detach() {
+    final IncrementalView maintainer = this.maintainer;
+    if (maintainer != null) {
+      maintainer.detach();
+    }
+  }
+
   @Override public <C extends Object> @Nullable C unwrap(Class<C> aClass) {
     if (MaterializationKey.class.isAssignableFrom(aClass)
         && aClass.isInstance(key)) {
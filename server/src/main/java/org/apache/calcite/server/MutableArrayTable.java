@@ -35,14 +35,16 @@
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.Comparator;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
 /** Table backed by a Java list. */
 class MutableArrayTable extends AbstractModifiableTable
     implements Wrapper {
-  final List rows = new ArrayList();
+  final RowList rows = new RowList();
   private final RelProtoDataType protoRowType;
   private final InitializerExpressionFactory initializerExpressionFactory;
 
@@ -74,12 +76,17 @@ class MutableArrayTable extends AbstractModifiableTable
     return new AbstractTableQueryable<T>(queryProvider, schema, this,
         tableName) {
       @Override public Enumerator<T> enumerator() {
+        beforeScan();
         //noinspection unchecked
         return (Enumerator<T>) Linq4j.enumerator(rows);
       }
     };
   }
 
+  /** Called before each scan of this table. */
+  void beforeScan() {
+  }
+
   @Override public Type getElementType() {
     return Object[].class;
   }
@@ -100,4 +107,76 @@ class MutableArrayTable extends AbstractModifiableTable
     }
     return super.unwrap(aClass);
   }
+
+  /** List of rows that counts the modifications other than appending rows.
+   *
+   * <p>While {@link #rewriteCount} is unchanged, rows are only ever added to
+   * the end, so a row's position is a watermark: rows at or beyond a
+   * previously observed {@link #size()} are new. */
+  static class RowList extends ArrayList<@Nullable Object> {
+    /** Number of modifications that removed, replaced or moved rows. */
+    int rewriteCount;
+
+    @Override public @Nullable Object set(int index,
+        @Nullable Object element) {
+      ++rewriteCount;
+      return super.set(index, element);
+    }
+
+    @Override public void add(int index, @Nullable Object element) {
+      ++rewriteCount;
+      super.add(index, element);
+    }
+
+    @Override public boolean addAll(int index,
+        Collection<? extends @Nullable Object> c) {
+      ++rewriteCount;
+      return super.addAll(index, c);
+    }
+
+    @Override public @Nullable Object remove(int index) {
+      ++rewriteCount;
+      return super.remove(index);
+    }
+
+    @Override public boolean remove(@Nullable Object o) {
+      ++rewriteCount;
+      return super.remove(o);
+    }
+
+    @Override public boolean removeAll(Collection<?> c) {
+      ++rewriteCount;
+      return super.removeAll(c);
+    }
+
+    @Override public boolean retainAll(Collection<?> c) {
+      ++rewriteCount;
+      return super.retainAll(c);
+    }
+
+    @Override public boolean removeIf(Predicate<? super @Nullable Object> filter) {
+      ++rewriteCount;
+      return super.removeIf(filter);
+    }
+
+    @Override protected void removeRange(int fromIndex, int toIndex) {
+      ++rewriteCount;
+      super.removeRange(fromIndex, toIndex);
+    }
+
+    @Override public void replaceAll(UnaryOperator<@Nullable Object> operator) {
+      ++rewriteCount;
+      super.replaceAll(operator);
+    }
+
+    @Override public void sort(@Nullable Comparator<? super @Nullable Object> c) {
+      ++rewriteCount;
+      super.sort(c);
+    }
+
+    @Override public void clear() {
+      ++rewriteCount;
+      super.clear();
+    }
+  }
 }
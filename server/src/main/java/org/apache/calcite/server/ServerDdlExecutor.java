@@ -28,16 +28,21 @@
 import org.apache.calcite.model.JsonSchema;
 import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.metadata.NullSentinel;
+import org.apache.calcite.rel.metadata.SharedMetadataCache;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rel.type.RelDataTypeImpl;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.ColumnStatistic;
 import org.apache.calcite.schema.ColumnStrategy;
 import org.apache.calcite.schema.Function;
 import org.apache.calcite.schema.Schema;
 import org.apache.calcite.schema.SchemaFactory;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.schema.TranslatableTable;
 import org.apache.calcite.schema.Wrapper;
@@ -54,6 +59,7 @@
 import org.apache.calcite.sql.SqlSelect;
 import org.apache.calcite.sql.SqlUtil;
 import org.apache.calcite.sql.SqlWriterConfig;
+import org.apache.calcite.sql.ddl.SqlAnalyzeTable;
 import org.apache.calcite.sql.ddl.SqlAttributeDefinition;
 import org.apache.calcite.sql.ddl.SqlColumnDeclaration;
 import org.apache.calcite.sql.ddl.SqlCreateForeignSchema;
@@ -94,9 +100,11 @@
 
 import java.io.Reader;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -246,6 +254,42 @@ static void populate(SqlIdentifier name, SqlNode query,
     }
   }
 
+  /** Executes {@code query} and returns its rows, with null values
+   * represented by {@link NullSentinel#INSTANCE}. Used by ANALYZE TABLE. */
+  static List<List<Comparable>> query(SqlNode query,
+      CalcitePrepare.Context context) {
+    final FrameworkConfig config = Frameworks.newConfigBuilder()
+        .defaultSchema(context.getRootSchema().plus())
+        .build();
+    final Planner planner = Frameworks.getPlanner(config);
+    try {
+      final String sql = query.toSqlString(CalciteSqlDialect.DEFAULT).getSql();
+      final SqlNode query1 = planner.parse(sql);
+      final SqlNode query2 = planner.validate(query1);
+      final RelRoot r = planner.rel(query2);
+      final List<List<Comparable>> rows = new ArrayList<>();
+      try (PreparedStatement prepare =
+               context.getRelRunner().prepareStatement(r.rel);
+           ResultSet resultSet = prepare.executeQuery()) {
+        final int columnCount = resultSet.getMetaData().getColumnCount();
+        while (resultSet.next()) {
+          final List<Comparable> row = new ArrayList<>(columnCount);
+          for (int i = 0; i < columnCount; i++) {
+            final Object o = resultSet.getObject(i + 1);
+            row.add(o instanceof Comparable || o == null
+                ? NullSentinel.mask((Comparable) o)
+                : o.toString());
+          }
+          rows.add(row);
+        }
+      }
+      return rows;
+    } catch (SqlParseException | ValidationException
+        | RelConversionException | SQLException e) {
+      throw Util.throwAsRuntime(e);
+    }
+  }
+
   /** Returns the value of a literal, converting
    * {@link NlsString} into String. */
   @SuppressWarnings("rawtypes")
@@ -335,6 +379,13 @@ public void execute(SqlDropObject drop,
 
       existed = schema != null && schema.removeTable(objectName);
       if (existed) {
+        final StatisticsStore store = statisticsStore(context);
+        if (store != null) {
+          store.remove(requireNonNull(schema).path(objectName));
+        }
+        if (materializedView instanceof MaterializedViewTable) {
+          ((MaterializedViewTable) materializedView).detach();
+        }
         if (materializedView instanceof Wrapper) {
           ((Wrapper) materializedView).maybeUnwrap(MaterializationKey.class)
               .ifPresent(materializationKey ->
@@ -395,6 +446,119 @@ public void execute(SqlTruncateTable truncate,
     erase(truncate.name, context);
   }
 
+  /** Executes an {@code ANALYZE TABLE} command.
+   *
+   * <p>Reads the table, computes statistics of its columns, and gives them to
+   * the table, where the planner will find them. If the command has a
+   * {@code FOR COLUMNS} clause, recomputes only the statistics of those
+   * columns, keeping the statistics of other columns. */
+  public void execute(SqlAnalyzeTable analyze,
+      CalcitePrepare.Context context) {
+    final Pair<@Nullable CalciteSchema, String> pair =
+        schema(context, true, analyze.name);
+    final CalciteSchema.@Nullable TableEntry tableEntry =
+        pair.left == null
+            ? null
+            : pair.left.getTable(pair.right, context.config().caseSensitive());
+    if (tableEntry == null) {
+      throw SqlUtil.newContextException(analyze.name.getParserPosition(),
+          RESOURCE.tableNotFound(pair.right));
+    }
+    final Table table = tableEntry.getTable();
+    if (!(table instanceof AbstractModifiableTable)) {
+      // Not created by calcite-server, so we cannot give it statistics.
+      throw SqlUtil.newContextException(analyze.name.getParserPosition(),
+          RESOURCE.analyzeTableNotSupported(pair.right));
+    }
+    final AbstractModifiableTable modifiableTable =
+        (AbstractModifiableTable) table;
+    final RelDataType rowType = table.getRowType(context.getTypeFactory());
+    final List<String> fieldNames = rowType.getFieldNames();
+
+    // Which columns to analyze
+    final List<String> columnNames = new ArrayList<>();
+    if (analyze.columnList == null) {
+      columnNames.addAll(fieldNames);
+    } else {
+      for (SqlNode node : analyze.columnList) {
+        final SqlIdentifier id = (SqlIdentifier) node;
+        final RelDataTypeField field =
+            rowType.getField(id.getSimple(), context.config().caseSensitive(),
+                false);
+        if (field == null) {
+          throw SqlUtil.newContextException(id.getParserPosition(),
+              RESOURCE.columnNotFound(id.getSimple()));
+        }
+        columnNames.add(field.getName());
+      }
+    }
+
+    // Read the columns, and compute their statistics
+    final SqlParserPos pos = analyze.getParserPosition();
+    final SqlNodeList selectList = new SqlNodeList(pos);
+    for (String columnName : columnNames) {
+      selectList.add(new SqlIdentifier(columnName, pos));
+    }
+    final List<String> tableName = tableEntry.path();
+    final SqlSelect select =
+        new SqlSelect(pos, null, selectList, new SqlIdentifier(tableName, pos),
+            null, null, null, null, null, null, null, null, null);
+    final List<List<Comparable>> rows = query(select, context);
+    final List<ColumnStatistic> computed =
+        TableAnalyzer.analyze(rows, columnNames);
+
+    final Map<String, ColumnStatistic> columnStatistics = new HashMap<>();
+    final Statistic previous = modifiableTable.getStatistic();
+    for (Ord<String> fieldName : Ord.zip(fieldNames)) {
+      final ColumnStatistic columnStatistic =
+          previous.getColumnStatistic(fieldName.i);
+      if (columnStatistic != null) {
+        columnStatistics.put(fieldName.e, columnStatistic);
+      }
+    }
+    for (Ord<String> columnName : Ord.zip(columnNames)) {
+      columnStatistics.put(columnName.e, computed.get(columnName.i));
+    }
+    final Statistic statistic =
+        Statistics.of((double) rows.size(), null, null, null,
+            Util.transform(fieldNames, columnStatistics::get));
+    modifiableTable.setStatistic(statistic);
+    final SharedMetadataCache cache = SharedMetadataCache.INSTANCE;
+    if (cache != null) {
+      cache.invalidate(table);
+    }
+
+    final StatisticsStore store = statisticsStore(context);
+    if (store != null) {
+      store.put(tableName, fieldNames, statistic);
+    }
+  }
+
+  /** Gives a table that has just been created the statistics that
+   * {@code ANALYZE TABLE} saved for a table of the same name, if any; for
+   * example, before the JVM was restarted. */
+  private void loadStatistics(AbstractModifiableTable table,
+      CalciteSchema schema, String name, CalcitePrepare.Context context) {
+    final StatisticsStore store = statisticsStore(context);
+    if (store == null) {
+      return;
+    }
+    final List<String> fieldNames =
+        table.getRowType(context.getTypeFactory()).getFieldNames();
+    final Statistic statistic = store.get(schema.path(name), fieldNames);
+    if (statistic != null) {
+      table.setStatistic(statistic);
+    }
+  }
+
+  /** Returns the store in which {@code ANALYZE TABLE} saves statistics, or
+   * null if statistics are not saved. Returns null by default; override to
+   * use a store such as {@link JsonStatisticsStore}. */
+  protected @Nullable StatisticsStore statisticsStore(
+      CalcitePrepare.Context context) {
+    return null;
+  }
+
   /** Executes a {@code CREATE MATERIALIZED VIEW} command. */
   public void execute(SqlCreateMaterializedView create,
       CalcitePrepare.Context context) {
@@ -424,7 +588,20 @@ public void execute(SqlCreateMaterializedView create,
     final MaterializedViewTable table =
         new MaterializedViewTable(pair.right, RelDataTypeImpl.proto(rowType));
     pair.left.add(pair.right, table);
-    populate(create.name, create.query, context);
+    loadStatistics(table, pair.left, pair.right, context);
+    final IncrementalView maintainer =
+        IncrementalView.create(table, pair.left, sql, schemaPath);
+    try {
+      populate(create.name, create.query, context);
+    } catch (RuntimeException e) {
+      if (maintainer != null) {
+        maintainer.detach();
+      }
+      throw e;
+    }
+    if (maintainer != null) {
+      maintainer.attach();
+    }
     table.key =
         MaterializationService.instance().defineMaterialization(pair.left, null,
             sql, schemaPath, pair.right, true, true);
@@ -578,10 +755,12 @@ public void execute(SqlCreateTable create,
       }
     }
     // Table does not exist. Create it.
-    pair.left.add(pair.right,
+    final MutableArrayTable table =
         new MutableArrayTable(pair.right,
             RelDataTypeImpl.proto(storedRowType),
-            RelDataTypeImpl.proto(rowType), ief));
+            RelDataTypeImpl.proto(rowType), ief);
+    pair.left.add(pair.right, table);
+    loadStatistics(table, pair.left, pair.right, context);
     if (create.query != null) {
       populate(create.name, create.query, context);
     }
@@ -639,10 +818,12 @@ public void execute(SqlCreateTableLike create,
     final JavaTypeFactory typeFactory = context.getTypeFactory();
     final RelDataType rowType = table.getRowType(typeFactory);
     // Table does not exist. Create it.
-    pair.left.add(pair.right,
+    final MutableArrayTable newTable =
         new MutableArrayTable(pair.right,
             RelDataTypeImpl.proto(rowType),
-            RelDataTypeImpl.proto(rowType), ief));
+            RelDataTypeImpl.proto(rowType), ief);
+    pair.left.add(pair.right, newTable);
+    loadStatistics(newTable, pair.left, pair.right, context);
   }
 
   /** Executes a {@code CREATE TYPE} command. */
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.server;
+
+import org.apache.calcite.schema.Statistic;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+
+/**
+ * Place where the statistics computed by {@code ANALYZE TABLE} are saved.
+ *
+ * <p>Column statistics are identified by column name, so that a table that is
+ * re-created with different columns gets statistics only for the columns that
+ * it still has.
+ *
+ * @see ServerDdlExecutor#statisticsStore(org.apache.calcite.jdbc.CalcitePrepare.Context)
+ * @see JsonStatisticsStore
+ */
+public interface StatisticsStore {
+  /** Returns the statistics of a table, or null if none have been saved.
+   *
+   * @param tableName Fully-qualified name of the table
+   * @param columnNames Names of the table's columns; column {@code i} of the
+   *                    result describes {@code columnNames.get(i)}
+   */
+  @Nullable Statistic get(List<String> tableName, List<String> columnNames);
+
+  /** Saves the statistics of a table, replacing any previous statistics.
+   *
+   * @param tableName Fully-qualified name of the table
+   * @param columnNames Names of the table's columns
+   * @param statistic Statistics
+   */
+  void put(List<String> tableName, List<String> columnNames,
+      Statistic statistic);
+
+  /** Removes the statistics of a table; called when the table is dropped. */
+  void remove(List<String> tableName);
+}
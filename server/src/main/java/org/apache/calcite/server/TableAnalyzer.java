@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.server;
+
+import org.apache.calcite.profile.Profiler;
+import org.apache.calcite.profile.ProfilerImpl;
+import org.apache.calcite.rel.metadata.NullSentinel;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the statistics of columns, for {@code ANALYZE TABLE}.
+ *
+ * <p>Uses a {@link Profiler} to compute the number of distinct values of each
+ * column, and sorts the values of each column to compute its minimum, maximum,
+ * histogram and most common values.
+ */
+class TableAnalyzer {
+  /** Maximum number of buckets in a histogram. */
+  static final int HISTOGRAM_BUCKET_COUNT = 16;
+
+  /** Maximum number of most common values per column. */
+  static final int MOST_COMMON_VALUE_COUNT = 10;
+
+  private TableAnalyzer() {
+  }
+
+  /** Computes the statistics of each column of a data set.
+   *
+   * @param rows Rows; null values are represented by
+   *             {@link NullSentinel#INSTANCE}
+   * @param columnNames Names of the columns
+   * @return Statistics of each column
+   */
+  static List<ColumnStatistic> analyze(List<List<Comparable>> rows,
+      List<String> columnNames) {
+    final List<Profiler.Column> columns = new ArrayList<>();
+    for (int i = 0; i < columnNames.size(); i++) {
+      columns.add(new Profiler.Column(i, columnNames.get(i)));
+    }
+    final Profiler.Profile profile =
+        ProfilerImpl.builder()
+            .withPassSize(200)
+            .withMinimumSurprise(0.3D)
+            .build()
+            .profile(rows, columns, ImmutableList.of());
+
+    final ImmutableList.Builder<ColumnStatistic> list = ImmutableList.builder();
+    for (int i = 0; i < columnNames.size(); i++) {
+      final List<Comparable> values = new ArrayList<>();
+      for (List<Comparable> row : rows) {
+        final Comparable value = row.get(i);
+        if (value != NullSentinel.INSTANCE) {
+          values.add(value);
+        }
+      }
+      final int nullCount = rows.size() - values.size();
+
+      // The profiler counts null as a value
+      double distinctCount = profile.cardinality(ImmutableBitSet.of(i));
+      if (nullCount > 0) {
+        distinctCount = Math.max(distinctCount - 1, 0);
+      }
+      if (values.isEmpty()) {
+        list.add(
+            Statistics.ofColumn(0d, (double) nullCount, null, null, null,
+                null));
+        continue;
+      }
+
+      //noinspection unchecked
+      Collections.sort((List) values);
+      list.add(
+          Statistics.ofColumn(distinctCount, (double) nullCount,
+              values.get(0), values.get(values.size() - 1),
+              histogram(values), mostCommonValues(values)));
+    }
+    return list.build();
+  }
+
+  /** Returns the boundaries of an equi-depth histogram of a sorted list of
+   * values. */
+  private static @Nullable List<Comparable> histogram(
+      List<Comparable> values) {
+    final int bucketCount =
+        Math.min(HISTOGRAM_BUCKET_COUNT, values.size() - 1);
+    if (bucketCount < 1) {
+      return null;
+    }
+    final List<Comparable> boundaries = new ArrayList<>();
+    for (int i = 0; i <= bucketCount; i++) {
+      boundaries.add(
+          values.get((int) ((long) i * (values.size() - 1) / bucketCount)));
+    }
+    return boundaries;
+  }
+
+  /** Returns the values that occur more often than average in a sorted list
+   * of values, with the number of times that each occurs. */
+  @SuppressWarnings("unchecked")
+  private static @Nullable Map<Comparable, Double> mostCommonValues(
+      List<Comparable> values) {
+    final Map<Comparable, Integer> counts = new LinkedHashMap<>();
+    int start = 0;
+    for (int i = 1; i <= values.size(); i++) {
+      if (i == values.size() || values.get(i).compareTo(values.get(start)) != 0) {
+        counts.put(values.get(start), i - start);
+        start = i;
+      }
+    }
+    final double average = (double) values.size() / counts.size();
+    final List<Map.Entry<Comparable, Integer>> entries = new ArrayList<>();
+    for (Map.Entry<Comparable, Integer> entry : counts.entrySet()) {
+      if (entry.getValue() > 1 && entry.getValue() > average) {
+        entries.add(entry);
+      }
+    }
+    if (entries.isEmpty()) {
+      return null;
+    }
+    entries.sort(
+        Map.Entry.<Comparable, Integer>comparingByValue(
+            Comparator.reverseOrder()));
+    final Map<Comparable, Double> map = new LinkedHashMap<>();
+    for (Map.Entry<Comparable, Integer> entry
+        : entries.subList(0, Math.min(entries.size(), MOST_COMMON_VALUE_COUNT))) {
+      map.put(entry.getKey(), (double) entry.getValue());
+    }
+    return map;
+  }
+}
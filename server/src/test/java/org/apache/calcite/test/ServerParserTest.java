@@ -18,6 +18,7 @@
 
 import org.apache.calcite.sql.SqlCall;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.ddl.SqlAnalyzeTable;
 import org.apache.calcite.sql.ddl.SqlCreateFunction;
 import org.apache.calcite.sql.ddl.SqlCreateSchema;
 import org.apache.calcite.sql.ddl.SqlCreateTable;
@@ -185,6 +186,11 @@ class ServerParserTest extends SqlParserTest {
     fixture = sql(sql);
     fixture.ok("TRUNCATE TABLE `T` CONTINUE IDENTITY");
     tester.accept(fixture, n -> n instanceof SqlTruncateTable);
+
+    sql = "ANALYZE TABLE T COMPUTE STATISTICS FOR COLUMNS A, B";
+    fixture = sql(sql);
+    fixture.ok("ANALYZE TABLE `T` COMPUTE STATISTICS FOR COLUMNS `A`, `B`");
+    tester.accept(fixture, n -> n instanceof SqlAnalyzeTable);
   }
 
   @Test void testCreateForeignSchema2() {
@@ -436,6 +442,20 @@ class ServerParserTest extends SqlParserTest {
         .ok("TRUNCATE TABLE `X` RESTART IDENTITY");
   }
 
+  @Test void testAnalyzeTable() {
+    sql("analyze table x")
+        .ok("ANALYZE TABLE `X` COMPUTE STATISTICS");
+
+    sql("analyze table s.x compute statistics")
+        .ok("ANALYZE TABLE `S`.`X` COMPUTE STATISTICS");
+
+    sql("analyze table x compute statistics for columns a, b")
+        .ok("ANALYZE TABLE `X` COMPUTE STATISTICS FOR COLUMNS `A`, `B`");
+
+    sql("analyze table x compute statistics for columns ^(^a)")
+        .fails("(?s).*Encountered \"\\(.*");
+  }
+
   @Test void testDropView() {
     sql("drop view x")
         .ok("DROP VIEW `X`");
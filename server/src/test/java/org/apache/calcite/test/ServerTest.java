@@ -19,11 +19,23 @@
 import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.jdbc.CalciteConnection;
 import org.apache.calcite.jdbc.CalcitePrepare;
+import org.apache.calcite.rel.metadata.SharedMetadataCache;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ColumnStatistic;
 import org.apache.calcite.schema.Function;
 import org.apache.calcite.schema.FunctionParameter;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.server.DdlExecutorImpl;
+import org.apache.calcite.server.JsonStatisticsStore;
+import org.apache.calcite.server.DdlExecutor;
 import org.apache.calcite.server.ServerDdlExecutor;
+import org.apache.calcite.server.StatisticsStore;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.ddl.SqlAnalyzeTable;
 import org.apache.calcite.sql.ddl.SqlCreateForeignSchema;
 import org.apache.calcite.sql.ddl.SqlCreateFunction;
 import org.apache.calcite.sql.ddl.SqlCreateMaterializedView;
@@ -36,10 +48,19 @@
 import org.apache.calcite.sql.ddl.SqlDropMaterializedView;
 import org.apache.calcite.sql.ddl.SqlDropSchema;
 import org.apache.calcite.sql.ddl.SqlTruncateTable;
+import org.apache.calcite.sql.parser.SqlAbstractParserImpl;
+import org.apache.calcite.sql.parser.SqlParserImplFactory;
+import org.apache.calcite.sql.parser.ddl.SqlDdlParserImpl;
+import org.apache.calcite.sql.type.SqlTypeName;
 
+import com.google.common.collect.ImmutableMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -48,6 +69,7 @@
 import java.sql.Statement;
 import java.sql.Struct;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.apache.calcite.test.Matchers.isLinux;
@@ -55,6 +77,8 @@
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -62,6 +86,9 @@
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * Unit tests for server and DDL.
@@ -106,6 +133,7 @@ static Connection connect() throws SQLException {
     executor.execute((SqlDropFunction) o, context);
     executor.execute((SqlDropSchema) o, context);
     executor.execute((SqlTruncateTable) o, context);
+    executor.execute((SqlAnalyzeTable) o, context);
   }
 
   @Test void testStatement() throws Exception {
@@ -470,6 +498,254 @@ static Connection connect() throws SQLException {
     }
   }
 
+  /** Tests {@code ANALYZE TABLE}; the planner uses the statistics that it
+   * computes to estimate row counts. */
+  @Test void testAnalyzeTable() throws Exception {
+    try (Connection c = connect();
+         Statement s = c.createStatement()) {
+      boolean b = s.execute("create table t (i int, v varchar(10))");
+      assertThat(b, is(false));
+      int x =
+          s.executeUpdate("insert into t values (1, 'a'), (2, 'b'), "
+              + "(2, 'b'), (3, 'c'), (null, 'c')");
+      assertThat(x, is(5));
+
+      b = s.execute("analyze table t");
+      assertThat(b, is(false));
+      final Table table =
+          requireNonNull(
+              c.unwrap(CalciteConnection.class).getRootSchema().tables()
+                  .get("T"));
+      final Statistic statistic = table.getStatistic();
+      assertThat(statistic.getRowCount(), is(5d));
+      final ColumnStatistic i =
+          requireNonNull(statistic.getColumnStatistic(0));
+      assertThat(i.getDistinctCount(), is(3d));
+      assertThat(i.getNullCount(), is(1d));
+      assertThat(i.getMin(), is(1));
+      assertThat(i.getMax(), is(3));
+      assertThat(i.getHistogram(), is(Arrays.asList(1, 2, 2, 3)));
+      assertThat(i.getMostCommonValues(), is(ImmutableMap.of(2, 2d)));
+
+      // 2 of the 5 rows have I = 2
+      final String sql = "explain plan including all attributes for\n"
+          + "select * from t where i = 2";
+      try (ResultSet r = s.executeQuery(sql)) {
+        assertThat(r.next(), is(true));
+        assertThat(r.getString(1), containsString("rowcount = 2.0"));
+      }
+
+      // Recompute the statistics of V only; the statistics of I are kept
+      x = s.executeUpdate("insert into t values (4, 'd')");
+      assertThat(x, is(1));
+      s.execute("analyze table t compute statistics for columns v");
+      final Statistic statistic2 = table.getStatistic();
+      assertThat(statistic2.getRowCount(), is(6d));
+      assertThat(statistic2.getColumnStatistic(0), sameInstance(i));
+      final ColumnStatistic v =
+          requireNonNull(statistic2.getColumnStatistic(1));
+      assertThat(v.getDistinctCount(), is(4d));
+      assertThat(v.getMax(), is("d"));
+
+      final String errMsg =
+          assertThrows(SQLException.class,
+              () -> s.execute("analyze table t compute statistics "
+                  + "for columns w")).getMessage();
+      assertThat(errMsg, containsString("Column 'W' not found"));
+
+      // A table not created by CREATE TABLE cannot take statistics
+      c.unwrap(CalciteConnection.class).getRootSchema().add("R",
+          new AbstractTable() {
+            @Override public RelDataType getRowType(
+                RelDataTypeFactory typeFactory) {
+              return typeFactory.builder()
+                  .add("I", SqlTypeName.INTEGER)
+                  .build();
+            }
+          });
+      final String errMsg2 =
+          assertThrows(SQLException.class,
+              () -> s.execute("analyze table r")).getMessage();
+      assertThat(errMsg2,
+          containsString("Table 'R' does not support ANALYZE TABLE"));
+    }
+  }
+
+  /** Tests {@code ANALYZE TABLE} when the {@link SharedMetadataCache} is
+   * disabled, as it is by default. */
+  @Test void testAnalyzeTableWithoutSharedMetadataCache() throws Exception {
+    assumeTrue(SharedMetadataCache.INSTANCE == null,
+        "shared metadata cache is enabled");
+    try (Connection c = connect();
+         Statement s = c.createStatement()) {
+      s.execute("create table t (i int)");
+      s.executeUpdate("insert into t values (1), (2)");
+      assertDoesNotThrow(() -> s.execute("analyze table t"));
+      final Table table =
+          requireNonNull(
+              c.unwrap(CalciteConnection.class).getRootSchema().tables()
+                  .get("T"));
+      assertThat(table.getStatistic().getRowCount(), is(2d));
+    }
+  }
+
+  /** Tests that a table that is created gets the statistics that
+   * {@code ANALYZE TABLE} saved for a table of the same name, as if the
+   * table were being re-created after a restart. */
+  @Test void testAnalyzeTableLoadsStatistics() throws Exception {
+    final File file = File.createTempFile("statistics", ".json");
+    assertThat(file.delete(), is(true));
+    StoringDdlExecutor.store = new JsonStatisticsStore(file);
+    try {
+      try (Connection c = StoringDdlExecutor.connect();
+           Statement s = c.createStatement()) {
+        s.execute("create table t (i int, v varchar(10))");
+        s.executeUpdate("insert into t values (1, 'a'), (2, 'b'), (2, 'c')");
+        s.execute("analyze table t");
+      }
+
+      // A new connection has a new root schema, so the table is created
+      // again, with one column that it did not have before
+      try (Connection c = StoringDdlExecutor.connect();
+           Statement s = c.createStatement()) {
+        s.execute("create table t (w int, i int)");
+        final Table table =
+            requireNonNull(
+                c.unwrap(CalciteConnection.class).getRootSchema().tables()
+                    .get("T"));
+        final Statistic statistic = table.getStatistic();
+        assertThat(statistic.getRowCount(), is(3d));
+        assertThat(statistic.getColumnStatistic(0), nullValue());
+        final ColumnStatistic i =
+            requireNonNull(statistic.getColumnStatistic(1));
+        assertThat(i.getDistinctCount(), is(2d));
+        assertThat(i.getMax(), is(2));
+
+        // Dropping the table removes its statistics from the store
+        s.execute("drop table t");
+        s.execute("create table t (i int)");
+        final Table table2 =
+            requireNonNull(
+                c.unwrap(CalciteConnection.class).getRootSchema().tables()
+                    .get("T"));
+        assertThat(table2.getStatistic().getRowCount(), nullValue());
+      }
+    } finally {
+      StoringDdlExecutor.store = null;
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  /** Tests that {@link JsonStatisticsStore} saves statistics and reads them
+   * back, matching columns by name. */
+  @Test void testJsonStatisticsStore() throws Exception {
+    final File file = File.createTempFile("statistics", ".json");
+    assertThat(file.delete(), is(true));
+    try {
+      final List<String> tableName = Arrays.asList("S", "T");
+      final List<@Nullable ColumnStatistic> columnStatistics =
+          Arrays.asList(
+              Statistics.ofColumn(3d, 1d, 1, 3, Arrays.asList(1, 2, 3),
+                  ImmutableMap.of(2, 5d)),
+              Statistics.ofColumn(2d, 0d, "a", "b", null, null));
+      final Statistic statistic =
+          Statistics.of(10d, null, null, null, columnStatistics);
+
+      // The statistic holds a copy of the column statistics
+      columnStatistics.set(0, null);
+      assertThat(statistic.getColumnStatistic(0), notNullValue());
+      new JsonStatisticsStore(file)
+          .put(tableName, Arrays.asList("I", "V"), statistic);
+
+      // A new store reads the file; column "X" has no statistics
+      final JsonStatisticsStore store = new JsonStatisticsStore(file);
+      final Statistic statistic2 =
+          requireNonNull(store.get(tableName, Arrays.asList("V", "X", "I")));
+      assertThat(statistic2.getRowCount(), is(10d));
+      final ColumnStatistic v =
+          requireNonNull(statistic2.getColumnStatistic(0));
+      assertThat(v.getDistinctCount(), is(2d));
+      assertThat(v.getMin(), is("a"));
+      assertThat(statistic2.getColumnStatistic(1), nullValue());
+      final ColumnStatistic i =
+          requireNonNull(statistic2.getColumnStatistic(2));
+      assertThat(i.getHistogram(), is(Arrays.asList(1, 2, 3)));
+      assertThat(i.getMostCommonValues(), is(ImmutableMap.of(2, 5d)));
+
+      store.remove(tableName);
+      assertThat(new JsonStatisticsStore(file).get(tableName,
+          Arrays.asList("I", "V")), nullValue());
+    } finally {
+      //noinspection ResultOfMethodCallIgnored
+      file.delete();
+    }
+  }
+
+  /** Tests that a materialized view is brought up to date, incrementally,
+   * as rows are inserted into the tables it reads, and recomputed after
+   * rows are removed. */
+  @Test void testIncrementalMaterializedView() throws Exception {
+    try (Connection c = connect();
+         Statement s = c.createStatement()) {
+      s.execute("create table emp (deptno int, sal int)");
+      s.execute("create table dept (deptno int, name varchar(10))");
+      s.executeUpdate("insert into emp values (10, 100), (20, 200)");
+      s.executeUpdate("insert into dept values (10, 'Sales'), (20, 'Eng')");
+      s.execute("create materialized view agg as\n"
+          + "select deptno, count(*) as c, sum(sal) as s,\n"
+          + "  min(sal) as lo, max(sal) as hi\n"
+          + "from emp\n"
+          + "group by deptno");
+      s.execute("create materialized view j as\n"
+          + "select e.sal, d.name\n"
+          + "from emp as e\n"
+          + "join dept as d on e.deptno = d.deptno\n"
+          + "where e.sal > 50");
+
+      // New rows are merged into existing groups, or added as new groups
+      s.executeUpdate("insert into emp values (10, 50), (30, 300), (10, 120)");
+      s.executeUpdate("insert into dept values (30, 'Ops')");
+      try (ResultSet r = s.executeQuery("select * from agg order by deptno")) {
+        assertThat(CalciteAssert.toString(r),
+            is("DEPTNO=10; C=3; S=270; LO=50; HI=120\n"
+                + "DEPTNO=20; C=1; S=200; LO=200; HI=200\n"
+                + "DEPTNO=30; C=1; S=300; LO=300; HI=300\n"));
+      }
+
+      // New rows of each side of the join are joined to all rows of the
+      // other side
+      try (ResultSet r = s.executeQuery("select * from j order by sal")) {
+        assertThat(CalciteAssert.toString(r),
+            is("SAL=100; NAME=Sales\n"
+                + "SAL=120; NAME=Sales\n"
+                + "SAL=200; NAME=Eng\n"
+                + "SAL=300; NAME=Ops\n"));
+      }
+
+      // After the table is truncated, the view is recomputed
+      s.execute("truncate table emp");
+      s.executeUpdate("insert into emp values (20, 10)");
+      try (ResultSet r = s.executeQuery("select * from agg")) {
+        assertThat(CalciteAssert.toString(r),
+            is("DEPTNO=20; C=1; S=10; LO=10; HI=10\n"));
+      }
+
+      // A view that calls a dynamic function is not maintained; its contents
+      // are computed only when it is created
+      s.execute("create materialized view d as\n"
+          + "select sal from emp where current_date > date '2000-01-01'");
+      s.executeUpdate("insert into emp values (20, 20)");
+      try (ResultSet r = s.executeQuery("select count(*) as c from d")) {
+        assertThat(CalciteAssert.toString(r), is("C=1\n"));
+      }
+
+      // A dropped view is no longer maintained
+      s.execute("drop materialized view agg");
+      assertThat(s.executeUpdate("insert into emp values (20, 30)"), is(1));
+    }
+  }
+
   @Test void testCreateFunction() throws Exception {
     try (Connection c = connect();
          Statement s = c.createStatement()) {
@@ -802,4 +1078,36 @@ private void checkDropWithFullyQualifiedNameWhenSchemaDoesntExist(
 
     statement.execute("drop " + objectType + " if exists s.o");
   }
+
+  /** DDL executor that saves the statistics computed by
+   * {@code ANALYZE TABLE} in a store. */
+  public static class StoringDdlExecutor extends ServerDdlExecutor {
+    static @Nullable StatisticsStore store;
+
+    /** Parser factory. */
+    @SuppressWarnings("unused") // used via reflection
+    public static final SqlParserImplFactory PARSER_FACTORY =
+        new SqlParserImplFactory() {
+          @Override public SqlAbstractParserImpl getParser(Reader stream) {
+            return SqlDdlParserImpl.FACTORY.getParser(stream);
+          }
+
+          @Override public DdlExecutor getDdlExecutor() {
+            return new StoringDdlExecutor();
+          }
+        };
+
+    static Connection connect() throws SQLException {
+      return DriverManager.getConnection(URL,
+          CalciteAssert.propBuilder()
+              .set(CalciteConnectionProperty.PARSER_FACTORY,
+                  StoringDdlExecutor.class.getName() + "#PARSER_FACTORY")
+              .build());
+    }
+
+    @Override protected @Nullable StatisticsStore statisticsStore(
+        CalcitePrepare.Context context) {
+      return store;
+    }
+  }
 }
@@ -23,9 +23,11 @@
 import org.openjdk.jmh.results.Result;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -35,6 +37,10 @@
  * for use in test systems.
  * It is assumed you would not use Calcite benchmarks for running a production system, thus it is
  * believed to be safe.
+ *
+ * <p>If a benchmark adds a {@link org.apache.calcite.plan.PlannerProfiler} to
+ * its planner, the recording includes an {@code org.apache.calcite.RuleFired}
+ * event for each rule firing.
  */
 public class FlightRecorderProfiler implements ExternalProfiler {
   @Override public Collection<String> addJVMInvokeOptions(BenchmarkParams params) {
@@ -52,10 +58,15 @@ public class FlightRecorderProfiler implements ExternalProfiler {
 
     long duration =
         getDurationSeconds(params.getWarmup()) + getDurationSeconds(params.getMeasurement());
-    return Arrays.asList(
-        "-XX:+UnlockCommercialFeatures", "-XX:+FlightRecorder",
-        "-XX:StartFlightRecording=settings=profile,duration=" + duration + "s,filename="
-            + params.getBenchmark() + "_" + sb + ".jfr");
+    final List<String> options = new ArrayList<>();
+    if (System.getProperty("java.specification.version", "").startsWith("1.")) {
+      // Flight Recorder is a commercial feature before JDK 11
+      options.addAll(
+          Arrays.asList("-XX:+UnlockCommercialFeatures", "-XX:+FlightRecorder"));
+    }
+    options.add("-XX:StartFlightRecording=settings=profile,duration=" + duration
+        + "s,filename=" + params.getBenchmark() + "_" + sb + ".jfr");
+    return options;
   }
 
   private static long getDurationSeconds(IterationParams warmup) {
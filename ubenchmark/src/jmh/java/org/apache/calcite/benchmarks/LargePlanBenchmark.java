@@ -84,6 +84,10 @@ public class LargePlanBenchmark {
   @Param({"ARBITRARY"})
   String matchOrder;
 
+  // Whether to revisit only the vertices affected by each transformation
+  @Param({"false", "true"})
+  boolean isWorklistMode;
+
   // Enable validation mode to verify rule application counts across different orders.
   boolean enableValidation = false;
 
@@ -221,6 +225,7 @@ public Map<String, Map<String, Pair<Long, Long>>> testLargeUnionPlan(
       HepPlanner planner = new HepPlanner();
       planner.setEnableFiredRulesCache(isEnableFiredRulesCache);
       planner.setLargePlanMode(isLargePlanMode);
+      planner.setWorklistMode(isWorklistMode);
       if (collectStats) {
         planner.enableRuleAttemptsTracking();
       }
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark that compares the sorts that
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableLimitSort} can use:
+ * the sort that keeps rows in a tree,
+ * {@link EnumerableDefaults#orderBy(Enumerable, Function1, Comparator, int, int)},
+ * and the top-N sort that keeps rows in a bounded heap,
+ * {@link EnumerableDefaults#topN}.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1024m")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class TopNBenchmark {
+  private static final Function1<Object[], Integer> KEY =
+      row -> (Integer) row[0];
+  private static final Function1<Object[], Integer> PREFIX =
+      row -> (Integer) row[0] / 1_000;
+  private static final Comparator<Integer> COMPARATOR =
+      Comparator.naturalOrder();
+
+  @Param({"100000"})
+  int rowCount;
+
+  /** Number of distinct sort keys. */
+  @Param({"10", "1000000"})
+  int distinct;
+
+  @Param({"10", "1000"})
+  int fetch;
+
+  /** Whether the input is sorted on the prefix of the key returned by
+   * {@link #PREFIX}. */
+  @Param({"false", "true"})
+  boolean sorted;
+
+  Enumerable<Object[]> source;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final Random random = new Random(0);
+    final List<Object[]> rows = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      rows.add(new Object[] {random.nextInt(distinct), "row " + i});
+    }
+    if (sorted) {
+      rows.sort(Comparator.comparing(PREFIX::apply));
+    }
+    source = Linq4j.asEnumerable(rows);
+  }
+
+  @Benchmark
+  public List<Object[]> treeMap() {
+    return EnumerableDefaults.orderBy(source, KEY, COMPARATOR, 0, fetch)
+        .toList();
+  }
+
+  @Benchmark
+  public List<Object[]> heap() {
+    return EnumerableDefaults.topN(source, KEY, COMPARATOR, null, null, 0,
+        fetch, -1L).toList();
+  }
+
+  /** As {@link #heap()}, but tells the sort that the input is sorted on a
+   * prefix of the key, if it is. */
+  @Benchmark
+  public List<Object[]> heapSortedPrefix() {
+    return EnumerableDefaults.topN(source, KEY, COMPARATOR,
+        sorted ? PREFIX : null, sorted ? COMPARATOR : null, 0, fetch, -1L)
+        .toList();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(TopNBenchmark.class.getSimpleName())
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}